@@ -36,6 +36,11 @@ android {
     buildFeatures {
         buildConfig = true
     }
+
+    testOptions {
+        // android.util.Log is stubbed in local unit tests
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -58,6 +63,9 @@ dependencies {
     implementation(libs.activity)
     implementation(libs.constraintlayout)
     testImplementation(libs.junit)
+    testImplementation("com.squareup.okhttp3:mockwebserver:4.9.1")
+    // Real org.json for local tests; the android.jar copy is a stub
+    testImplementation("org.json:json:20231013")
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
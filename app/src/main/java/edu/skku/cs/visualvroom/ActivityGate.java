@@ -0,0 +1,183 @@
+package edu.skku.cs.visualvroom;
+
+import org.jtransforms.fft.FloatFFT_1D;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streaming energy and spectral-flatness gate that keeps silent or steady-noise windows
+ * from being uploaded.
+ *
+ * A noise-floor tracker follows the quietest recent level (falls immediately, rises slowly).
+ * The gate opens when a frame rises a margin above the floor and is either tonal (low
+ * spectral flatness) or very loud, and closes only after the level has stayed near the
+ * floor for the hangover time.
+ */
+public class ActivityGate {
+    private static final String TAG = "ActivityGate";
+
+    static final int FRAME_SIZE = 256;
+    private static final double EPSILON = 1e-12;
+
+    private final int sampleRate;
+    private final FloatFFT_1D fft;
+    private final float[] window;
+    private final float[] frame;
+    private final float[] fftBuffer;
+    private int framePosition = 0;
+
+    // Tunable thresholds (dB relative to the tracked noise floor unless noted)
+    private volatile double openMarginDb = 9.0;
+    private volatile double closeMarginDb = 4.0;
+    private volatile double loudMarginDb = 20.0;
+    private volatile double flatnessThreshold = 0.45;
+    private volatile double minLevelDbfs = -75.0;
+    private volatile double floorRiseDbPerSecond = 1.5;
+    private volatile long hangoverMs = 1200;
+
+    private double noiseFloorDb = Double.NaN;
+    private boolean open = false;
+    private long quietMs = 0;
+    private long elapsedMs = 0;
+    // The first window of a session is always treated as active so the server sees it
+    private long lastActiveMs = 0;
+
+    private final AtomicLong gatedWindows = new AtomicLong();
+    private final AtomicLong passedWindows = new AtomicLong();
+
+    public ActivityGate(int sampleRate) {
+        this.sampleRate = sampleRate;
+        this.fft = new FloatFFT_1D(FRAME_SIZE);
+        this.window = new float[FRAME_SIZE];
+        for (int i = 0; i < FRAME_SIZE; i++) {
+            window[i] = (float) (0.5 * (1 - Math.cos(2 * Math.PI * i / (FRAME_SIZE - 1))));
+        }
+        this.frame = new float[FRAME_SIZE];
+        this.fftBuffer = new float[FRAME_SIZE];
+    }
+
+    /** Feeds one capture block of interleaved PCM (channels are mixed to mono). */
+    public synchronized void processBlock(short[] interleaved, int length, int channels) {
+        for (int i = 0; i + channels <= length; i += channels) {
+            int sum = 0;
+            for (int c = 0; c < channels; c++) {
+                sum += interleaved[i + c];
+            }
+            frame[framePosition++] = sum / (channels * 32768f);
+
+            if (framePosition == FRAME_SIZE) {
+                analyzeFrame();
+                framePosition = 0;
+            }
+        }
+    }
+
+    private void analyzeFrame() {
+        double energy = 0;
+        for (int i = 0; i < FRAME_SIZE; i++) {
+            energy += frame[i] * frame[i];
+            fftBuffer[i] = frame[i] * window[i];
+        }
+        double levelDb = 10 * Math.log10(energy / FRAME_SIZE + EPSILON);
+
+        fft.realForward(fftBuffer);
+
+        // Spectral flatness: geometric over arithmetic mean of the power spectrum (DC skipped)
+        double logSum = 0;
+        double linearSum = 0;
+        int bins = FRAME_SIZE / 2 - 1;
+        for (int k = 1; k <= bins; k++) {
+            double re = fftBuffer[2 * k];
+            double im = fftBuffer[2 * k + 1];
+            double power = re * re + im * im + EPSILON;
+            logSum += Math.log(power);
+            linearSum += power;
+        }
+        double flatness = Math.exp(logSum / bins) / (linearSum / bins);
+
+        update(levelDb, flatness, FRAME_SIZE * 1000L / sampleRate);
+    }
+
+    /**
+     * Advances the gate by one analysis step. Pass NaN for flatness when only a level is
+     * known (e.g. MediaRecorder peak amplitude); the gate then decides on energy alone.
+     */
+    public synchronized boolean update(double levelDb, double flatness, long durationMs) {
+        elapsedMs += durationMs;
+        trackNoiseFloor(levelDb, durationMs);
+
+        double aboveFloor = levelDb - noiseFloorDb;
+        boolean audible = levelDb > minLevelDbfs;
+        boolean tonal = Double.isNaN(flatness) || flatness < flatnessThreshold;
+        boolean onset = audible && aboveFloor >= openMarginDb && (tonal || aboveFloor >= loudMarginDb);
+
+        if (onset) {
+            open = true;
+            quietMs = 0;
+        } else if (open) {
+            if (audible && aboveFloor >= closeMarginDb) {
+                quietMs = 0;
+            } else {
+                quietMs += durationMs;
+                if (quietMs >= hangoverMs) {
+                    open = false;
+                }
+            }
+        }
+
+        if (open) {
+            lastActiveMs = elapsedMs;
+        }
+        return open;
+    }
+
+    private void trackNoiseFloor(double levelDb, long durationMs) {
+        if (Double.isNaN(noiseFloorDb) || levelDb < noiseFloorDb) {
+            noiseFloorDb = levelDb;
+        } else {
+            noiseFloorDb = Math.min(levelDb, noiseFloorDb + floorRiseDbPerSecond * durationMs / 1000.0);
+        }
+    }
+
+    /**
+     * Decides whether a window ending now and lasting windowMs should be uploaded, and counts
+     * the decision.
+     */
+    public synchronized boolean admitWindow(long windowMs) {
+        boolean active = open || elapsedMs - lastActiveMs <= windowMs;
+        if (active) {
+            passedWindows.incrementAndGet();
+        } else {
+            gatedWindows.incrementAndGet();
+        }
+        return active;
+    }
+
+    public synchronized void reset() {
+        noiseFloorDb = Double.NaN;
+        open = false;
+        quietMs = 0;
+        elapsedMs = 0;
+        lastActiveMs = 0;
+        framePosition = 0;
+    }
+
+    public synchronized boolean isOpen() { return open; }
+    public synchronized double getNoiseFloorDb() { return noiseFloorDb; }
+    public long getGatedWindows() { return gatedWindows.get(); }
+    public long getPassedWindows() { return passedWindows.get(); }
+
+    public void setOpenMarginDb(double openMarginDb) { this.openMarginDb = openMarginDb; }
+    public void setCloseMarginDb(double closeMarginDb) { this.closeMarginDb = closeMarginDb; }
+    public void setLoudMarginDb(double loudMarginDb) { this.loudMarginDb = loudMarginDb; }
+    public void setFlatnessThreshold(double flatnessThreshold) { this.flatnessThreshold = flatnessThreshold; }
+    public void setMinLevelDbfs(double minLevelDbfs) { this.minLevelDbfs = minLevelDbfs; }
+    public void setFloorRiseDbPerSecond(double floorRiseDbPerSecond) { this.floorRiseDbPerSecond = floorRiseDbPerSecond; }
+    public void setHangoverMs(long hangoverMs) { this.hangoverMs = hangoverMs; }
+
+    @Override
+    public String toString() {
+        return String.format("%s[floor %.1f dB, open %b, passed %d, gated %d]",
+                TAG, noiseFloorDb, open, passedWindows.get(), gatedWindows.get());
+    }
+}
@@ -4,7 +4,12 @@ import android.util.Log;
 
 import org.jtransforms.fft.FloatFFT_1D;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class AudioProcessor {
     private static final String TAG = "AudioProcessor";
@@ -21,6 +26,7 @@ public class AudioProcessor {
     private static final int MFCC_WIDTH = 241;
     private static final int MFCC_HEIGHT = 13;
     private static final int FINAL_HEIGHT = 428;
+    private static final int CHANNEL_BLOCK_SIZE = SPEC_WIDTH * (FINAL_HEIGHT / 2);
 
     private final FloatFFT_1D fft;
     private final float[] hannWindow;
@@ -39,37 +45,92 @@ public class AudioProcessor {
     }
 
     public byte[] processAudioChannels(short[] leftChannel, short[] rightChannel) {
+        return processChannels(leftChannel, rightChannel);
+    }
+
+    /**
+     * Builds the feature image for any number of channels: one block per channel, each an
+     * MFCC strip over a spectrogram. For two channels this is exactly the stereo image
+     * inference.py expects.
+     */
+    public byte[] processChannels(short[]... channels) {
         try {
-            // Convert shorts to float arrays (-1 to 1)
-            float[] leftFloat = normalizeAudio(leftChannel);
-            float[] rightFloat = normalizeAudio(rightChannel);
-
-            // Generate spectrograms
-            float[][] leftSpec = generateSpectrogram(leftFloat);
-            float[][] rightSpec = generateSpectrogram(rightFloat);
-
-            // Convert to dB scale
-            leftSpec = amplitudeToDb(leftSpec);
-            rightSpec = amplitudeToDb(rightSpec);
-
-            // Generate MFCCs
-            float[][] leftMFCC = generateMFCC(leftFloat);
-            float[][] rightMFCC = generateMFCC(rightFloat);
-
-            // Resize features to match inference.py dimensions
-            leftSpec = resizeFeature(leftSpec, SPEC_WIDTH, SPEC_HEIGHT);
-            rightSpec = resizeFeature(rightSpec, SPEC_WIDTH, SPEC_HEIGHT);
-            leftMFCC = resizeFeature(leftMFCC, MFCC_WIDTH, MFCC_HEIGHT);
-            rightMFCC = resizeFeature(rightMFCC, MFCC_WIDTH, MFCC_HEIGHT);
-
-            // Combine all features into single image array
-            return combineFeatures(leftMFCC, leftSpec, rightMFCC, rightSpec);
+            byte[] image = new byte[CHANNEL_BLOCK_SIZE * channels.length];
+            for (int c = 0; c < channels.length; c++) {
+                System.arraycopy(channelFeatures(channels[c]), 0, image, c * CHANNEL_BLOCK_SIZE, CHANNEL_BLOCK_SIZE);
+            }
+            return image;
         } catch (Exception e) {
             Log.e(TAG, "Error processing audio channels: " + e.getMessage());
             throw e;
         }
     }
 
+    /**
+     * Same image as {@link #processChannels(short[]...)}, with each channel's block computed
+     * as its own task on the executor. The FFT plan and window are read-only once built, so
+     * the tasks share them.
+     */
+    public byte[] processChannels(ExecutorService executor, short[][] channels) {
+        List<Future<byte[]>> blocks = new ArrayList<>(channels.length);
+        for (short[] channel : channels) {
+            blocks.add(executor.submit(() -> channelFeatures(channel)));
+        }
+
+        byte[] image = new byte[CHANNEL_BLOCK_SIZE * channels.length];
+        try {
+            for (int c = 0; c < channels.length; c++) {
+                System.arraycopy(blocks.get(c).get(), 0, image, c * CHANNEL_BLOCK_SIZE, CHANNEL_BLOCK_SIZE);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while processing audio channels", e);
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Error processing audio channels: " + e.getCause());
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            for (Future<byte[]> block : blocks) {
+                block.cancel(true);
+            }
+        }
+        return image;
+    }
+
+    // One channel's block of the image: MFCC rows then spectrogram rows, each scaled to 0-255
+    private byte[] channelFeatures(short[] channel) {
+        // Convert shorts to float arrays (-1 to 1)
+        float[] audio = normalizeAudio(channel);
+
+        // Spectrogram in dB and MFCCs, resized to match inference.py dimensions
+        float[][] spec = resizeFeature(amplitudeToDb(generateSpectrogram(audio)), SPEC_WIDTH, SPEC_HEIGHT);
+        float[][] mfcc = resizeFeature(generateMFCC(audio), MFCC_WIDTH, MFCC_HEIGHT);
+
+        byte[] block = new byte[CHANNEL_BLOCK_SIZE];
+        int index = 0;
+        mfcc = normalizeFeature(mfcc);
+        spec = normalizeFeature(spec);
+
+        // Copy in exact order matching inference.py
+        for (int y = 0; y < MFCC_HEIGHT; y++) {
+            for (int x = 0; x < MFCC_WIDTH; x++) {
+                block[index++] = (byte) mfcc[y][x];
+            }
+        }
+        for (int y = 0; y < SPEC_HEIGHT; y++) {
+            for (int x = 0; x < SPEC_WIDTH; x++) {
+                block[index++] = (byte) spec[y][x];
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Returns the MFCC matrix (frames x 13) of one channel before it is resized into the image.
+     */
+    public float[][] computeMfcc(short[] channel) {
+        return generateMFCC(normalizeAudio(channel));
+    }
+
     private float[] normalizeAudio(short[] audio) {
         float[] normalized = new float[audio.length];
         float maxShort = 32768.0f;
@@ -81,22 +142,38 @@ public class AudioProcessor {
         return normalized;
     }
 
+    /**
+     * Returns the windowed FFT of every STFT frame of one channel (N_FFT-point frames every
+     * HOP_LENGTH samples), each in JTransforms realForward layout.
+     */
+    public float[][] computeStft(short[] channel) {
+        float[] audio = normalizeAudio(channel);
+        int frames = 1 + (audio.length - N_FFT) / HOP_LENGTH;
+        float[][] stft = new float[Math.max(frames, 0)][N_FFT];
+        for (int frame = 0; frame < frames; frame++) {
+            transformFrame(audio, frame * HOP_LENGTH, stft[frame]);
+        }
+        return stft;
+    }
+
+    private void transformFrame(float[] audio, int start, float[] buffer) {
+        // Apply Hann window and prepare FFT buffer
+        Arrays.fill(buffer, 0);
+        for (int i = 0; i < N_FFT && (start + i) < audio.length; i++) {
+            buffer[i] = audio[start + i] * hannWindow[i];
+        }
+
+        // Compute FFT
+        fft.realForward(buffer);
+    }
+
     private float[][] generateSpectrogram(float[] audio) {
         int frames = 1 + (audio.length - N_FFT) / HOP_LENGTH;
         float[][] spectrogram = new float[frames][N_FFT / 2 + 1];
         float[] buffer = new float[N_FFT * 2]; // Real + Imaginary parts
 
         for (int frame = 0; frame < frames; frame++) {
-            int start = frame * HOP_LENGTH;
-
-            // Apply Hann window and prepare FFT buffer
-            Arrays.fill(buffer, 0);
-            for (int i = 0; i < N_FFT && (start + i) < audio.length; i++) {
-                buffer[i] = audio[start + i] * hannWindow[i];
-            }
-
-            // Compute FFT
-            fft.realForward(buffer);
+            transformFrame(audio, frame * HOP_LENGTH, buffer);
 
             // Compute magnitude
             for (int i = 0; i < N_FFT / 2 + 1; i++) {
@@ -254,49 +331,6 @@ public class AudioProcessor {
         return resized;
     }
 
-    private byte[] combineFeatures(float[][] leftMFCC, float[][] leftSpec,
-                                   float[][] rightMFCC, float[][] rightSpec) {
-        byte[] combined = new byte[SPEC_WIDTH * FINAL_HEIGHT];
-        int index = 0;
-
-        // Normalize all features to 0-255 range
-        leftMFCC = normalizeFeature(leftMFCC);
-        leftSpec = normalizeFeature(leftSpec);
-        rightMFCC = normalizeFeature(rightMFCC);
-        rightSpec = normalizeFeature(rightSpec);
-
-        // Copy in exact order matching inference.py
-        // 1. Top MFCC
-        for (int y = 0; y < MFCC_HEIGHT; y++) {
-            for (int x = 0; x < MFCC_WIDTH; x++) {
-                combined[index++] = (byte) leftMFCC[y][x];
-            }
-        }
-
-        // 2. Top spectrogram
-        for (int y = 0; y < SPEC_HEIGHT; y++) {
-            for (int x = 0; x < SPEC_WIDTH; x++) {
-                combined[index++] = (byte) leftSpec[y][x];
-            }
-        }
-
-        // 3. Bottom MFCC
-        for (int y = 0; y < MFCC_HEIGHT; y++) {
-            for (int x = 0; x < MFCC_WIDTH; x++) {
-                combined[index++] = (byte) rightMFCC[y][x];
-            }
-        }
-
-        // 4. Bottom spectrogram
-        for (int y = 0; y < SPEC_HEIGHT; y++) {
-            for (int x = 0; x < SPEC_WIDTH; x++) {
-                combined[index++] = (byte) rightSpec[y][x];
-            }
-        }
-
-        return combined;
-    }
-
     private float[][] normalizeFeature(float[][] feature) {
         float[][] normalized = new float[feature.length][feature[0].length];
         float min = Float.MAX_VALUE;
@@ -3,16 +3,21 @@ package edu.skku.cs.visualvroom;
 import android.Manifest;
 import android.content.Context;
 import android.content.pm.PackageManager;
-import android.media.MediaRecorder;
-import android.os.Build;
 import android.util.Log;
 import androidx.core.content.ContextCompat;
-import okhttp3.*;
-import org.json.JSONObject;
+import edu.skku.cs.visualvroom.inference.InferenceBackend;
+import edu.skku.cs.visualvroom.inference.InferenceRequest;
+import edu.skku.cs.visualvroom.inference.InferenceRouter;
+import edu.skku.cs.visualvroom.inference.RemoteInferenceBackend;
 
+import okhttp3.OkHttpClient;
+
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
+import java.io.OutputStream;
+import java.util.Collections;
 
 public class AudioRecorder {
     private static final String TAG = "AudioRecorder";
@@ -21,20 +26,49 @@ public class AudioRecorder {
     private static final String TEST_ENDPOINT = "http://211.211.177.45:8017/test";
 
     private final Context context;
-    private MediaRecorder mediaRecorder;
-    private File outputFile;
+    // Captures and encodes continuously into the ring; snapshots are windows read out of it
+    private volatile ContinuousAudioEncoder encoder;
+    private static final long RING_CAPACITY_MS = 30000;
+    private final EncodedFrameRing frameRing = new EncodedFrameRing(SAMPLE_RATE, 2, RING_CAPACITY_MS);
+    private static final String ADTS_MEDIA_TYPE = "audio/aac";
+
+    // Each snapshot covers this much audio, whatever the interval between snapshots
+    private static final long DEFAULT_SNAPSHOT_WINDOW_MS = 5000;
+    private volatile long snapshotWindowMs = DEFAULT_SNAPSHOT_WINDOW_MS;
+    private long lastSnapshotEndUs = -1;
+
+    private static final InferenceBackend.Pending NOT_PENDING = () -> { };
+
+    // The whole session is also written to the spool as ADTS, so the final upload is complete
+    private static final String RECORDING_NAME = "recording.aac";
+    private final byte[] adtsHeader = new byte[EncodedFrameRing.ADTS_HEADER_BYTES];
+    private File sessionPart;
+    private volatile OutputStream sessionOut;
+
+    // What sendToBackend uploads: the session file, or the ring's contents if writing it failed
+    private File finalRecording;
+    private EncodedFrameRing.Window finalRecordingTail;
     private final OkHttpClient client;
+    private final InferenceRouter inferenceRouter;
+
+    // A snapshot answer is only useful while the next snapshot is not yet due
+    private static final long SNAPSHOT_DEADLINE_MS = 5000;
+    private static final long UPLOAD_DEADLINE_MS = 30000;
+
+    // Snapshot results that are too old or overtaken by a newer snapshot are dropped
+    private final StaleResultFilter staleResultFilter = new StaleResultFilter(SNAPSHOT_DEADLINE_MS);
 
-    // Track recording start time for snapshots
-    private long recordingStartTime;
+    // Answers silent snapshots locally instead of uploading them
+    private final ActivityGate activityGate = new ActivityGate(SAMPLE_RATE);
+
+    // Decides shouldNotify for snapshots from the evidence of consecutive snapshots
+    private final DetectionFuser detectionFuser = new DetectionFuser();
 
     public AudioRecorder(Context context) {
         this.context = context;
-        this.client = new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .writeTimeout(30, TimeUnit.SECONDS)
-                .build();
+        this.client = HttpClientProvider.get(HttpClientProvider.Profile.ALERT);
+        this.inferenceRouter = new InferenceRouter(Collections.singletonList(
+                new RemoteInferenceBackend("server", client, null, TEST_ENDPOINT)));
     }
 
     public interface AudioRecorderCallback {
@@ -50,14 +84,26 @@ public class AudioRecorder {
         private final double confidence;
         private final boolean shouldNotify;
         private final boolean tooQuiet;  // New field
+        private final String backend;    // Which inference backend produced it
 
         public InferenceResult(String vehicleType, String direction,
                                double confidence, boolean shouldNotify, boolean tooQuiet) {
+            this(vehicleType, direction, confidence, shouldNotify, tooQuiet, "server");
+        }
+
+        public InferenceResult(String vehicleType, String direction, double confidence,
+                               boolean shouldNotify, boolean tooQuiet, String backend) {
             this.vehicleType = vehicleType;
             this.direction = direction;
             this.confidence = confidence;
             this.shouldNotify = shouldNotify;
             this.tooQuiet = tooQuiet;
+            this.backend = backend;
+        }
+
+        /** The same result attributed to another backend. */
+        public InferenceResult fromBackend(String backend) {
+            return new InferenceResult(vehicleType, direction, confidence, shouldNotify, tooQuiet, backend);
         }
 
         public String getVehicleType() { return vehicleType; }
@@ -65,6 +111,7 @@ public class AudioRecorder {
         public double getConfidence() { return confidence; }
         public boolean getShouldNotify() { return shouldNotify; }
         public boolean isTooQuiet() { return tooQuiet; }
+        public String getBackend() { return backend; }
     }
 
     private boolean checkPermission() {
@@ -72,37 +119,21 @@ public class AudioRecorder {
                 == PackageManager.PERMISSION_GRANTED;
     }
 
-    private MediaRecorder createMediaRecorder() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-            return new MediaRecorder(context);
-        } else {
-            return new MediaRecorder();
-        }
-    }
-
     public void startRecording() throws SecurityException, IOException {
         if (!checkPermission()) {
             throw new SecurityException("Recording permission not granted");
         }
 
         try {
-            // Create output file
-            outputFile = File.createTempFile("audio_recording", ".m4a", context.getCacheDir());
-            outputFile.deleteOnExit();
-
-            mediaRecorder = createMediaRecorder();
-            mediaRecorder.setAudioSource(MediaRecorder.AudioSource.MIC); // Uses raw audio
-            mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.MPEG_4); // M4A format
-            mediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.HE_AAC);
-            mediaRecorder.setAudioChannels(2); // Stereo
-            mediaRecorder.setAudioSamplingRate(SAMPLE_RATE);
-            mediaRecorder.setAudioEncodingBitRate(ENCODING_BIT_RATE);
-            mediaRecorder.setOutputFile(outputFile.getAbsolutePath());
-
-            mediaRecorder.prepare();
-            mediaRecorder.start();
-            recordingStartTime = System.currentTimeMillis();
-            Log.d(TAG, "Started recording to: " + outputFile.getAbsolutePath());
+            discardFinalRecording();
+            frameRing.clear();
+            lastSnapshotEndUs = -1;
+            startSession();
+            encoder = new ContinuousAudioEncoder(SAMPLE_RATE, 2, ENCODING_BIT_RATE, this::onAccessUnit); // Stereo AAC
+            encoder.start();
+            // Snapshots start in a few seconds; have a connection ready for the first
+            HttpClientProvider.prewarm(TEST_ENDPOINT);
+            Log.d(TAG, "Started continuous recording");
         } catch (Exception e) {
             Log.e(TAG, "Error starting recording: " + e.getMessage());
             stopRecording();
@@ -110,299 +141,265 @@ public class AudioRecorder {
         }
     }
 
+    public ActivityGate getActivityGate() {
+        return activityGate;
+    }
+
+    public DetectionFuser getDetectionFuser() {
+        return detectionFuser;
+    }
+
+    public StaleResultFilter getStaleResultFilter() {
+        return staleResultFilter;
+    }
+
+    /** Sets how much audio each snapshot covers; windows overlap when this exceeds the interval. */
+    public void setSnapshotWindowMs(long windowMs) {
+        this.snapshotWindowMs = Math.max(1, Math.min(RING_CAPACITY_MS, windowMs));
+    }
+
     public void stopRecording() {
-        if (mediaRecorder != null) {
-            try {
-                mediaRecorder.stop();
-            } catch (Exception e) {
-                Log.e(TAG, "Error stopping recording: " + e.getMessage());
-            } finally {
-                mediaRecorder.release();
-                mediaRecorder = null;
-            }
+        activityGate.reset();
+        detectionFuser.reset();
+        Log.i(TAG, "Snapshot results: " + staleResultFilter);
+        staleResultFilter.reset();
+        ContinuousAudioEncoder stopped = encoder;
+        if (stopped != null) {
+            stopped.stop();
+            encoder = null;
+        }
+        // Also closes the session file when starting failed before the encoder existed
+        if (stopped != null || sessionPart != null) {
+            finishSession();
         }
     }
 
-    /**
-     * Creates a snapshot of the current recording for processing without stopping the ongoing recording
-     */
-    public void createSnapshot(final AudioRecorderCallback callback) {
-        // We need to stop and restart the current recorder to get a snapshot
-        // This might create a small gap in the recording
-        if (mediaRecorder == null) {
-            callback.onError("No active recording");
-            return;
+    private void startSession() {
+        RecordingSpool spool = RecordingSpool.inCache(context);
+        try {
+            sessionPart = spool.create(RECORDING_NAME);
+            sessionOut = new BufferedOutputStream(new FileOutputStream(sessionPart));
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot write session recording: " + e.getMessage());
+            if (sessionPart != null) spool.delete(sessionPart);
+            sessionPart = null;
         }
+    }
 
-        File snapshotFile = null;
-
+    // Encoder thread: snapshots read the ring, the final upload reads the session file
+    private void onAccessUnit(byte[] unit, int length, long captureTimeUs, int peakAmplitude) {
+        frameRing.write(unit, length, captureTimeUs, peakAmplitude);
+        OutputStream out = sessionOut;
+        if (out == null) return;
         try {
-            // Stop current recording to save the file
-            mediaRecorder.stop();
-
-            // Make a copy of the current output file
-            snapshotFile = new File(outputFile.getAbsolutePath());
+            frameRing.writeAdtsHeader(adtsHeader, 0, length);
+            out.write(adtsHeader);
+            out.write(unit, 0, length);
+        } catch (IOException e) {
+            Log.e(TAG, "Session recording failed: " + e.getMessage());
+            sessionOut = null;
+            closeQuietly(out);
+        }
+    }
 
-            // Start a new recording immediately
-            MediaRecorder newRecorder = createMediaRecorder();
+    private void finishSession() {
+        RecordingSpool spool = RecordingSpool.inCache(context);
+        OutputStream out = sessionOut;
+        File part = sessionPart;
+        sessionOut = null;
+        sessionPart = null;
+        if (out != null) {
+            try {
+                out.close();
+                finalRecording = spool.commit(part);
+                // Pinned until sendToBackend has uploaded it
+                spool.open(finalRecording);
+                Log.d(TAG, "Final recording: " + finalRecording.getName() + " (" + finalRecording.length() + " bytes)");
+                return;
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot finish session recording: " + e.getMessage());
+            }
+        }
+        if (part != null) spool.delete(part);
+        // Without the session file only what the ring still holds can be sent
+        finalRecordingTail = frameRing.latest(RING_CAPACITY_MS * 1000);
+        Log.w(TAG, "Final recording truncated to the last " + RING_CAPACITY_MS / 1000 + " s: " + finalRecordingTail);
+    }
 
-            // Create a new output file for the continuing recording
-            File newOutputFile = File.createTempFile("audio_recording", ".m4a", context.getCacheDir());
-            newOutputFile.deleteOnExit();
+    private void discardFinalRecording() {
+        if (finalRecording != null) {
+            RecordingSpool.inCache(context).delete(finalRecording);
+        }
+        finalRecording = null;
+        finalRecordingTail = null;
+    }
 
-            newRecorder.setAudioSource(MediaRecorder.AudioSource.MIC);
-            newRecorder.setOutputFormat(MediaRecorder.OutputFormat.MPEG_4);
-            newRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.HE_AAC);
-            newRecorder.setAudioChannels(2);
-            newRecorder.setAudioSamplingRate(SAMPLE_RATE);
-            newRecorder.setAudioEncodingBitRate(ENCODING_BIT_RATE);
-            newRecorder.setOutputFile(newOutputFile.getAbsolutePath());
+    private static void closeQuietly(OutputStream out) {
+        try {
+            out.close();
+        } catch (IOException e) {
+            // Already failed
+        }
+    }
 
-            newRecorder.prepare();
-            newRecorder.start();
+    /**
+     * Sends the newest snapshot window to the backend without stopping the ongoing recording.
+     * Cancelling the returned handle abandons the inference; the callback is then not invoked.
+     */
+    public InferenceBackend.Pending createSnapshot(final AudioRecorderCallback callback) {
+        ContinuousAudioEncoder current = encoder;
+        if (current == null || !current.isRunning()) {
+            callback.onError("No active recording");
+            return NOT_PENDING;
+        }
 
-            // Replace the old recorder with the new one
-            mediaRecorder.release();
-            mediaRecorder = newRecorder;
-            outputFile = newOutputFile;
+        try {
+            EncodedFrameRing.Window window = frameRing.latest(snapshotWindowMs * 1000);
+            if (window == null) {
+                callback.onError("No audio encoded yet");
+                return NOT_PENDING;
+            }
+            long capturedAt = window.endTimeUs / 1000;
+            // Time the gate moves on by: the audio new since the previous snapshot
+            long newMs = lastSnapshotEndUs < 0 ? window.getDurationMs()
+                    : Math.min(window.getDurationMs(), (window.endTimeUs - lastSnapshotEndUs) / 1000);
+            lastSnapshotEndUs = window.endTimeUs;
+
+            // Silent windows are reported as quiet without a round trip to the server
+            double peakDb = 20 * Math.log10(Math.max(window.peakAmplitude, 1) / 32767.0);
+            activityGate.update(peakDb, Double.NaN, newMs);
+            if (!activityGate.admitWindow(window.getDurationMs())) {
+                Log.d(TAG, String.format("Snapshot gated locally (peak %.1f dBFS, %s)", peakDb, activityGate));
+                detectionFuser.offerNothing(capturedAt);
+                callback.onQuietAudio();
+                return NOT_PENDING;
+            }
 
-            // Process the snapshot file
-            processSnapshotFile(snapshotFile, callback);
+            return processSnapshot(window, capturedAt, callback);
 
         } catch (Exception e) {
             Log.e(TAG, "Error creating snapshot: " + e.getMessage());
             callback.onError("Error creating snapshot: " + e.getMessage());
-
-            // If there was an error, try to restart recording
-            try {
-                if (mediaRecorder != null) {
-                    mediaRecorder.release();
-                }
-
-                startRecording();
-            } catch (Exception restartError) {
-                Log.e(TAG, "Error restarting recording after snapshot failure: " + restartError.getMessage());
-            }
+            return NOT_PENDING;
         }
     }
 
-    private void processSnapshotFile(File snapshotFile, final AudioRecorderCallback callback) {
+    private InferenceBackend.Pending processSnapshot(EncodedFrameRing.Window window, final long capturedAt, final AudioRecorderCallback callback) {
         try {
-            if (snapshotFile == null || !snapshotFile.exists()) {
-                callback.onError("No snapshot file available");
-                return;
-            }
+            Log.d(TAG, "Processing snapshot: " + window);
 
-            Log.d(TAG, "Processing snapshot file: " + snapshotFile.getAbsolutePath() +
-                    " (Size: " + snapshotFile.length() + " bytes)");
+            final long sequence = staleResultFilter.nextSequence();
+            InferenceRequest request = InferenceRequest.encoded(window.adts, "snapshot.aac", ADTS_MEDIA_TYPE)
+                    .withWindow(sequence, staleResultFilter.deadlineFor(capturedAt));
+            return inferenceRouter.route(request, SNAPSHOT_DEADLINE_MS, new InferenceBackend.Callback() {
+                @Override
+                public void onResult(InferenceResult inference) {
+                    if (!staleResultFilter.accept(sequence, capturedAt, System.currentTimeMillis())) {
+                        Log.d(TAG, String.format("Dropping stale result for snapshot %d (%s)", sequence, staleResultFilter));
+                        callback.onError("Stale result dropped");
+                        return;
+                    }
+                    Log.d(TAG, "Inference result for snapshot from " + inference.getBackend());
+
+                    // Check if audio was too quiet
+                    if (inference.isTooQuiet()) {
+                        Log.d(TAG, "Audio too quiet for processing");
+                        detectionFuser.offerNothing(capturedAt);
+                        callback.onQuietAudio();
+                        return;
+                    }
 
-            RequestBody requestBody = new MultipartBody.Builder()
-                    .setType(MultipartBody.FORM)
-                    .addFormDataPart(
-                            "audio_file",
-                            snapshotFile.getName(),
-                            RequestBody.create(snapshotFile, MediaType.parse("audio/mp4"))
-                    )
-                    .build();
+                    // Notify once consecutive snapshots agree strongly enough
+                    String direction = inference.getDirection();
+                    DetectionFuser.Detection detection = detectionFuser.offer(
+                            inference.getVehicleType(), direction, inference.getConfidence(), capturedAt);
+                    boolean shouldNotify = detection != null;
+                    if (shouldNotify) {
+                        direction = detection.direction;
+                        Log.d(TAG, "Fused detection: " + detection);
+                    }
 
-            Request request = new Request.Builder()
-                    .url(TEST_ENDPOINT)
-                    .post(requestBody)
-                    .build();
+                    InferenceResult result = new InferenceResult(
+                            inference.getVehicleType(),
+                            direction,
+                            inference.getConfidence(),
+                            shouldNotify,
+                            false,  // Not too quiet
+                            inference.getBackend()
+                    );
 
-            client.newCall(request).enqueue(new Callback() {
-                @Override
-                public void onFailure(Call call, IOException e) {
-                    String error = "Network error: " + e.getMessage();
-                    Log.e(TAG, error);
-                    callback.onError(error);
+                    Log.d(TAG, String.format("Created inference result: %s from %s (confidence: %.2f, shouldNotify: %b)",
+                            result.getVehicleType(), result.getDirection(),
+                            result.getConfidence(), result.getShouldNotify()));
 
-                    // Clean up the snapshot file
-                    if (snapshotFile != null) {
-                        snapshotFile.delete();
-                    }
+                    callback.onSuccess(result);
                 }
 
                 @Override
-                public void onResponse(Call call, Response response) throws IOException {
-                    try (ResponseBody responseBody = response.body()) {
-                        if (!response.isSuccessful() || responseBody == null) {
-                            String errorMsg = responseBody != null ? responseBody.string() : "Unknown error";
-                            String error = "Server error " + response.code() + ": " + errorMsg;
-                            Log.e(TAG, error);
-                            callback.onError(error);
-                            return;
-                        }
-
-                        String responseString = responseBody.string();
-                        Log.d(TAG, "Server response for snapshot: " + responseString);
-
-                        try {
-                            JSONObject json = new JSONObject(responseString);
-
-                            if ("error".equals(json.getString("status"))) {
-                                String errorMsg = json.getString("error");
-                                Log.e(TAG, "Server returned error for snapshot: " + errorMsg);
-                                callback.onError(errorMsg);
-                                return;
-                            }
-
-                            JSONObject inferenceJson = json.getJSONObject("inference_result");
-
-                            // Check if audio was too quiet
-                            boolean tooQuiet = inferenceJson.optBoolean("too_quiet", false);
-                            if (tooQuiet) {
-                                Log.d(TAG, "Audio too quiet for processing");
-                                callback.onQuietAudio();
-                                return;
-                            }
-
-                            // Get the vehicle type, direction, and confidence
-                            String vehicleType = inferenceJson.getString("vehicle_type");
-                            String direction = inferenceJson.getString("direction");
-                            double confidence = inferenceJson.getDouble("confidence");
-
-                            // Calculate shouldNotify - either use server value or determine based on confidence
-                            boolean shouldNotify = inferenceJson.optBoolean("should_notify", false);
-
-                            // Force shouldNotify to true if confidence is high enough
-                            if (!shouldNotify && confidence > 0.97) {
-                                shouldNotify = true;
-                                Log.d(TAG, "Forcing shouldNotify to true based on high confidence: " + confidence);
-                            }
-
-                            InferenceResult result = new InferenceResult(
-                                    vehicleType,
-                                    direction,
-                                    confidence,
-                                    shouldNotify,
-                                    false  // Not too quiet
-                            );
-
-                            Log.d(TAG, String.format("Created inference result: %s from %s (confidence: %.2f, shouldNotify: %b)",
-                                    result.getVehicleType(), result.getDirection(),
-                                    result.getConfidence(), result.getShouldNotify()));
-
-                            callback.onSuccess(result);
-                        } catch (Exception e) {
-                            String error = "Error parsing snapshot response: " + e.getMessage();
-                            Log.e(TAG, error);
-                            callback.onError(error);
-                        }
-                    } finally {
-                        // Clean up the snapshot file
-                        if (snapshotFile != null) {
-                            snapshotFile.delete();
-                        }
-                    }
+                public void onError(String error) {
+                    Log.e(TAG, "Snapshot inference failed: " + error);
+                    callback.onError(error);
                 }
             });
         } catch (Exception e) {
-            String error = "Error processing snapshot file: " + e.getMessage();
+            String error = "Error processing snapshot: " + e.getMessage();
             Log.e(TAG, error);
             callback.onError(error);
-
-            if (snapshotFile != null) {
-                snapshotFile.delete();
-            }
+            return NOT_PENDING;
         }
     }
+
     public void sendToBackend(final AudioRecorderCallback callback) {
-        if (outputFile == null || !outputFile.exists()) {
-            callback.onError("No recording file available");
+        final File recording = finalRecording;
+        final EncodedFrameRing.Window tail = finalRecordingTail;
+        finalRecording = null;
+        finalRecordingTail = null;
+        if (recording == null && tail == null) {
+            callback.onError("No recording available");
             return;
         }
 
         try {
-            Log.d(TAG, "Sending file: " + outputFile.getAbsolutePath() +
-                    " (Size: " + outputFile.length() + " bytes)");
-
-            RequestBody requestBody = new MultipartBody.Builder()
-                    .setType(MultipartBody.FORM)
-                    .addFormDataPart(
-                            "audio_file",
-                            outputFile.getName(),
-                            RequestBody.create(outputFile, MediaType.parse("audio/mp4"))
-                    )
-                    .build();
-
-            Request request = new Request.Builder()
-                    .url(TEST_ENDPOINT)
-                    .post(requestBody)
-                    .build();
-
-            client.newCall(request).enqueue(new Callback() {
+            InferenceRequest request;
+            if (recording != null) {
+                Log.d(TAG, "Sending recording: " + recording.getName() + " (" + recording.length() + " bytes)");
+                request = InferenceRequest.encoded(recording, ADTS_MEDIA_TYPE);
+            } else {
+                Log.d(TAG, "Sending recording: " + tail);
+                request = InferenceRequest.encoded(tail.adts, RECORDING_NAME, ADTS_MEDIA_TYPE);
+            }
+
+            inferenceRouter.route(request, UPLOAD_DEADLINE_MS, new InferenceBackend.Callback() {
                 @Override
-                public void onFailure(Call call, IOException e) {
-                    String error = "Network error: " + e.getMessage();
-                    Log.e(TAG, error);
-                    callback.onError(error);
+                public void onResult(InferenceResult result) {
+                    release(recording);
+                    if (result.isTooQuiet()) {
+                        Log.d(TAG, "Audio too quiet for processing");
+                        callback.onQuietAudio();
+                        return;
+                    }
+                    callback.onSuccess(result);
                 }
 
                 @Override
-                public void onResponse(Call call, Response response) throws IOException {
-                    try (ResponseBody responseBody = response.body()) {
-                        if (!response.isSuccessful() || responseBody == null) {
-                            String errorMsg = responseBody != null ? responseBody.string() : "Unknown error";
-                            String error = "Server error " + response.code() + ": " + errorMsg;
-                            Log.e(TAG, error);
-                            callback.onError(error);
-                            return;
-                        }
-
-                        String responseString = responseBody.string();
-                        Log.d(TAG, "Server response: " + responseString);
-
-                        try {
-                            JSONObject json = new JSONObject(responseString);
-
-                            if ("error".equals(json.getString("status"))) {
-                                String errorMsg = json.getString("error");
-                                Log.e(TAG, "Server returned error: " + errorMsg);
-                                callback.onError(errorMsg);
-                                return;
-                            }
-
-                            JSONObject inferenceJson = json.getJSONObject("inference_result");
-
-                            // Check if audio was too quiet
-                            boolean tooQuiet = inferenceJson.optBoolean("too_quiet", false);
-                            if (tooQuiet) {
-                                Log.d(TAG, "Audio too quiet for processing");
-                                callback.onQuietAudio();
-                                return;
-                            }
-
-                            InferenceResult result = new InferenceResult(
-                                    inferenceJson.getString("vehicle_type"),
-                                    inferenceJson.getString("direction"),
-                                    inferenceJson.getDouble("confidence"),
-                                    inferenceJson.getBoolean("should_notify"),
-                                    false  // Not too quiet
-                            );
-                            callback.onSuccess(result);
-                        } catch (Exception e) {
-                            String error = "Error parsing response: " + e.getMessage();
-                            Log.e(TAG, error);
-                            callback.onError(error);
-                        }
-                    } finally {
-                        if (outputFile != null) {
-                            outputFile.delete();
-                            outputFile = null;
-                        }
-                    }
+                public void onError(String error) {
+                    release(recording);
+                    Log.e(TAG, "Inference failed: " + error);
+                    callback.onError(error);
                 }
             });
         } catch (Exception e) {
-            String error = "Error sending file: " + e.getMessage();
+            release(recording);
+            String error = "Error sending recording: " + e.getMessage();
             Log.e(TAG, error);
             callback.onError(error);
+        }
+    }
 
-            if (outputFile != null) {
-                outputFile.delete();
-                outputFile = null;
-            }
+    // The session file is only kept for its one upload
+    private void release(File recording) {
+        if (recording != null) {
+            RecordingSpool.inCache(context).delete(recording);
         }
     }
-}
\ No newline at end of file
+}
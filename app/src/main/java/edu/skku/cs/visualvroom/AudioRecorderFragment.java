@@ -17,7 +17,11 @@ import com.airbnb.lottie.LottieAnimationView;
 
 public class AudioRecorderFragment extends Fragment {
     private static final String TAG = "AudioRecorderFragment";
-    private static final int PROCESSING_INTERVAL_MS = 3000; // 3 seconds
+    private static final int PROCESSING_INTERVAL_MS = 3000; // 3 seconds while sound is around
+
+    // Snapshot interval per acoustic state, stretched on low battery or when the phone runs hot
+    private final InferenceCadenceController cadence =
+            new InferenceCadenceController(2 * PROCESSING_INTERVAL_MS, PROCESSING_INTERVAL_MS, 2000);
 
     // UI Components
     private LottieAnimationView micButton;
@@ -39,8 +43,8 @@ public class AudioRecorderFragment extends Fragment {
     // Core Components
     private AudioRecorder audioRecorder;
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
-    private Runnable processingIntervalRunnable;
-    private boolean isContinuousProcessing = false;
+    // Takes snapshots off the main thread and posts their results back to it
+    private SnapshotScheduler snapshotScheduler;
 
     // Track quiet audio samples to prevent too many notifications
     private int consecutiveQuietSamples = 0;
@@ -78,18 +82,10 @@ public class AudioRecorderFragment extends Fragment {
 
     private void initializeComponents() {
         audioRecorder = new AudioRecorder(requireContext());
+        // Evidence decays over about two snapshot intervals
+        audioRecorder.getDetectionFuser().setTimeConstantMs(2L * PROCESSING_INTERVAL_MS);
 
-        // Create a runnable for periodic processing
-        processingIntervalRunnable = new Runnable() {
-            @Override
-            public void run() {
-                if (currentState == RecordingState.RECORDING && isContinuousProcessing) {
-                    processCurrentRecording();
-                    // Schedule next processing
-                    mainHandler.postDelayed(this, PROCESSING_INTERVAL_MS);
-                }
-            }
-        };
+        snapshotScheduler = new SnapshotScheduler(audioRecorder, cadence::getIntervalMs, snapshotCallback);
     }
 
     private void setupClickListeners() {
@@ -126,8 +122,8 @@ public class AudioRecorderFragment extends Fragment {
             updateUIState(RecordingState.RECORDING);
 
             // Start continuous processing
-            isContinuousProcessing = true;
-            mainHandler.postDelayed(processingIntervalRunnable, PROCESSING_INTERVAL_MS);
+            cadence.start(requireContext());
+            snapshotScheduler.start();
 
             Log.d(TAG, "Recording started successfully with continuous processing");
         } catch (SecurityException e) {
@@ -141,9 +137,9 @@ public class AudioRecorderFragment extends Fragment {
 
     private void stopRecording() {
         try {
-            // Stop continuous processing
-            isContinuousProcessing = false;
-            mainHandler.removeCallbacks(processingIntervalRunnable);
+            // Stop continuous processing; results still in flight are dropped
+            snapshotScheduler.stop();
+            cadence.stop();
 
             // Stop the recording
             audioRecorder.stopRecording();
@@ -160,81 +156,78 @@ public class AudioRecorderFragment extends Fragment {
         }
     }
 
-    private void processCurrentRecording() {
-        try {
-            // Create a snapshot of the current recording without stopping
-            audioRecorder.createSnapshot(new AudioRecorder.AudioRecorderCallback() {
-                @Override
-                public void onSuccess(AudioRecorder.InferenceResult result) {
-                    mainHandler.post(() -> {
-                        // Reset quiet samples counter
-                        consecutiveQuietSamples = 0;
-
-                        // Log inference details
-                        Log.d(TAG, String.format("Inference result (continuous) - %s from %s (confidence: %.2f, shouldNotify: %b)",
-                                result.getVehicleType(),
-                                result.getDirection(),
-                                result.getConfidence(),
-                                result.getShouldNotify()));
-
-                        // Force notification if confidence is high enough, regardless of shouldNotify flag
-                        boolean shouldShow = result.getShouldNotify() || result.getConfidence() > 0.97;
-
-                        if (shouldShow) {
-                            String message = String.format("%s detected from %s (%.2f)",
-                                    result.getVehicleType(),
-                                    result.getDirection(),
-                                    result.getConfidence());
-                            showToast(message);
-
-                            // Always update animations when confidence is high
-                            Log.d(TAG, "Showing animation for high confidence detection: " + result.getConfidence());
-                            updateVehicleAnimation(result.getVehicleType());
-                            updateDirectionIndicator(result.getDirection());
-
-                            // Also send to watch through MainActivity if possible
-                            try {
-                                MainActivity activity = (MainActivity) getActivity();
-                                if (activity != null) {
-                                    activity.sendAlertToWatch(result.getVehicleType(), result.getDirection());
-                                    Log.d(TAG, "Sent alert to watch via MainActivity");
-                                }
-                            } catch (Exception e) {
-                                Log.e(TAG, "Failed to send alert to watch: " + e.getMessage());
-                            }
-                        }
+    // Results of continuous snapshots, delivered on the main thread by the scheduler
+    private final AudioRecorder.AudioRecorderCallback snapshotCallback = new AudioRecorder.AudioRecorderCallback() {
+        @Override
+        public void onSuccess(AudioRecorder.InferenceResult result) {
+            if (currentState != RecordingState.RECORDING) return;
 
-                        // Remain in recording state
-                        // We don't change the UI state since we're still recording
-                    });
+            // Reset quiet samples counter
+            consecutiveQuietSamples = 0;
+            cadence.reportActivity(true, 0f);
+
+            // Log inference details
+            Log.d(TAG, String.format("Inference result (continuous) - %s from %s (confidence: %.2f, shouldNotify: %b)",
+                    result.getVehicleType(),
+                    result.getDirection(),
+                    result.getConfidence(),
+                    result.getShouldNotify()));
+
+            // shouldNotify already reflects the evidence fused over recent snapshots
+            boolean shouldShow = result.getShouldNotify();
+
+            if (shouldShow) {
+                cadence.reportEvent();
+                String message = String.format("%s detected from %s (%.2f)",
+                        result.getVehicleType(),
+                        result.getDirection(),
+                        result.getConfidence());
+                showToast(message);
+
+                // Always update animations when confidence is high
+                Log.d(TAG, "Showing animation for high confidence detection: " + result.getConfidence());
+                updateVehicleAnimation(result.getVehicleType());
+                updateDirectionIndicator(result.getDirection());
+
+                // Also send to watch through MainActivity if possible
+                try {
+                    MainActivity activity = (MainActivity) getActivity();
+                    if (activity != null) {
+                        activity.sendAlertToWatch(result.getVehicleType(), result.getDirection());
+                        Log.d(TAG, "Sent alert to watch via MainActivity");
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Failed to send alert to watch: " + e.getMessage());
                 }
+            }
 
-                @Override
-                public void onError(String error) {
-                    Log.e(TAG, "Error in continuous processing: " + error);
-                    // We don't show errors to the user during continuous processing
-                    // to avoid disrupting the user experience
-                }
+            // Remain in recording state
+            // We don't change the UI state since we're still recording
+        }
 
-                @Override
-                public void onQuietAudio() {
-                    mainHandler.post(() -> {
-                        consecutiveQuietSamples++;
+        @Override
+        public void onError(String error) {
+            Log.e(TAG, "Error in continuous processing: " + error);
+            // We don't show errors to the user during continuous processing
+            // to avoid disrupting the user experience
+        }
 
-                        // Only notify the user about quiet audio occasionally
-                        if (consecutiveQuietSamples <= MAX_QUIET_NOTIFICATIONS) {
-                            Log.d(TAG, "Audio too quiet for processing");
-                            statusText.setText("Recording... (sound level low)");
-                        }
+        @Override
+        public void onQuietAudio() {
+            if (currentState != RecordingState.RECORDING) return;
 
-                        // We remain in recording state
-                    });
-                }
-            });
-        } catch (Exception e) {
-            Log.e(TAG, "Error in continuous processing: " + e.getMessage());
+            consecutiveQuietSamples++;
+            cadence.reportActivity(false, 0f);
+
+            // Only notify the user about quiet audio occasionally
+            if (consecutiveQuietSamples <= MAX_QUIET_NOTIFICATIONS) {
+                Log.d(TAG, "Audio too quiet for processing");
+                statusText.setText("Recording... (sound level low)");
+            }
+
+            // We remain in recording state
         }
-    }
+    };
 
     private void processRecording() {
         audioRecorder.sendToBackend(new AudioRecorder.AudioRecorderCallback() {
@@ -438,8 +431,9 @@ public class AudioRecorderFragment extends Fragment {
 
     @Override
     public void onDestroyView() {
-        // Clean up our continuous processing timer
-        mainHandler.removeCallbacks(processingIntervalRunnable);
+        // Cancel scheduled and in-flight snapshots
+        snapshotScheduler.stop();
+        cadence.stop();
 
         if (currentState == RecordingState.RECORDING) {
             audioRecorder.stopRecording();
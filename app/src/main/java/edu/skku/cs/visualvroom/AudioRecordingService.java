@@ -7,7 +7,9 @@ import android.app.NotificationManager;
 import android.app.Service;
 import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.media.AudioDeviceInfo;
 import android.media.AudioFormat;
+import android.media.AudioManager;
 import android.media.AudioRecord;
 import android.media.MediaRecorder;
 import android.os.Build;
@@ -16,13 +18,33 @@ import android.util.Log;
 import androidx.core.app.NotificationCompat;
 import androidx.core.content.ContextCompat;
 
-import okhttp3.*;
+import edu.skku.cs.visualvroom.inference.HedgedInferenceBackend;
+import edu.skku.cs.visualvroom.inference.InferenceBackend;
+import edu.skku.cs.visualvroom.inference.InferenceRequest;
+import edu.skku.cs.visualvroom.inference.InferenceRouter;
+import edu.skku.cs.visualvroom.inference.LocalInferenceBackend;
+import edu.skku.cs.visualvroom.inference.OnDeviceClassifier;
+import edu.skku.cs.visualvroom.inference.RemoteInferenceBackend;
+
+import okhttp3.OkHttpClient;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.ArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
 
 public class AudioRecordingService extends Service {
     private static final String TAG = "AudioRecordingService";
@@ -30,7 +52,7 @@ public class AudioRecordingService extends Service {
     private static final int CHANNEL_CONFIG = AudioFormat.CHANNEL_IN_STEREO;
     private static final int AUDIO_FORMAT = AudioFormat.ENCODING_PCM_16BIT;
     private static final int BYTES_PER_SAMPLE = 2;
-    private static final int BUFFER_SIZE = AudioRecord.getMinBufferSize(
+    private static final int STEREO_BUFFER_SIZE = AudioRecord.getMinBufferSize(
             SAMPLE_RATE, CHANNEL_CONFIG, AUDIO_FORMAT) * 4; // Increased buffer size
     private static final String NOTIFICATION_CHANNEL_ID = "audio_service_channel";
     private static final int NOTIFICATION_ID = 1;
@@ -39,32 +61,137 @@ public class AudioRecordingService extends Service {
     private static final int SECONDS_TO_BUFFER = 5;
     private static final int SAMPLES_PER_BUFFER = SAMPLE_RATE * SECONDS_TO_BUFFER;
 
+    // Overlapping 2-second windows; MainActivity fuses their results over time
+    private static final int WINDOW_SECONDS = 2;
+    private static final int WINDOW_SAMPLES = SAMPLE_RATE * WINDOW_SECONDS;
+
+    // Hop between windows: 4 s when quiet, 1 s while active, 0.5 s around events, longer on low battery or heat
+    private final InferenceCadenceController cadence = new InferenceCadenceController(4000, 1000, 500);
+
+    // Steps down to cheaper modes when processing lags or the link slows down
+    private final QualityTierController qualityTier = new QualityTierController();
+    // Windows queued for analysis or awaiting an answer
+    private final AtomicInteger requestsInFlight = new AtomicInteger();
+    private int samplesSinceWindow = 0;
+    private long totalSamples = 0;
+
+    // An onset schedules a window positioned so the onset sits pre-roll into it (centred by default)
+    public static final String EXTRA_ONSET_PRE_ROLL_MS = "onset_pre_roll_ms";
+    private final OnsetDetector onsetDetector = new OnsetDetector(SAMPLE_RATE, this::onOnset);
+    private volatile int onsetPreRollSamples = WINDOW_SAMPLES / 2;
+    private long pendingOnsetWindowEnd = -1;
+
     private AudioRecord audioRecord;
     private AtomicBoolean isRecording;
     private Thread recordingThread;
     private final OkHttpClient client;
     private static final String SERVER_URL = "http://211.211.177.45:8017/predict";
 
-    // Buffers for left and right channels
-    private final ArrayDeque<Short> leftBuffer = new ArrayDeque<>(SAMPLES_PER_BUFFER);
-    private final ArrayDeque<Short> rightBuffer = new ArrayDeque<>(SAMPLES_PER_BUFFER);
+    // Results older than this are no use as alerts; the router falls back or gives up
+    private static final long INFERENCE_DEADLINE_MS = 1500;
+    // On-time answers slower than this count as slow for the server breaker and the quality tier. It sits
+    // below the fallback delay (half the deadline): later server answers mostly lose to the fallback
+    private static final long SLOW_RESPONSE_MS = INFERENCE_DEADLINE_MS * 2 / 5;
+    // The tier climbs back once p90 is this low again; a cellular round trip has to be able to
+    // reach it, so it stays close to the slow limit and the recovery time supplies the hysteresis
+    private static final long RECOVERED_RESPONSE_MS = SLOW_RESPONSE_MS * 3 / 4;
+    private static final String LOCAL_MODEL_FILE = "vv_model.vvq";
+    // Optional second /predict endpoint for hedged requests
+    public static final String EXTRA_SECONDARY_SERVER_URL = "secondary_server_url";
+    private volatile InferenceRouter inferenceRouter;
+
+    // Results for audio older than this, or older than one already delivered, are dropped
+    private static final long RESULT_MAX_AGE_MS = 3000;
+    private final StaleResultFilter staleResultFilter = new StaleResultFilter(RESULT_MAX_AGE_MS);
+
+    // Microphones to capture: left, right, then rear on devices that have a third mic.
+    // More than two need an index channel mask; devices without one fall back to stereo.
+    public static final String EXTRA_CHANNEL_COUNT = "channel_count";
+    private static final int MAX_CHANNELS = 8;
+    private int requestedChannels = 2;
+    private int channelCount = 2;
+    private int bufferSize = STEREO_BUFFER_SIZE;
+
+    // Capture at the device's native rate and decimate to SAMPLE_RATE ourselves, so the
+    // platform's resampler (quality varies by vendor) stays out of the path. Rates other than
+    // these two, or a device that refuses them, capture at SAMPLE_RATE directly.
+    private static final int[] NATIVE_CAPTURE_RATES = {48000, 44100};
+    private int captureRate = SAMPLE_RATE;
+    private PolyphaseResampler resampler;
+
+    // The last 30 s of 16 kHz audio in a mapped file; detections keep the 10 s around them.
+    // MainActivity sends CAPTURE_CLIP for each fused detection, with the end of its window as
+    // the event time
+    private static final long BLACK_BOX_CAPACITY_MS = 30000;
+    public static final String EXTRA_EVENT_TIME = "event_time";
+    public static final String EXTRA_CLIP_METADATA = "clip_metadata";
+    private volatile BlackBoxRecorder blackBox;
+
+    // Optionally saves the whole session as WAV files in app-specific external storage
+    public static final String EXTRA_SAVE_SESSION = "save_session";
+    private static final long SESSION_FILE_BYTES = 32L * 1024 * 1024;
+    private static final long SESSION_SPOOL_BYTES = 1024L * 1024 * 1024;
+    private static final int SESSION_SPOOL_FILES = 500;
+    private boolean saveSession = false;
+    private RecordingSpool sessionSpool;
+    private volatile WavSessionWriter sessionWriter;
+
+    // Dataset capture mode: a LABEL_WINDOW tap stores the current stereo window with its label
+    public static final String EXTRA_DATASET_MODE = "dataset_mode";
+    public static final String EXTRA_LABEL = "label";
+    private static final long DATASET_SHARD_BYTES = 64L * 1024 * 1024;
+    private boolean datasetMode = false;
+    private volatile DatasetShardWriter datasetWriter;
+    private volatile ExecutorService datasetExecutor;
+
+    // Per-channel feature blocks for multichannel feature images are built in parallel
+    private ExecutorService featureExecutor;
+
+    // Windows are scored, turned into requests and routed here, off the capture thread
+    private volatile ExecutorService windowExecutor;
+
+    // One buffer per channel, left and right first
+    private final List<ArrayDeque<Short>> channelBuffers = new ArrayList<>();
 
     // Audio level monitoring
-    private float leftMicLevel = 0;
-    private float rightMicLevel = 0;
+    private float[] micLevels = new float[2];
     private static final int LEVEL_MONITOR_INTERVAL = 100;
 
     // RMS level tracking for auto-gain
-    private double leftRmsSum = 0;
-    private double rightRmsSum = 0;
+    private double[] rmsSums = new double[2];
     private int rmsSampleCount = 0;
     private static final int RMS_WINDOW_SIZE = SAMPLE_RATE; // 1 second window
     private static final double BASE_GAIN = 50.0;  // Increased from 25.0f
     private static final double MAX_GAIN = 100.0;    // Increased from 15.0
     private static final double TARGET_RMS = 0.95;  // Increased from 0.9
+
+    // Optional first-stage classifier; every window is uploaded when no weights are installed
+    private static final String CASCADE_WEIGHTS_FILE = "mfcc_cascade.txt";
+    private MfccCascadeGate cascadeGate;
+
+    // Drops silent and steady-noise windows before they are uploaded
+    private final ActivityGate activityGate = new ActivityGate(SAMPLE_RATE);
+
+    // A siren or horn spotted by the tonal pre-detector triggers inference right away
+    private static final int MIN_TRIGGERED_SAMPLES = SAMPLE_RATE; // 1 second
+    private final TonalPreDetector tonalDetector = new TonalPreDetector(SAMPLE_RATE, this::onTonalEvent);
+    private volatile boolean immediateInferenceRequested = false;
+
+    // Local direction estimate on the latest second, broadcast between server responses
+    private static final int DIRECTION_WINDOW_SAMPLES = SAMPLE_RATE;
+    private static final long DIRECTION_INTERVAL_MS = 500;
+    private static final float MIC_SPACING_METERS = 0.14f;
+    private static final float CENTRE_DEGREES = 15f;
+    private final AudioProcessor audioProcessor = new AudioProcessor();
+    private final DirectionEstimator directionEstimator = new DirectionEstimator(audioProcessor, MIC_SPACING_METERS);
+    private volatile boolean directionRequested = false;
+    private long lastDirectionMs = 0;
+    // Estimates run here so their STFTs stay off the capture thread; one at a time
+    private volatile ExecutorService directionExecutor;
+    private final AtomicBoolean directionPending = new AtomicBoolean();
+
     public AudioRecordingService() {
-        client = new OkHttpClient.Builder()
-                .build();
+        client = HttpClientProvider.get(HttpClientProvider.Profile.ALERT);
         isRecording = new AtomicBoolean(false);
     }
 
@@ -72,6 +199,51 @@ public class AudioRecordingService extends Service {
     public void onCreate() {
         super.onCreate();
         createNotificationChannel();
+        loadCascadeGate();
+    }
+
+    private void createInferenceRouter(String secondaryServerUrl) {
+        if (inferenceRouter != null) {
+            inferenceRouter.close();
+        }
+
+        List<InferenceBackend> backends = new ArrayList<>();
+        InferenceBackend server = new RemoteInferenceBackend("server", client, SERVER_URL, null);
+        if (secondaryServerUrl != null) {
+            // Slow answers from the primary are hedged to the secondary
+            server = new HedgedInferenceBackend(server,
+                    new RemoteInferenceBackend("server_secondary", client, secondaryServerUrl, null));
+        }
+        backends.add(server);
+
+        File modelFile = new File(getFilesDir(), LOCAL_MODEL_FILE);
+        if (modelFile.exists()) {
+            try {
+                backends.add(new LocalInferenceBackend(OnDeviceClassifier.load(modelFile)));
+            } catch (IOException e) {
+                Log.e(TAG, "Error loading on-device model: " + e.getMessage());
+            }
+        }
+        InferenceRouter router = new InferenceRouter(backends);
+        // Only the server is held to the slow limit; the on-device model is the fallback when the
+        // server is slow and keeps the breaker's default
+        router.getBreaker(server).setMaxLatencyMs(SLOW_RESPONSE_MS);
+        qualityTier.setLatencyLimitsMs(SLOW_RESPONSE_MS, RECOVERED_RESPONSE_MS);
+        inferenceRouter = router;
+    }
+
+    private void loadCascadeGate() {
+        File weightsFile = new File(getFilesDir(), CASCADE_WEIGHTS_FILE);
+        if (!weightsFile.exists()) {
+            return;
+        }
+
+        try {
+            cascadeGate = MfccCascadeGate.load(weightsFile, audioProcessor);
+        } catch (IOException e) {
+            Log.e(TAG, "Error loading cascade weights: " + e.getMessage());
+            cascadeGate = null;
+        }
     }
 
     @Override
@@ -83,6 +255,13 @@ public class AudioRecordingService extends Service {
                 return START_NOT_STICKY;
             }
 
+            int preRollMs = intent.getIntExtra(EXTRA_ONSET_PRE_ROLL_MS, WINDOW_SECONDS * 1000 / 2);
+            onsetPreRollSamples = Math.max(0, Math.min(WINDOW_SAMPLES, preRollMs * SAMPLE_RATE / 1000));
+            requestedChannels = Math.max(2, Math.min(MAX_CHANNELS, intent.getIntExtra(EXTRA_CHANNEL_COUNT, 2)));
+            createInferenceRouter(intent.getStringExtra(EXTRA_SECONDARY_SERVER_URL));
+            saveSession = intent.getBooleanExtra(EXTRA_SAVE_SESSION, false);
+            datasetMode = intent.getBooleanExtra(EXTRA_DATASET_MODE, false);
+
             try {
                 startForeground(NOTIFICATION_ID, createNotification());
                 initializeAudioRecorder();
@@ -94,6 +273,11 @@ public class AudioRecordingService extends Service {
                 Log.e(TAG, "Error in onStartCommand: " + e.getMessage());
                 stopSelf();
             }
+        } else if (intent != null && "LABEL_WINDOW".equals(intent.getAction())) {
+            labelCurrentWindow(intent.getStringExtra(EXTRA_LABEL));
+        } else if (intent != null && "CAPTURE_CLIP".equals(intent.getAction())) {
+            captureClip(intent.getLongExtra(EXTRA_EVENT_TIME, System.currentTimeMillis()),
+                    intent.getStringExtra(EXTRA_CLIP_METADATA));
         } else if (intent != null && "STOP_RECORDING".equals(intent.getAction())) {
             stopRecording();
             stopSelf();
@@ -135,47 +319,148 @@ public class AudioRecordingService extends Service {
         }
 
         try {
-            // Configure for stereo recording with higher quality settings
-            AudioFormat audioFormat = new AudioFormat.Builder()
-                    .setEncoding(AUDIO_FORMAT)
-                    .setSampleRate(SAMPLE_RATE)
-                    .setChannelMask(CHANNEL_CONFIG)
-                    .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
-                    .build();
-
-            // Try to use UNPROCESSED source first for raw audio
-            try {
-                audioRecord = new AudioRecord.Builder()
-                        .setAudioSource(MediaRecorder.AudioSource.MIC)
-                        .setAudioFormat(audioFormat)
-                        .setBufferSizeInBytes(BUFFER_SIZE)
-                        .build();
-            } catch (Exception e) {
-                // Fall back to DEFAULT if UNPROCESSED is not supported
-                Log.w(TAG, "UNPROCESSED source not supported, falling back to DEFAULT");
-                audioRecord = new AudioRecord.Builder()
-                        .setAudioSource(MediaRecorder.AudioSource.DEFAULT)
-                        .setAudioFormat(audioFormat)
-                        .setBufferSizeInBytes(BUFFER_SIZE)
-                        .build();
+            int nativeRate = nativeCaptureRate();
+            audioRecord = nativeRate != SAMPLE_RATE ? createAudioRecord(nativeRate) : null;
+            if (audioRecord == null) {
+                audioRecord = createAudioRecord(SAMPLE_RATE);
             }
 
-            if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+            if (audioRecord == null || audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
                 throw new IllegalStateException("Failed to initialize AudioRecord");
             }
 
+            AudioFormat audioFormat = audioRecord.getFormat();
+            setChannelCount(audioFormat.getChannelCount());
+            captureRate = audioFormat.getSampleRate();
+            bufferSize = scaledBufferSize(captureRate) * channelCount / 2;
+            resampler = captureRate != SAMPLE_RATE
+                    ? new PolyphaseResampler(captureRate, SAMPLE_RATE, channelCount) : null;
+            Log.i(TAG, "Resampler: " + (resampler != null ? resampler : "none"));
+
             Log.i(TAG, "AudioRecord initialized successfully");
             Log.i(TAG, "Channel count: " + audioFormat.getChannelCount());
             Log.i(TAG, "Channel mask: " + audioFormat.getChannelMask());
+            Log.i(TAG, "Channel index mask: " + audioFormat.getChannelIndexMask());
             Log.i(TAG, "Sample rate: " + audioFormat.getSampleRate());
             Log.i(TAG, "Encoding: " + audioFormat.getEncoding());
-            Log.i(TAG, "Buffer size: " + BUFFER_SIZE);
+            Log.i(TAG, "Buffer size: " + bufferSize);
         } catch (Exception e) {
             Log.e(TAG, "Error initializing AudioRecord: " + e.getMessage());
             throw e;
         }
     }
 
+    // The output rate the mixer runs at, if it is one the resampler is built for
+    private int nativeCaptureRate() {
+        AudioManager audioManager = (AudioManager) getSystemService(AUDIO_SERVICE);
+        if (audioManager == null) return SAMPLE_RATE;
+        try {
+            int rate = Integer.parseInt(audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE));
+            for (int supported : NATIVE_CAPTURE_RATES) {
+                if (rate == supported) return rate;
+            }
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Native sample rate unavailable: " + e.getMessage());
+        }
+        return SAMPLE_RATE;
+    }
+
+    private static int scaledBufferSize(int rate) {
+        return (int) ((long) STEREO_BUFFER_SIZE * rate / SAMPLE_RATE);
+    }
+
+    // An initialized AudioRecord at this rate with as many channels as allowed, or null
+    private AudioRecord createAudioRecord(int rate) {
+        AudioRecord record = null;
+        if (requestedChannels > 2 && supportsChannelIndexMask(requestedChannels)) {
+            // Every microphone as its own channel, in the device's index order
+            AudioFormat multiFormat = new AudioFormat.Builder()
+                    .setEncoding(AUDIO_FORMAT)
+                    .setSampleRate(rate)
+                    .setChannelIndexMask((1 << requestedChannels) - 1)
+                    .build();
+            record = buildAudioRecord(multiFormat, scaledBufferSize(rate) * requestedChannels / 2);
+            if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+                Log.w(TAG, requestedChannels + "-channel capture at " + rate + " Hz failed, falling back to stereo");
+                record.release();
+                record = null;
+            }
+        }
+
+        if (record == null) {
+            // Configure for stereo recording with higher quality settings
+            AudioFormat audioFormat = new AudioFormat.Builder()
+                    .setEncoding(AUDIO_FORMAT)
+                    .setSampleRate(rate)
+                    .setChannelMask(CHANNEL_CONFIG)
+                    .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                    .build();
+            try {
+                record = buildAudioRecord(audioFormat, scaledBufferSize(rate));
+            } catch (Exception e) {
+                Log.w(TAG, "Capture at " + rate + " Hz not supported: " + e.getMessage());
+                return null;
+            }
+            if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+                Log.w(TAG, "Capture at " + rate + " Hz failed to initialize");
+                record.release();
+                return null;
+            }
+        }
+        return record;
+    }
+
+    private AudioRecord buildAudioRecord(AudioFormat format, int bufferSizeInBytes) {
+        // Try to use UNPROCESSED source first for raw audio
+        try {
+            return new AudioRecord.Builder()
+                    .setAudioSource(MediaRecorder.AudioSource.MIC)
+                    .setAudioFormat(format)
+                    .setBufferSizeInBytes(bufferSizeInBytes)
+                    .build();
+        } catch (Exception e) {
+            // Fall back to DEFAULT if UNPROCESSED is not supported
+            Log.w(TAG, "UNPROCESSED source not supported, falling back to DEFAULT");
+            return new AudioRecord.Builder()
+                    .setAudioSource(MediaRecorder.AudioSource.DEFAULT)
+                    .setAudioFormat(format)
+                    .setBufferSizeInBytes(bufferSizeInBytes)
+                    .build();
+        }
+    }
+
+    // True if a built-in microphone reports an index mask (or channel count) covering the request
+    private boolean supportsChannelIndexMask(int channels) {
+        AudioManager audioManager = (AudioManager) getSystemService(AUDIO_SERVICE);
+        if (audioManager == null) return false;
+
+        int mask = (1 << channels) - 1;
+        for (AudioDeviceInfo device : audioManager.getDevices(AudioManager.GET_DEVICES_INPUTS)) {
+            if (device.getType() != AudioDeviceInfo.TYPE_BUILTIN_MIC) continue;
+            for (int indexMask : device.getChannelIndexMasks()) {
+                if ((indexMask & mask) == mask) return true;
+            }
+            for (int count : device.getChannelCounts()) {
+                if (count >= channels) return true;
+            }
+        }
+        Log.w(TAG, "No built-in microphone reports " + channels + " channels");
+        return false;
+    }
+
+    private void setChannelCount(int channels) {
+        channelCount = channels;
+        micLevels = new float[channels];
+        rmsSums = new double[channels];
+        rmsSampleCount = 0;
+        synchronized (channelBuffers) {
+            channelBuffers.clear();
+            for (int c = 0; c < channels; c++) {
+                channelBuffers.add(new ArrayDeque<>(SAMPLES_PER_BUFFER));
+            }
+        }
+    }
+
     private void startRecording() {
         if (!checkPermission()) {
             Log.e(TAG, "Recording permission not granted");
@@ -186,8 +471,38 @@ public class AudioRecordingService extends Service {
         if (isRecording.get()) return;
 
         isRecording.set(true);
+        cadence.start(this);
+        if (channelCount > 2) {
+            featureExecutor = Executors.newFixedThreadPool(
+                    Math.min(channelCount, Runtime.getRuntime().availableProcessors()));
+        }
+        windowExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "WindowAnalysis"));
+        directionExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "DirectionEstimate"));
+        startBlackBox();
+        // The first window should not wait for a TCP handshake
+        HttpClientProvider.startKeepWarm(SERVER_URL);
+        if (saveSession) {
+            sessionWriter = new WavSessionWriter(getSessionSpool(), SAMPLE_RATE, channelCount, SESSION_FILE_BYTES);
+            sessionWriter.start();
+        }
+        if (datasetMode) {
+            File base = getExternalFilesDir(null);
+            datasetWriter = new DatasetShardWriter(new File(base != null ? base : getFilesDir(), "dataset"),
+                    SAMPLE_RATE, 2, DATASET_SHARD_BYTES);
+            datasetExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "DatasetWriter");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
         recordingThread = new Thread(() -> {
-            short[] readBuffer = new short[BUFFER_SIZE / 2]; // Convert bytes to shorts
+            // Convert bytes to shorts, whole frames only
+            short[] readBuffer = new short[bufferSize / 2 / channelCount * channelCount];
+            PolyphaseResampler blockResampler = resampler;
+            BlackBoxRecorder blockBlackBox = blackBox;
+            WavSessionWriter blockSessionWriter = sessionWriter;
+            short[] resampled = blockResampler != null
+                    ? new short[blockResampler.maxOutputLength(readBuffer.length)] : readBuffer;
 
             try {
                 audioRecord.startRecording();
@@ -196,7 +511,18 @@ public class AudioRecordingService extends Service {
                     int shortsRead = audioRecord.read(readBuffer, 0, readBuffer.length);
 
                     if (shortsRead > 0) {
-                        processAudioData(readBuffer, shortsRead);
+                        long started = System.nanoTime();
+                        int samples = blockResampler != null
+                                ? blockResampler.process(readBuffer, shortsRead, resampled) : shortsRead;
+                        if (blockBlackBox != null) {
+                            blockBlackBox.write(resampled, samples);
+                        }
+                        if (blockSessionWriter != null) {
+                            blockSessionWriter.write(resampled, samples);
+                        }
+                        processAudioData(resampled, samples);
+                        qualityTier.reportBlock(System.nanoTime() - started,
+                                shortsRead / channelCount * 1_000_000_000L / captureRate);
                     }
                 }
             } catch (Exception e) {
@@ -208,6 +534,79 @@ public class AudioRecordingService extends Service {
         recordingThread.start();
     }
 
+    private void startBlackBox() {
+        BlackBoxRecorder recorder = new BlackBoxRecorder(RecordingSpool.inCache(this), SAMPLE_RATE,
+                channelCount, BLACK_BOX_CAPACITY_MS);
+        try {
+            recorder.start();
+            blackBox = recorder;
+        } catch (IOException e) {
+            Log.e(TAG, "Black box unavailable: " + e.getMessage());
+            blackBox = null;
+        }
+    }
+
+    /**
+     * Stores the stereo window that ended when the driver tapped, its feature image and the
+     * label in the dataset shard, off the capture and main threads.
+     */
+    private void captureClip(long eventTimeMs, String metadata) {
+        BlackBoxRecorder recorder = blackBox;
+        if (recorder == null || !isRecording.get()) {
+            Log.w(TAG, "Ignoring clip request while the black box is not recording");
+            return;
+        }
+        recorder.captureClip(eventTimeMs, metadata != null ? metadata : "");
+    }
+
+    private void labelCurrentWindow(String labelName) {
+        ExecutorService executor = datasetExecutor;
+        DatasetShardWriter writer = datasetWriter;
+        if (executor == null || writer == null || !isRecording.get()) {
+            Log.w(TAG, "Ignoring label outside dataset capture mode");
+            return;
+        }
+        final DatasetShardWriter.Label label;
+        try {
+            label = DatasetShardWriter.Label.fromName(labelName);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            Log.e(TAG, "Unknown dataset label: " + labelName);
+            return;
+        }
+        long tappedAt = System.currentTimeMillis();
+        executor.execute(() -> {
+            // Leave out whatever was captured between the tap and now
+            int newerSamples = (int) ((System.currentTimeMillis() - tappedAt) * SAMPLE_RATE / 1000);
+            short[][] stereo = new short[2][];
+            synchronized (channelBuffers) {
+                if (channelBuffers.size() < 2) return;
+                for (int c = 0; c < 2; c++) {
+                    stereo[c] = tailToShortArray(channelBuffers.get(c), WINDOW_SAMPLES, newerSamples);
+                }
+            }
+            if (stereo[0].length < WINDOW_SAMPLES) {
+                Log.w(TAG, "Not enough audio yet to label a window");
+                return;
+            }
+            try {
+                writer.append(tappedAt, label, stereo, audioProcessor.processChannels(stereo));
+                Log.i(TAG, "Labelled window as " + label.name + ": " + writer);
+            } catch (IOException e) {
+                Log.e(TAG, "Error writing dataset sample: " + e.getMessage());
+            }
+        });
+    }
+
+    private RecordingSpool getSessionSpool() {
+        if (sessionSpool == null) {
+            File base = getExternalFilesDir(null);
+            sessionSpool = new RecordingSpool(new File(base != null ? base : getFilesDir(), "sessions"),
+                    SESSION_SPOOL_BYTES, SESSION_SPOOL_FILES);
+            sessionSpool.reclaimOrphans(null);
+        }
+        return sessionSpool;
+    }
+
     private double calculateOptimalGain(short[] buffer, int shortsRead) {
         double maxAmplitude = 0;
         for (int i = 0; i < shortsRead; i++) {
@@ -221,105 +620,215 @@ public class AudioRecordingService extends Service {
 
 
     private synchronized void processAudioData(short[] buffer, int shortsRead) {
+        int channels = channelCount;
+
         // Log original signal values
-        for (int i = 0; i < Math.min(10, shortsRead); i += 2) {
-            Log.d(TAG, String.format("Original Signal - Left: %d, Right: %d",
-                    buffer[i], buffer[i + 1]));
+        for (int i = 0; i + channels <= Math.min(10, shortsRead); i += channels) {
+            Log.d(TAG, "Original Signal: " + Arrays.toString(Arrays.copyOfRange(buffer, i, i + channels)));
         }
 
-        int sampleCounter = 0;
-        float leftSum = 0;
-        float rightSum = 0;
+        activityGate.processBlock(buffer, shortsRead, channels);
+        tonalDetector.processBlock(buffer, shortsRead, channels);
+        onsetDetector.processBlock(buffer, shortsRead, channels);
+        cadence.reportActivity(activityGate.isOpen(),
+                Math.max(tonalDetector.getSirenScore(), tonalDetector.getHornScore()));
 
-        // Process interleaved stereo data
-        for (int i = 0; i < shortsRead; i += 2) {
-            // Apply BASE_GAIN
-            double leftAmplified = buffer[i] * BASE_GAIN;
-            double rightAmplified = buffer[i + 1] * BASE_GAIN;
-
-            short leftSample = (short)Math.max(Math.min(leftAmplified, 32767), -32768);
-            short rightSample = (short)Math.max(Math.min(rightAmplified, 32767), -32768);
+        int sampleCounter = 0;
+        float[] levelSums = new float[channels];
+        short[] frame = new short[channels];
+
+        // Process interleaved frames, one sample per channel
+        for (int i = 0; i + channels <= shortsRead; i += channels) {
+            for (int c = 0; c < channels; c++) {
+                // Apply BASE_GAIN
+                double amplified = buffer[i + c] * BASE_GAIN;
+                frame[c] = (short) Math.max(Math.min(amplified, 32767), -32768);
+
+                // Update RMS calculation
+                rmsSums[c] += (frame[c] * frame[c]) / 32768.0 / 32768.0;
+            }
 
             // Log amplified values for first few samples
             if (i < 10) {
-                Log.d(TAG, String.format("After BASE_GAIN - Left: %d (raw: %.2f), Right: %d (raw: %.2f)",
-                        leftSample, leftAmplified, rightSample, rightAmplified));
+                Log.d(TAG, "After BASE_GAIN: " + Arrays.toString(frame));
             }
-
-            // Update RMS calculation
-            leftRmsSum += (leftSample * leftSample) / 32768.0 / 32768.0;
-            rightRmsSum += (rightSample * rightSample) / 32768.0 / 32768.0;
             rmsSampleCount++;
 
             // Apply auto-gain if we have enough samples
             if (rmsSampleCount >= RMS_WINDOW_SIZE) {
-                double leftRms = Math.sqrt(leftRmsSum / rmsSampleCount);
-                double rightRms = Math.sqrt(rightRmsSum / rmsSampleCount);
-
-                Log.d(TAG, String.format("RMS Values - Left: %.4f, Right: %.4f", leftRms, rightRms));
-
-                // Calculate gain adjustments
-                double leftGain = TARGET_RMS / Math.max(leftRms, 1e-9);
-                double rightGain = TARGET_RMS / Math.max(rightRms, 1e-9);
-
-                // Limit to MAX_GAIN
-                leftGain = Math.min(leftGain, MAX_GAIN);
-                rightGain = Math.min(rightGain, MAX_GAIN);
+                double[] gains = new double[channels];
+                for (int c = 0; c < channels; c++) {
+                    double rms = Math.sqrt(rmsSums[c] / rmsSampleCount);
 
-                Log.d(TAG, String.format("Auto Gains - Left: %.2f, Right: %.2f", leftGain, rightGain));
+                    // Calculate gain adjustment, limited to MAX_GAIN
+                    gains[c] = Math.min(TARGET_RMS / Math.max(rms, 1e-9), MAX_GAIN);
 
-                // Apply gain (with limiting)
-                double leftFinal = leftSample * leftGain;
-                double rightFinal = rightSample * rightGain;
+                    // Apply gain (with limiting)
+                    frame[c] = (short) Math.max(Math.min(frame[c] * gains[c], 32767), -32768);
 
-                leftSample = (short) Math.max(Math.min(leftFinal, 32767), -32768);
-                rightSample = (short) Math.max(Math.min(rightFinal, 32767), -32768);
-
-                if (i < 10) {
-                    Log.d(TAG, String.format("Final Values - Left: %d (raw: %.2f), Right: %d (raw: %.2f)",
-                            leftSample, leftFinal, rightSample, rightFinal));
+                    // Reset RMS tracking
+                    rmsSums[c] = 0;
                 }
-
-                // Reset RMS tracking
-                leftRmsSum = 0;
-                rightRmsSum = 0;
+                Log.d(TAG, "Auto Gains: " + Arrays.toString(gains));
                 rmsSampleCount = 0;
             }
 
-            // Maintain buffer size
-            if (leftBuffer.size() >= SAMPLES_PER_BUFFER) {
-                leftBuffer.removeFirst();
-                rightBuffer.removeFirst();
-            }
+            synchronized (channelBuffers) {
+                for (int c = 0; c < channels; c++) {
+                    ArrayDeque<Short> channelBuffer = channelBuffers.get(c);
 
-            // Add new samples
-            leftBuffer.addLast(leftSample);
-            rightBuffer.addLast(rightSample);
+                    // Maintain buffer size
+                    if (channelBuffer.size() >= SAMPLES_PER_BUFFER) {
+                        channelBuffer.removeFirst();
+                    }
+
+                    // Add new samples
+                    channelBuffer.addLast(frame[c]);
+                }
+            }
+            samplesSinceWindow++;
+            totalSamples++;
 
             // Calculate audio levels
             sampleCounter++;
-            leftSum += Math.abs(leftSample);
-            rightSum += Math.abs(rightSample);
+            for (int c = 0; c < channels; c++) {
+                levelSums[c] += Math.abs(frame[c]);
+            }
 
             // Monitor levels periodically
             if (sampleCounter >= LEVEL_MONITOR_INTERVAL) {
-                leftMicLevel = leftSum / LEVEL_MONITOR_INTERVAL;
-                rightMicLevel = rightSum / LEVEL_MONITOR_INTERVAL;
+                for (int c = 0; c < channels; c++) {
+                    micLevels[c] = levelSums[c] / LEVEL_MONITOR_INTERVAL;
+                    levelSums[c] = 0;
+                }
 
                 // Log mic levels for verification
-                Log.d(TAG, String.format("Mic Levels - Left: %.2f, Right: %.2f",
-                        leftMicLevel, rightMicLevel));
+                Log.d(TAG, "Mic Levels: " + Arrays.toString(micLevels));
 
                 // Reset counters
                 sampleCounter = 0;
-                leftSum = 0;
-                rightSum = 0;
             }
         }
 
-        // Check if we have enough data to send
-        if (leftBuffer.size() >= SAMPLES_PER_BUFFER) {
-            sendBufferedData();
+        // Only estimate while there is something to localise, and at once when a detector fires
+        long now = System.currentTimeMillis();
+        if (bufferedSamples() >= DIRECTION_WINDOW_SAMPLES && !directionPending.get() && (directionRequested
+                || (activityGate.isOpen() && now - lastDirectionMs >= DIRECTION_INTERVAL_MS))) {
+            directionRequested = false;
+            lastDirectionMs = now;
+            broadcastDirection();
+        }
+
+        // Detector-picked windows go out unless only alerts are left; regular ones stop once
+        // the tier leaves gating to the device
+        QualityTierController.Tier tier = qualityTier.getTier();
+        boolean uploads = tier != QualityTierController.Tier.ALERT_ONLY;
+        boolean regularWindows = tier.ordinal() < QualityTierController.Tier.LOCAL_GATING_ONLY.ordinal();
+
+        if (immediateInferenceRequested && bufferedSamples() >= MIN_TRIGGERED_SAMPLES) {
+            immediateInferenceRequested = false;
+            samplesSinceWindow = 0;
+            if (uploads) sendBufferedData(true, totalSamples);
+        } else if (pendingOnsetWindowEnd >= 0 && totalSamples >= pendingOnsetWindowEnd) {
+            // The onset-aligned window is complete; regular windows resume a hop later
+            long windowEnd = pendingOnsetWindowEnd;
+            pendingOnsetWindowEnd = -1;
+            samplesSinceWindow = 0;
+            if (uploads) sendBufferedData(false, windowEnd);
+        } else if (regularWindows && pendingOnsetWindowEnd < 0 && bufferedSamples() >= WINDOW_SAMPLES
+                && samplesSinceWindow >= cadence.getIntervalMs() * qualityTier.getHopMultiplier() * SAMPLE_RATE / 1000) {
+            // Check if we have enough data to send
+            samplesSinceWindow = 0;
+            sendBufferedData(false, totalSamples);
+        }
+    }
+
+    private void onTonalEvent(String vehicleType, float score) {
+        Log.d(TAG, String.format("Tonal pre-detector: %s (score %.2f), requesting inference now", vehicleType, score));
+        immediateInferenceRequested = true;
+        directionRequested = true;
+        cadence.reportEvent();
+
+        if (qualityTier.getTier() == QualityTierController.Tier.ALERT_ONLY) {
+            broadcastLocalAlert(vehicleType, score);
+        }
+    }
+
+    // Reports a pre-detector event in the server's result format when nothing is uploaded
+    private void broadcastLocalAlert(String vehicleType, float score) {
+        broadcastResult(new AudioRecorder.InferenceResult(vehicleType, "", score, true, false,
+                LocalInferenceBackend.NAME), System.currentTimeMillis(), true);
+    }
+
+    private void broadcastResult(AudioRecorder.InferenceResult result, long capturedAt) {
+        broadcastResult(result, capturedAt, false);
+    }
+
+    // Broadcasts a result in the server's format, noting which backend produced it and whether
+    // it is an on-device alert that MainActivity should not fuse again
+    private void broadcastResult(AudioRecorder.InferenceResult result, long capturedAt, boolean alertOnly) {
+        try {
+            JSONObject json = InferenceResultFuser.toJson(result, alertOnly);
+            Log.d(TAG, "Inference result: " + json);
+
+            Intent intent = new Intent("AUDIO_INFERENCE_RESULT");
+            intent.putExtra("result", json.toString());
+            intent.putExtra("captured_at", capturedAt);
+            // Time between regular windows, which sets how fast MainActivity's fused evidence decays
+            intent.putExtra("hop_ms", cadence.getIntervalMs() * qualityTier.getHopMultiplier());
+            sendBroadcast(intent);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building inference result: " + e.getMessage());
+        }
+    }
+
+    private void onOnset(long sampleIndex, float strength) {
+        if (pendingOnsetWindowEnd >= 0) {
+            return; // The window already scheduled covers this onset
+        }
+        long windowEnd = sampleIndex - onsetPreRollSamples + WINDOW_SAMPLES;
+        if (windowEnd - WINDOW_SAMPLES < totalSamples - SAMPLES_PER_BUFFER) {
+            return; // Too old to cut from the buffer
+        }
+        Log.d(TAG, String.format("Onset at %.2f s (strength %.1f), window ends at %.2f s",
+                sampleIndex / (float) SAMPLE_RATE, strength, windowEnd / (float) SAMPLE_RATE));
+        pendingOnsetWindowEnd = windowEnd;
+        cadence.reportEvent();
+    }
+
+    private void broadcastDirection() {
+        ExecutorService executor = directionExecutor;
+        if (executor == null) return;
+        short[] left = tailToShortArray(channelBuffers.get(0), DIRECTION_WINDOW_SAMPLES, 0);
+        short[] right = tailToShortArray(channelBuffers.get(1), DIRECTION_WINDOW_SAMPLES, 0);
+        directionPending.set(true);
+        try {
+            executor.execute(() -> {
+                try {
+                    estimateDirection(left, right);
+                } finally {
+                    directionPending.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Recording is stopping
+            directionPending.set(false);
+        }
+    }
+
+    private void estimateDirection(short[] left, short[] right) {
+        try {
+            DirectionEstimator.Estimate estimate = directionEstimator.estimate(left, right);
+            if (estimate == null) return;
+
+            Log.d(TAG, "Direction estimate: " + estimate);
+            Intent intent = new Intent("AUDIO_DIRECTION_ESTIMATE");
+            intent.putExtra("angle", estimate.angleDegrees);
+            intent.putExtra("confidence", estimate.confidence);
+            intent.putExtra("direction", estimate.getDirection(CENTRE_DEGREES));
+            sendBroadcast(intent);
+        } catch (Exception e) {
+            Log.e(TAG, "Error estimating direction: " + e.getMessage());
         }
     }
 
@@ -343,76 +852,139 @@ public class AudioRecordingService extends Service {
 
         return amplified;
     }
-    private void sendBufferedData() {
+    private void sendBufferedData(boolean triggered, long windowEnd) {
         try {
-            // Convert buffers to byte arrays
-            byte[] leftData = normalizeAudioData(shortArrayToByteArray(new ArrayList<>(leftBuffer)));
-            byte[] rightData = normalizeAudioData(shortArrayToByteArray(new ArrayList<>(rightBuffer)));
-
-            // Create request parts
-            MultipartBody.Builder builder = new MultipartBody.Builder()
-                    .setType(MultipartBody.FORM)
-                    .addFormDataPart("sample_rate", String.valueOf(SAMPLE_RATE));
-
-            // Add parts to the request
-            MediaType audioType = MediaType.parse("application/octet-stream");
-
-            // Add left channel
-            RequestBody leftBody = RequestBody.create(audioType, leftData);
-            builder.addFormDataPart("left_channel", "left.raw", leftBody);
-
-            // Add right channel
-            RequestBody rightBody = RequestBody.create(audioType, rightData);
-            builder.addFormDataPart("right_channel", "right.raw", rightBody);
-
-            // Build and send the request
-            Request request = new Request.Builder()
-                    .url(SERVER_URL)
-                    .post(builder.build())
-                    .build();
+            // Clearly silent or steady-noise windows are never uploaded
+            if (!triggered && !activityGate.admitWindow(WINDOW_SECONDS * 1000L)) {
+                return;
+            }
 
-            // Log the request details
-            Log.d(TAG, String.format("Sending request to %s", SERVER_URL));
-            Log.d(TAG, String.format("Left channel size: %d bytes, Right channel size: %d bytes",
-                    leftData.length, rightData.length));
+            // windowEnd may lie behind the newest sample when the window is onset-aligned
+            int newerSamples = (int) Math.max(0, totalSamples - windowEnd);
+            long capturedAt = System.currentTimeMillis() - newerSamples * 1000L / SAMPLE_RATE;
+            short[][] channelSamples = new short[channelCount][];
+            for (int c = 0; c < channelCount; c++) {
+                channelSamples[c] = tailToShortArray(channelBuffers.get(c), WINDOW_SAMPLES, newerSamples);
+            }
 
-            // Send request asynchronously
-            client.newCall(request).enqueue(new Callback() {
-                @Override
-                public void onFailure(Call call, IOException e) {
-                    Log.e(TAG, "Failed to send audio data: " + e.getMessage());
-                }
+            ExecutorService executor = windowExecutor;
+            if (executor == null) return;
+            // Windows waiting for the worker count as queued too, so a worker that falls behind steps the tier down
+            qualityTier.reportQueueDepth(requestsInFlight.incrementAndGet());
+            try {
+                // The copy is all the capture thread does; scoring and encoding happen on the worker
+                executor.execute(() -> analyzeAndSend(triggered, capturedAt, channelSamples));
+            } catch (RejectedExecutionException e) {
+                releaseWindow();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error sending audio data: " + e.getMessage());
+        }
+    }
 
-                @Override
-                public void onResponse(Call call, Response response) throws IOException {
-                    try (ResponseBody responseBody = response.body()) {
-                        if (!response.isSuccessful()) {
-                            String errorBody = responseBody != null ? responseBody.string() : "No error body";
-                            Log.e(TAG, String.format("Server error %d: %s", response.code(), errorBody));
-                            return;
-                        }
+    private void analyzeAndSend(boolean triggered, long capturedAt, short[][] channelSamples) {
+        boolean routed = false;
+        try {
+            // Windows the cascade rates as ordinary road noise never reach the server
+            if (!triggered && cascadeGate != null && !cascadeGate.shouldEscalate(channelSamples[0], channelSamples[1])) {
+                return;
+            }
 
-                        if (responseBody != null) {
-                            String result = responseBody.string();
-                            Log.d(TAG, "Server response: " + result);
+            QualityTierController.Tier tier = qualityTier.getTier();
+            InferenceRequest request;
+            if (tier.ordinal() >= QualityTierController.Tier.COMPRESSED_FEATURES.ordinal()) {
+                // The uint8 feature image the server would build itself, gzipped
+                byte[] image = featureExecutor != null
+                        ? audioProcessor.processChannels(featureExecutor, channelSamples)
+                        : audioProcessor.processChannels(channelSamples);
+                byte[] features = gzip(image);
+                request = InferenceRequest.features(SAMPLE_RATE, channelSamples.length, features);
+                Log.d(TAG, String.format("Sending %d-byte compressed feature image (%s)", features.length, tier));
+            } else {
+                // Convert buffers to byte arrays
+                byte[][] channelData = new byte[channelSamples.length][];
+                for (int c = 0; c < channelSamples.length; c++) {
+                    channelData[c] = normalizeAudioData(shortArrayToByteArray(channelSamples[c]));
+                }
+                request = InferenceRequest.channels(SAMPLE_RATE, channelData);
+                Log.d(TAG, String.format("Sending %d channels of %d bytes", channelData.length, channelData[0].length));
+            }
 
-                            // Broadcast result to activity
-                            Intent intent = new Intent("AUDIO_INFERENCE_RESULT");
-                            intent.putExtra("result", result);
-                            sendBroadcast(intent);
-                        }
+            // Number the window and give it a capture deadline the server can see
+            final long sequence = staleResultFilter.nextSequence();
+            request = request.withWindow(sequence, staleResultFilter.deadlineFor(capturedAt));
+
+            // Send through the router: server first, on-device model if it is late or failing
+            final long sentAt = System.currentTimeMillis();
+            routed = true;
+            inferenceRouter.route(request, INFERENCE_DEADLINE_MS, new InferenceBackend.Callback() {
+                @Override
+                public void onResult(AudioRecorder.InferenceResult result) {
+                    finishRequest(sentAt);
+                    if (!staleResultFilter.accept(sequence, capturedAt, System.currentTimeMillis())) {
+                        Log.d(TAG, String.format("Dropping stale result for window %d (%s)", sequence, staleResultFilter));
+                        return;
                     }
+                    broadcastResult(result, capturedAt);
+                }
+
+                @Override
+                public void onError(String error) {
+                    finishRequest(sentAt);
+                    Log.e(TAG, "Failed to classify audio data: " + error);
                 }
             });
         } catch (Exception e) {
             Log.e(TAG, "Error sending audio data: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            if (!routed) releaseWindow();
+        }
+    }
+    private void finishRequest(long sentAt) {
+        qualityTier.reportLatency(System.currentTimeMillis() - sentAt);
+        releaseWindow();
+    }
+
+    private void releaseWindow() {
+        qualityTier.reportQueueDepth(requestsInFlight.decrementAndGet());
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
         }
+        return out.toByteArray();
     }
-    private byte[] shortArrayToByteArray(ArrayList<Short> shorts) {
-        byte[] bytes = new byte[shorts.size() * 2];
-        for (int i = 0; i < shorts.size(); i++) {
-            short value = shorts.get(i);
+
+    private int bufferedSamples() {
+        synchronized (channelBuffers) {
+            return channelBuffers.isEmpty() ? 0 : channelBuffers.get(0).size();
+        }
+    }
+
+    // The count samples before the newest skipNewest samples
+    private short[] tailToShortArray(ArrayDeque<Short> buffer, int count, int skipNewest) {
+        int available = Math.max(0, buffer.size() - skipNewest);
+        short[] samples = new short[Math.min(count, available)];
+        int skip = available - samples.length;
+        int i = 0;
+        for (Short sample : buffer) {
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            if (i == samples.length) break;
+            samples[i++] = sample;
+        }
+        return samples;
+    }
+
+    private byte[] shortArrayToByteArray(short[] shorts) {
+        byte[] bytes = new byte[shorts.length * 2];
+        for (int i = 0; i < shorts.length; i++) {
+            short value = shorts[i];
             // Convert to little-endian
             bytes[i * 2] = (byte) (value & 0xff);
             bytes[i * 2 + 1] = (byte) ((value >> 8) & 0xff);
@@ -427,6 +999,8 @@ public class AudioRecordingService extends Service {
         }
 
         isRecording.set(false);
+        Log.i(TAG, "Inference results: " + staleResultFilter);
+        staleResultFilter.reset();
 
         if (recordingThread != null) {
             try {
@@ -458,16 +1032,75 @@ public class AudioRecordingService extends Service {
         }
 
         // Clear buffers
-        synchronized (leftBuffer) {
-            leftBuffer.clear();
-        }
-        synchronized (rightBuffer) {
-            rightBuffer.clear();
+        synchronized (channelBuffers) {
+            for (ArrayDeque<Short> channelBuffer : channelBuffers) {
+                channelBuffer.clear();
+            }
         }
 
         // Reset mic levels
-        leftMicLevel = 0;
-        rightMicLevel = 0;
+        Arrays.fill(micLevels, 0);
+
+        if (resampler != null) {
+            resampler.reset();
+        }
+
+        if (blackBox != null) {
+            blackBox.stop();
+            blackBox = null;
+        }
+
+        if (sessionWriter != null) {
+            sessionWriter.stop();
+            sessionWriter = null;
+        }
+
+        if (datasetExecutor != null) {
+            // Let labels already tapped finish, then close the shard
+            DatasetShardWriter writer = datasetWriter;
+            datasetExecutor.execute(writer::close);
+            datasetExecutor.shutdown();
+            datasetExecutor = null;
+            datasetWriter = null;
+        }
+
+        if (windowExecutor != null) {
+            // Windows that never reached the worker will not release their place in the queue
+            int dropped = windowExecutor.shutdownNow().size();
+            windowExecutor = null;
+            qualityTier.reportQueueDepth(requestsInFlight.addAndGet(-dropped));
+        }
+
+        if (directionExecutor != null) {
+            directionExecutor.shutdownNow();
+            directionExecutor = null;
+        }
+
+        if (featureExecutor != null) {
+            featureExecutor.shutdownNow();
+            featureExecutor = null;
+        }
+
+        HttpClientProvider.stopKeepWarm(SERVER_URL);
+        Log.i(TAG, "HTTP: " + HttpClientProvider.getMetrics());
+        Log.i(TAG, "Requests: " + RequestScheduler.getInstance());
+        Log.i(TAG, "Activity gate: " + activityGate);
+        Log.i(TAG, "Tonal pre-detector: " + tonalDetector);
+        Log.i(TAG, "Onset detector: " + onsetDetector);
+        Log.i(TAG, "Cadence: " + cadence);
+        Log.i(TAG, "Quality tier: " + qualityTier);
+        qualityTier.reset();
+        cadence.stop();
+        activityGate.reset();
+        tonalDetector.reset();
+        onsetDetector.reset();
+        immediateInferenceRequested = false;
+        samplesSinceWindow = 0;
+        totalSamples = 0;
+        pendingOnsetWindowEnd = -1;
+        directionRequested = false;
+        directionPending.set(false);
+        lastDirectionMs = 0;
     }
 
     @Override
@@ -480,8 +1113,9 @@ public class AudioRecordingService extends Service {
         try {
             stopRecording();
 
-            if (client != null) {
-                client.dispatcher().cancelAll();
+            // Cancels this service's calls only; the client is shared
+            if (inferenceRouter != null) {
+                inferenceRouter.close();
             }
 
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
@@ -1,18 +1,28 @@
 package edu.skku.cs.visualvroom;
 
 import android.util.Log;
-import okhttp3.*;
-import org.json.JSONObject;
-import java.io.IOException;
+
+import edu.skku.cs.visualvroom.inference.InferenceBackend;
+import edu.skku.cs.visualvroom.inference.InferenceRequest;
+import edu.skku.cs.visualvroom.inference.InferenceRouter;
+import edu.skku.cs.visualvroom.inference.RemoteInferenceBackend;
+
+import okhttp3.OkHttpClient;
+
+import java.util.Collections;
 
 public class AudioSender {
     private static final String TAG = "AudioSender";
     private static final String BACKEND_URL = "http://211.211.177.45:8017/predict";
+    private static final int SAMPLE_RATE = 16000;
+    private static final long DEADLINE_MS = 1500;
     private final OkHttpClient client;
+    private final InferenceRouter inferenceRouter;
 
     public AudioSender() {
-        this.client = new OkHttpClient.Builder()
-                .build();
+        this.client = HttpClientProvider.get(HttpClientProvider.Profile.ALERT);
+        this.inferenceRouter = new InferenceRouter(Collections.singletonList(
+                new RemoteInferenceBackend("server", client, BACKEND_URL, null)));
     }
 
     public interface AudioSenderCallback {
@@ -21,63 +31,22 @@ public class AudioSender {
     }
 
     public void sendAudioFiles(byte[] leftData, byte[] rightData, AudioSenderCallback callback) {
-        // Create request body parts
-        RequestBody requestBody = new MultipartBody.Builder()
-                .setType(MultipartBody.FORM)
-                .addFormDataPart("sample_rate", "16000")
-                .addFormDataPart("left_channel", "left.raw",
-                        RequestBody.create(MediaType.parse("application/octet-stream"), leftData))
-                .addFormDataPart("right_channel", "right.raw",
-                        RequestBody.create(MediaType.parse("application/octet-stream"), rightData))
-                .build();
-
-        // Build the request
-        Request request = new Request.Builder()
-                .url(BACKEND_URL)
-                .post(requestBody)
-                .build();
-
-        // Execute the request asynchronously
-        client.newCall(request).enqueue(new Callback() {
+        inferenceRouter.route(InferenceRequest.pcm(SAMPLE_RATE, leftData, rightData), DEADLINE_MS,
+                new InferenceBackend.Callback() {
             @Override
-            public void onFailure(Call call, IOException e) {
-                Log.e(TAG, "Failed to send audio data", e);
-                callback.onError("Network error: " + e.getMessage());
+            public void onResult(AudioRecorder.InferenceResult result) {
+                if (result.isTooQuiet()) {
+                    callback.onError("Audio too quiet");
+                    return;
+                }
+                callback.onSuccess(result.getVehicleType(), result.getDirection(), result.getConfidence());
             }
 
             @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                try (ResponseBody responseBody = response.body()) {
-                    if (!response.isSuccessful()) {
-                        callback.onError("Server error: " + response.code());
-                        return;
-                    }
-
-                    if (responseBody == null) {
-                        callback.onError("Empty response from server");
-                        return;
-                    }
-
-                    String jsonStr = responseBody.string();
-                    JSONObject json = new JSONObject(jsonStr);
-
-                    if (json.has("message")) {
-                        // No confident prediction
-                        callback.onError(json.getString("message"));
-                        return;
-                    }
-
-                    // Parse successful response
-                    String vehicleType = json.getString("vehicle_type");
-                    String direction = json.getString("direction");
-                    double confidence = json.getDouble("confidence");
-
-                    callback.onSuccess(vehicleType, direction, confidence);
-                } catch (Exception e) {
-                    Log.e(TAG, "Error processing response", e);
-                    callback.onError("Error processing response: " + e.getMessage());
-                }
+            public void onError(String error) {
+                Log.e(TAG, "Failed to classify audio data: " + error);
+                callback.onError(error);
             }
         });
     }
-}
\ No newline at end of file
+}
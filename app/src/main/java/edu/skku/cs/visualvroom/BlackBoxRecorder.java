@@ -0,0 +1,299 @@
+package edu.skku.cs.visualvroom;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the last capacityMs of captured PCM in a fixed-size memory-mapped file, overwriting
+ * the oldest audio as it goes, so that the audio around a detection can be kept after the
+ * fact. Writing a block is one bulk copy into the mapping; the kernel writes it back to
+ * flash on its own schedule.
+ *
+ * {@link #captureClip} marks preRollMs before and postRollMs after a detection. Once the
+ * post-roll has been captured, a worker copies the span out of the mapping into a gzipped
+ * WAV in the {@link RecordingSpool}, with the detection metadata as the WAV comment. A
+ * detection whose span overlaps the clip still waiting for its post-roll extends that clip
+ * instead of starting another, up to half the ring; audio already in an earlier clip is not
+ * saved again. The mapping holds several clip lengths, so the span is normally long gone
+ * from the writer's path before it could be overwritten; clips the worker could not copy in
+ * time are dropped and counted.
+ */
+public class BlackBoxRecorder {
+    private static final String TAG = "BlackBoxRecorder";
+    private static final String RING_FILE = "blackbox.pcm";
+    private static final int BYTES_PER_SAMPLE = 2;
+    private static final int COPY_CHUNK_FRAMES = 4096;
+
+    private static class Clip {
+        final long startFrame;
+        volatile long endFrame; // Extended by overlapping detections until the clip is dispatched
+        final long eventTimeMs;
+        final String metadata;
+
+        Clip(long startFrame, long endFrame, long eventTimeMs, String metadata) {
+            this.startFrame = startFrame;
+            this.endFrame = endFrame;
+            this.eventTimeMs = eventTimeMs;
+            this.metadata = metadata;
+        }
+    }
+
+    private final RecordingSpool spool;
+    private final int sampleRate;
+    private final int channels;
+    private final int capacityFrames;
+
+    private volatile long preRollMs = 5000;
+    private volatile long postRollMs = 5000;
+
+    private File ringFile;
+    private volatile ShortBuffer ring;
+    private volatile ShortBuffer readView;
+    private volatile ExecutorService copier;
+    // A stopped session's copier, which recycles that session's ring file when it is done
+    private ExecutorService retiredCopier;
+
+    // Frames written so far and the wall-clock time the newest of them was captured
+    private volatile long framesWritten;
+    private volatile long newestFrameTimeMs;
+
+    // Clips waiting for their post-roll, oldest first; changes are made holding its lock
+    private final ConcurrentLinkedDeque<Clip> waiting = new ConcurrentLinkedDeque<>();
+    private long lastClipEndFrame = 0;
+    private final AtomicLong clipsSaved = new AtomicLong();
+    private final AtomicLong clipsDropped = new AtomicLong();
+    private final AtomicLong detectionsMerged = new AtomicLong();
+
+    public BlackBoxRecorder(RecordingSpool spool, int sampleRate, int channels, long capacityMs) {
+        this.spool = spool;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.capacityFrames = (int) (capacityMs * sampleRate / 1000);
+    }
+
+    public void setPreRollMs(long preRollMs) { this.preRollMs = preRollMs; }
+    public void setPostRollMs(long postRollMs) { this.postRollMs = postRollMs; }
+
+    /** Maps the ring file; reuses the space a previous session recycled. */
+    public synchronized void start() throws IOException {
+        if (ring != null) return;
+        awaitRetiredCopier();
+        long bytes = (long) capacityFrames * channels * BYTES_PER_SAMPLE;
+        ringFile = spool.preallocate(RING_FILE, bytes);
+        try (RandomAccessFile file = new RandomAccessFile(ringFile, "rw");
+             FileChannel channel = file.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            ring = mapped.order(ByteOrder.nativeOrder()).asShortBuffer();
+        }
+        readView = ring.duplicate();
+        framesWritten = 0;
+        synchronized (waiting) {
+            waiting.clear();
+            lastClipEndFrame = 0;
+        }
+        copier = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "BlackBoxCopier");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        Log.i(TAG, String.format("Mapped %d KB for %d s of %d-channel audio",
+                bytes / 1024, capacityFrames / sampleRate, channels));
+    }
+
+    /** Appends interleaved samples (whole frames) captured just now. Capture thread only. */
+    public void write(short[] interleaved, int length) {
+        ShortBuffer target = ring;
+        if (target == null) return;
+
+        int frames = length / channels;
+        int offset = 0;
+        long position = framesWritten;
+        while (offset < frames) {
+            int slot = (int) (position % capacityFrames);
+            int run = Math.min(frames - offset, capacityFrames - slot);
+            target.position(slot * channels);
+            target.put(interleaved, offset * channels, run * channels);
+            offset += run;
+            position += run;
+        }
+        framesWritten = position;
+        newestFrameTimeMs = System.currentTimeMillis();
+
+        Clip clip = waiting.peek();
+        if (clip != null && position >= clip.endFrame) {
+            dispatchReadyClip(position);
+        }
+    }
+
+    private void dispatchReadyClip(long position) {
+        Clip clip;
+        synchronized (waiting) {
+            // Re-checked under the lock, as a detection may have extended the clip meanwhile
+            clip = waiting.peek();
+            if (clip == null || position < clip.endFrame) return;
+            waiting.poll();
+        }
+        ExecutorService executor = copier;
+        ShortBuffer view = readView;
+        if (executor == null || view == null) {
+            clipsDropped.incrementAndGet(); // Stopped in the meantime
+            return;
+        }
+        try {
+            executor.execute(() -> saveClip(clip, view));
+        } catch (RejectedExecutionException e) {
+            clipsDropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Keeps the audio from preRollMs before to postRollMs after eventTimeMs (wall clock),
+     * tagged with metadata. The clip is written once its post-roll has been captured.
+     */
+    public void captureClip(long eventTimeMs, String metadata) {
+        if (ring == null) return;
+        long eventFrame = framesWritten - (newestFrameTimeMs - eventTimeMs) * sampleRate / 1000;
+        long startFrame = Math.max(0, eventFrame - preRollMs * sampleRate / 1000);
+        long endFrame = eventFrame + postRollMs * sampleRate / 1000;
+        if (eventFrame < 0 || framesWritten - startFrame > capacityFrames) {
+            Log.w(TAG, "Detection at " + eventTimeMs + " is older than the black box");
+            clipsDropped.incrementAndGet();
+            return;
+        }
+        synchronized (waiting) {
+            // One vehicle raises a detection every window; they all go into the same clip
+            Clip last = waiting.peekLast();
+            if (last != null && startFrame <= last.endFrame && endFrame - last.startFrame <= capacityFrames / 2) {
+                last.endFrame = Math.max(last.endFrame, endFrame);
+                lastClipEndFrame = last.endFrame;
+                detectionsMerged.incrementAndGet();
+                return;
+            }
+            startFrame = Math.max(startFrame, lastClipEndFrame);
+            if (endFrame <= startFrame) {
+                detectionsMerged.incrementAndGet(); // Already saved with an earlier clip
+                return;
+            }
+            waiting.add(new Clip(startFrame, endFrame, eventTimeMs, metadata));
+            lastClipEndFrame = endFrame;
+        }
+    }
+
+    private void saveClip(Clip clip, ShortBuffer view) {
+        int frames = (int) (clip.endFrame - clip.startFrame);
+        String name = String.format("clip-%d", clip.eventTimeMs);
+        File part = null;
+        try {
+            part = spool.create(name + ".wav.gz");
+            try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(part)))) {
+                ByteBuffer header = WavHeader.create(sampleRate, channels,
+                        (long) frames * channels * BYTES_PER_SAMPLE, clip.metadata);
+                out.write(header.array(), 0, header.limit());
+                copyFrames(view, clip.startFrame, frames, out);
+            }
+            // Anything overwritten while copying would have mixed in newer audio
+            if (framesWritten - clip.startFrame > capacityFrames) {
+                throw new IOException("overwritten before it was copied");
+            }
+            File saved = spool.commit(part);
+            clipsSaved.incrementAndGet();
+            Log.i(TAG, "Saved " + saved.getName() + " (" + saved.length() / 1024 + " KB)");
+        } catch (IOException e) {
+            Log.e(TAG, "Dropping clip " + name + ": " + e.getMessage());
+            clipsDropped.incrementAndGet();
+            if (part != null) spool.delete(part);
+        }
+    }
+
+    private void copyFrames(ShortBuffer view, long startFrame, int frames, OutputStream out) throws IOException {
+        short[] samples = new short[COPY_CHUNK_FRAMES * channels];
+        byte[] bytes = new byte[samples.length * BYTES_PER_SAMPLE];
+        long position = startFrame;
+        int remaining = frames;
+        while (remaining > 0) {
+            int slot = (int) (position % capacityFrames);
+            int run = Math.min(Math.min(remaining, COPY_CHUNK_FRAMES), capacityFrames - slot);
+            view.position(slot * channels);
+            view.get(samples, 0, run * channels);
+            for (int i = 0; i < run * channels; i++) {
+                bytes[2 * i] = (byte) samples[i];
+                bytes[2 * i + 1] = (byte) (samples[i] >> 8);
+            }
+            out.write(bytes, 0, run * channels * BYTES_PER_SAMPLE);
+            position += run;
+            remaining -= run;
+        }
+    }
+
+    /**
+     * Drops clips still waiting for post-roll and frees the ring. Clips already being copied
+     * are finished first: the copier recycles the ring file after the last of them, and
+     * stop() waits a little for that.
+     */
+    public synchronized void stop() {
+        if (ring == null) return;
+        ring = null;
+        synchronized (waiting) {
+            clipsDropped.addAndGet(waiting.size());
+            waiting.clear();
+        }
+        ExecutorService executor = copier;
+        File file = ringFile;
+        copier = null;
+        readView = null;
+        ringFile = null;
+        executor.execute(() -> spool.recycle(file));
+        executor.shutdown();
+        retiredCopier = executor;
+        try {
+            if (executor.awaitTermination(2, TimeUnit.SECONDS)) {
+                retiredCopier = null;
+            } else {
+                Log.w(TAG, "Still copying clips, the ring file is freed when they are done");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Log.i(TAG, toString());
+    }
+
+    // The next session may be handed the same file, so the old copier has to be done with it
+    private void awaitRetiredCopier() {
+        if (retiredCopier == null) return;
+        try {
+            retiredCopier.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        retiredCopier = null;
+    }
+
+    public long getClipsSaved() { return clipsSaved.get(); }
+    public long getClipsDropped() { return clipsDropped.get(); }
+    public long getDetectionsMerged() { return detectionsMerged.get(); }
+
+    @Override
+    public String toString() {
+        return String.format("BlackBoxRecorder[%d clips saved, %d dropped, %d detections merged]",
+                clipsSaved.get(), clipsDropped.get(), detectionsMerged.get());
+    }
+}
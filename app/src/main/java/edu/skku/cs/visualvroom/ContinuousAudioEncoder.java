@@ -0,0 +1,249 @@
+package edu.skku.cs.visualvroom;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.AudioTimestamp;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaRecorder;
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * One AudioRecord feeding one AAC encoder for the whole session. Every encoded access unit goes
+ * to a {@link Listener} (normally an {@link EncodedFrameRing}) tagged with its capture time.
+ * Capture never stops for a snapshot, so no audio falls between snapshots and none of them
+ * pays an encoder start-up.
+ *
+ * Presentation times count the PCM frames fed to the encoder. The first frame is pinned to
+ * wall-clock time through AudioRecord.getTimestamp, so each access unit knows when its first
+ * sample was captured.
+ */
+public class ContinuousAudioEncoder {
+    private static final String TAG = "ContinuousAudioEncoder";
+    private static final String MIME_TYPE = MediaFormat.MIMETYPE_AUDIO_AAC;
+    private static final int BYTES_PER_SAMPLE = 2;
+    private static final int AAC_FRAME_SAMPLES = 1024;
+    private static final long DEQUEUE_TIMEOUT_US = 10000;
+    private static final int END_OF_STREAM_ATTEMPTS = 100;
+
+    /** Receives every encoded access unit, on the capture thread. */
+    public interface Listener {
+        /**
+         * data holds length bytes and is reused after the call returns. peakAmplitude is the
+         * loudest PCM sample fed to the encoder since the previous access unit.
+         */
+        void onAccessUnit(byte[] data, int length, long captureTimeUs, int peakAmplitude);
+    }
+
+    private final int sampleRate;
+    private final int channels;
+    private final int bitRate;
+    private final int frameBytes;
+    private final Listener listener;
+
+    private AudioRecord audioRecord;
+    private MediaCodec codec;
+    private Thread captureThread;
+    private volatile boolean running;
+
+    // Capture thread only
+    private long framesQueued;
+    private final AudioTimestamp timestamp = new AudioTimestamp();
+    private byte[] unitBuffer = new byte[AAC_FRAME_SAMPLES * BYTES_PER_SAMPLE];
+    private int peakSinceLastUnit;
+
+    // Wall-clock time of PCM frame 0, in microseconds; 0 until known
+    private long frameZeroWallUs;
+
+    public ContinuousAudioEncoder(int sampleRate, int channels, int bitRate, Listener listener) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.bitRate = bitRate;
+        this.frameBytes = channels * BYTES_PER_SAMPLE;
+        this.listener = listener;
+    }
+
+    /** Starts capture and encoding. The caller must hold RECORD_AUDIO. */
+    public synchronized void start() throws IOException {
+        if (running) return;
+
+        int channelMask = channels == 1 ? AudioFormat.CHANNEL_IN_MONO : AudioFormat.CHANNEL_IN_STEREO;
+        int minBuffer = AudioRecord.getMinBufferSize(sampleRate, channelMask, AudioFormat.ENCODING_PCM_16BIT);
+        audioRecord = new AudioRecord.Builder()
+                .setAudioSource(MediaRecorder.AudioSource.MIC)
+                .setAudioFormat(new AudioFormat.Builder()
+                        .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                        .setSampleRate(sampleRate)
+                        .setChannelMask(channelMask)
+                        .build())
+                .setBufferSizeInBytes(Math.max(minBuffer * 2, AAC_FRAME_SAMPLES * frameBytes * 4))
+                .build();
+        if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+            audioRecord.release();
+            audioRecord = null;
+            throw new IOException("Failed to initialize AudioRecord");
+        }
+
+        MediaFormat format = MediaFormat.createAudioFormat(MIME_TYPE, sampleRate, channels);
+        format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
+        format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, AAC_FRAME_SAMPLES * frameBytes * 2);
+        try {
+            codec = MediaCodec.createEncoderByType(MIME_TYPE);
+            codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            codec.start();
+        } catch (IOException | RuntimeException e) {
+            release();
+            throw e;
+        }
+
+        framesQueued = 0;
+        peakSinceLastUnit = 0;
+        frameZeroWallUs = 0;
+        running = true;
+        audioRecord.startRecording();
+
+        captureThread = new Thread(this::captureLoop, "ContinuousAudioEncoder");
+        captureThread.start();
+        Log.d(TAG, String.format("Encoding %d Hz x %d at %d bps", sampleRate, channels, bitRate));
+    }
+
+    private void captureLoop() {
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        try {
+            while (running) {
+                int index = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+                if (index >= 0) {
+                    ByteBuffer input = codec.getInputBuffer(index);
+                    input.clear();
+                    // One AAC frame of PCM at a time keeps encoder latency to a frame or two
+                    int size = Math.min(input.capacity(), AAC_FRAME_SAMPLES * frameBytes) / frameBytes * frameBytes;
+                    int bytes = audioRecord.read(input, size);
+                    if (bytes > 0) {
+                        trackPeak(input, bytes);
+                        codec.queueInputBuffer(index, 0, bytes, presentationTimeUs(framesQueued), 0);
+                        framesQueued += bytes / frameBytes;
+                        anchorFrameZero();
+                    } else {
+                        codec.queueInputBuffer(index, 0, 0, presentationTimeUs(framesQueued), 0);
+                        if (bytes < 0) {
+                            Log.e(TAG, "AudioRecord read failed: " + bytes);
+                            break;
+                        }
+                    }
+                }
+                drain(info, false);
+            }
+
+            int index = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US * END_OF_STREAM_ATTEMPTS);
+            if (index >= 0) {
+                codec.queueInputBuffer(index, 0, 0, presentationTimeUs(framesQueued),
+                        MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                drain(info, true);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error during capture: " + e.getMessage());
+        } finally {
+            running = false;
+        }
+    }
+
+    private long presentationTimeUs(long frames) {
+        return frames * 1_000_000L / sampleRate;
+    }
+
+    private void trackPeak(ByteBuffer pcm, int bytes) {
+        ByteBuffer samples = pcm.duplicate().order(ByteOrder.nativeOrder());
+        int peak = peakSinceLastUnit;
+        for (int i = 0; i + 1 < bytes; i += BYTES_PER_SAMPLE) {
+            peak = Math.max(peak, Math.abs(samples.getShort(i)));
+        }
+        peakSinceLastUnit = peak;
+    }
+
+    // Maps frame 0 to wall-clock time once the HAL reports a frame position
+    private void anchorFrameZero() {
+        if (frameZeroWallUs != 0) return;
+        long wallMinusMonotonicUs = System.currentTimeMillis() * 1000 - System.nanoTime() / 1000;
+        if (audioRecord.getTimestamp(timestamp, AudioTimestamp.TIMEBASE_MONOTONIC) == AudioRecord.SUCCESS) {
+            long frameZeroNanos = timestamp.nanoTime - timestamp.framePosition * 1_000_000_000L / sampleRate;
+            frameZeroWallUs = wallMinusMonotonicUs + frameZeroNanos / 1000;
+        } else {
+            // No timestamp from this device: the frames just read ended about now
+            frameZeroWallUs = System.currentTimeMillis() * 1000 - presentationTimeUs(framesQueued);
+        }
+    }
+
+    private void drain(MediaCodec.BufferInfo info, boolean endOfStream) {
+        int idleAttempts = 0;
+        while (true) {
+            int index = codec.dequeueOutputBuffer(info, endOfStream ? DEQUEUE_TIMEOUT_US : 0);
+            if (index == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                if (!endOfStream || ++idleAttempts >= END_OF_STREAM_ATTEMPTS) return;
+                continue;
+            }
+            if (index < 0) continue; // Format changes carry nothing ADTS framing needs
+
+            if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0 && info.size > 0) {
+                ByteBuffer output = codec.getOutputBuffer(index);
+                output.position(info.offset);
+                output.limit(info.offset + info.size);
+                if (unitBuffer.length < info.size) {
+                    unitBuffer = new byte[info.size];
+                }
+                output.get(unitBuffer, 0, info.size);
+                listener.onAccessUnit(unitBuffer, info.size, frameZeroWallUs + info.presentationTimeUs,
+                        peakSinceLastUnit);
+                peakSinceLastUnit = 0;
+            }
+            codec.releaseOutputBuffer(index, false);
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) return;
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** Stops capture after flushing the encoder to the listener. */
+    public synchronized void stop() {
+        if (captureThread == null) return;
+        running = false;
+        try {
+            captureThread.join(2000);
+        } catch (InterruptedException e) {
+            Log.e(TAG, "Interrupted stopping capture: " + e.getMessage());
+            Thread.currentThread().interrupt();
+        }
+        captureThread = null;
+        release();
+    }
+
+    private void release() {
+        if (audioRecord != null) {
+            try {
+                if (audioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
+                    audioRecord.stop();
+                }
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Error stopping AudioRecord: " + e.getMessage());
+            }
+            audioRecord.release();
+            audioRecord = null;
+        }
+        if (codec != null) {
+            try {
+                codec.stop();
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Error stopping encoder: " + e.getMessage());
+            }
+            codec.release();
+            codec = null;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package edu.skku.cs.visualvroom;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads a shard written by {@link DatasetShardWriter} through a read-only memory mapping.
+ * Samples are views into the mapping, so nothing is copied until a caller asks for a
+ * channel's samples. Index entries whose record runs past the end of the data file (an
+ * append that was interrupted) are left out.
+ */
+public class DatasetShardReader implements Closeable {
+    /** One labelled window. pcm and features are views into the shard's mapping. */
+    public static class Sample {
+        public final long captureTimeMs;
+        public final DatasetShardWriter.Label label;
+        public final int channels;
+        public final int frames;
+        public final ShortBuffer pcm;
+        public final ByteBuffer features;
+
+        Sample(long captureTimeMs, DatasetShardWriter.Label label, int channels, int frames,
+               ShortBuffer pcm, ByteBuffer features) {
+            this.captureTimeMs = captureTimeMs;
+            this.label = label;
+            this.channels = channels;
+            this.frames = frames;
+            this.pcm = pcm;
+            this.features = features;
+        }
+
+        /** De-interleaves one channel into a new array. */
+        public short[] channel(int c) {
+            short[] samples = new short[frames];
+            for (int i = 0; i < frames; i++) {
+                samples[i] = pcm.get(i * channels + c);
+            }
+            return samples;
+        }
+    }
+
+    private final RandomAccessFile file;
+    private final ByteBuffer data;
+    private final long[] offsets;
+    private final int sampleRate;
+    private final int channels;
+
+    public DatasetShardReader(File dataFile) throws IOException {
+        file = new RandomAccessFile(dataFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            if (data.limit() < DatasetShardWriter.HEADER_BYTES || data.getInt(0) != DatasetShardWriter.MAGIC) {
+                throw new IOException("Not a dataset shard: " + dataFile);
+            }
+            if (data.getInt(4) != DatasetShardWriter.VERSION) {
+                throw new IOException("Unsupported shard version " + data.getInt(4));
+            }
+            sampleRate = data.getInt(8);
+            channels = data.getInt(12);
+            offsets = readIndex(indexFileFor(dataFile));
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private long[] readIndex(File indexFile) throws IOException {
+        try (RandomAccessFile index = new RandomAccessFile(indexFile, "r")) {
+            FileChannel channel = index.getChannel();
+            ByteBuffer entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size() / 8 * 8)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            long[] valid = new long[entries.limit() / 8];
+            int count = 0;
+            for (int i = 0; i < valid.length; i++) {
+                long offset = entries.getLong(i * 8);
+                if (recordFits(offset)) valid[count++] = offset;
+            }
+            return Arrays.copyOf(valid, count);
+        }
+    }
+
+    private boolean recordFits(long offset) {
+        if (offset < DatasetShardWriter.HEADER_BYTES
+                || offset + DatasetShardWriter.RECORD_HEADER_BYTES > data.limit()) {
+            return false;
+        }
+        int at = (int) offset;
+        long frames = data.getInt(at + 12);
+        long featureBytes = data.getInt(at + 16);
+        return at + DatasetShardWriter.RECORD_HEADER_BYTES + frames * (data.get(at + 9) & 0xFF) * 2 + featureBytes
+                <= data.limit();
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public Sample get(int i) {
+        int at = (int) offsets[i];
+        long captureTimeMs = data.getLong(at);
+        DatasetShardWriter.Label label = DatasetShardWriter.Label.fromCode(data.get(at + 8));
+        int sampleChannels = data.get(at + 9) & 0xFF;
+        int frames = data.getInt(at + 12);
+        int featureBytes = data.getInt(at + 16);
+
+        int pcmStart = at + DatasetShardWriter.RECORD_HEADER_BYTES;
+        int pcmBytes = frames * sampleChannels * 2;
+        ShortBuffer pcm = slice(pcmStart, pcmBytes).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        ByteBuffer features = slice(pcmStart + pcmBytes, featureBytes);
+        return new Sample(captureTimeMs, label, sampleChannels, frames, pcm, features);
+    }
+
+    private ByteBuffer slice(int start, int length) {
+        ByteBuffer view = data.duplicate();
+        view.position(start);
+        view.limit(start + length);
+        return view.slice();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /** The data files of every shard in directory, oldest first. */
+    public static List<File> listShards(File directory) {
+        List<File> shards = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(DatasetShardWriter.DATA_SUFFIX)) shards.add(file);
+            }
+        }
+        shards.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return shards;
+    }
+
+    static File indexFileFor(File dataFile) {
+        String name = dataFile.getName();
+        return new File(dataFile.getParentFile(),
+                name.substring(0, name.length() - DatasetShardWriter.DATA_SUFFIX.length())
+                        + DatasetShardWriter.INDEX_SUFFIX);
+    }
+}
@@ -0,0 +1,189 @@
+package edu.skku.cs.visualvroom;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Appends driver-labelled windows to packed binary shards for model training. A shard is one
+ * data file of back-to-back records and an index file of the records' offsets, so a reader can
+ * map the data file and reach any sample without parsing the ones before it.
+ *
+ * Data file: a 16-byte header (magic "VVDS", version, sample rate, channels) followed by
+ * records of
+ * <pre>
+ *   long  capture time (ms)     byte  label code     byte  channels     short reserved
+ *   int   frames                int   feature bytes
+ *   short[frames * channels]    interleaved little-endian PCM
+ *   byte[feature bytes]         the AudioProcessor feature image
+ * </pre>
+ * Index file: one little-endian long offset per record. The index entry is written after its
+ * record, so an interrupted append leaves the shard readable up to the previous sample. A new
+ * shard is started once the data file would pass maxShardBytes; shards are named
+ * shard-createdAt-NNN so they sort in capture order.
+ */
+public class DatasetShardWriter {
+    private static final String TAG = "DatasetShardWriter";
+    static final int MAGIC = 0x53445656; // "VVDS" little-endian
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_HEADER_BYTES = 20;
+    static final String DATA_SUFFIX = ".vvds";
+    static final String INDEX_SUFFIX = ".idx";
+
+    /** The alert classes WearNotificationService has vibration patterns for. */
+    public enum Label {
+        SIREN(1, "siren"),
+        HORN(2, "horn"),
+        BIKE(3, "bike");
+
+        public final int code;
+        public final String name;
+
+        Label(int code, String name) {
+            this.code = code;
+            this.name = name;
+        }
+
+        public static Label fromCode(int code) {
+            for (Label label : values()) {
+                if (label.code == code) return label;
+            }
+            throw new IllegalArgumentException("Unknown label code " + code);
+        }
+
+        public static Label fromName(String name) {
+            for (Label label : values()) {
+                if (label.name.equalsIgnoreCase(name)) return label;
+            }
+            throw new IllegalArgumentException("Unknown label " + name);
+        }
+    }
+
+    private final File directory;
+    private final int sampleRate;
+    private final int channels;
+    private final long maxShardBytes;
+    private final long createdAt = System.currentTimeMillis();
+
+    private File dataFile;
+    private RandomAccessFile data;
+    private RandomAccessFile index;
+    private FileChannel dataChannel;
+    private FileChannel indexChannel;
+    private final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer pcm = ByteBuffer.allocate(0);
+
+    private long samplesWritten = 0;
+    private long shardsWritten = 0;
+
+    public DatasetShardWriter(File directory, int sampleRate, int channels, long maxShardBytes) {
+        this.directory = directory;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.maxShardBytes = maxShardBytes;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(TAG, "Cannot create dataset directory " + directory);
+        }
+    }
+
+    /** Appends one labelled window; samples holds one array per channel, all the same length. */
+    public synchronized void append(long captureTimeMs, Label label, short[][] samples, byte[] features)
+            throws IOException {
+        if (samples.length != channels) {
+            throw new IllegalArgumentException("Expected " + channels + " channels, got " + samples.length);
+        }
+        int frames = samples[0].length;
+        int pcmBytes = frames * channels * 2;
+        long recordBytes = RECORD_HEADER_BYTES + pcmBytes + features.length;
+
+        if (dataChannel != null && dataChannel.size() + recordBytes > maxShardBytes) {
+            close();
+        }
+        if (dataChannel == null) {
+            openShard();
+        }
+
+        recordHeader.clear();
+        recordHeader.putLong(captureTimeMs);
+        recordHeader.put((byte) label.code);
+        recordHeader.put((byte) channels);
+        recordHeader.putShort((short) 0);
+        recordHeader.putInt(frames);
+        recordHeader.putInt(features.length);
+        recordHeader.flip();
+
+        if (pcm.capacity() < pcmBytes) {
+            pcm = ByteBuffer.allocate(pcmBytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        pcm.clear();
+        for (int i = 0; i < frames; i++) {
+            for (short[] channel : samples) {
+                pcm.putShort(channel[i]);
+            }
+        }
+        pcm.flip();
+
+        long offset = dataChannel.size();
+        dataChannel.position(offset);
+        writeFully(dataChannel, recordHeader, pcm, ByteBuffer.wrap(features));
+
+        ByteBuffer entry = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, offset);
+        indexChannel.position(indexChannel.size());
+        writeFully(indexChannel, entry);
+        samplesWritten++;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer... buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    private void openShard() throws IOException {
+        String name = String.format("shard-%d-%03d", createdAt, shardsWritten);
+        dataFile = new File(directory, name + DATA_SUFFIX);
+        data = new RandomAccessFile(dataFile, "rw");
+        index = new RandomAccessFile(new File(directory, name + INDEX_SUFFIX), "rw");
+        dataChannel = data.getChannel();
+        indexChannel = index.getChannel();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(sampleRate).putInt(channels).flip();
+        writeFully(dataChannel, header);
+        shardsWritten++;
+        Log.i(TAG, "Started shard " + dataFile.getName());
+    }
+
+    /** Closes the current shard; the next append starts a new one. */
+    public synchronized void close() {
+        if (dataChannel == null) return;
+        try {
+            data.close();
+            index.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing shard " + dataFile.getName() + ": " + e.getMessage());
+        }
+        dataChannel = null;
+        indexChannel = null;
+        data = null;
+        index = null;
+    }
+
+    public synchronized long getSamplesWritten() { return samplesWritten; }
+    public synchronized long getShardsWritten() { return shardsWritten; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("DatasetShardWriter[%d samples in %d shards]", samplesWritten, shardsWritten);
+    }
+}
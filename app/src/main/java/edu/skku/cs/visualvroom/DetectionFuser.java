@@ -0,0 +1,137 @@
+package edu.skku.cs.visualvroom;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Combines per-window classifier results into detections.
+ *
+ * Each vehicle class keeps a leaky evidence accumulator: on every result the evidence of all
+ * classes decays by exp(-dt / tau), and the reported class adds its confidence. A detection is
+ * declared when a class's evidence crosses the threshold, after which that class stays quiet
+ * for the refractory time. With 2 s windows every second and the defaults, two consecutive
+ * confident windows are enough, while a single confident window on its own never is. The
+ * default time constant suits that one-second hop; callers with a longer hop should set it to
+ * about two hops, or the evidence decays too far between windows to ever reach the threshold.
+ */
+public class DetectionFuser {
+    public static class Detection {
+        public final String vehicleType;
+        public final String direction;
+        public final float evidence;
+        public final double confidence;
+        public final long timestampMs;
+
+        Detection(String vehicleType, String direction, float evidence, double confidence, long timestampMs) {
+            this.vehicleType = vehicleType;
+            this.direction = direction;
+            this.evidence = evidence;
+            this.confidence = confidence;
+            this.timestampMs = timestampMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s from %s (evidence %.2f, confidence %.2f)",
+                    vehicleType, direction, evidence, confidence);
+        }
+    }
+
+    private static class ClassState {
+        float evidence = 0f;
+        String direction = "";
+        long lastDetectionMs = Long.MIN_VALUE / 2;
+    }
+
+    private final Map<String, ClassState> classes = new HashMap<>();
+    private long lastUpdateMs = -1;
+
+    private volatile long timeConstantMs = 2000;
+    private volatile float threshold = 1.4f;
+    private volatile double minConfidence = 0.5;
+    private volatile long refractoryMs = 3000;
+
+    /**
+     * Adds one window's result, timestamped with when its audio ended. Returns the detection
+     * it completes, or null.
+     */
+    public synchronized Detection offer(String vehicleType, String direction, double confidence, long timestampMs) {
+        decayTo(timestampMs);
+        if (vehicleType == null || confidence < minConfidence) {
+            return null;
+        }
+
+        ClassState state = stateFor(vehicleType, direction);
+        state.evidence += (float) confidence;
+
+        if (state.evidence >= threshold && timestampMs - state.lastDetectionMs >= refractoryMs) {
+            state.lastDetectionMs = timestampMs;
+            return new Detection(vehicleType, state.direction, state.evidence, confidence, timestampMs);
+        }
+        return null;
+    }
+
+    /**
+     * Adds a result that was already decided upstream, such as an on-device alert. It is
+     * declared at once unless its class is still within the refractory time.
+     */
+    public synchronized Detection offerDecided(String vehicleType, String direction, double confidence, long timestampMs) {
+        decayTo(timestampMs);
+        if (vehicleType == null) {
+            return null;
+        }
+
+        ClassState state = stateFor(vehicleType, direction);
+        if (timestampMs - state.lastDetectionMs < refractoryMs) {
+            return null;
+        }
+        state.lastDetectionMs = timestampMs;
+        return new Detection(vehicleType, state.direction, state.evidence, confidence, timestampMs);
+    }
+
+    private ClassState stateFor(String vehicleType, String direction) {
+        ClassState state = classes.get(vehicleType);
+        if (state == null) {
+            state = new ClassState();
+            classes.put(vehicleType, state);
+        }
+        if (direction != null && !direction.isEmpty()) {
+            state.direction = direction;
+        }
+        return state;
+    }
+
+    /** Lets evidence decay for a window that produced no result (gated, quiet or failed). */
+    public synchronized void offerNothing(long timestampMs) {
+        decayTo(timestampMs);
+    }
+
+    private void decayTo(long timestampMs) {
+        if (lastUpdateMs >= 0 && timestampMs > lastUpdateMs) {
+            float decay = (float) Math.exp(-(timestampMs - lastUpdateMs) / (double) timeConstantMs);
+            for (ClassState state : classes.values()) {
+                state.evidence *= decay;
+            }
+        }
+        lastUpdateMs = Math.max(lastUpdateMs, timestampMs);
+    }
+
+    public synchronized float getEvidence(String vehicleType) {
+        ClassState state = classes.get(vehicleType);
+        return state == null ? 0f : state.evidence;
+    }
+
+    public synchronized void reset() {
+        classes.clear();
+        lastUpdateMs = -1;
+    }
+
+    public long getTimeConstantMs() { return timeConstantMs; }
+    public void setTimeConstantMs(long timeConstantMs) { this.timeConstantMs = timeConstantMs; }
+    public float getThreshold() { return threshold; }
+    public void setThreshold(float threshold) { this.threshold = threshold; }
+    public double getMinConfidence() { return minConfidence; }
+    public void setMinConfidence(double minConfidence) { this.minConfidence = minConfidence; }
+    public long getRefractoryMs() { return refractoryMs; }
+    public void setRefractoryMs(long refractoryMs) { this.refractoryMs = refractoryMs; }
+}
@@ -0,0 +1,454 @@
+package edu.skku.cs.visualvroom;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps every fused detection in an append-only log of fixed-size records, so drives can be
+ * looked back on. Records are queued by {@link #append} and group-committed by a background
+ * thread: one write and one flush to storage per batch, at most groupCommitMs after the first
+ * record of the batch.
+ *
+ * Log file: a 16-byte header (magic "VVDH", version, record size) and 32-byte records of
+ * <pre>
+ *   long  time (ms)        int   drive          float confidence     int latency (ms)
+ *   byte  type (label code, 0 for other)        byte  direction ('L', 'R' or 0)
+ *   byte[10] backend name, NUL-padded
+ * </pre>
+ * Times are kept non-decreasing, so the log is sorted by time. The index file is memory-mapped
+ * and holds the time of the first record of every block of {@value #BLOCK_RECORDS} records;
+ * a range query binary-searches it and reads only the blocks the range covers.
+ *
+ * Nothing is read when the store is created. The files are opened on first use, which costs
+ * the same however long the log is: the record count follows from the log's length and only
+ * index entries a crash left unwritten are rebuilt.
+ */
+public class DetectionHistoryStore {
+    private static final String TAG = "DetectionHistoryStore";
+    static final int MAGIC = 0x48445656; // "VVDH" little-endian
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 32;
+    static final int BLOCK_RECORDS = 256;
+    private static final int BACKEND_BYTES = 10;
+    private static final int INDEX_GROWTH_ENTRIES = 4096;
+    private static final long DEFAULT_GROUP_COMMIT_MS = 1000;
+    private static final String LOG_FILE = "detections.log";
+    private static final String INDEX_FILE = "detections.idx";
+    private static DetectionHistoryStore instance;
+
+    /** One stored detection. */
+    public static class Record {
+        public final long timeMs;
+        public final int driveId;
+        public final String vehicleType;
+        public final String direction;
+        public final float confidence;
+        public final int latencyMs;
+        public final String backend;
+
+        Record(long timeMs, int driveId, String vehicleType, String direction, float confidence,
+               int latencyMs, String backend) {
+            this.timeMs = timeMs;
+            this.driveId = driveId;
+            this.vehicleType = vehicleType;
+            this.direction = direction;
+            this.confidence = confidence;
+            this.latencyMs = latencyMs;
+            this.backend = backend;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d drive %d: %s from %s (confidence %.2f, %d ms via %s)",
+                    timeMs, driveId, vehicleType, direction, confidence, latencyMs, backend);
+        }
+    }
+
+    /** What happened during one drive, or the part of it inside a queried range. */
+    public static class DriveSummary {
+        public final int driveId;
+        public long startMs;
+        public long endMs;
+        public int detections;
+        public final Map<String, Integer> countsByType = new LinkedHashMap<>();
+        public double meanConfidence;
+        public double meanLatencyMs;
+        public int maxLatencyMs;
+
+        DriveSummary(int driveId) {
+            this.driveId = driveId;
+        }
+
+        private void add(Record record) {
+            if (detections == 0) startMs = record.timeMs;
+            endMs = record.timeMs;
+            detections++;
+            Integer count = countsByType.get(record.vehicleType);
+            countsByType.put(record.vehicleType, count == null ? 1 : count + 1);
+            meanConfidence += (record.confidence - meanConfidence) / detections;
+            meanLatencyMs += (record.latencyMs - meanLatencyMs) / detections;
+            maxLatencyMs = Math.max(maxLatencyMs, record.latencyMs);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Drive %d: %d detections %s, confidence %.2f, latency %.0f ms (max %d)",
+                    driveId, detections, countsByType, meanConfidence, meanLatencyMs, maxLatencyMs);
+        }
+    }
+
+    // A queued record; its drive is resolved against the log's last drive when committed
+    private static class Pending {
+        final long timeMs;
+        final int driveSequence;
+        final String vehicleType;
+        final String direction;
+        final float confidence;
+        final int latencyMs;
+        final String backend;
+
+        Pending(long timeMs, int driveSequence, String vehicleType, String direction, float confidence,
+                int latencyMs, String backend) {
+            this.timeMs = timeMs;
+            this.driveSequence = driveSequence;
+            this.vehicleType = vehicleType;
+            this.direction = direction;
+            this.confidence = confidence;
+            this.latencyMs = latencyMs;
+            this.backend = backend;
+        }
+    }
+
+    private final File directory;
+    private final long groupCommitMs;
+    private final ScheduledExecutorService committer;
+
+    // Guarded by this
+    private List<Pending> pending = new ArrayList<>();
+    private boolean commitScheduled = false;
+    private int driveSequence = 0;
+
+    // Guarded by files
+    private final Object files = new Object();
+    private RandomAccessFile log;
+    private FileChannel logChannel;
+    private RandomAccessFile indexFile;
+    private MappedByteBuffer index;
+    private int indexCapacity;
+    private long records;
+    private long lastTimeMs = Long.MIN_VALUE;
+    // The log's last drive when this process first opened it; beginDrive counts on from there
+    private int baseDrive;
+    private boolean baseDriveKnown = false;
+
+    private long commits = 0;
+
+    public DetectionHistoryStore(File directory, long groupCommitMs) {
+        this.directory = directory;
+        this.groupCommitMs = groupCommitMs;
+        this.committer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "DetectionHistory");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** The app's store under its files directory. Cheap: nothing is read until first use. */
+    public static synchronized DetectionHistoryStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new DetectionHistoryStore(
+                    new File(context.getApplicationContext().getFilesDir(), "history"), DEFAULT_GROUP_COMMIT_MS);
+        }
+        return instance;
+    }
+
+    /** Starts a new drive; later detections are counted towards it. */
+    public synchronized void beginDrive() {
+        driveSequence++;
+    }
+
+    /** Queues a detection for the next group commit. Safe to call from the main thread. */
+    public synchronized void append(long timeMs, String vehicleType, String direction, double confidence,
+                                    long latencyMs, String backend) {
+        pending.add(new Pending(timeMs, driveSequence, vehicleType, direction, (float) confidence,
+                (int) Math.min(Integer.MAX_VALUE, Math.max(0, latencyMs)), backend));
+        if (!commitScheduled) {
+            commitScheduled = true;
+            committer.schedule(this::commit, groupCommitMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Writes everything queued so far. Runs on the committer thread, or before a query. */
+    public void commit() {
+        List<Pending> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new ArrayList<>();
+            commitScheduled = false;
+        }
+        if (batch.isEmpty()) return;
+
+        synchronized (files) {
+            try {
+                ensureOpen();
+                ByteBuffer buffer = ByteBuffer.allocate(batch.size() * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                long first = records;
+                for (Pending record : batch) {
+                    long timeMs = Math.max(record.timeMs, lastTimeMs);
+                    if (records % BLOCK_RECORDS == 0) {
+                        putIndexEntry((int) (records / BLOCK_RECORDS), timeMs);
+                    }
+                    encode(buffer, timeMs, baseDrive + record.driveSequence, record);
+                    lastTimeMs = timeMs;
+                    records++;
+                }
+                buffer.flip();
+                long position = HEADER_BYTES + first * RECORD_BYTES;
+                while (buffer.hasRemaining()) {
+                    position += logChannel.write(buffer, position);
+                }
+                logChannel.force(false);
+                // The index only counts blocks whose first record is on storage
+                index.putInt(8, blockCount(records));
+                commits++;
+            } catch (IOException e) {
+                Log.e(TAG, "Dropping " + batch.size() + " detections: " + e.getMessage());
+                closeFiles();
+            }
+        }
+    }
+
+    private static void encode(ByteBuffer buffer, long timeMs, int driveId, Pending record) {
+        buffer.putLong(timeMs);
+        buffer.putInt(driveId);
+        buffer.putFloat(record.confidence);
+        buffer.putInt(record.latencyMs);
+        buffer.put((byte) typeCode(record.vehicleType));
+        buffer.put((byte) directionCode(record.direction));
+        byte[] backend = record.backend != null ? record.backend.getBytes(StandardCharsets.US_ASCII) : new byte[0];
+        for (int i = 0; i < BACKEND_BYTES; i++) {
+            buffer.put(i < backend.length ? backend[i] : 0);
+        }
+    }
+
+    private static Record decode(ByteBuffer buffer) {
+        long timeMs = buffer.getLong();
+        int driveId = buffer.getInt();
+        float confidence = buffer.getFloat();
+        int latencyMs = buffer.getInt();
+        int type = buffer.get();
+        int direction = buffer.get();
+        byte[] backend = new byte[BACKEND_BYTES];
+        buffer.get(backend);
+        int length = 0;
+        while (length < BACKEND_BYTES && backend[length] != 0) length++;
+        return new Record(timeMs, driveId, typeName(type), direction != 0 ? String.valueOf((char) direction) : "",
+                confidence, latencyMs, new String(backend, 0, length, StandardCharsets.US_ASCII));
+    }
+
+    private static int typeCode(String vehicleType) {
+        try {
+            return DatasetShardWriter.Label.fromName(vehicleType).code;
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return 0;
+        }
+    }
+
+    private static String typeName(int code) {
+        try {
+            return DatasetShardWriter.Label.fromCode(code).name;
+        } catch (IllegalArgumentException e) {
+            return "other";
+        }
+    }
+
+    // The server reports "L"/"R", the on-device estimate "Left"/"Right"
+    private static int directionCode(String direction) {
+        if ("L".equalsIgnoreCase(direction) || "Left".equalsIgnoreCase(direction)) return 'L';
+        if ("R".equalsIgnoreCase(direction) || "Right".equalsIgnoreCase(direction)) return 'R';
+        return 0;
+    }
+
+    private static int blockCount(long records) {
+        return (int) ((records + BLOCK_RECORDS - 1) / BLOCK_RECORDS);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (log != null) return;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        log = new RandomAccessFile(new File(directory, LOG_FILE), "rw");
+        logChannel = log.getChannel();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        if (logChannel.size() < HEADER_BYTES) {
+            header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_BYTES).putInt(0).flip();
+            logChannel.write(header, 0);
+            logChannel.truncate(HEADER_BYTES);
+        } else {
+            logChannel.read(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(8) != RECORD_BYTES) {
+                closeFiles();
+                throw new IOException("Not a detection history log");
+            }
+        }
+        // A record cut short by a crash is dropped
+        records = (logChannel.size() - HEADER_BYTES) / RECORD_BYTES;
+        logChannel.truncate(HEADER_BYTES + records * RECORD_BYTES);
+
+        indexFile = new RandomAccessFile(new File(directory, INDEX_FILE), "rw");
+        mapIndex(Math.max(blockCount(records), 1));
+        if (index.getInt(0) != MAGIC) {
+            index.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, 0);
+        }
+        int indexed = Math.min(index.getInt(8), blockCount(records));
+        for (int block = indexed; block < blockCount(records); block++) {
+            putIndexEntry(block, readRecord((long) block * BLOCK_RECORDS).timeMs);
+        }
+        index.putInt(8, blockCount(records));
+
+        if (records > 0) {
+            Record last = readRecord(records - 1);
+            lastTimeMs = last.timeMs;
+            if (!baseDriveKnown) baseDrive = last.driveId;
+        }
+        baseDriveKnown = true;
+        Log.i(TAG, String.format("Opened %d detections in %d blocks", records, blockCount(records)));
+    }
+
+    private void mapIndex(int entries) throws IOException {
+        indexCapacity = (entries / INDEX_GROWTH_ENTRIES + 1) * INDEX_GROWTH_ENTRIES;
+        index = indexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + indexCapacity * 8L);
+        index.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void putIndexEntry(int block, long timeMs) throws IOException {
+        if (block >= indexCapacity) {
+            mapIndex(block + 1);
+        }
+        index.putLong(HEADER_BYTES + block * 8, timeMs);
+    }
+
+    private Record readRecord(long i) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long position = HEADER_BYTES + i * RECORD_BYTES;
+        while (buffer.hasRemaining() && logChannel.read(buffer, position + buffer.position()) >= 0) {
+            // Keep reading
+        }
+        buffer.flip();
+        return decode(buffer);
+    }
+
+    /** Detections with fromMs <= time < toMs, oldest first. Call off the main thread. */
+    public List<Record> query(long fromMs, long toMs) throws IOException {
+        List<Record> found = new ArrayList<>();
+        scan(fromMs, toMs, found::add);
+        return found;
+    }
+
+    /** Per-drive summaries of the detections with fromMs <= time < toMs. Call off the main thread. */
+    public List<DriveSummary> summarizeDrives(long fromMs, long toMs) throws IOException {
+        Map<Integer, DriveSummary> drives = new LinkedHashMap<>();
+        scan(fromMs, toMs, record -> {
+            DriveSummary summary = drives.get(record.driveId);
+            if (summary == null) {
+                summary = new DriveSummary(record.driveId);
+                drives.put(record.driveId, summary);
+            }
+            summary.add(record);
+        });
+        return new ArrayList<>(drives.values());
+    }
+
+    private void scan(long fromMs, long toMs, Consumer<Record> visitor) throws IOException {
+        commit();
+        synchronized (files) {
+            ensureOpen();
+            // Last block starting before fromMs; the range cannot begin earlier. A block starting
+            // exactly at fromMs may follow one that ends with records at that same time
+            int low = 0;
+            int high = blockCount(records) - 1;
+            int startBlock = 0;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (index.getLong(HEADER_BYTES + mid * 8) < fromMs) {
+                    startBlock = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+
+            ByteBuffer block = ByteBuffer.allocate(BLOCK_RECORDS * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (long first = (long) startBlock * BLOCK_RECORDS; first < records; first += BLOCK_RECORDS) {
+                int count = (int) Math.min(BLOCK_RECORDS, records - first);
+                block.clear();
+                block.limit(count * RECORD_BYTES);
+                long position = HEADER_BYTES + first * RECORD_BYTES;
+                while (block.hasRemaining() && logChannel.read(block, position + block.position()) >= 0) {
+                    // Keep reading
+                }
+                block.flip();
+                for (int i = 0; i < count; i++) {
+                    Record record = decode(block);
+                    if (record.timeMs >= toMs) return;
+                    if (record.timeMs >= fromMs) visitor.accept(record);
+                }
+            }
+        }
+    }
+
+    public long getRecordCount() throws IOException {
+        commit();
+        synchronized (files) {
+            ensureOpen();
+            return records;
+        }
+    }
+
+    /** Commits what is queued and closes the files; the store reopens them on next use. */
+    public void close() {
+        commit();
+        synchronized (files) {
+            closeFiles();
+        }
+    }
+
+    private void closeFiles() {
+        try {
+            if (log != null) log.close();
+            if (indexFile != null) indexFile.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Error closing history files: " + e.getMessage());
+        }
+        log = null;
+        logChannel = null;
+        indexFile = null;
+        index = null;
+    }
+
+    @Override
+    public String toString() {
+        synchronized (files) {
+            return String.format("DetectionHistoryStore[%d detections, %d commits]", records, commits);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package edu.skku.cs.visualvroom;
+
+/**
+ * Estimates where a sound is coming from using the two microphones of the phone.
+ *
+ * The time delay between channels comes from GCC-PHAT: the cross-spectrum of each STFT frame
+ * (the same 402-point Hann frames {@link AudioProcessor} builds its spectrogram from) is
+ * whitened to unit magnitude, averaged over frames, and evaluated at fractional lags within
+ * the physical limit set by the microphone spacing. Bins more than 30 dB below a frame's
+ * strongest are skipped: for tonal sources they hold window leakage, whose phase follows the
+ * tone rather than the bin and, once whitened, pulls the delay towards zero. The level
+ * difference between channels in 500-4000 Hz backs it up when the delay is ambiguous.
+ * Positive angles are to the right.
+ */
+public class DirectionEstimator {
+    private static final int SAMPLE_RATE = 16000;
+    private static final int N_FFT = 402;
+    private static final float SPEED_OF_SOUND = 343f;
+
+    private static final float GCC_MIN_HZ = 300f;
+    private static final float GCC_MAX_HZ = 4000f;
+    private static final float ILD_MIN_HZ = 500f;
+    private static final float ILD_MAX_HZ = 4000f;
+    private static final float LAG_STEP = 0.25f;        // samples
+    private static final float ILD_FULL_SCALE_DB = 6f;  // level difference read as fully to one side
+    private static final float ILD_WEIGHT = 0.5f;
+    private static final double EPSILON = 1e-12;
+    // Bins this far below a frame's strongest are left out of GCC-PHAT
+    private static final double CROSS_FLOOR_DB = 30;
+
+    public static class Estimate {
+        /** -90 (fully left) to +90 (fully right). */
+        public final float angleDegrees;
+        /** 0 to 1. */
+        public final float confidence;
+        public final float delaySamples;
+        public final float levelDifferenceDb;
+
+        Estimate(float angleDegrees, float confidence, float delaySamples, float levelDifferenceDb) {
+            this.angleDegrees = angleDegrees;
+            this.confidence = confidence;
+            this.delaySamples = delaySamples;
+            this.levelDifferenceDb = levelDifferenceDb;
+        }
+
+        /** The server's direction labels: "L", "R", or "" when the source is near the centre. */
+        public String getDirection(float centreDegrees) {
+            if (angleDegrees <= -centreDegrees) return "L";
+            if (angleDegrees >= centreDegrees) return "R";
+            return "";
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.0f deg (confidence %.2f, delay %.2f samples, ILD %.1f dB)",
+                    angleDegrees, confidence, delaySamples, levelDifferenceDb);
+        }
+    }
+
+    private final AudioProcessor processor;
+    private final float maxLag;
+    private final float[] lags;
+    private final double[][] cosTable;
+    private final double[][] sinTable;
+    private final int gccMinBin;
+    private final int gccMaxBin;
+    private final int ildMinBin;
+    private final int ildMaxBin;
+
+    public DirectionEstimator(AudioProcessor processor, float micSpacingMeters) {
+        this.processor = processor;
+        this.maxLag = micSpacingMeters * SAMPLE_RATE / SPEED_OF_SOUND;
+        this.gccMinBin = binFor(GCC_MIN_HZ);
+        this.gccMaxBin = binFor(GCC_MAX_HZ);
+        this.ildMinBin = binFor(ILD_MIN_HZ);
+        this.ildMaxBin = binFor(ILD_MAX_HZ);
+
+        int steps = (int) Math.ceil(maxLag / LAG_STEP);
+        this.lags = new float[2 * steps + 1];
+        this.cosTable = new double[lags.length][gccMaxBin + 1];
+        this.sinTable = new double[lags.length][gccMaxBin + 1];
+        for (int l = 0; l < lags.length; l++) {
+            lags[l] = (l - steps) * LAG_STEP;
+            for (int k = gccMinBin; k <= gccMaxBin; k++) {
+                double phase = 2 * Math.PI * k * lags[l] / N_FFT;
+                cosTable[l][k] = Math.cos(phase);
+                sinTable[l][k] = Math.sin(phase);
+            }
+        }
+    }
+
+    private static int binFor(float hz) {
+        return Math.max(1, Math.min(N_FFT / 2 - 1, Math.round(hz * N_FFT / SAMPLE_RATE)));
+    }
+
+    /** Returns null when the window is too short for a single STFT frame. */
+    public Estimate estimate(short[] leftChannel, short[] rightChannel) {
+        float[][] left = processor.computeStft(leftChannel);
+        float[][] right = processor.computeStft(rightChannel);
+        int frames = Math.min(left.length, right.length);
+        if (frames == 0) {
+            return null;
+        }
+
+        // Averaged PHAT-weighted cross-spectrum and band energies
+        int bins = gccMaxBin + 1;
+        double[] crossRe = new double[bins];
+        double[] crossIm = new double[bins];
+        double leftEnergy = 0;
+        double rightEnergy = 0;
+        long contributions = 0;
+        for (int t = 0; t < frames; t++) {
+            float[] l = left[t];
+            float[] r = right[t];
+            double floor = crossPowerFloor(l, r);
+            for (int k = Math.min(gccMinBin, ildMinBin); k <= Math.max(gccMaxBin, ildMaxBin); k++) {
+                double lRe = l[2 * k], lIm = l[2 * k + 1];
+                double rRe = r[2 * k], rIm = r[2 * k + 1];
+                if (k >= ildMinBin && k <= ildMaxBin) {
+                    leftEnergy += lRe * lRe + lIm * lIm;
+                    rightEnergy += rRe * rRe + rIm * rIm;
+                }
+                if (k >= gccMinBin && k <= gccMaxBin) {
+                    // L * conj(R)
+                    double re = lRe * rRe + lIm * rIm;
+                    double im = lIm * rRe - lRe * rIm;
+                    double power = re * re + im * im;
+                    if (power < floor) continue;
+                    double magnitude = Math.sqrt(power) + EPSILON;
+                    crossRe[k] += re / magnitude;
+                    crossIm[k] += im / magnitude;
+                    contributions++;
+                }
+            }
+        }
+
+        // GCC-PHAT over the physically possible lags; a positive lag means the left channel
+        // lags the right, i.e. the source is on the right
+        int best = 0;
+        double bestValue = -Double.MAX_VALUE;
+        for (int l = 0; l < lags.length; l++) {
+            double value = 0;
+            for (int k = gccMinBin; k <= gccMaxBin; k++) {
+                value += crossRe[k] * cosTable[l][k] - crossIm[k] * sinTable[l][k];
+            }
+            if (value > bestValue) {
+                bestValue = value;
+                best = l;
+            }
+        }
+        float delay = lags[best];
+        // Mean phase coherence at the peak, 1 for a clean single source
+        float gccConfidence = contributions == 0 ? 0f
+                : (float) Math.max(0, Math.min(1, bestValue / contributions));
+        float gccAngle = (float) Math.toDegrees(Math.asin(Math.max(-1f, Math.min(1f, delay / maxLag))));
+
+        float ildDb = (float) (10 * Math.log10((leftEnergy + EPSILON) / (rightEnergy + EPSILON)));
+        float ildSide = Math.max(-1f, Math.min(1f, -ildDb / ILD_FULL_SCALE_DB));
+        float ildAngle = ildSide * 90f;
+        float ildConfidence = Math.abs(ildSide) * ILD_WEIGHT;
+
+        float weight = gccConfidence + ildConfidence;
+        float angle = weight > 0 ? (gccAngle * gccConfidence + ildAngle * ildConfidence) / weight : 0f;
+        float confidence = gccConfidence;
+        if (ildConfidence > 0 && Math.signum(gccAngle) != Math.signum(ildAngle) && gccAngle != 0) {
+            // Delay and level disagree on the side: trust the result less
+            confidence *= 1f - ildConfidence;
+        } else {
+            confidence = Math.min(1f, confidence + ildConfidence * (1f - confidence));
+        }
+
+        return new Estimate(angle, confidence, delay, ildDb);
+    }
+
+    // Squared cross-power CROSS_FLOOR_DB below the frame's strongest GCC bin
+    private double crossPowerFloor(float[] l, float[] r) {
+        double peak = 0;
+        for (int k = gccMinBin; k <= gccMaxBin; k++) {
+            double lPower = (double) l[2 * k] * l[2 * k] + (double) l[2 * k + 1] * l[2 * k + 1];
+            double rPower = (double) r[2 * k] * r[2 * k] + (double) r[2 * k + 1] * r[2 * k + 1];
+            peak = Math.max(peak, lPower * rPower);
+        }
+        return peak * Math.pow(10, -CROSS_FLOOR_DB / 5);
+    }
+
+    public float getMaxLagSamples() { return maxLag; }
+}
@@ -0,0 +1,166 @@
+package edu.skku.cs.visualvroom;
+
+/**
+ * The most recent AAC access units, kept in memory and indexed by capture time, so a snapshot
+ * can be any window of recent audio: 5 s every second overlaps as well as 3 s every 3 s. A
+ * window comes out as an ADTS stream (each access unit behind a 7-byte header), which decodes
+ * on its own and goes straight into the request body without touching flash.
+ *
+ * Storage is fixed when the ring is built: one slot per AAC frame of capacity, each as large
+ * as the biggest access unit the format allows. Writing copies into a slot and never allocates.
+ */
+public class EncodedFrameRing {
+    private static final int AAC_FRAME_SAMPLES = 1024;
+    static final int ADTS_HEADER_BYTES = 7;
+    // AAC limits an access unit to 6144 bits per channel
+    private static final int MAX_FRAME_BYTES_PER_CHANNEL = 768;
+    private static final int[] ADTS_SAMPLE_RATES = {
+            96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350};
+
+    /** A window of audio as an ADTS stream. */
+    public static class Window {
+        public final byte[] adts;
+        public final long startTimeUs;
+        public final long endTimeUs;
+        public final int frames;
+        public final int peakAmplitude;
+
+        Window(byte[] adts, long startTimeUs, long endTimeUs, int frames, int peakAmplitude) {
+            this.adts = adts;
+            this.startTimeUs = startTimeUs;
+            this.endTimeUs = endTimeUs;
+            this.frames = frames;
+            this.peakAmplitude = peakAmplitude;
+        }
+
+        public long getDurationMs() {
+            return (endTimeUs - startTimeUs) / 1000;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Window[%d ms, %d frames, %d bytes, peak %d]",
+                    getDurationMs(), frames, adts.length, peakAmplitude);
+        }
+    }
+
+    private final int sampleRateIndex;
+    private final int channels;
+    private final long frameDurationUs;
+    private final int slotBytes;
+    private final int capacity;
+
+    private final byte[] data;
+    private final int[] lengths;
+    private final long[] timesUs;
+    private final int[] peaks;
+    private int oldest;
+    private int count;
+
+    public EncodedFrameRing(int sampleRate, int channels, long capacityMs) {
+        this.sampleRateIndex = adtsSampleRateIndex(sampleRate);
+        this.channels = channels;
+        this.frameDurationUs = AAC_FRAME_SAMPLES * 1_000_000L / sampleRate;
+        this.slotBytes = MAX_FRAME_BYTES_PER_CHANNEL * channels;
+        this.capacity = (int) (capacityMs * 1000 / frameDurationUs) + 1;
+        this.data = new byte[capacity * slotBytes];
+        this.lengths = new int[capacity];
+        this.timesUs = new long[capacity];
+        this.peaks = new int[capacity];
+    }
+
+    private static int adtsSampleRateIndex(int sampleRate) {
+        for (int i = 0; i < ADTS_SAMPLE_RATES.length; i++) {
+            if (ADTS_SAMPLE_RATES[i] == sampleRate) return i;
+        }
+        throw new IllegalArgumentException("No ADTS sampling index for " + sampleRate + " Hz");
+    }
+
+    /**
+     * Stores one access unit captured at captureTimeUs (wall clock), evicting the oldest when
+     * full. peakAmplitude is the loudest PCM sample that went into it.
+     */
+    public synchronized void write(byte[] unit, int length, long captureTimeUs, int peakAmplitude) {
+        if (length > slotBytes) {
+            throw new IllegalArgumentException("Access unit of " + length + " bytes exceeds " + slotBytes);
+        }
+        int slot = (oldest + count) % capacity;
+        if (count == capacity) {
+            oldest = (oldest + 1) % capacity;
+        } else {
+            count++;
+        }
+        System.arraycopy(unit, 0, data, slot * slotBytes, length);
+        lengths[slot] = length;
+        timesUs[slot] = captureTimeUs;
+        peaks[slot] = peakAmplitude;
+    }
+
+    /** The frames starting in [endTimeUs - durationUs, endTimeUs), or null if there are none. */
+    public synchronized Window window(long endTimeUs, long durationUs) {
+        long startTimeUs = endTimeUs - durationUs;
+        int first = -1;
+        int frames = 0;
+        int bytes = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = (oldest + i) % capacity;
+            long time = timesUs[slot];
+            if (time < startTimeUs) continue;
+            if (time >= endTimeUs) break;
+            if (first < 0) first = i;
+            frames++;
+            bytes += ADTS_HEADER_BYTES + lengths[slot];
+        }
+        if (frames == 0) return null;
+
+        byte[] adts = new byte[bytes];
+        int offset = 0;
+        int peak = 0;
+        for (int i = first; i < first + frames; i++) {
+            int slot = (oldest + i) % capacity;
+            writeAdtsHeader(adts, offset, lengths[slot]);
+            System.arraycopy(data, slot * slotBytes, adts, offset + ADTS_HEADER_BYTES, lengths[slot]);
+            offset += ADTS_HEADER_BYTES + lengths[slot];
+            peak = Math.max(peak, peaks[slot]);
+        }
+        int last = (oldest + first + frames - 1) % capacity;
+        return new Window(adts, timesUs[(oldest + first) % capacity], timesUs[last] + frameDurationUs, frames, peak);
+    }
+
+    /** The newest durationUs of audio, or null if the ring is empty. */
+    public synchronized Window latest(long durationUs) {
+        long end = getNewestEndTimeUs();
+        return end < 0 ? null : window(end, durationUs);
+    }
+
+    /** Capture time just after the newest frame, or -1 if the ring is empty. */
+    public synchronized long getNewestEndTimeUs() {
+        if (count == 0) return -1;
+        return timesUs[(oldest + count - 1) % capacity] + frameDurationUs;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized void clear() {
+        oldest = 0;
+        count = 0;
+    }
+
+    // ADTS without CRC: AAC-LC, this ring's sampling index and channel configuration
+    void writeAdtsHeader(byte[] out, int offset, int payloadLength) {
+        int frameLength = ADTS_HEADER_BYTES + payloadLength;
+        out[offset] = (byte) 0xFF;
+        out[offset + 1] = (byte) 0xF1;
+        out[offset + 2] = (byte) ((1 << 6) | (sampleRateIndex << 2) | (channels >> 2));
+        out[offset + 3] = (byte) (((channels & 3) << 6) | (frameLength >> 11));
+        out[offset + 4] = (byte) ((frameLength >> 3) & 0xFF);
+        out[offset + 5] = (byte) (((frameLength & 7) << 5) | 0x1F);
+        out[offset + 6] = (byte) 0xFC;
+    }
+}
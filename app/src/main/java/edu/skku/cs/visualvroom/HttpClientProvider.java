@@ -0,0 +1,252 @@
+package edu.skku.cs.visualvroom;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The app's one HTTP client. Every sender gets a client for its {@link Profile} from here; the
+ * profiles differ only in timeouts and share one connection pool and dispatcher, so a
+ * connection opened for one request is reused by the next, whoever sends it.
+ *
+ * The first alert after a quiet spell should not pay for a cold connection.
+ * {@link #prewarm(String)} opens one to a host ahead of time, and {@link #startKeepWarm(String)}
+ * sends a HEAD whenever the client has been idle for {@value #KEEP_WARM_IDLE_MS} ms, inside the
+ * server's keep-alive timeout, so the pooled connection is still open when it is needed.
+ * Connection setup time and reuse are counted in {@link #getMetrics()}.
+ */
+public final class HttpClientProvider {
+    private static final String TAG = "HttpClientProvider";
+
+    // Idle connections are kept longer than the keep-warm interval and dropped after a minute
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final long KEEP_WARM_IDLE_MS = 4000;
+    private static final long KEEP_WARM_CHECK_MS = 1000;
+    private static final int MAX_REQUESTS_PER_HOST = 16;
+
+    /** Timeouts per kind of traffic; calls may set a tighter deadline of their own. */
+    public enum Profile {
+        // Windows are worthless after a couple of seconds; fail fast and let the router fall back
+        ALERT(2, 5, 5),
+        // Whole utterances go up and the server transcribes before answering
+        TRANSCRIPTION(5, 30, 30),
+        // Recordings and datasets: large bodies, nobody waiting
+        UPLOAD(10, 60, 30);
+
+        final long connectSeconds;
+        final long writeSeconds;
+        final long readSeconds;
+
+        Profile(long connectSeconds, long writeSeconds, long readSeconds) {
+            this.connectSeconds = connectSeconds;
+            this.writeSeconds = writeSeconds;
+            this.readSeconds = readSeconds;
+        }
+    }
+
+    /** Connection counters since the process started. */
+    public static class Metrics {
+        public final long calls;
+        public final long connectionsOpened;
+        public final long connectionsReused;
+        public final long connectFailures;
+        public final double meanSetupMs;
+        public final double maxSetupMs;
+
+        Metrics(long calls, long connectionsOpened, long connectionsReused, long connectFailures,
+                double meanSetupMs, double maxSetupMs) {
+            this.calls = calls;
+            this.connectionsOpened = connectionsOpened;
+            this.connectionsReused = connectionsReused;
+            this.connectFailures = connectFailures;
+            this.meanSetupMs = meanSetupMs;
+            this.maxSetupMs = maxSetupMs;
+        }
+
+        /** Share of calls that found a pooled connection. */
+        public double getReuseRate() {
+            long acquired = connectionsOpened + connectionsReused;
+            return acquired > 0 ? (double) connectionsReused / acquired : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("HttpMetrics[%d calls, %d connections opened (%.0f ms mean, %.0f ms max setup), "
+                            + "%d reused (%.0f%%), %d connect failures]", calls, connectionsOpened, meanSetupMs,
+                    maxSetupMs, connectionsReused, getReuseRate() * 100, connectFailures);
+        }
+    }
+
+    private static final AtomicLong calls = new AtomicLong();
+    private static final AtomicLong opened = new AtomicLong();
+    private static final AtomicLong reused = new AtomicLong();
+    private static final AtomicLong connectFailures = new AtomicLong();
+    private static final AtomicLong setupNanos = new AtomicLong();
+    private static final AtomicLong maxSetupNanos = new AtomicLong();
+    private static volatile long lastActivityNanos = System.nanoTime();
+
+    private static OkHttpClient base;
+    private static final Map<Profile, OkHttpClient> clients = new EnumMap<>(Profile.class);
+    private static ScheduledExecutorService keepWarmScheduler;
+    private static final Map<String, ScheduledFuture<?>> keepWarm = new HashMap<>();
+
+    private HttpClientProvider() {
+    }
+
+    public static synchronized OkHttpClient get(Profile profile) {
+        OkHttpClient client = clients.get(profile);
+        if (client == null) {
+            if (base == null) {
+                // Room for alert calls on top of every scheduled upload to the one host
+                Dispatcher dispatcher = new Dispatcher();
+                dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+                base = new OkHttpClient.Builder()
+                        .dispatcher(dispatcher)
+                        .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS))
+                        .eventListenerFactory(call -> new MetricsListener())
+                        .build();
+            }
+            // newBuilder() keeps the base client's pool, dispatcher and listener
+            OkHttpClient.Builder builder = base.newBuilder()
+                    .connectTimeout(profile.connectSeconds, TimeUnit.SECONDS)
+                    .writeTimeout(profile.writeSeconds, TimeUnit.SECONDS)
+                    .readTimeout(profile.readSeconds, TimeUnit.SECONDS);
+            if (profile == Profile.ALERT) {
+                // Uploads scheduled by RequestScheduler yield while these are in flight
+                builder.addInterceptor(RequestScheduler.getInstance().alertTracker());
+            }
+            client = builder.build();
+            clients.put(profile, client);
+        }
+        return client;
+    }
+
+    /** Opens a pooled connection to url's host, if there is none, by sending it a HEAD. */
+    public static void prewarm(String url) {
+        HttpUrl root = originOf(url);
+        if (root == null) return;
+        Request request = new Request.Builder().url(root).head().build();
+        get(Profile.ALERT).newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Log.w(TAG, "Could not pre-warm " + root + ": " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                // Any status will do; the point is the connection
+                response.close();
+            }
+        });
+    }
+
+    /** Keeps a connection to url's host open until {@link #stopKeepWarm(String)}. */
+    public static synchronized void startKeepWarm(String url) {
+        HttpUrl root = originOf(url);
+        if (root == null || keepWarm.containsKey(root.toString())) return;
+        if (keepWarmScheduler == null) {
+            keepWarmScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "HttpKeepWarm");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        prewarm(url);
+        keepWarm.put(root.toString(), keepWarmScheduler.scheduleWithFixedDelay(() -> {
+            if (System.nanoTime() - lastActivityNanos >= KEEP_WARM_IDLE_MS * 1_000_000L) {
+                prewarm(url);
+            }
+        }, KEEP_WARM_CHECK_MS, KEEP_WARM_CHECK_MS, TimeUnit.MILLISECONDS));
+    }
+
+    public static synchronized void stopKeepWarm(String url) {
+        HttpUrl root = originOf(url);
+        ScheduledFuture<?> task = root != null ? keepWarm.remove(root.toString()) : null;
+        if (task != null) task.cancel(false);
+    }
+
+    private static HttpUrl originOf(String url) {
+        HttpUrl parsed = url != null ? HttpUrl.parse(url) : null;
+        if (parsed == null) {
+            Log.e(TAG, "Not an HTTP URL: " + url);
+            return null;
+        }
+        return new HttpUrl.Builder().scheme(parsed.scheme()).host(parsed.host()).port(parsed.port()).build();
+    }
+
+    public static Metrics getMetrics() {
+        long count = opened.get();
+        return new Metrics(calls.get(), count, reused.get(), connectFailures.get(),
+                count > 0 ? setupNanos.get() / 1e6 / count : 0, maxSetupNanos.get() / 1e6);
+    }
+
+    // One per call: tells a fresh connection from a pooled one and times the set-up
+    private static class MetricsListener extends EventListener {
+        private long connectStartNanos;
+        private boolean connected;
+
+        @Override
+        public void callStart(Call call) {
+            calls.incrementAndGet();
+            lastActivityNanos = System.nanoTime();
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connectStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            long nanos = System.nanoTime() - connectStartNanos;
+            connected = true;
+            opened.incrementAndGet();
+            setupNanos.addAndGet(nanos);
+            maxSetupNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol,
+                                  IOException e) {
+            connectFailures.incrementAndGet();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            if (!connected) reused.incrementAndGet();
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            lastActivityNanos = System.nanoTime();
+        }
+
+        @Override
+        public void callFailed(Call call, IOException e) {
+            lastActivityNanos = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package edu.skku.cs.visualvroom;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.PowerManager;
+import android.util.Log;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Decides how often to run inference.
+ *
+ * The acoustic state picks a base interval: QUIET while nothing is heard, ACTIVE while the
+ * activity gate is open, and ALERT for a few seconds after a pre-detector score crosses the
+ * alert level or an onset/detection is reported. The power state then stretches that interval:
+ * low or critical battery (while not charging) and moderate or severe thermal status each have
+ * a multiplier, and the worst one applies. Both tables can be changed at runtime.
+ */
+public class InferenceCadenceController {
+    private static final String TAG = "InferenceCadence";
+
+    public enum AcousticState { QUIET, ACTIVE, ALERT }
+
+    public enum PowerState { NORMAL, BATTERY_LOW, BATTERY_CRITICAL, THERMAL_MODERATE, THERMAL_SEVERE }
+
+    private static final int BATTERY_LOW_PERCENT = 20;
+    private static final int BATTERY_CRITICAL_PERCENT = 10;
+
+    private final Map<AcousticState, Long> intervalsMs = new EnumMap<>(AcousticState.class);
+    private final Map<PowerState, Float> multipliers = new EnumMap<>(PowerState.class);
+
+    private volatile float alertScore = 0.4f;
+    private volatile long alertHoldMs = 5000;
+    private volatile long minIntervalMs = 250;
+
+    private boolean active = false;
+    private long alertUntilMs = 0;
+    private int batteryPercent = 100;
+    private boolean charging = false;
+    private int thermalStatus = PowerManager.THERMAL_STATUS_NONE;
+    private AcousticState lastAcousticState = AcousticState.QUIET;
+    private PowerState lastPowerState = PowerState.NORMAL;
+
+    private Context context;
+    private PowerManager powerManager;
+    private BroadcastReceiver batteryReceiver;
+    private PowerManager.OnThermalStatusChangedListener thermalListener;
+
+    public InferenceCadenceController(long quietIntervalMs, long activeIntervalMs, long alertIntervalMs) {
+        intervalsMs.put(AcousticState.QUIET, quietIntervalMs);
+        intervalsMs.put(AcousticState.ACTIVE, activeIntervalMs);
+        intervalsMs.put(AcousticState.ALERT, alertIntervalMs);
+        multipliers.put(PowerState.NORMAL, 1f);
+        multipliers.put(PowerState.BATTERY_LOW, 2f);
+        multipliers.put(PowerState.BATTERY_CRITICAL, 4f);
+        multipliers.put(PowerState.THERMAL_MODERATE, 1.5f);
+        multipliers.put(PowerState.THERMAL_SEVERE, 4f);
+    }
+
+    /** Starts following battery and thermal state. */
+    public synchronized void start(Context context) {
+        if (this.context != null) return;
+        this.context = context.getApplicationContext();
+
+        batteryReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                onBatteryChanged(intent);
+            }
+        };
+        // ACTION_BATTERY_CHANGED is sticky, so the current level arrives straight away
+        Intent sticky = this.context.registerReceiver(batteryReceiver, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (sticky != null) {
+            onBatteryChanged(sticky);
+        }
+
+        powerManager = (PowerManager) this.context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager != null) {
+            thermalListener = this::onThermalStatusChanged;
+            powerManager.addThermalStatusListener(this.context.getMainExecutor(), thermalListener);
+            onThermalStatusChanged(powerManager.getCurrentThermalStatus());
+        }
+    }
+
+    public synchronized void stop() {
+        if (context == null) return;
+        try {
+            context.unregisterReceiver(batteryReceiver);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Battery receiver was not registered: " + e.getMessage());
+        }
+        if (powerManager != null && thermalListener != null) {
+            powerManager.removeThermalStatusListener(thermalListener);
+        }
+        batteryReceiver = null;
+        thermalListener = null;
+        powerManager = null;
+        context = null;
+    }
+
+    private void onBatteryChanged(Intent intent) {
+        int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        int status = intent.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        onBatteryChanged(level >= 0 && scale > 0 ? level * 100 / scale : -1,
+                status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL);
+    }
+
+    // percent is -1 when the broadcast carried no level
+    void onBatteryChanged(int percent, boolean charging) {
+        synchronized (this) {
+            if (percent >= 0) {
+                batteryPercent = percent;
+            }
+            this.charging = charging;
+        }
+        logIfChanged();
+    }
+
+    void onThermalStatusChanged(int status) {
+        synchronized (this) {
+            thermalStatus = status;
+        }
+        logIfChanged();
+    }
+
+    /** Reports the acoustic activity seen since the last call. */
+    public synchronized void reportActivity(boolean active, float preDetectorScore) {
+        this.active = active;
+        if (preDetectorScore >= alertScore) {
+            alertUntilMs = System.currentTimeMillis() + alertHoldMs;
+        }
+    }
+
+    /** An onset, pre-detector trigger or detection: run at the alert rate for a while. */
+    public synchronized void reportEvent() {
+        alertUntilMs = System.currentTimeMillis() + alertHoldMs;
+    }
+
+    public synchronized AcousticState getAcousticState() {
+        if (System.currentTimeMillis() < alertUntilMs) return AcousticState.ALERT;
+        return active ? AcousticState.ACTIVE : AcousticState.QUIET;
+    }
+
+    public synchronized PowerState getPowerState() {
+        PowerState battery = PowerState.NORMAL;
+        if (!charging && batteryPercent <= BATTERY_CRITICAL_PERCENT) {
+            battery = PowerState.BATTERY_CRITICAL;
+        } else if (!charging && batteryPercent <= BATTERY_LOW_PERCENT) {
+            battery = PowerState.BATTERY_LOW;
+        }
+
+        PowerState thermal = PowerState.NORMAL;
+        if (thermalStatus >= PowerManager.THERMAL_STATUS_SEVERE) {
+            thermal = PowerState.THERMAL_SEVERE;
+        } else if (thermalStatus >= PowerManager.THERMAL_STATUS_MODERATE) {
+            thermal = PowerState.THERMAL_MODERATE;
+        }
+        return multipliers.get(thermal) > multipliers.get(battery) ? thermal : battery;
+    }
+
+    /** The interval to wait before the next inference window. */
+    public long getIntervalMs() {
+        logIfChanged();
+        AcousticState acoustic = getAcousticState();
+        PowerState power = getPowerState();
+        synchronized (this) {
+            return Math.max(minIntervalMs, (long) (intervalsMs.get(acoustic) * multipliers.get(power)));
+        }
+    }
+
+    private void logIfChanged() {
+        AcousticState acoustic = getAcousticState();
+        PowerState power = getPowerState();
+        synchronized (this) {
+            if (acoustic == lastAcousticState && power == lastPowerState) return;
+            lastAcousticState = acoustic;
+            lastPowerState = power;
+        }
+        Log.i(TAG, "Cadence now " + this);
+    }
+
+    public synchronized void setIntervalMs(AcousticState state, long intervalMs) { intervalsMs.put(state, intervalMs); }
+    public synchronized long getIntervalMs(AcousticState state) { return intervalsMs.get(state); }
+    public synchronized void setMultiplier(PowerState state, float multiplier) { multipliers.put(state, multiplier); }
+    public synchronized float getMultiplier(PowerState state) { return multipliers.get(state); }
+    public void setAlertScore(float alertScore) { this.alertScore = alertScore; }
+    public void setAlertHoldMs(long alertHoldMs) { this.alertHoldMs = alertHoldMs; }
+    public void setMinIntervalMs(long minIntervalMs) { this.minIntervalMs = minIntervalMs; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s[%s, %s, battery %d%%%s, thermal %d]", TAG, lastAcousticState, lastPowerState,
+                batteryPercent, charging ? " charging" : "", thermalStatus);
+    }
+}
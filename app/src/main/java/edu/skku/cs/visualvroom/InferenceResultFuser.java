@@ -0,0 +1,76 @@
+package edu.skku.cs.visualvroom;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Turns the results AudioRecordingService broadcasts, in the server's JSON format, into
+ * detections for MainActivity.
+ *
+ * Classifier results are fused over windows, with the evidence decaying over about two hops.
+ * Alerts the service raises itself while only alerts are left ("alert_only") have already
+ * passed the tonal pre-detector's trigger and cooldown, and their score is not a classifier
+ * confidence, so they are declared at once, subject only to the fuser's refractory time.
+ */
+public class InferenceResultFuser {
+    private static final String TAG = "InferenceResultFuser";
+
+    private final DetectionFuser fuser = new DetectionFuser();
+
+    /** The broadcast form of a result; alertOnly marks an alert raised on the device. */
+    public static JSONObject toJson(AudioRecorder.InferenceResult result, boolean alertOnly) throws JSONException {
+        JSONObject inferenceResult = new JSONObject()
+                .put("vehicle_type", result.getVehicleType())
+                .put("direction", result.getDirection()) // Empty: the receiver fills in the local estimate
+                .put("confidence", result.getConfidence())
+                .put("should_notify", result.getShouldNotify())
+                .put("too_quiet", result.isTooQuiet());
+        return new JSONObject()
+                .put("status", "success")
+                .put("source", result.getBackend())
+                .put("alert_only", alertOnly)
+                .put("inference_result", inferenceResult);
+    }
+
+    /**
+     * Adds one broadcast result for audio captured at capturedAt. localDirection stands in
+     * when the result has no direction; hopMs is the service's current hop, or 0 if unknown.
+     * Returns the detection it completes, or null.
+     */
+    public DetectionFuser.Detection offer(JSONObject result, String localDirection, long capturedAt, long hopMs)
+            throws JSONException {
+        if (hopMs > 0) {
+            fuser.setTimeConstantMs(2 * hopMs);
+        }
+        JSONObject inferenceResult = result.getJSONObject("inference_result");
+        if (inferenceResult.optBoolean("too_quiet", false)) {
+            fuser.offerNothing(capturedAt);
+            return null;
+        }
+
+        String vehicleType = inferenceResult.getString("vehicle_type");
+        String direction = inferenceResult.optString("direction", "");
+        if (direction.isEmpty() && localDirection != null) {
+            direction = localDirection;
+        }
+        double confidence = inferenceResult.getDouble("confidence");
+        boolean shouldNotify = inferenceResult.optBoolean("should_notify", false);
+        boolean alertOnly = result.optBoolean("alert_only", false);
+
+        Log.d(TAG, String.format("Inference result (%s%s): %s from %s, confidence: %.4f, should notify: %s",
+                result.optString("source", "server"), alertOnly ? ", alert only" : "",
+                vehicleType, direction, confidence, shouldNotify));
+
+        if (alertOnly && shouldNotify) {
+            return fuser.offerDecided(vehicleType, direction, confidence, capturedAt);
+        }
+        // Only alert once the evidence from consecutive windows is strong enough
+        return fuser.offer(vehicleType, direction, confidence, capturedAt);
+    }
+
+    public void reset() {
+        fuser.reset();
+    }
+}
@@ -42,6 +42,19 @@ public class MainActivity extends AppCompatActivity {
     private BroadcastReceiver messageReceiver;
     private boolean isRecording = false;
 
+    // Latest on-device direction estimate from AudioRecordingService
+    private static final float MIN_DIRECTION_CONFIDENCE = 0.3f;
+    private static final long DIRECTION_MAX_AGE_MS = 2000;
+    private String localDirection = "";
+    private long localDirectionTime = 0;
+
+    // Alerts come from evidence accumulated over overlapping windows, not single results. The
+    // evidence decays over about two hops, so the fuser keeps up as the service's hop changes
+    private final InferenceResultFuser resultFuser = new InferenceResultFuser();
+
+    // Every fused detection is logged; each recording run counts as one drive
+    private DetectionHistoryStore detectionHistory;
+
     // Reference to fragments
     private SoundDetectionFragment soundDetectionFragment;
     private SpeechToTextFragment speechToTextFragment;
@@ -68,6 +81,10 @@ public class MainActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        detectionHistory = DetectionHistoryStore.getInstance(this);
+        // First use of the spool sweeps the .part files and legacy temp recordings that a crash
+        // or an older version left in the cache directory
+        RecordingSpool.inCache(this);
 
         // Initialize ViewPager and TabLayout
         viewPager = findViewById(R.id.viewPager);
@@ -100,13 +117,19 @@ public class MainActivity extends AppCompatActivity {
             public void onReceive(Context context, Intent intent) {
                 if ("AUDIO_INFERENCE_RESULT".equals(intent.getAction())) {
                     String result = intent.getStringExtra("result");
-                    handleInferenceResult(result);
+                    handleInferenceResult(result,
+                            intent.getLongExtra("captured_at", System.currentTimeMillis()),
+                            intent.getLongExtra("hop_ms", 0));
+                } else if ("AUDIO_DIRECTION_ESTIMATE".equals(intent.getAction())) {
+                    handleDirectionEstimate(intent.getStringExtra("direction"),
+                            intent.getFloatExtra("angle", 0f), intent.getFloatExtra("confidence", 0f));
                 }
             }
         };
 
-        registerReceiver(messageReceiver, new IntentFilter("AUDIO_INFERENCE_RESULT"),
-                Context.RECEIVER_NOT_EXPORTED);
+        IntentFilter filter = new IntentFilter("AUDIO_INFERENCE_RESULT");
+        filter.addAction("AUDIO_DIRECTION_ESTIMATE");
+        registerReceiver(messageReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
 
         // Check permissions before starting any services
         checkAndRequestPermissions();
@@ -252,52 +275,68 @@ public class MainActivity extends AppCompatActivity {
     }
 
     public void startRecording() {
+        startRecording(false);
+    }
+
+    /** In dataset mode, {@link #labelCurrentWindow} stores the window just heard for training. */
+    public void startRecording(boolean datasetMode) {
         if (checkAllPermissionsGranted()) {
             Intent recordIntent = new Intent(this, AudioRecordingService.class);
             recordIntent.setAction("START_RECORDING");
+            recordIntent.putExtra(AudioRecordingService.EXTRA_DATASET_MODE, datasetMode);
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
                 startForegroundService(recordIntent);
             } else {
                 startService(recordIntent);
             }
             isRecording = true;
+            detectionHistory.beginDrive();
         } else {
             checkAndRequestPermissions();
         }
     }
 
+    public void labelCurrentWindow(String label) {
+        if (!isRecording) return;
+        Intent labelIntent = new Intent(this, AudioRecordingService.class);
+        labelIntent.setAction("LABEL_WINDOW");
+        labelIntent.putExtra(AudioRecordingService.EXTRA_LABEL, label);
+        startService(labelIntent);
+        Toast.makeText(this, "Labelled as " + label, Toast.LENGTH_SHORT).show();
+    }
+
     public void stopRecording() {
         Intent recordIntent = new Intent(this, AudioRecordingService.class);
         recordIntent.setAction("STOP_RECORDING");
         startService(recordIntent);
         isRecording = false;
+        resultFuser.reset();
     }
 
-    private void handleInferenceResult(String result) {
+    private void handleInferenceResult(String result, long capturedAt, long hopMs) {
         try {
             JSONObject resultJson = new JSONObject(result);
-            JSONObject inferenceResult = resultJson.getJSONObject("inference_result");
-
-            // Extract the relevant fields
-            String vehicleType = inferenceResult.getString("vehicle_type");
-            String direction = inferenceResult.getString("direction");
-            double confidence = inferenceResult.getDouble("confidence");
-            boolean shouldNotify = inferenceResult.getBoolean("should_notify");
+            String source = resultJson.optString("source", "server");
+            // Fall back to the on-device estimate when the server gives no direction
+            String direction = System.currentTimeMillis() - localDirectionTime <= DIRECTION_MAX_AGE_MS
+                    ? localDirection : null;
+
+            DetectionFuser.Detection detection = resultFuser.offer(resultJson, direction, capturedAt, hopMs);
+            if (detection != null) {
+                Log.d(TAG, "Fused detection: " + detection);
+                detectionHistory.append(detection.timestampMs, detection.vehicleType, detection.direction,
+                        detection.confidence, System.currentTimeMillis() - capturedAt, source);
+                captureClip(detection, source);
 
-            Log.d(TAG, String.format("Inference result: %s from %s, confidence: %.4f, should notify: %s",
-                    vehicleType, direction, confidence, shouldNotify));
-
-            // Only proceed if confidence is high enough (should_notify will be true if confidence > 0.97)
-            if (shouldNotify) {
                 // Update the sound detection fragment UI
                 if (soundDetectionFragment != null) {
-                    soundDetectionFragment.updateDetection(vehicleType, direction);
+                    soundDetectionFragment.updateDetection(detection.vehicleType, detection.direction);
                 }
 
                 // Send alert to watch if service is bound
                 if (isServiceBound && wearService != null) {
-                    Log.d(TAG, "Sending alert to watch: " + vehicleType + " from " + direction);
-                    wearService.sendAlert(vehicleType, direction);
+                    Log.d(TAG, "Sending alert to watch: " + detection.vehicleType + " from " + detection.direction);
+                    wearService.sendAlert(detection.vehicleType, detection.direction);
                 } else {
                     Log.d(TAG, "Cannot send to watch - service not bound");
                 }
@@ -307,6 +346,41 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    // Keeps the black box audio around the detection the user was actually shown
+    private void captureClip(DetectionFuser.Detection detection, String source) {
+        if (!isRecording) return;
+        try {
+            JSONObject metadata = new JSONObject()
+                    .put("vehicle_type", detection.vehicleType)
+                    .put("direction", detection.direction)
+                    .put("confidence", detection.confidence)
+                    .put("evidence", detection.evidence)
+                    .put("source", source);
+            Intent clipIntent = new Intent(this, AudioRecordingService.class);
+            clipIntent.setAction("CAPTURE_CLIP");
+            clipIntent.putExtra(AudioRecordingService.EXTRA_EVENT_TIME, detection.timestampMs);
+            clipIntent.putExtra(AudioRecordingService.EXTRA_CLIP_METADATA, metadata.toString());
+            startService(clipIntent);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building clip metadata: " + e.getMessage());
+        }
+    }
+
+    private void handleDirectionEstimate(String direction, float angle, float confidence) {
+        if (direction == null || confidence < MIN_DIRECTION_CONFIDENCE) {
+            return;
+        }
+
+        Log.d(TAG, String.format("Local direction: %.0f deg (confidence %.2f)", angle, confidence));
+        localDirection = direction;
+        localDirectionTime = System.currentTimeMillis();
+
+        // Keep the panels current between server responses
+        if (soundDetectionFragment != null) {
+            soundDetectionFragment.updateDirection(direction);
+        }
+    }
+
     @Override
     protected void onDestroy() {
         if (isRecording) {
@@ -0,0 +1,173 @@
+package edu.skku.cs.visualvroom;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cheap first stage in front of the full model. Summarises each channel's MFCCs as
+ * per-coefficient mean, variance and mean absolute delta and scores them with a logistic
+ * model. Only windows scoring at or above the threshold go on to full inference.
+ *
+ * Weights file (UTF-8 text, '#' starts a comment):
+ * <pre>
+ * bias -1.25
+ * threshold 0.2
+ * means   &lt;78 values&gt;
+ * scales  &lt;78 values&gt;
+ * weights &lt;78 values&gt;
+ * </pre>
+ * Features are ordered left then right channel, each as 13 means, 13 variances, 13 deltas.
+ */
+public class MfccCascadeGate {
+    private static final String TAG = "MfccCascadeGate";
+
+    private static final int N_MFCC = 13;
+    private static final int STATS_PER_COEFFICIENT = 3;
+    private static final int CHANNELS = 2;
+    static final int FEATURE_COUNT = N_MFCC * STATS_PER_COEFFICIENT * CHANNELS;
+
+    private final AudioProcessor processor;
+    private final float[] means;
+    private final float[] scales;
+    private final float[] weights;
+    private final float bias;
+    private volatile float threshold;
+
+    private final AtomicLong escalatedWindows = new AtomicLong();
+    private final AtomicLong skippedWindows = new AtomicLong();
+
+    MfccCascadeGate(AudioProcessor processor, float[] means, float[] scales, float[] weights,
+                    float bias, float threshold) {
+        this.processor = processor;
+        this.means = means;
+        this.scales = scales;
+        this.weights = weights;
+        this.bias = bias;
+        this.threshold = threshold;
+    }
+
+    public static MfccCascadeGate load(File weightsFile, AudioProcessor processor) throws IOException {
+        float bias = 0;
+        float threshold = 0.5f;
+        float[] means = null;
+        float[] scales = null;
+        float[] weights = null;
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(weightsFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                if (comment >= 0) line = line.substring(0, comment);
+                line = line.trim();
+                if (line.isEmpty()) continue;
+
+                String[] fields = line.split("\\s+");
+                switch (fields[0]) {
+                    case "bias":
+                        bias = Float.parseFloat(fields[1]);
+                        break;
+                    case "threshold":
+                        threshold = Float.parseFloat(fields[1]);
+                        break;
+                    case "means":
+                        means = parseVector(fields);
+                        break;
+                    case "scales":
+                        scales = parseVector(fields);
+                        break;
+                    case "weights":
+                        weights = parseVector(fields);
+                        break;
+                    default:
+                        throw new IOException("Unknown key in cascade weights: " + fields[0]);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed cascade weights: " + e.getMessage(), e);
+        }
+
+        if (means == null || scales == null || weights == null) {
+            throw new IOException("Cascade weights need means, scales and weights");
+        }
+
+        Log.i(TAG, String.format("Loaded cascade weights from %s (threshold %.2f)", weightsFile.getName(), threshold));
+        return new MfccCascadeGate(processor, means, scales, weights, bias, threshold);
+    }
+
+    private static float[] parseVector(String[] fields) throws IOException {
+        if (fields.length - 1 != FEATURE_COUNT) {
+            throw new IOException(String.format("%s needs %d values, got %d",
+                    fields[0], FEATURE_COUNT, fields.length - 1));
+        }
+        float[] vector = new float[FEATURE_COUNT];
+        for (int i = 0; i < FEATURE_COUNT; i++) {
+            vector[i] = Float.parseFloat(fields[i + 1]);
+        }
+        return vector;
+    }
+
+    /** Returns the "possible vehicle signal" probability for a stereo window. */
+    public float score(short[] leftChannel, short[] rightChannel) {
+        float[] features = extractFeatures(leftChannel, rightChannel);
+        float z = bias;
+        for (int i = 0; i < FEATURE_COUNT; i++) {
+            z += weights[i] * (features[i] - means[i]) / scales[i];
+        }
+        return (float) (1.0 / (1.0 + Math.exp(-z)));
+    }
+
+    /** Scores the window and records whether it was passed on to full inference. */
+    public boolean shouldEscalate(short[] leftChannel, short[] rightChannel) {
+        float score = score(leftChannel, rightChannel);
+        boolean escalate = score >= threshold;
+        if (escalate) {
+            escalatedWindows.incrementAndGet();
+        } else {
+            skippedWindows.incrementAndGet();
+        }
+        Log.d(TAG, String.format("Cascade score %.3f (threshold %.2f) -> %s",
+                score, threshold, escalate ? "escalate" : "skip"));
+        return escalate;
+    }
+
+    float[] extractFeatures(short[] leftChannel, short[] rightChannel) {
+        float[] features = new float[FEATURE_COUNT];
+        summarize(processor.computeMfcc(leftChannel), features, 0);
+        summarize(processor.computeMfcc(rightChannel), features, FEATURE_COUNT / CHANNELS);
+        return features;
+    }
+
+    static void summarize(float[][] mfcc, float[] features, int offset) {
+        int frames = mfcc.length;
+        for (int c = 0; c < N_MFCC; c++) {
+            double sum = 0;
+            double sumSquares = 0;
+            double deltaSum = 0;
+            for (int t = 0; t < frames; t++) {
+                float value = mfcc[t][c];
+                sum += value;
+                sumSquares += value * value;
+                if (t > 0) {
+                    deltaSum += Math.abs(value - mfcc[t - 1][c]);
+                }
+            }
+            double mean = sum / frames;
+            features[offset + c] = (float) mean;
+            features[offset + N_MFCC + c] = (float) Math.max(0, sumSquares / frames - mean * mean);
+            features[offset + 2 * N_MFCC + c] = frames > 1 ? (float) (deltaSum / (frames - 1)) : 0f;
+        }
+    }
+
+    public float getThreshold() { return threshold; }
+    public void setThreshold(float threshold) { this.threshold = threshold; }
+    public long getEscalatedWindows() { return escalatedWindows.get(); }
+    public long getSkippedWindows() { return skippedWindows.get(); }
+}
@@ -0,0 +1,182 @@
+package edu.skku.cs.visualvroom;
+
+import org.jtransforms.fft.FloatFFT_1D;
+
+import java.util.Arrays;
+
+/**
+ * Streaming onset detector based on log-compressed spectral flux.
+ *
+ * Capture blocks are mixed to mono and analysed in 512-sample Hann frames every 256 samples.
+ * The flux of a frame is the summed rise of each bin's log magnitude above a short running
+ * average of that bin, counting only rises larger than normal noise flicker. A frame is
+ * an onset when its flux is a local peak and exceeds an adaptive threshold: the mean plus a
+ * multiple of the standard deviation of the log flux over the last half second, never below an
+ * absolute minimum. The flux of steady noise is skewed to the right, so statistics on the raw
+ * flux let it cross mean + 3 sigma several times more often than a normal tail would; in the
+ * log domain its tail is close to normal. Onsets are reported with their position as an
+ * absolute sample index.
+ */
+public class OnsetDetector {
+    private static final String TAG = "OnsetDetector";
+
+    public interface Listener {
+        /** Called on the capture thread with the onset position in samples per channel. */
+        void onOnset(long sampleIndex, float strength);
+    }
+
+    static final int FRAME_SIZE = 512;
+    static final int HOP_SIZE = 256;
+    private static final int HISTORY_FRAMES = 32;      // ~0.5 s at 16 kHz
+    private static final float COMPRESSION = 100f;     // log(1 + C * |X|)
+    private static final float REFERENCE_SMOOTHING = 0.3f;
+    private static final float MIN_BIN_RISE = 0.7f;    // log units; ignores noise flicker
+
+    private final Listener listener;
+    private final int sampleRate;
+    private final FloatFFT_1D fft;
+    private final float[] window = new float[FRAME_SIZE];
+    private final float[] frame = new float[FRAME_SIZE];
+    private final float[] fftBuffer = new float[FRAME_SIZE];
+    private final float[] referenceMagnitudes = new float[FRAME_SIZE / 2];
+    // log(1 + flux) of recent frames
+    private final float[] fluxHistory = new float[HISTORY_FRAMES];
+    private int historyIndex = 0;
+    private int historyCount = 0;
+
+    private int framePosition = 0;
+    private int samplesSinceFrame = 0;
+    private long samplesSeen = 0;
+    private boolean havePrevious = false;
+
+    // The previous two frames' flux, for peak picking
+    private float lastFlux = 0f;
+    private float lastThreshold = Float.MAX_VALUE;
+    private float secondLastFlux = 0f;
+    private long lastFrameCentre = 0;
+    private long lastOnsetSample = Long.MIN_VALUE / 2;
+
+    private volatile float thresholdDeviations = 3f;
+    private volatile float minFlux = 15f;
+    private volatile long minIntervalMs = 250;
+
+    private long onsetCount = 0;
+
+    public OnsetDetector(int sampleRate, Listener listener) {
+        this.sampleRate = sampleRate;
+        this.listener = listener;
+        this.fft = new FloatFFT_1D(FRAME_SIZE);
+        for (int i = 0; i < FRAME_SIZE; i++) {
+            window[i] = (float) (0.5 * (1 - Math.cos(2 * Math.PI * i / (FRAME_SIZE - 1))));
+        }
+    }
+
+    /** Feeds one capture block of interleaved PCM. */
+    public synchronized void processBlock(short[] interleaved, int length, int channels) {
+        for (int i = 0; i + channels <= length; i += channels) {
+            int sum = 0;
+            for (int c = 0; c < channels; c++) {
+                sum += interleaved[i + c];
+            }
+            frame[framePosition] = sum / (channels * 32768f);
+            framePosition = (framePosition + 1) % FRAME_SIZE;
+            samplesSeen++;
+
+            if (samplesSeen >= FRAME_SIZE && ++samplesSinceFrame >= HOP_SIZE) {
+                samplesSinceFrame = 0;
+                analyzeFrame();
+            }
+        }
+    }
+
+    private void analyzeFrame() {
+        // frame is a ring; framePosition is its oldest sample
+        for (int i = 0; i < FRAME_SIZE; i++) {
+            fftBuffer[i] = frame[(framePosition + i) % FRAME_SIZE] * window[i];
+        }
+        fft.realForward(fftBuffer);
+
+        float flux = 0f;
+        for (int k = 1; k < FRAME_SIZE / 2; k++) {
+            float re = fftBuffer[2 * k];
+            float im = fftBuffer[2 * k + 1];
+            float magnitude = (float) Math.log1p(COMPRESSION * Math.sqrt(re * re + im * im));
+            if (!havePrevious) {
+                referenceMagnitudes[k] = magnitude;
+                continue;
+            }
+            float rise = magnitude - referenceMagnitudes[k] - MIN_BIN_RISE;
+            if (rise > 0) {
+                flux += rise;
+            }
+            referenceMagnitudes[k] += REFERENCE_SMOOTHING * (magnitude - referenceMagnitudes[k]);
+        }
+        havePrevious = true;
+
+        // Peak picking one frame late: the previous frame is an onset if it beat its neighbours
+        // and the threshold computed before it
+        long frameCentre = samplesSeen - FRAME_SIZE / 2;
+        if (lastFlux > secondLastFlux && lastFlux >= flux && lastFlux > lastThreshold
+                && lastFrameCentre - lastOnsetSample >= minIntervalMs * sampleRate / 1000) {
+            lastOnsetSample = lastFrameCentre;
+            onsetCount++;
+            listener.onOnset(lastFrameCentre, lastFlux / Math.max(lastThreshold, 1e-6f));
+        }
+
+        secondLastFlux = lastFlux;
+        lastFlux = flux;
+        lastFrameCentre = frameCentre;
+        lastThreshold = threshold();
+        addToHistory(flux);
+    }
+
+    private float threshold() {
+        if (historyCount < HISTORY_FRAMES / 2) {
+            return Float.MAX_VALUE; // Not enough context yet
+        }
+        double sum = 0;
+        double sumSquares = 0;
+        for (int i = 0; i < historyCount; i++) {
+            sum += fluxHistory[i];
+            sumSquares += fluxHistory[i] * fluxHistory[i];
+        }
+        double mean = sum / historyCount;
+        double deviation = Math.sqrt(Math.max(0, sumSquares / historyCount - mean * mean));
+        return (float) Math.max(minFlux, Math.expm1(mean + thresholdDeviations * deviation));
+    }
+
+    private void addToHistory(float flux) {
+        fluxHistory[historyIndex] = (float) Math.log1p(flux);
+        historyIndex = (historyIndex + 1) % HISTORY_FRAMES;
+        historyCount = Math.min(historyCount + 1, HISTORY_FRAMES);
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(frame, 0);
+        Arrays.fill(referenceMagnitudes, 0);
+        Arrays.fill(fluxHistory, 0);
+        historyIndex = 0;
+        historyCount = 0;
+        framePosition = 0;
+        samplesSinceFrame = 0;
+        samplesSeen = 0;
+        havePrevious = false;
+        lastFlux = 0f;
+        secondLastFlux = 0f;
+        lastThreshold = Float.MAX_VALUE;
+        lastFrameCentre = 0;
+        lastOnsetSample = Long.MIN_VALUE / 2;
+    }
+
+    public synchronized long getSamplesSeen() { return samplesSeen; }
+    public synchronized long getOnsetCount() { return onsetCount; }
+
+    public void setThresholdDeviations(float thresholdDeviations) { this.thresholdDeviations = thresholdDeviations; }
+    public void setMinFlux(float minFlux) { this.minFlux = minFlux; }
+    public void setMinIntervalMs(long minIntervalMs) { this.minIntervalMs = minIntervalMs; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s[%d onsets in %.1f s]", TAG, onsetCount, samplesSeen / (double) sampleRate);
+    }
+}
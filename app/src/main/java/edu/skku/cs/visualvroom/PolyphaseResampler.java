@@ -0,0 +1,181 @@
+package edu.skku.cs.visualvroom;
+
+import java.util.Arrays;
+
+/**
+ * Streaming rational resampler for interleaved 16-bit PCM, used to bring audio captured at
+ * the device's native rate (48 or 44.1 kHz) down to the 16 kHz the features are built at.
+ *
+ * The rate change is L/M in lowest terms (1/3 for 48 kHz, 160/441 for 44.1 kHz). A single
+ * Kaiser-windowed sinc low-pass, designed at L times the input rate, is split into L phases
+ * of K taps each when the resampler is built, so every output sample costs K multiply-adds
+ * on the input. The pass band runs to 7 kHz and the stop band starts at the output Nyquist
+ * frequency (8 kHz) with about 80 dB of attenuation.
+ *
+ * Blocks may have any length. The last K-1 input samples of each channel carry over to the
+ * next block, so the output does not depend on how the input was cut. Working buffers only
+ * grow when a block is larger than any before it; nothing is allocated per block otherwise.
+ */
+public class PolyphaseResampler {
+    private static final double PASSBAND_HZ = 7000;
+    private static final double STOPBAND_ATTENUATION_DB = 80;
+
+    private final int inputRate;
+    private final int outputRate;
+    private final int channels;
+    private final int upFactor;
+    private final int downFactor;
+    private final int taps;
+
+    // phases[p][j] multiplies input sample (base - taps + 1 + j) for output phase p
+    private final float[][] phases;
+
+    private float[][] history;
+    private int buffered;
+    // Position of the next output sample, in input samples times upFactor from history[0]
+    private long position;
+
+    public PolyphaseResampler(int inputRate, int outputRate, int channels) {
+        if (outputRate > inputRate) {
+            throw new IllegalArgumentException("Only decimation is supported: " + inputRate + " -> " + outputRate);
+        }
+        int gcd = gcd(inputRate, outputRate);
+        this.inputRate = inputRate;
+        this.outputRate = outputRate;
+        this.channels = channels;
+        this.upFactor = outputRate / gcd;
+        this.downFactor = inputRate / gcd;
+
+        // Kaiser design at the upsampled rate: cut-off halfway through the transition band
+        double upsampledRate = (double) inputRate * upFactor;
+        double stopbandHz = outputRate / 2.0;
+        double cutoff = (PASSBAND_HZ + stopbandHz) / 2 / upsampledRate;
+        double transition = 2 * Math.PI * (stopbandHz - PASSBAND_HZ) / upsampledRate;
+        int length = (int) Math.ceil((STOPBAND_ATTENUATION_DB - 7.95) / (2.285 * transition)) + 1;
+        this.taps = (length + upFactor - 1) / upFactor;
+        double[] prototype = kaiserSinc(taps * upFactor, cutoff, 0.1102 * (STOPBAND_ATTENUATION_DB - 8.7));
+
+        phases = new float[upFactor][taps];
+        for (int p = 0; p < upFactor; p++) {
+            for (int k = 0; k < taps; k++) {
+                // Gain of upFactor makes up for the zeros the upsampler would insert
+                phases[p][taps - 1 - k] = (float) (prototype[p + k * upFactor] * upFactor);
+            }
+        }
+
+        history = new float[channels][taps - 1 + 4096];
+        reset();
+    }
+
+    private static double[] kaiserSinc(int length, double cutoff, double beta) {
+        double[] h = new double[length];
+        double centre = (length - 1) / 2.0;
+        double norm = besselI0(beta);
+        for (int i = 0; i < length; i++) {
+            double t = i - centre;
+            double sinc = t == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * t) / (Math.PI * t);
+            double ratio = t / centre;
+            h[i] = sinc * besselI0(beta * Math.sqrt(Math.max(0, 1 - ratio * ratio))) / norm;
+        }
+        return h;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        for (int k = 1; k < 50; k++) {
+            term *= (x / (2 * k)) * (x / (2 * k));
+            sum += term;
+            if (term < sum * 1e-12) break;
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    /** Upper bound on the output length (in shorts) for an input of inputLength shorts. */
+    public int maxOutputLength(int inputLength) {
+        long frames = (long) (inputLength / channels) * upFactor / downFactor + 1;
+        return (int) frames * channels;
+    }
+
+    /**
+     * Resamples inputLength interleaved shorts (whole frames) into output and returns the
+     * number of shorts written. output must hold {@link #maxOutputLength(int)} shorts.
+     */
+    public int process(short[] input, int inputLength, short[] output) {
+        int frames = inputLength / channels;
+        ensureCapacity(buffered + frames);
+        for (int c = 0; c < channels; c++) {
+            float[] channel = history[c];
+            for (int i = 0; i < frames; i++) {
+                channel[buffered + i] = input[i * channels + c];
+            }
+        }
+        buffered += frames;
+
+        int written = 0;
+        long limit = (long) buffered * upFactor;
+        while (position < limit) {
+            int base = (int) (position / upFactor);
+            float[] phase = phases[(int) (position % upFactor)];
+            int start = base - taps + 1;
+            for (int c = 0; c < channels; c++) {
+                float[] channel = history[c];
+                float sum = 0;
+                for (int j = 0; j < taps; j++) {
+                    sum += phase[j] * channel[start + j];
+                }
+                output[written++] = (short) Math.max(-32768, Math.min(32767, Math.round(sum)));
+            }
+            position += downFactor;
+        }
+
+        // Keep the taps - 1 samples the next output still needs
+        int consumed = (int) (position / upFactor) - (taps - 1);
+        consumed = Math.min(consumed, buffered);
+        if (consumed > 0) {
+            for (int c = 0; c < channels; c++) {
+                System.arraycopy(history[c], consumed, history[c], 0, buffered - consumed);
+            }
+            buffered -= consumed;
+            position -= (long) consumed * upFactor;
+        }
+        return written;
+    }
+
+    private void ensureCapacity(int frames) {
+        if (frames <= history[0].length) return;
+        for (int c = 0; c < channels; c++) {
+            float[] grown = new float[Math.max(frames, history[c].length * 2)];
+            System.arraycopy(history[c], 0, grown, 0, buffered);
+            history[c] = grown;
+        }
+    }
+
+    /** Forgets all buffered input; the next block starts from silence. */
+    public void reset() {
+        for (float[] channel : history) {
+            Arrays.fill(channel, 0);
+        }
+        buffered = taps - 1;
+        position = (long) (taps - 1) * upFactor;
+    }
+
+    public int getInputRate() { return inputRate; }
+    public int getOutputRate() { return outputRate; }
+    public int getTaps() { return taps; }
+
+    /** Delay through the filter in output samples. */
+    public double getDelaySamples() {
+        return (taps * upFactor - 1) / 2.0 / downFactor;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PolyphaseResampler[%d -> %d Hz, %d/%d, %d phases x %d taps]",
+                inputRate, outputRate, upFactor, downFactor, upFactor, taps);
+    }
+}
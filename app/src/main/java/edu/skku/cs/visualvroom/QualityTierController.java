@@ -0,0 +1,155 @@
+package edu.skku.cs.visualvroom;
+
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Steps the pipeline down a ladder of quality tiers when it cannot keep up, and back up once
+ * it can.
+ *
+ * Three measurements drive it: processing lag (how far block processing has fallen behind
+ * real time), the 90th percentile of recent request latencies, and the number of requests in
+ * flight. If any of them is above its degrade limit the controller drops one tier; only when
+ * all of them are below their (lower) recover limits for the recovery time does it climb one
+ * tier. A minimum dwell time between switches keeps it from flapping.
+ */
+public class QualityTierController {
+    private static final String TAG = "QualityTier";
+
+    public enum Tier {
+        /** Full stereo PCM every hop. */
+        FULL_PCM,
+        /** Full PCM with twice the hop. */
+        LONG_HOP,
+        /** Compressed feature images instead of PCM, long hop. */
+        COMPRESSED_FEATURES,
+        /** Only windows picked by the on-device detectors reach the server. */
+        LOCAL_GATING_ONLY,
+        /** Nothing is uploaded; only on-device pre-detector alerts are raised. */
+        ALERT_ONLY
+    }
+
+    private static final int LATENCY_HISTORY = 32;
+    private static final double LATENCY_PERCENTILE = 0.9;
+
+    private volatile long degradeLagMs = 500;
+    private volatile long recoverLagMs = 100;
+    private volatile long degradeLatencyMs = 2000;
+    private volatile long recoverLatencyMs = 800;
+    private volatile int degradeQueueDepth = 3;
+    private volatile int recoverQueueDepth = 1;
+    private volatile long minDwellMs = 5000;
+    private volatile long recoveryMs = 15000;
+    private volatile long evaluateIntervalMs = 1000;
+
+    private Tier tier = Tier.FULL_PCM;
+    private long lastSwitchMs = 0;
+    private long healthySinceMs = -1;
+    private long lastEvaluateMs = 0;
+
+    private double lagMs = 0;
+    private int queueDepth = 0;
+    private final long[] latencies = new long[LATENCY_HISTORY];
+    private int latencyIndex = 0;
+    private int latencyCount = 0;
+    private long switchCount = 0;
+
+    /**
+     * Records how long one capture block took to process against how much audio it held.
+     * Time beyond the block's duration accumulates as lag; spare time pays it back.
+     */
+    public void reportBlock(long processingNanos, long audioNanos) {
+        reportBlock(processingNanos, audioNanos, System.currentTimeMillis());
+    }
+
+    synchronized void reportBlock(long processingNanos, long audioNanos, long nowMs) {
+        lagMs = Math.max(0, lagMs + (processingNanos - audioNanos) / 1e6);
+        evaluate(nowMs);
+    }
+
+    /** Round-trip time of a finished request; failed requests report their time to failure. */
+    public synchronized void reportLatency(long latencyMs) {
+        latencies[latencyIndex] = latencyMs;
+        latencyIndex = (latencyIndex + 1) % LATENCY_HISTORY;
+        latencyCount = Math.min(latencyCount + 1, LATENCY_HISTORY);
+    }
+
+    public synchronized void reportQueueDepth(int depth) {
+        queueDepth = depth;
+    }
+
+    private void evaluate(long now) {
+        if (now - lastEvaluateMs < evaluateIntervalMs) return;
+        lastEvaluateMs = now;
+
+        long latency = latencyPercentile();
+        boolean overloaded = lagMs > degradeLagMs || latency > degradeLatencyMs || queueDepth > degradeQueueDepth;
+        boolean healthy = lagMs <= recoverLagMs && latency <= recoverLatencyMs && queueDepth <= recoverQueueDepth;
+        String reason = String.format("lag %.0f ms, p90 latency %d ms, queue %d", lagMs, latency, queueDepth);
+
+        if (!healthy) {
+            healthySinceMs = -1;
+        } else if (healthySinceMs < 0) {
+            healthySinceMs = now;
+        }
+
+        if (now - lastSwitchMs < minDwellMs) return;
+
+        if (overloaded && tier.ordinal() < Tier.values().length - 1) {
+            switchTo(Tier.values()[tier.ordinal() + 1], now, reason);
+        } else if (healthy && tier.ordinal() > 0 && now - healthySinceMs >= recoveryMs) {
+            switchTo(Tier.values()[tier.ordinal() - 1], now, reason);
+            healthySinceMs = now;
+        }
+    }
+
+    private void switchTo(Tier next, long now, String reason) {
+        Log.i(TAG, String.format("Tier %s -> %s (%s)", tier, next, reason));
+        tier = next;
+        lastSwitchMs = now;
+        switchCount++;
+        if (next.ordinal() >= Tier.LOCAL_GATING_ONLY.ordinal()) {
+            // Fewer uploads from here on; old latencies no longer describe the link
+            latencyCount = 0;
+        }
+    }
+
+    private long latencyPercentile() {
+        if (latencyCount == 0) return 0;
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(latencyCount - 1, Math.floor(LATENCY_PERCENTILE * latencyCount))];
+    }
+
+    public synchronized Tier getTier() { return tier; }
+    public synchronized long getSwitchCount() { return switchCount; }
+
+    /** Multiplier for the hop between windows in this tier. */
+    public synchronized int getHopMultiplier() {
+        return tier == Tier.FULL_PCM ? 1 : 2;
+    }
+
+    public synchronized void reset() {
+        tier = Tier.FULL_PCM;
+        lastSwitchMs = 0;
+        healthySinceMs = -1;
+        lastEvaluateMs = 0;
+        lagMs = 0;
+        queueDepth = 0;
+        latencyIndex = 0;
+        latencyCount = 0;
+    }
+
+    public void setLagLimitsMs(long degrade, long recover) { degradeLagMs = degrade; recoverLagMs = recover; }
+    public void setLatencyLimitsMs(long degrade, long recover) { degradeLatencyMs = degrade; recoverLatencyMs = recover; }
+    public void setQueueDepthLimits(int degrade, int recover) { degradeQueueDepth = degrade; recoverQueueDepth = recover; }
+    public void setMinDwellMs(long minDwellMs) { this.minDwellMs = minDwellMs; }
+    public void setRecoveryMs(long recoveryMs) { this.recoveryMs = recoveryMs; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s[%s, lag %.0f ms, p90 latency %d ms, queue %d, %d switches]",
+                TAG, tier, lagMs, latencyPercentile(), queueDepth, switchCount);
+    }
+}
@@ -0,0 +1,279 @@
+package edu.skku.cs.visualvroom;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Owns every recording file the app keeps on flash, inside one directory with a byte and
+ * file-count budget. Files are written as name.part and become visible under their name on
+ * {@link #commit(File)}; the least recently used committed files are evicted once the budget
+ * is exceeded. Files being written or read are pinned and never evicted.
+ *
+ * Files that are no longer needed can be recycled into a small pool; {@link #create} and
+ * {@link #preallocate} reuse them before making new ones. {@link #reclaimOrphans(File)} runs
+ * at start-up and removes what a crash or a failed upload left behind: unfinished .part files
+ * and the temp recordings older versions leaked into the cache directory.
+ */
+public class RecordingSpool {
+    private static final String TAG = "RecordingSpool";
+    private static final String PART_SUFFIX = ".part";
+    private static final String FREE_DIRECTORY = "free";
+    private static final int MAX_FREE_FILES = 4;
+
+    // Temp recordings written straight into the cache directory by earlier versions
+    private static final String LEGACY_PREFIX = "audio_recording";
+
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final int DEFAULT_MAX_FILES = 200;
+    private static RecordingSpool cacheSpool;
+
+    private final File directory;
+    private final File freeDirectory;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final Set<String> pinned = new HashSet<>();
+
+    private long evicted = 0;
+    private long reused = 0;
+    private long reclaimed = 0;
+
+    public RecordingSpool(File directory, long maxBytes, int maxFiles) {
+        this.directory = directory;
+        this.freeDirectory = new File(directory, FREE_DIRECTORY);
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        if (!freeDirectory.isDirectory() && !freeDirectory.mkdirs()) {
+            Log.e(TAG, "Cannot create spool directory " + freeDirectory);
+        }
+    }
+
+    /**
+     * The process-wide spool under the cache directory, shared so that no second instance can
+     * evict files the first has pinned. Orphans from earlier runs are reclaimed on first use.
+     */
+    public static synchronized RecordingSpool inCache(Context context) {
+        if (cacheSpool == null) {
+            File cacheDir = context.getApplicationContext().getCacheDir();
+            cacheSpool = new RecordingSpool(new File(cacheDir, "recordings"), DEFAULT_MAX_BYTES, DEFAULT_MAX_FILES);
+            cacheSpool.reclaimOrphans(cacheDir);
+        }
+        return cacheSpool;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /** An empty, pinned file to write name into; commit it when complete. */
+    public synchronized File create(String name) throws IOException {
+        File part = takeFreeFile(name);
+        try (RandomAccessFile file = new RandomAccessFile(part, "rw")) {
+            file.setLength(0);
+        }
+        return part;
+    }
+
+    /**
+     * A pinned file of exactly bytes bytes to write name into, reusing a recycled file's
+     * space when one is available. Budget is made for it first.
+     */
+    public synchronized File preallocate(String name, long bytes) throws IOException {
+        evictFor(bytes, 1);
+        File part = takeFreeFile(name);
+        try (RandomAccessFile file = new RandomAccessFile(part, "rw")) {
+            file.setLength(bytes);
+        }
+        return part;
+    }
+
+    private File takeFreeFile(String name) throws IOException {
+        File part = new File(directory, name + PART_SUFFIX);
+        File[] free = freeDirectory.listFiles();
+        if (free != null && free.length > 0 && free[0].renameTo(part)) {
+            reused++;
+        } else if (!part.exists() && !part.createNewFile()) {
+            throw new IOException("Cannot create " + part);
+        }
+        pinned.add(part.getName());
+        return part;
+    }
+
+    /** Makes a finished .part file visible under its name and unpins it. */
+    public synchronized File commit(File part) throws IOException {
+        String name = part.getName();
+        if (!name.endsWith(PART_SUFFIX)) {
+            throw new IllegalArgumentException("Not a spool part file: " + part);
+        }
+        File committed = new File(directory, name.substring(0, name.length() - PART_SUFFIX.length()));
+        if (committed.exists() && !committed.delete() || !part.renameTo(committed)) {
+            throw new IOException("Cannot commit " + part);
+        }
+        pinned.remove(name);
+        committed.setLastModified(System.currentTimeMillis());
+        enforceBudget();
+        return committed;
+    }
+
+    /** Pins a committed file while it is read or uploaded. */
+    public synchronized void open(File file) {
+        pinned.add(file.getName());
+        file.setLastModified(System.currentTimeMillis());
+    }
+
+    /** Unpins a file and marks it as just used. */
+    public synchronized void close(File file) {
+        pinned.remove(file.getName());
+        file.setLastModified(System.currentTimeMillis());
+        enforceBudget();
+    }
+
+    /** Gives a file's space back to the pool for the next create or preallocate. */
+    public synchronized void recycle(File file) {
+        pinned.remove(file.getName());
+        File[] free = freeDirectory.listFiles();
+        if (free != null && free.length < MAX_FREE_FILES
+                && file.renameTo(new File(freeDirectory, "free-" + System.nanoTime()))) {
+            return;
+        }
+        deleteFile(file);
+    }
+
+    public synchronized void delete(File file) {
+        pinned.remove(file.getName());
+        deleteFile(file);
+    }
+
+    /**
+     * Deletes unfinished .part files nobody holds, trims the free pool, removes recordings
+     * leaked into legacyDirectory by earlier versions, then enforces the budget. Returns the
+     * number of files removed.
+     */
+    public synchronized int reclaimOrphans(File legacyDirectory) {
+        int removed = 0;
+        for (File file : listFiles(directory)) {
+            if (file.getName().endsWith(PART_SUFFIX) && !pinned.contains(file.getName()) && deleteFile(file)) {
+                removed++;
+            }
+        }
+        File[] free = freeDirectory.listFiles();
+        for (int i = MAX_FREE_FILES; free != null && i < free.length; i++) {
+            if (deleteFile(free[i])) removed++;
+        }
+        File[] legacy = legacyDirectory != null ? legacyDirectory.listFiles() : null;
+        if (legacy != null) {
+            for (File file : legacy) {
+                if (file.isFile() && file.getName().startsWith(LEGACY_PREFIX) && deleteFile(file)) {
+                    removed++;
+                }
+            }
+        }
+        reclaimed += removed;
+        enforceBudget();
+        if (removed > 0) {
+            Log.i(TAG, "Reclaimed " + removed + " orphaned recordings: " + this);
+        }
+        return removed;
+    }
+
+    /** Evicts recycled files, then the least recently used committed files, until within budget. */
+    public synchronized void enforceBudget() {
+        evictFor(0, 0);
+    }
+
+    private void evictFor(long extraBytes, int extraFiles) {
+        List<File> candidates = new ArrayList<>();
+        File[] free = freeDirectory.listFiles();
+        long bytes = extraBytes;
+        int files = extraFiles;
+        for (File file : listFiles(directory)) {
+            bytes += file.length();
+            if (!file.getName().endsWith(PART_SUFFIX)) files++;
+            if (!pinned.contains(file.getName())) candidates.add(file);
+        }
+        if (free != null) {
+            for (File file : free) {
+                bytes += file.length();
+            }
+        }
+
+        // Recycled space goes first, then committed files oldest first
+        List<File> order = new ArrayList<>();
+        if (free != null) order.addAll(Arrays.asList(free));
+        candidates.sort(Comparator.comparingLong(File::lastModified));
+        order.addAll(candidates);
+        for (File file : order) {
+            if (bytes <= maxBytes && files <= maxFiles) break;
+            boolean recycled = file.getParentFile().equals(freeDirectory);
+            long length = file.length();
+            if (file.getName().endsWith(PART_SUFFIX)) continue;
+            if (deleteFile(file)) {
+                bytes -= length;
+                if (!recycled) {
+                    files--;
+                    evicted++;
+                }
+            }
+        }
+        if (bytes > maxBytes || files > maxFiles) {
+            Log.w(TAG, "Spool over budget with only pinned files left: " + this);
+        }
+    }
+
+    private static List<File> listFiles(File dir) {
+        List<File> files = new ArrayList<>();
+        File[] listed = dir.listFiles();
+        if (listed != null) {
+            for (File file : listed) {
+                if (file.isFile()) files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private static boolean deleteFile(File file) {
+        if (file.delete() || !file.exists()) return true;
+        Log.w(TAG, "Cannot delete " + file);
+        return false;
+    }
+
+    /** Committed files, newest first. */
+    public synchronized List<File> getFiles() {
+        List<File> files = new ArrayList<>();
+        for (File file : listFiles(directory)) {
+            if (!file.getName().endsWith(PART_SUFFIX)) files.add(file);
+        }
+        files.sort(Comparator.comparingLong(File::lastModified).reversed());
+        return files;
+    }
+
+    public synchronized long getUsedBytes() {
+        long bytes = 0;
+        for (File file : listFiles(directory)) {
+            bytes += file.length();
+        }
+        for (File file : listFiles(freeDirectory)) {
+            bytes += file.length();
+        }
+        return bytes;
+    }
+
+    public synchronized long getEvicted() { return evicted; }
+    public synchronized long getReused() { return reused; }
+    public synchronized long getReclaimed() { return reclaimed; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("RecordingSpool[%d files, %d KB of %d KB, %d evicted, %d reused, %d reclaimed]",
+                getFiles().size(), getUsedBytes() / 1024, maxBytes / 1024, evicted, reused, reclaimed);
+    }
+}
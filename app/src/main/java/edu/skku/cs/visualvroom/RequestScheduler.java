@@ -0,0 +1,235 @@
+package edu.skku.cs.visualvroom;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+/**
+ * Keeps bulk traffic out of the way of alert inference on the shared link.
+ *
+ * Alert calls are sent as before; the ALERT client's interceptor only counts them while they
+ * are in flight. Transcription and bulk (telemetry, dataset) calls go through
+ * {@link #enqueue}, which starts at most {@link Priority#maxConcurrent} of each class at once,
+ * higher classes first, and sends their bodies in {@value #CHUNK_BYTES}-byte chunks. Before
+ * each chunk the upload waits while an alert is in flight, up to {@value #MAX_PAUSE_MS} ms at
+ * a time so the server does not give up on it, leaving the uplink to the alert.
+ */
+public class RequestScheduler {
+    private static final String TAG = "RequestScheduler";
+    private static final int CHUNK_BYTES = 16 * 1024;
+    private static final long MAX_PAUSE_MS = 2000;
+    private static RequestScheduler instance;
+
+    /** Priority classes, highest first. */
+    public enum Priority {
+        ALERT(Integer.MAX_VALUE),
+        TRANSCRIPTION(1),
+        BULK(1);
+
+        public final int maxConcurrent;
+
+        Priority(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+    }
+
+    private static class Queued {
+        final Call call;
+        final Callback callback;
+
+        Queued(Call call, Callback callback) {
+            this.call = call;
+            this.callback = callback;
+        }
+    }
+
+    private final Map<Priority, ArrayDeque<Queued>> queues = new EnumMap<>(Priority.class);
+    private final Map<Priority, Integer> running = new EnumMap<>(Priority.class);
+
+    // Guarded by alertLock
+    private final Object alertLock = new Object();
+    private int alertsInFlight = 0;
+
+    private long alertCalls = 0;
+    private long pauses = 0;
+    private long pausedMs = 0;
+
+    public RequestScheduler() {
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+            running.put(priority, 0);
+        }
+    }
+
+    public static synchronized RequestScheduler getInstance() {
+        if (instance == null) {
+            instance = new RequestScheduler();
+        }
+        return instance;
+    }
+
+    /** Counts the calls of the client it is added to as alert traffic while they run. */
+    public Interceptor alertTracker() {
+        return chain -> {
+            // Keep-warm HEADs carry no alert and must not hold uploads back
+            if ("HEAD".equals(chain.request().method())) {
+                return chain.proceed(chain.request());
+            }
+            synchronized (alertLock) {
+                alertsInFlight++;
+                alertCalls++;
+            }
+            try {
+                return chain.proceed(chain.request());
+            } finally {
+                synchronized (alertLock) {
+                    alertsInFlight--;
+                    alertLock.notifyAll();
+                }
+            }
+        };
+    }
+
+    /**
+     * Sends request on client once its class has a free slot. Below ALERT, the body yields to
+     * alert calls. The returned call can be cancelled at any time, queued or not.
+     */
+    public Call enqueue(Priority priority, OkHttpClient client, Request request, Callback callback) {
+        if (priority != Priority.ALERT && request.body() != null) {
+            request = request.newBuilder().method(request.method(), new YieldingBody(request.body())).build();
+        }
+        Call call = client.newCall(request);
+        synchronized (this) {
+            queues.get(priority).add(new Queued(call, new Callback() {
+                @Override
+                public void onFailure(Call failed, IOException e) {
+                    finished(priority);
+                    callback.onFailure(failed, e);
+                }
+
+                @Override
+                public void onResponse(Call succeeded, Response response) throws IOException {
+                    finished(priority);
+                    callback.onResponse(succeeded, response);
+                }
+            }));
+        }
+        pump();
+        return call;
+    }
+
+    private synchronized void finished(Priority priority) {
+        running.put(priority, running.get(priority) - 1);
+        pump();
+    }
+
+    // Starts queued calls, highest class first, while their class has room
+    private synchronized void pump() {
+        for (Priority priority : Priority.values()) {
+            ArrayDeque<Queued> queue = queues.get(priority);
+            while (!queue.isEmpty() && running.get(priority) < priority.maxConcurrent) {
+                Queued next = queue.poll();
+                running.put(priority, running.get(priority) + 1);
+                // A call cancelled while queued fails straight away through its callback
+                next.call.enqueue(next.callback);
+            }
+        }
+    }
+
+    // Returns once no alert is in flight, or after maxMs
+    private void awaitNoAlerts(long maxMs) throws IOException {
+        synchronized (alertLock) {
+            if (alertsInFlight == 0) return;
+            long start = System.currentTimeMillis();
+            long remaining = maxMs;
+            try {
+                while (alertsInFlight > 0 && remaining > 0) {
+                    alertLock.wait(remaining);
+                    remaining = maxMs - (System.currentTimeMillis() - start);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while yielding to alerts", e);
+            }
+            long waited = System.currentTimeMillis() - start;
+            pauses++;
+            pausedMs += waited;
+            Log.d(TAG, "Upload yielded to alert traffic for " + waited + " ms");
+        }
+    }
+
+    public int getAlertsInFlight() {
+        synchronized (alertLock) {
+            return alertsInFlight;
+        }
+    }
+
+    // Writes the delegate's bytes a chunk at a time, stepping aside for alert calls
+    private class YieldingBody extends RequestBody {
+        private final RequestBody delegate;
+
+        YieldingBody(RequestBody delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            // The delegate streams into this; only a segment or so is ever held here
+            BufferedSink chunked = Okio.buffer(new ForwardingSink(sink) {
+                @Override
+                public void write(Buffer source, long byteCount) throws IOException {
+                    while (byteCount > 0) {
+                        long chunk = Math.min(CHUNK_BYTES, byteCount);
+                        awaitNoAlerts(MAX_PAUSE_MS);
+                        super.write(source, chunk);
+                        // Push the chunk onto the socket so that a pause really frees the link
+                        sink.flush();
+                        byteCount -= chunk;
+                    }
+                }
+            });
+            delegate.writeTo(chunked);
+            chunked.emit();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder queued = new StringBuilder();
+        synchronized (this) {
+            for (Priority priority : Priority.values()) {
+                queued.append(String.format(" %s %d/%d", priority, running.get(priority), queues.get(priority).size()));
+            }
+        }
+        synchronized (alertLock) {
+            return String.format("RequestScheduler[running/queued:%s; %d alert calls, uploads paused %d times for %d ms]",
+                    queued, alertCalls, pauses, pausedMs);
+        }
+    }
+}
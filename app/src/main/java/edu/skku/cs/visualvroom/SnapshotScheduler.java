@@ -0,0 +1,168 @@
+package edu.skku.cs.visualvroom;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import edu.skku.cs.visualvroom.inference.InferenceBackend;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Takes AudioRecorder snapshots on a worker thread at the interval the supplier currently
+ * asks for, and hands the results back on the main thread.
+ *
+ * Each due time is the previous due time plus one interval, not the time the last snapshot
+ * finished plus one interval, so the schedule does not drift by however long snapshots take.
+ * If the worker falls more than an interval behind, the missed slots are skipped instead of
+ * fired back to back. After {@link #stop()} no further result reaches the callback and any
+ * inference still in flight is cancelled.
+ */
+public class SnapshotScheduler {
+    private static final String TAG = "SnapshotScheduler";
+
+    private final AudioRecorder recorder;
+    private final LongSupplier intervalMs;
+    private final AudioRecorder.AudioRecorderCallback callback;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private ScheduledExecutorService worker;
+    private ScheduledFuture<?> nextSnapshot;
+    private long nextDueNanos;
+    // Bumped by stop() so late results from an earlier run are dropped
+    private volatile int generation = 0;
+    private final Set<Delivery> inFlight = new HashSet<>();
+
+    private long snapshots = 0;
+    private long skipped = 0;
+
+    /** callback runs on the main thread. */
+    public SnapshotScheduler(AudioRecorder recorder, LongSupplier intervalMs,
+                             AudioRecorder.AudioRecorderCallback callback) {
+        this.recorder = recorder;
+        this.intervalMs = intervalMs;
+        this.callback = callback;
+    }
+
+    /** Starts taking snapshots; the first is due one interval from now. */
+    public synchronized void start() {
+        if (worker != null) return;
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "SnapshotWorker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshots = 0;
+        skipped = 0;
+        nextDueNanos = System.nanoTime();
+        scheduleNext(generation);
+    }
+
+    public synchronized void stop() {
+        if (worker == null) return;
+        generation++;
+        if (nextSnapshot != null) {
+            nextSnapshot.cancel(false);
+            nextSnapshot = null;
+        }
+        for (Delivery delivery : inFlight) {
+            delivery.cancel();
+        }
+        inFlight.clear();
+        worker.shutdown();
+        worker = null;
+        Log.i(TAG, toString());
+    }
+
+    private synchronized void scheduleNext(int runGeneration) {
+        if (runGeneration != generation || worker == null) return;
+        long intervalNanos = Math.max(1, intervalMs.getAsLong()) * 1_000_000L;
+        long now = System.nanoTime();
+        nextDueNanos += intervalNanos;
+        while (nextDueNanos <= now) {
+            nextDueNanos += intervalNanos;
+            skipped++;
+        }
+        nextSnapshot = worker.schedule(() -> takeSnapshot(runGeneration),
+                nextDueNanos - now, TimeUnit.NANOSECONDS);
+    }
+
+    private void takeSnapshot(int runGeneration) {
+        Delivery delivery = new Delivery(runGeneration);
+        synchronized (this) {
+            if (runGeneration != generation) return;
+            snapshots++;
+            inFlight.add(delivery);
+        }
+        try {
+            delivery.setPending(recorder.createSnapshot(delivery));
+        } catch (Exception e) {
+            Log.e(TAG, "Snapshot failed: " + e.getMessage());
+            delivery.onError("Snapshot failed: " + e.getMessage());
+        } finally {
+            scheduleNext(runGeneration);
+        }
+    }
+
+    private synchronized void finished(Delivery delivery) {
+        inFlight.remove(delivery);
+    }
+
+    // Forwards one snapshot's outcome to the main thread unless the run has been stopped
+    private class Delivery implements AudioRecorder.AudioRecorderCallback {
+        private final int runGeneration;
+        private InferenceBackend.Pending pending;
+        private boolean cancelled;
+
+        Delivery(int runGeneration) {
+            this.runGeneration = runGeneration;
+        }
+
+        synchronized void setPending(InferenceBackend.Pending pending) {
+            if (cancelled) {
+                pending.cancel();
+            } else {
+                this.pending = pending;
+            }
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (pending != null) pending.cancel();
+        }
+
+        @Override
+        public void onSuccess(AudioRecorder.InferenceResult result) {
+            deliver(() -> callback.onSuccess(result));
+        }
+
+        @Override
+        public void onError(String error) {
+            deliver(() -> callback.onError(error));
+        }
+
+        @Override
+        public void onQuietAudio() {
+            deliver(callback::onQuietAudio);
+        }
+
+        private void deliver(Runnable outcome) {
+            finished(this);
+            mainHandler.post(() -> {
+                if (runGeneration == generation) outcome.run();
+            });
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("SnapshotScheduler[%d snapshots, %d slots skipped, %d in flight]",
+                snapshots, skipped, inFlight.size());
+    }
+}
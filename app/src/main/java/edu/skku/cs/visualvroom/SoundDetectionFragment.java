@@ -4,6 +4,7 @@ import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Button;
 import android.widget.TextView;
 import androidx.fragment.app.Fragment;
 import androidx.core.content.ContextCompat;
@@ -17,6 +18,7 @@ public class SoundDetectionFragment extends Fragment {
     private LottieAnimationView soundAnimation;
     private TextView soundText;
     private FloatingActionButton micButton;
+    private View labelBar;
     private boolean isRecording = false;
 
     @Override
@@ -28,6 +30,7 @@ public class SoundDetectionFragment extends Fragment {
         soundAnimation = view.findViewById(R.id.soundAnimation);
         soundText = view.findViewById(R.id.soundText);
         micButton = view.findViewById(R.id.micButton);
+        labelBar = view.findViewById(R.id.labelBar);
 
         // Set up mic button click listener
         micButton.setOnClickListener(v -> {
@@ -42,6 +45,7 @@ public class SoundDetectionFragment extends Fragment {
                     // Stop recording
                     activity.stopRecording();
                     micButton.setImageResource(R.drawable.ic_mic);
+                    labelBar.setVisibility(View.GONE);
                     isRecording = false;
                     // Reset UI elements
                     resetUI();
@@ -49,24 +53,35 @@ public class SoundDetectionFragment extends Fragment {
             }
         });
 
+        // Long press records in dataset mode: the label buttons tag the window just heard
+        micButton.setOnLongClickListener(v -> {
+            if (isRecording || !(getActivity() instanceof MainActivity)) return false;
+            ((MainActivity) getActivity()).startRecording(true);
+            micButton.setImageResource(R.drawable.ic_mic_active);
+            labelBar.setVisibility(View.VISIBLE);
+            isRecording = true;
+            return true;
+        });
+        bindLabelButton(view.findViewById(R.id.labelSiren), "siren");
+        bindLabelButton(view.findViewById(R.id.labelHorn), "horn");
+        bindLabelButton(view.findViewById(R.id.labelBike), "bike");
+
         return view;
     }
 
+    private void bindLabelButton(Button button, String label) {
+        button.setOnClickListener(v -> {
+            if (getActivity() instanceof MainActivity) {
+                ((MainActivity) getActivity()).labelCurrentWindow(label);
+            }
+        });
+    }
+
     public void updateDetection(String vehicleType, String direction) {
         if (getActivity() == null) return;
 
         getActivity().runOnUiThread(() -> {
-            // Reset background colors
-            leftIndicator.setBackgroundColor(ContextCompat.getColor(getActivity(), android.R.color.transparent));
-            rightIndicator.setBackgroundColor(ContextCompat.getColor(getActivity(), android.R.color.transparent));
-
-            // Set the appropriate indicator
-            int highlightColor = ContextCompat.getColor(getActivity(), R.color.highlight_color);
-            if ("Left".equalsIgnoreCase(direction)) {
-                leftIndicator.setBackgroundColor(highlightColor);
-            } else if ("Right".equalsIgnoreCase(direction)) {
-                rightIndicator.setBackgroundColor(highlightColor);
-            }
+            showDirection(direction);
 
             // Update animation based on vehicle type
             int animationResource = getAnimationResource(vehicleType);
@@ -82,6 +97,29 @@ public class SoundDetectionFragment extends Fragment {
         });
     }
 
+    /** Updates only the direction panels, e.g. from the on-device estimate between server results. */
+    public void updateDirection(String direction) {
+        if (getActivity() == null) return;
+
+        getActivity().runOnUiThread(() -> showDirection(direction));
+    }
+
+    private void showDirection(String direction) {
+        if (getActivity() == null || leftIndicator == null) return;
+
+        // Reset background colors
+        leftIndicator.setBackgroundColor(ContextCompat.getColor(getActivity(), android.R.color.transparent));
+        rightIndicator.setBackgroundColor(ContextCompat.getColor(getActivity(), android.R.color.transparent));
+
+        // Set the appropriate indicator (the server sends "L"/"R")
+        int highlightColor = ContextCompat.getColor(getActivity(), R.color.highlight_color);
+        if ("Left".equalsIgnoreCase(direction) || "L".equalsIgnoreCase(direction)) {
+            leftIndicator.setBackgroundColor(highlightColor);
+        } else if ("Right".equalsIgnoreCase(direction) || "R".equalsIgnoreCase(direction)) {
+            rightIndicator.setBackgroundColor(highlightColor);
+        }
+    }
+
     private void resetUI() {
         if (getActivity() == null) return;
 
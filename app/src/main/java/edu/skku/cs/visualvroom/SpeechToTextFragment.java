@@ -23,7 +23,6 @@ import org.json.JSONObject;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
 import java.io.ByteArrayOutputStream;
 
 
@@ -47,11 +46,7 @@ public class SpeechToTextFragment extends Fragment {
     private final OkHttpClient client;
 
     public SpeechToTextFragment() {
-        client = new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .writeTimeout(30, TimeUnit.SECONDS)
-                .build();
+        client = HttpClientProvider.get(HttpClientProvider.Profile.TRANSCRIPTION);
     }
 
     @Override
@@ -200,7 +195,8 @@ public class SpeechToTextFragment extends Fragment {
                 .post(requestBody)
                 .build();
 
-        client.newCall(request).enqueue(new Callback() {
+        // Transcriptions are large; alert inference goes first on the link
+        RequestScheduler.getInstance().enqueue(RequestScheduler.Priority.TRANSCRIPTION, client, request, new Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
                 Log.e(TAG, "Failed to send audio data: " + e.getMessage());
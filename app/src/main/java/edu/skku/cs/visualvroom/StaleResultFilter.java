@@ -0,0 +1,65 @@
+package edu.skku.cs.visualvroom;
+
+/**
+ * Drops inference results nobody can act on any more: results that arrive after their
+ * window's capture deadline, and results for a window older than one already delivered
+ * (responses can overtake each other when requests are in flight together).
+ *
+ * Windows are numbered in capture order by {@link #nextSequence()}. Numbers keep counting
+ * across {@link #reset()}, so an answer still in flight from the last session cannot hold
+ * back the next one.
+ */
+public class StaleResultFilter {
+    private final long maxAgeMs;
+
+    private long nextSequence = 0;
+    private long newestDelivered = -1;
+    private long accepted = 0;
+    private long droppedLate = 0;
+    private long droppedOutOfOrder = 0;
+
+    public StaleResultFilter(long maxAgeMs) {
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    public synchronized long nextSequence() {
+        return nextSequence++;
+    }
+
+    /** Wall-clock time after which a result for audio captured at capturedAt is dropped. */
+    public long deadlineFor(long capturedAt) {
+        return capturedAt + maxAgeMs;
+    }
+
+    /** True if the result for this window should still be delivered. */
+    public synchronized boolean accept(long sequence, long capturedAt, long nowMs) {
+        if (nowMs > deadlineFor(capturedAt)) {
+            droppedLate++;
+            return false;
+        }
+        if (sequence <= newestDelivered) {
+            droppedOutOfOrder++;
+            return false;
+        }
+        newestDelivered = sequence;
+        accepted++;
+        return true;
+    }
+
+    public synchronized long getAccepted() { return accepted; }
+    public synchronized long getDroppedLate() { return droppedLate; }
+    public synchronized long getDroppedOutOfOrder() { return droppedOutOfOrder; }
+
+    /** Clears the counters. */
+    public synchronized void reset() {
+        accepted = 0;
+        droppedLate = 0;
+        droppedOutOfOrder = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("StaleResultFilter[%d delivered, %d dropped late, %d dropped out of order]",
+                accepted, droppedLate, droppedOutOfOrder);
+    }
+}
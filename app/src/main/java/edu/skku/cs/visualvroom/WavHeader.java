@@ -0,0 +1,64 @@
+package edu.skku.cs.visualvroom;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * RIFF/WAVE headers for 16-bit PCM. An optional comment goes into a LIST/INFO ICMT chunk
+ * between fmt and data, where players and tools show it and decoders skip it.
+ */
+public final class WavHeader {
+    public static final int BASIC_SIZE = 44;
+    private static final int BITS_PER_SAMPLE = 16;
+
+    private WavHeader() {
+    }
+
+    /** Header size for a comment, including its chunk padding. */
+    public static int size(String comment) {
+        return BASIC_SIZE + (comment != null ? 20 + commentBytes(comment).length : 0);
+    }
+
+    /** A header for dataBytes of interleaved little-endian PCM, positioned at 0. */
+    public static ByteBuffer create(int sampleRate, int channels, long dataBytes, String comment) {
+        byte[] icmt = comment != null ? commentBytes(comment) : null;
+        ByteBuffer header = ByteBuffer.allocate(size(comment)).order(ByteOrder.LITTLE_ENDIAN);
+        int blockAlign = channels * BITS_PER_SAMPLE / 8;
+
+        header.put("RIFF".getBytes(StandardCharsets.US_ASCII));
+        header.putInt((int) Math.min(0xFFFFFFFFL, header.capacity() - 8 + dataBytes));
+        header.put("WAVE".getBytes(StandardCharsets.US_ASCII));
+
+        header.put("fmt ".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(16);
+        header.putShort((short) 1); // PCM
+        header.putShort((short) channels);
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * blockAlign);
+        header.putShort((short) blockAlign);
+        header.putShort((short) BITS_PER_SAMPLE);
+
+        if (icmt != null) {
+            header.put("LIST".getBytes(StandardCharsets.US_ASCII));
+            header.putInt(4 + 8 + icmt.length);
+            header.put("INFO".getBytes(StandardCharsets.US_ASCII));
+            header.put("ICMT".getBytes(StandardCharsets.US_ASCII));
+            header.putInt(icmt.length);
+            header.put(icmt);
+        }
+
+        header.put("data".getBytes(StandardCharsets.US_ASCII));
+        header.putInt((int) Math.min(0xFFFFFFFFL, dataBytes));
+        header.flip();
+        return header;
+    }
+
+    // NUL-terminated and padded to an even length, as RIFF chunks require
+    private static byte[] commentBytes(String comment) {
+        byte[] text = comment.getBytes(StandardCharsets.UTF_8);
+        byte[] padded = new byte[(text.length + 2) & ~1];
+        System.arraycopy(text, 0, padded, 0, text.length);
+        return padded;
+    }
+}
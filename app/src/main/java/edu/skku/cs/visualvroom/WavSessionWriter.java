@@ -0,0 +1,207 @@
+package edu.skku.cs.visualvroom;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Saves a whole capture session as WAV files in a {@link RecordingSpool}, written on a thread
+ * of its own. The capture thread only copies samples into one of a few large direct buffers;
+ * full buffers are handed to the writer, which appends them through a FileChannel and starts
+ * a new file once the current one would pass maxFileBytes. Each file is written with a
+ * placeholder header that is patched with the real sizes when the file is closed.
+ *
+ * {@link #write} never waits. If the disk stalls long enough that no free buffer is left, the
+ * block is dropped and counted instead, leaving a gap in the file.
+ */
+public class WavSessionWriter {
+    private static final String TAG = "WavSessionWriter";
+    private static final int BYTES_PER_SAMPLE = 2;
+    private static final int BUFFER_BYTES = 256 * 1024;
+    private static final int BUFFER_COUNT = 8;
+
+    // Queued by stop() after the last buffer
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final RecordingSpool spool;
+    private final int sampleRate;
+    private final int channels;
+    private final int frameBytes;
+    private final long maxFileBytes;
+
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+    private ByteBuffer current;
+    private Thread writerThread;
+
+    // Writer thread only
+    private String sessionName;
+    private int fileIndex;
+    private File part;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long fileDataBytes;
+
+    private final AtomicLong framesWritten = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+    private final AtomicLong filesWritten = new AtomicLong();
+
+    public WavSessionWriter(RecordingSpool spool, int sampleRate, int channels, long maxFileBytes) {
+        this.spool = spool;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.frameBytes = channels * BYTES_PER_SAMPLE;
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    /** Starts a new session; its files are named session-startTime-index.wav. */
+    public synchronized void start() {
+        if (writerThread != null) return;
+        free.clear();
+        filled.clear();
+        int bufferBytes = BUFFER_BYTES / frameBytes * frameBytes;
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            free.add(ByteBuffer.allocateDirect(bufferBytes).order(ByteOrder.LITTLE_ENDIAN));
+        }
+        current = null;
+        sessionName = String.format("session-%d", System.currentTimeMillis());
+        fileIndex = 0;
+        writerThread = new Thread(this::drain, "WavSessionWriter");
+        writerThread.start();
+    }
+
+    /** Queues interleaved samples (whole frames). Capture thread only; never blocks. */
+    public void write(short[] interleaved, int length) {
+        if (writerThread == null) return;
+        int offset = 0;
+        while (offset < length) {
+            if (current == null) {
+                current = free.poll();
+                if (current == null) {
+                    framesDropped.addAndGet((length - offset) / channels);
+                    return;
+                }
+            }
+            int run = Math.min(length - offset, current.remaining() / BYTES_PER_SAMPLE);
+            current.asShortBuffer().put(interleaved, offset, run);
+            current.position(current.position() + run * BYTES_PER_SAMPLE);
+            offset += run;
+            if (!current.hasRemaining()) {
+                current.flip();
+                filled.add(current);
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * Flushes what has been queued, closes the last file and waits up to two seconds for the
+     * writer. Call from the capture thread or once it has finished.
+     */
+    public synchronized void stop() {
+        if (writerThread == null) return;
+        if (current != null && current.position() > 0) {
+            current.flip();
+            filled.add(current);
+        }
+        current = null;
+        filled.add(END);
+        try {
+            writerThread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            Log.w(TAG, "Writer still busy after stop; its last file may be left unfinished");
+        }
+        writerThread = null;
+        Log.i(TAG, toString());
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                ByteBuffer buffer = filled.take();
+                if (buffer == END) break;
+                append(buffer);
+                buffer.clear();
+                free.add(buffer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeFile();
+        }
+    }
+
+    private void append(ByteBuffer buffer) {
+        int frames = buffer.remaining() / frameBytes;
+        try {
+            if (channel != null && WavHeader.BASIC_SIZE + fileDataBytes + buffer.remaining() > maxFileBytes) {
+                closeFile();
+            }
+            if (channel == null) {
+                openFile();
+            }
+            while (buffer.hasRemaining()) {
+                fileDataBytes += channel.write(buffer);
+            }
+            framesWritten.addAndGet(frames);
+        } catch (IOException e) {
+            Log.e(TAG, "Dropping " + frames + " frames: " + e.getMessage());
+            framesDropped.addAndGet(frames);
+            closeFile();
+        }
+    }
+
+    private void openFile() throws IOException {
+        part = spool.create(String.format("%s-%03d.wav", sessionName, fileIndex++));
+        file = new RandomAccessFile(part, "rw");
+        channel = file.getChannel();
+        fileDataBytes = 0;
+        // Placeholder sizes until the file is closed
+        channel.write(WavHeader.create(sampleRate, channels, 0, null));
+    }
+
+    private void closeFile() {
+        if (channel == null) return;
+        try {
+            ByteBuffer header = WavHeader.create(sampleRate, channels, fileDataBytes, null);
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            file.close();
+            spool.commit(part);
+            filesWritten.incrementAndGet();
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot finish " + part.getName() + ": " + e.getMessage());
+            try {
+                file.close();
+            } catch (IOException ignored) {
+            }
+            spool.delete(part);
+        }
+        channel = null;
+        file = null;
+        part = null;
+    }
+
+    public long getFramesWritten() { return framesWritten.get(); }
+    public long getFramesDropped() { return framesDropped.get(); }
+    public long getFilesWritten() { return filesWritten.get(); }
+
+    @Override
+    public String toString() {
+        return String.format("WavSessionWriter[%d files, %d s written, %.1f s dropped]",
+                filesWritten.get(), framesWritten.get() / sampleRate,
+                framesDropped.get() / (float) sampleRate);
+    }
+}
@@ -0,0 +1,128 @@
+package edu.skku.cs.visualvroom.inference;
+
+import java.util.Arrays;
+
+/**
+ * Keeps requests away from a backend that is failing or too slow.
+ *
+ * CLOSED: calls go through and their outcomes are kept over a sliding window. The breaker
+ * opens when, with enough calls in the window, the error rate or the 90th percentile latency
+ * is above its limit. OPEN: calls are refused until the open time has passed. HALF_OPEN: one
+ * probe call is let through; success closes the breaker, failure opens it again.
+ */
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final int WINDOW = 20;
+    private static final double LATENCY_PERCENTILE = 0.9;
+
+    private final boolean[] failures = new boolean[WINDOW];
+    private final long[] latencies = new long[WINDOW];
+    private int index = 0;
+    private int count = 0;
+
+    private State state = State.CLOSED;
+    private long openedAt = 0;
+    private boolean probeInFlight = false;
+
+    private volatile int minCalls = 5;
+    private volatile double maxErrorRate = 0.5;
+    private volatile long maxLatencyMs = 2000;
+    private volatile long openMs = 15000;
+
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openMs) return false;
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            case HALF_OPEN:
+                if (probeInFlight) return false;
+                probeInFlight = true;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    /** True if a call would be let through right now; does not take the half-open probe. */
+    public synchronized boolean isAvailable() {
+        return state == State.CLOSED
+                || (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMs)
+                || (state == State.HALF_OPEN && !probeInFlight);
+    }
+
+    public synchronized void recordSuccess(long latencyMs) {
+        record(false, latencyMs);
+    }
+
+    public synchronized void recordFailure(long latencyMs) {
+        record(true, latencyMs);
+    }
+
+    /** The call was abandoned without an outcome; a half-open breaker may send another probe. */
+    public synchronized void recordCancelled() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    private void record(boolean failure, long latencyMs) {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            if (failure) {
+                open();
+            } else {
+                state = State.CLOSED;
+                count = 0;
+                index = 0;
+            }
+            return;
+        }
+        if (state == State.OPEN) return; // Late answer from before the breaker opened
+
+        failures[index] = failure;
+        latencies[index] = latencyMs;
+        index = (index + 1) % WINDOW;
+        count = Math.min(count + 1, WINDOW);
+
+        if (count >= minCalls && (errorRate() > maxErrorRate || latencyPercentile() > maxLatencyMs)) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        probeInFlight = false;
+    }
+
+    private double errorRate() {
+        int failed = 0;
+        for (int i = 0; i < count; i++) {
+            if (failures[i]) failed++;
+        }
+        return count == 0 ? 0 : failed / (double) count;
+    }
+
+    private long latencyPercentile() {
+        if (count == 0) return 0;
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(count - 1, Math.floor(LATENCY_PERCENTILE * count))];
+    }
+
+    public synchronized State getState() { return state; }
+
+    public void setMinCalls(int minCalls) { this.minCalls = minCalls; }
+    public void setMaxErrorRate(double maxErrorRate) { this.maxErrorRate = maxErrorRate; }
+    public void setMaxLatencyMs(long maxLatencyMs) { this.maxLatencyMs = maxLatencyMs; }
+    public void setOpenMs(long openMs) { this.openMs = openMs; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s (errors %.0f%%, p90 %d ms over %d calls)",
+                state, errorRate() * 100, latencyPercentile(), count);
+    }
+}
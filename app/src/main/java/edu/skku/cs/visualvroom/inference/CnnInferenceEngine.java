@@ -0,0 +1,272 @@
+package edu.skku.cs.visualvroom.inference;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a {@link QuantizedModel} on a uint8 feature image using int8 arithmetic.
+ * Convolutions are split across output channels on a fork-join pool.
+ */
+public class CnnInferenceEngine {
+    // Output channels handled by one fork-join leaf task
+    private static final int CHANNELS_PER_TASK = 2;
+
+    private final QuantizedModel model;
+    private final ForkJoinPool pool;
+    // int8 input value for each uint8 pixel
+    private final byte[] inputTable = new byte[256];
+
+    public CnnInferenceEngine(QuantizedModel model) {
+        this(model, Runtime.getRuntime().availableProcessors());
+    }
+
+    public CnnInferenceEngine(QuantizedModel model, int parallelism) {
+        this.model = model;
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+
+        // Pixels stand for p / 255, quantised with the model's declared input scale and zero point
+        for (int p = 0; p < inputTable.length; p++) {
+            int q = Math.round(p / 255f / model.getInputScale()) + model.getInputZeroPoint();
+            inputTable[p] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, q));
+        }
+    }
+
+    public QuantizedModel getModel() {
+        return model;
+    }
+
+    /**
+     * Returns dequantised logits for a row-major height x width uint8 image, as produced by
+     * {@code AudioProcessor.processAudioChannels}.
+     */
+    public float[] run(byte[] image) {
+        int height = model.getInputHeight();
+        int width = model.getInputWidth();
+        if (image.length != height * width) {
+            throw new IllegalArgumentException("Expected " + (height * width) + " pixels, got " + image.length);
+        }
+
+        byte[] input = new byte[image.length];
+        for (int i = 0; i < image.length; i++) {
+            input[i] = inputTable[image[i] & 0xff];
+        }
+        Tensor tensor = new Tensor(input, 1, height, width, model.getInputScale(), model.getInputZeroPoint());
+
+        for (QuantizedModel.Layer layer : model.getLayers()) {
+            switch (layer.type) {
+                case QuantizedModel.LAYER_CONV2D:
+                    tensor = conv((QuantizedModel.ConvLayer) layer, tensor);
+                    break;
+                case QuantizedModel.LAYER_MAX_POOL:
+                case QuantizedModel.LAYER_AVG_POOL:
+                    tensor = pool((QuantizedModel.PoolLayer) layer, tensor);
+                    break;
+                case QuantizedModel.LAYER_GLOBAL_AVG_POOL:
+                    tensor = globalAveragePool(tensor);
+                    break;
+                case QuantizedModel.LAYER_DENSE:
+                    tensor = dense((QuantizedModel.DenseLayer) layer, tensor);
+                    break;
+                default:
+                    throw new IllegalStateException("Unsupported layer type " + layer.type);
+            }
+        }
+
+        float[] logits = new float[tensor.data.length];
+        for (int i = 0; i < logits.length; i++) {
+            logits[i] = tensor.scale * (tensor.data[i] - tensor.zeroPoint);
+        }
+        return logits;
+    }
+
+    public void close() {
+        pool.shutdown();
+    }
+
+    private Tensor conv(QuantizedModel.ConvLayer layer, Tensor in) {
+        if (layer.inChannels != in.channels) {
+            throw new IllegalStateException("Conv expects " + layer.inChannels + " channels, got " + in.channels);
+        }
+
+        int padTop = 0;
+        int padLeft = 0;
+        int outH;
+        int outW;
+        if (layer.samePadding) {
+            outH = (in.height + layer.stride - 1) / layer.stride;
+            outW = (in.width + layer.stride - 1) / layer.stride;
+            padTop = Math.max(0, (outH - 1) * layer.stride + layer.kernelH - in.height) / 2;
+            padLeft = Math.max(0, (outW - 1) * layer.stride + layer.kernelW - in.width) / 2;
+        } else {
+            outH = (in.height - layer.kernelH) / layer.stride + 1;
+            outW = (in.width - layer.kernelW) / layer.stride + 1;
+        }
+
+        Tensor out = new Tensor(new byte[layer.outChannels * outH * outW],
+                layer.outChannels, outH, outW, layer.outputScale, layer.outputZeroPoint);
+        pool.invoke(new ConvTask(layer, in, out, padTop, padLeft, 0, layer.outChannels));
+        return out;
+    }
+
+    private static final class ConvTask extends RecursiveAction {
+        private final QuantizedModel.ConvLayer layer;
+        private final Tensor in;
+        private final Tensor out;
+        private final int padTop;
+        private final int padLeft;
+        private final int from;
+        private final int to;
+
+        ConvTask(QuantizedModel.ConvLayer layer, Tensor in, Tensor out,
+                 int padTop, int padLeft, int from, int to) {
+            this.layer = layer;
+            this.in = in;
+            this.out = out;
+            this.padTop = padTop;
+            this.padLeft = padLeft;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHANNELS_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ConvTask(layer, in, out, padTop, padLeft, from, mid),
+                        new ConvTask(layer, in, out, padTop, padLeft, mid, to));
+                return;
+            }
+
+            int kernelH = layer.kernelH;
+            int kernelW = layer.kernelW;
+            int kernelSize = kernelH * kernelW;
+            byte[] filter = new byte[layer.inChannels * kernelSize];
+            int inPlane = in.height * in.width;
+            int outPlane = out.height * out.width;
+
+            for (int oc = from; oc < to; oc++) {
+                layer.readFilter(oc, filter);
+                float multiplier = in.scale * layer.weightScales[oc] / out.scale;
+                int bias = layer.bias[oc];
+                int outBase = oc * outPlane;
+
+                for (int oy = 0; oy < out.height; oy++) {
+                    int iy0 = oy * layer.stride - padTop;
+                    for (int ox = 0; ox < out.width; ox++) {
+                        int ix0 = ox * layer.stride - padLeft;
+                        int acc = bias;
+
+                        for (int ic = 0; ic < layer.inChannels; ic++) {
+                            int inBase = ic * inPlane;
+                            int filterBase = ic * kernelSize;
+                            for (int ky = 0; ky < kernelH; ky++) {
+                                int iy = iy0 + ky;
+                                // Padding holds the zero point, which contributes nothing
+                                if (iy < 0 || iy >= in.height) continue;
+                                int rowBase = inBase + iy * in.width;
+                                int filterRow = filterBase + ky * kernelW;
+                                for (int kx = 0; kx < kernelW; kx++) {
+                                    int ix = ix0 + kx;
+                                    if (ix < 0 || ix >= in.width) continue;
+                                    acc += (in.data[rowBase + ix] - in.zeroPoint) * filter[filterRow + kx];
+                                }
+                            }
+                        }
+
+                        out.data[outBase + oy * out.width + ox] =
+                                requantize(acc, multiplier, out.zeroPoint, layer.relu);
+                    }
+                }
+            }
+        }
+    }
+
+    private Tensor pool(QuantizedModel.PoolLayer layer, Tensor in) {
+        int outH = (in.height - layer.poolH) / layer.stride + 1;
+        int outW = (in.width - layer.poolW) / layer.stride + 1;
+        Tensor out = new Tensor(new byte[in.channels * outH * outW],
+                in.channels, outH, outW, in.scale, in.zeroPoint);
+        boolean max = layer.type == QuantizedModel.LAYER_MAX_POOL;
+        int window = layer.poolH * layer.poolW;
+
+        for (int c = 0; c < in.channels; c++) {
+            int inBase = c * in.height * in.width;
+            int outBase = c * outH * outW;
+            for (int oy = 0; oy < outH; oy++) {
+                for (int ox = 0; ox < outW; ox++) {
+                    int best = Byte.MIN_VALUE;
+                    int sum = 0;
+                    for (int py = 0; py < layer.poolH; py++) {
+                        int row = inBase + (oy * layer.stride + py) * in.width + ox * layer.stride;
+                        for (int px = 0; px < layer.poolW; px++) {
+                            int value = in.data[row + px];
+                            best = Math.max(best, value);
+                            sum += value;
+                        }
+                    }
+                    out.data[outBase + oy * outW + ox] = (byte) (max ? best : Math.round(sum / (float) window));
+                }
+            }
+        }
+        return out;
+    }
+
+    private Tensor globalAveragePool(Tensor in) {
+        Tensor out = new Tensor(new byte[in.channels], in.channels, 1, 1, in.scale, in.zeroPoint);
+        int plane = in.height * in.width;
+        for (int c = 0; c < in.channels; c++) {
+            long sum = 0;
+            for (int i = c * plane; i < (c + 1) * plane; i++) {
+                sum += in.data[i];
+            }
+            out.data[c] = (byte) Math.round(sum / (double) plane);
+        }
+        return out;
+    }
+
+    private Tensor dense(QuantizedModel.DenseLayer layer, Tensor in) {
+        if (layer.inFeatures != in.data.length) {
+            throw new IllegalStateException("Dense expects " + layer.inFeatures + " inputs, got " + in.data.length);
+        }
+
+        Tensor out = new Tensor(new byte[layer.outFeatures], layer.outFeatures, 1, 1,
+                layer.outputScale, layer.outputZeroPoint);
+        byte[] row = new byte[layer.inFeatures];
+
+        for (int o = 0; o < layer.outFeatures; o++) {
+            layer.readRow(o, row);
+            int acc = layer.bias[o];
+            for (int i = 0; i < row.length; i++) {
+                acc += (in.data[i] - in.zeroPoint) * row[i];
+            }
+            float multiplier = in.scale * layer.weightScales[o] / out.scale;
+            out.data[o] = requantize(acc, multiplier, out.zeroPoint, layer.relu);
+        }
+        return out;
+    }
+
+    private static byte requantize(int acc, float multiplier, int zeroPoint, boolean relu) {
+        int q = Math.round(acc * multiplier) + zeroPoint;
+        int lower = relu ? Math.max(zeroPoint, Byte.MIN_VALUE) : Byte.MIN_VALUE;
+        return (byte) Math.max(lower, Math.min(Byte.MAX_VALUE, q));
+    }
+
+    /** Int8 activation tensor in channel-major (CHW) layout. */
+    static final class Tensor {
+        final byte[] data;
+        final int channels;
+        final int height;
+        final int width;
+        final float scale;
+        final int zeroPoint;
+
+        Tensor(byte[] data, int channels, int height, int width, float scale, int zeroPoint) {
+            this.data = data;
+            this.channels = channels;
+            this.height = height;
+            this.width = width;
+            this.scale = scale;
+            this.zeroPoint = zeroPoint;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package edu.skku.cs.visualvroom.inference;
+
+import android.util.Log;
+
+import edu.skku.cs.visualvroom.AudioRecorder;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two endpoints for the same model, used as one backend. The primary gets every request; if
+ * it has not answered by a percentile of its own recent latencies, the same request is sent
+ * to the secondary as well and the first good answer wins. A primary that fails outright is
+ * retried on the secondary at once.
+ *
+ * Hedges are paid for from a budget: every request adds a fraction of a token, each hedge
+ * spends a whole one, so at most that fraction of requests is duplicated over time (plus a
+ * small burst). Failover after an error is not charged, since the primary is no longer busy.
+ */
+public class HedgedInferenceBackend implements InferenceBackend {
+    private static final String TAG = "HedgedInference";
+
+    private static final int LATENCY_HISTORY = 50;
+    private static final int MIN_LATENCY_SAMPLES = 10;
+
+    private final InferenceBackend primary;
+    private final InferenceBackend secondary;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "HedgedInference");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile double hedgePercentile = 0.9;
+    private volatile long defaultHedgeDelayMs = 400;
+    private volatile long minHedgeDelayMs = 50;
+    private volatile double budgetPerRequest = 0.1;
+    private volatile double maxBudget = 3;
+
+    private final long[] latencies = new long[LATENCY_HISTORY];
+    private int latencyIndex = 0;
+    private int latencyCount = 0;
+    private double budget;
+    private long requestCount = 0;
+    private long hedgeCount = 0;
+
+    public HedgedInferenceBackend(InferenceBackend primary, InferenceBackend secondary) {
+        this.primary = primary;
+        this.secondary = secondary;
+        this.budget = maxBudget;
+    }
+
+    @Override
+    public String getName() {
+        return primary.getName();
+    }
+
+    @Override
+    public boolean supports(InferenceRequest request) {
+        return primary.supports(request);
+    }
+
+    @Override
+    public Pending infer(InferenceRequest request, long deadlineMs, Callback callback) {
+        long hedgeDelay;
+        synchronized (this) {
+            requestCount++;
+            budget = Math.min(maxBudget, budget + budgetPerRequest);
+            hedgeDelay = getHedgeDelayMs();
+        }
+        Hedge hedge = new Hedge(request, deadlineMs, callback);
+        hedge.start(hedgeDelay);
+        return hedge::cancel;
+    }
+
+    /** The primary's latency percentile once enough answers are known, the default before that. */
+    public synchronized long getHedgeDelayMs() {
+        if (latencyCount < MIN_LATENCY_SAMPLES) return defaultHedgeDelayMs;
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        long percentile = sorted[(int) Math.min(latencyCount - 1, Math.floor(hedgePercentile * latencyCount))];
+        return Math.max(minHedgeDelayMs, percentile);
+    }
+
+    /** An answer time, or for a primary cancelled after losing, the time until it was cancelled. */
+    private synchronized void recordPrimaryLatency(long latencyMs) {
+        latencies[latencyIndex] = latencyMs;
+        latencyIndex = (latencyIndex + 1) % LATENCY_HISTORY;
+        latencyCount = Math.min(latencyCount + 1, LATENCY_HISTORY);
+    }
+
+    private synchronized boolean spendHedge() {
+        if (budget < 1) return false;
+        budget -= 1;
+        hedgeCount++;
+        return true;
+    }
+
+    private class Hedge {
+        private final InferenceRequest request;
+        private final long deadlineMs;
+        private final Callback callback;
+        private final long startedAt = System.currentTimeMillis();
+
+        private Pending primaryCall;
+        private Pending secondaryCall;
+        private boolean primaryFailed = false;
+        private boolean secondaryFailed = false;
+        private boolean finished = false;
+        private ScheduledFuture<?> hedgeTimer;
+
+        Hedge(InferenceRequest request, long deadlineMs, Callback callback) {
+            this.request = request;
+            this.deadlineMs = deadlineMs;
+            this.callback = callback;
+        }
+
+        synchronized void start(long hedgeDelayMs) {
+            primaryCall = primary.infer(request, deadlineMs, new Callback() {
+                @Override
+                public void onResult(AudioRecorder.InferenceResult result) {
+                    onAnswer(true, result);
+                }
+
+                @Override
+                public void onError(String error) {
+                    onFailure(true, error);
+                }
+            });
+            if (!finished && hedgeDelayMs < deadlineMs && secondary.supports(request)) {
+                hedgeTimer = scheduler.schedule(this::onHedgeTimer, hedgeDelayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private synchronized void onHedgeTimer() {
+            if (finished || secondaryCall != null) return;
+            if (!spendHedge()) {
+                Log.d(TAG, "Hedge budget spent, waiting on " + primary.getName());
+                return;
+            }
+            Log.d(TAG, String.format("No answer from %s after %d ms, hedging to %s",
+                    primary.getName(), System.currentTimeMillis() - startedAt, secondary.getName()));
+            startSecondary();
+        }
+
+        private void startSecondary() {
+            long remaining = deadlineMs - (System.currentTimeMillis() - startedAt);
+            // Placeholder first in case the secondary answers synchronously
+            secondaryCall = () -> { };
+            Pending call = secondary.infer(request, Math.max(1, remaining), new Callback() {
+                @Override
+                public void onResult(AudioRecorder.InferenceResult result) {
+                    onAnswer(false, result);
+                }
+
+                @Override
+                public void onError(String error) {
+                    onFailure(false, error);
+                }
+            });
+            if (!finished) secondaryCall = call;
+        }
+
+        private void onAnswer(boolean fromPrimary, AudioRecorder.InferenceResult result) {
+            synchronized (this) {
+                if (finished) return;
+                // A primary that lost the race took at least this long; leaving it out would bias
+                // the hedge delay towards the fast answers
+                if (fromPrimary || !primaryFailed) {
+                    recordPrimaryLatency(System.currentTimeMillis() - startedAt);
+                }
+                finish();
+                Pending loser = fromPrimary ? secondaryCall : primaryCall;
+                if (loser != null) loser.cancel();
+            }
+            callback.onResult(result);
+        }
+
+        private void onFailure(boolean fromPrimary, String error) {
+            synchronized (this) {
+                if (finished) return;
+                if (fromPrimary) {
+                    primaryFailed = true;
+                    if (secondaryCall == null && secondary.supports(request)) {
+                        Log.d(TAG, primary.getName() + " failed, retrying on " + secondary.getName() + ": " + error);
+                        startSecondary();
+                        return;
+                    }
+                } else {
+                    secondaryFailed = true;
+                }
+                // Keep waiting while the other endpoint may still answer
+                boolean otherRunning = fromPrimary ? secondaryCall != null && !secondaryFailed : !primaryFailed;
+                if (otherRunning) return;
+                finish();
+            }
+            callback.onError(error);
+        }
+
+        synchronized void cancel() {
+            if (finished) return;
+            finish();
+            if (primaryCall != null) primaryCall.cancel();
+            if (secondaryCall != null) secondaryCall.cancel();
+        }
+
+        private void finish() {
+            finished = true;
+            if (hedgeTimer != null) hedgeTimer.cancel(false);
+        }
+    }
+
+    public synchronized long getRequestCount() { return requestCount; }
+    public synchronized long getHedgeCount() { return hedgeCount; }
+
+    public void setHedgePercentile(double hedgePercentile) { this.hedgePercentile = hedgePercentile; }
+    public void setDefaultHedgeDelayMs(long defaultHedgeDelayMs) { this.defaultHedgeDelayMs = defaultHedgeDelayMs; }
+    public void setMinHedgeDelayMs(long minHedgeDelayMs) { this.minHedgeDelayMs = minHedgeDelayMs; }
+
+    /** Lets on average budgetPerRequest of all requests be hedged, with bursts of up to maxBudget. */
+    public synchronized void setHedgeBudget(double budgetPerRequest, double maxBudget) {
+        this.budgetPerRequest = budgetPerRequest;
+        this.maxBudget = maxBudget;
+        budget = Math.min(budget, maxBudget);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        primary.close();
+        secondary.close();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s[%s -> %s, hedge after %d ms, %d of %d requests hedged]", TAG,
+                primary.getName(), secondary.getName(), getHedgeDelayMs(), hedgeCount, requestCount);
+    }
+}
@@ -0,0 +1,33 @@
+package edu.skku.cs.visualvroom.inference;
+
+import edu.skku.cs.visualvroom.AudioRecorder;
+
+/**
+ * Something that can classify a window: the remote server, the on-device model, or anything
+ * else plugged into an {@link InferenceRouter}.
+ */
+public interface InferenceBackend {
+
+    interface Callback {
+        void onResult(AudioRecorder.InferenceResult result);
+        void onError(String error);
+    }
+
+    /** Handle for an inference in progress. */
+    interface Pending {
+        void cancel();
+    }
+
+    /** Short name reported with results, e.g. "server" or "on_device". */
+    String getName();
+
+    boolean supports(InferenceRequest request);
+
+    /**
+     * Starts classifying the request and calls back exactly once unless cancelled. The backend
+     * should give up by itself once deadlineMs has passed.
+     */
+    Pending infer(InferenceRequest request, long deadlineMs, Callback callback);
+
+    void close();
+}
@@ -0,0 +1,86 @@
+package edu.skku.cs.visualvroom.inference;
+
+import java.io.File;
+
+/**
+ * One window to classify, in whichever forms the caller has it: 16-bit little-endian PCM per
+ * channel (exactly as uploaded), a gzipped feature image, or encoded audio as a file or in
+ * memory. Each
+ * backend serves the forms it understands. Channels are ordered left, right, then any
+ * further microphones (the rear one on three-mic devices).
+ *
+ * A request may also carry its window's sequence number and capture deadline (wall-clock
+ * milliseconds); remote backends pass both on so the server can skip work that has expired.
+ */
+public class InferenceRequest {
+    public final int sampleRate;
+    public final int channelCount;
+    public final byte[][] channelPcm;
+    public final byte[] leftPcm;
+    public final byte[] rightPcm;
+    public final byte[] compressedFeatures;
+    public final File encodedAudio;
+    public final byte[] encodedBytes;
+    public final String encodedName;
+    public final String encodedMediaType;
+    public final long sequence;
+    public final long captureDeadlineMs;
+
+    private InferenceRequest(int sampleRate, int channelCount, byte[][] channelPcm, byte[] compressedFeatures,
+                             File encodedAudio, byte[] encodedBytes, String encodedName, String encodedMediaType,
+                             long sequence, long captureDeadlineMs) {
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.channelPcm = channelPcm;
+        this.leftPcm = channelPcm != null ? channelPcm[0] : null;
+        this.rightPcm = channelPcm != null ? channelPcm[1] : null;
+        this.compressedFeatures = compressedFeatures;
+        this.encodedAudio = encodedAudio;
+        this.encodedBytes = encodedBytes;
+        this.encodedName = encodedName;
+        this.encodedMediaType = encodedMediaType;
+        this.sequence = sequence;
+        this.captureDeadlineMs = captureDeadlineMs;
+    }
+
+    public static InferenceRequest pcm(int sampleRate, byte[] leftPcm, byte[] rightPcm) {
+        return channels(sampleRate, new byte[][] {leftPcm, rightPcm});
+    }
+
+    /** PCM for two or more channels, left and right first. */
+    public static InferenceRequest channels(int sampleRate, byte[][] channelPcm) {
+        if (channelPcm.length < 2) {
+            throw new IllegalArgumentException("At least two channels are needed, got " + channelPcm.length);
+        }
+        return new InferenceRequest(sampleRate, channelPcm.length, channelPcm, null, null, null, null, null, -1, 0);
+    }
+
+    public static InferenceRequest features(int sampleRate, byte[] compressedFeatures) {
+        return features(sampleRate, 2, compressedFeatures);
+    }
+
+    /** A gzipped feature image with one block per channel. */
+    public static InferenceRequest features(int sampleRate, int channelCount, byte[] compressedFeatures) {
+        return new InferenceRequest(sampleRate, channelCount, null, compressedFeatures, null, null, null, null, -1, 0);
+    }
+
+    public static InferenceRequest encoded(File encodedAudio, String mediaType) {
+        return new InferenceRequest(0, 0, null, null, encodedAudio, null, encodedAudio.getName(), mediaType, -1, 0);
+    }
+
+    /** Encoded audio already in memory, uploaded under the given file name. */
+    public static InferenceRequest encoded(byte[] encodedBytes, String name, String mediaType) {
+        return new InferenceRequest(0, 0, null, null, null, encodedBytes, name, mediaType, -1, 0);
+    }
+
+    /** The same request tagged with its window's sequence number and capture deadline. */
+    public InferenceRequest withWindow(long sequence, long captureDeadlineMs) {
+        return new InferenceRequest(sampleRate, channelCount, channelPcm, compressedFeatures, encodedAudio,
+                encodedBytes, encodedName, encodedMediaType, sequence, captureDeadlineMs);
+    }
+
+    public boolean hasPcm() { return channelPcm != null; }
+    public boolean hasFeatures() { return compressedFeatures != null; }
+    public boolean hasEncodedAudio() { return encodedAudio != null || encodedBytes != null; }
+    public boolean hasWindow() { return sequence >= 0; }
+}
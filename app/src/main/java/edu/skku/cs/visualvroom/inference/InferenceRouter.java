@@ -0,0 +1,214 @@
+package edu.skku.cs.visualvroom.inference;
+
+import android.util.Log;
+
+import edu.skku.cs.visualvroom.AudioRecorder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends each window to a list of backends in order of preference and answers with whichever
+ * result arrives first within the deadline.
+ *
+ * The first backend whose breaker is closed and that understands the request starts
+ * straight away. The others are held back until the fallback delay passes or an earlier
+ * backend fails, so a healthy server does not cost a local inference per window. When one
+ * backend answers the rest are cancelled; when the deadline passes with no answer the caller
+ * gets an error. Results keep the backend name they were tagged with. Every answer, failure
+ * and missed deadline feeds that backend's circuit breaker, timed from when that backend was
+ * called, so a fallback is not charged for the delay before it started; calls cancelled
+ * because another backend won, or because the caller cancelled the attempt, are not counted.
+ */
+public class InferenceRouter {
+    private static final String TAG = "InferenceRouter";
+
+    private final Map<InferenceBackend, CircuitBreaker> breakers = new LinkedHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "InferenceRouter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile double fallbackDelayFraction = 0.5;
+
+    public InferenceRouter(List<InferenceBackend> backends) {
+        for (InferenceBackend backend : backends) {
+            breakers.put(backend, new CircuitBreaker());
+        }
+    }
+
+    public CircuitBreaker getBreaker(InferenceBackend backend) {
+        return breakers.get(backend);
+    }
+
+    /** Fraction of the deadline to wait for the primary before starting the fallbacks. */
+    public void setFallbackDelayFraction(double fraction) {
+        fallbackDelayFraction = fraction;
+    }
+
+    /** Starts an attempt; cancelling it stops every call it made, and the callback is not invoked. */
+    public InferenceBackend.Pending route(InferenceRequest request, long deadlineMs, InferenceBackend.Callback callback) {
+        List<InferenceBackend> candidates = new ArrayList<>();
+        for (Map.Entry<InferenceBackend, CircuitBreaker> entry : breakers.entrySet()) {
+            if (entry.getKey().supports(request) && entry.getValue().isAvailable()) {
+                candidates.add(entry.getKey());
+            }
+        }
+        if (candidates.isEmpty()) {
+            callback.onError("No inference backend available");
+            return () -> { };
+        }
+        Attempt attempt = new Attempt(request, deadlineMs, callback, candidates);
+        attempt.start();
+        return attempt::cancel;
+    }
+
+    public void close() {
+        scheduler.shutdownNow();
+        for (InferenceBackend backend : breakers.keySet()) {
+            backend.close();
+        }
+    }
+
+    private class Attempt {
+        private final InferenceRequest request;
+        private final long deadlineMs;
+        private final InferenceBackend.Callback callback;
+        private final List<InferenceBackend> candidates;
+        private final long startedAt = System.currentTimeMillis();
+
+        private final Map<InferenceBackend, InferenceBackend.Pending> running = new LinkedHashMap<>();
+        private final Map<InferenceBackend, Long> calledAt = new HashMap<>();
+        private int nextCandidate = 0;
+        private boolean finished = false;
+        private ScheduledFuture<?> fallbackTimer;
+        private ScheduledFuture<?> deadlineTimer;
+
+        Attempt(InferenceRequest request, long deadlineMs, InferenceBackend.Callback callback,
+                List<InferenceBackend> candidates) {
+            this.request = request;
+            this.deadlineMs = deadlineMs;
+            this.callback = callback;
+            this.candidates = candidates;
+        }
+
+        void start() {
+            synchronized (this) {
+                deadlineTimer = scheduler.schedule(this::onDeadline, deadlineMs, TimeUnit.MILLISECONDS);
+                if (candidates.size() > 1) {
+                    long delay = (long) (deadlineMs * fallbackDelayFraction);
+                    fallbackTimer = scheduler.schedule(this::startFallbacks, delay, TimeUnit.MILLISECONDS);
+                }
+            }
+            startNext();
+        }
+
+        private synchronized void startFallbacks() {
+            while (!finished && nextCandidate < candidates.size()) {
+                startNext();
+            }
+        }
+
+        /** Starts the next candidate whose breaker still lets a call through; false if none is left. */
+        private synchronized boolean startNext() {
+            while (!finished && nextCandidate < candidates.size()) {
+                InferenceBackend backend = candidates.get(nextCandidate++);
+                if (!breakers.get(backend).allowRequest()) continue;
+
+                long now = System.currentTimeMillis();
+                long remaining = deadlineMs - (now - startedAt);
+                // Registered before infer() in case the backend answers synchronously
+                running.put(backend, () -> { });
+                calledAt.put(backend, now);
+                InferenceBackend.Pending pending = backend.infer(request, Math.max(1, remaining), new InferenceBackend.Callback() {
+                    @Override
+                    public void onResult(AudioRecorder.InferenceResult result) {
+                        onBackendResult(backend, result);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        onBackendError(backend, error);
+                    }
+                });
+                if (running.containsKey(backend)) {
+                    running.put(backend, pending);
+                }
+                return true;
+            }
+            return false;
+        }
+
+        private void onBackendResult(InferenceBackend backend, AudioRecorder.InferenceResult result) {
+            synchronized (this) {
+                // Calls that were cancelled or already counted at the deadline are not recorded again
+                if (running.remove(backend) == null) return;
+                breakers.get(backend).recordSuccess(elapsedSinceCall(backend));
+                if (finished) return;
+                finish();
+                cancelAll();
+            }
+            callback.onResult(result);
+        }
+
+        private void onBackendError(InferenceBackend backend, String error) {
+            String failure;
+            synchronized (this) {
+                if (running.remove(backend) == null) return;
+                breakers.get(backend).recordFailure(elapsedSinceCall(backend));
+                Log.w(TAG, backend.getName() + " failed: " + error + ", breaker " + breakers.get(backend));
+                if (finished) return;
+                // Do not wait for the fallback delay once the primary has given up
+                if (startNext() || !running.isEmpty()) return;
+                finish();
+                failure = error;
+            }
+            callback.onError(failure);
+        }
+
+        private void onDeadline() {
+            synchronized (this) {
+                if (finished) return;
+                finish();
+                // Whatever is still running missed the deadline; count it as failed
+                for (InferenceBackend backend : running.keySet()) {
+                    breakers.get(backend).recordFailure(elapsedSinceCall(backend));
+                }
+                cancelAll();
+            }
+            callback.onError("No result within " + deadlineMs + " ms");
+        }
+
+        private long elapsedSinceCall(InferenceBackend backend) {
+            return System.currentTimeMillis() - calledAt.get(backend);
+        }
+
+        synchronized void cancel() {
+            if (finished) return;
+            finish();
+            cancelAll();
+        }
+
+        private void finish() {
+            finished = true;
+            if (fallbackTimer != null) fallbackTimer.cancel(false);
+            if (deadlineTimer != null) deadlineTimer.cancel(false);
+        }
+
+        private void cancelAll() {
+            for (Map.Entry<InferenceBackend, InferenceBackend.Pending> entry : running.entrySet()) {
+                entry.getValue().cancel();
+                breakers.get(entry.getKey()).recordCancelled();
+            }
+            running.clear();
+        }
+    }
+}
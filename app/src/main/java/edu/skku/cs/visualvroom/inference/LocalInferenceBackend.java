@@ -0,0 +1,69 @@
+package edu.skku.cs.visualvroom.inference;
+
+import edu.skku.cs.visualvroom.AudioProcessor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The on-device model as a router backend. Features are built and classified on a single
+ * background thread, so at most one local inference runs at a time.
+ */
+public class LocalInferenceBackend implements InferenceBackend {
+    public static final String NAME = "on_device";
+
+    private final OnDeviceClassifier classifier;
+    private final AudioProcessor processor = new AudioProcessor();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "LocalInference");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LocalInferenceBackend(OnDeviceClassifier classifier) {
+        this.classifier = classifier;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supports(InferenceRequest request) {
+        return request.hasPcm();
+    }
+
+    @Override
+    public Pending infer(InferenceRequest request, long deadlineMs, Callback callback) {
+        final long deadline = System.currentTimeMillis() + deadlineMs;
+        Future<?> future = executor.submit(() -> {
+            try {
+                if (System.currentTimeMillis() >= deadline) {
+                    callback.onError("Deadline passed before local inference started");
+                    return;
+                }
+                byte[] image = processor.processAudioChannels(toShorts(request.leftPcm), toShorts(request.rightPcm));
+                callback.onResult(classifier.classify(image).fromBackend(NAME));
+            } catch (RuntimeException e) {
+                callback.onError("Local inference failed: " + e.getMessage());
+            }
+        });
+        return () -> future.cancel(true);
+    }
+
+    private static short[] toShorts(byte[] pcm) {
+        short[] samples = new short[pcm.length / 2];
+        ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(samples);
+        return samples;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        classifier.close();
+    }
+}
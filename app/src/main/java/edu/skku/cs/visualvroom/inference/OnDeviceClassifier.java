@@ -0,0 +1,87 @@
+package edu.skku.cs.visualvroom.inference;
+
+import android.util.Log;
+
+import edu.skku.cs.visualvroom.AudioRecorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Classifies the 241x428 feature image on the device and reports the same fields the
+ * server returns. Labels in the model file are "VehicleType_Direction", e.g. "Siren_L".
+ */
+public class OnDeviceClassifier {
+    private static final String TAG = "OnDeviceClassifier";
+
+    // Same cut-off the server uses for should_notify
+    private static final double NOTIFY_CONFIDENCE = 0.97;
+
+    private final CnnInferenceEngine engine;
+    private final List<String> labels;
+
+    public OnDeviceClassifier(CnnInferenceEngine engine) {
+        this.engine = engine;
+        this.labels = engine.getModel().getLabels();
+    }
+
+    public static OnDeviceClassifier load(File modelFile) throws IOException {
+        QuantizedModel model = QuantizedModel.load(modelFile);
+        Log.i(TAG, String.format("Loaded model %s: %d layers, %d labels",
+                modelFile.getName(), model.getLayers().size(), model.getLabels().size()));
+        return new OnDeviceClassifier(new CnnInferenceEngine(model));
+    }
+
+    public AudioRecorder.InferenceResult classify(byte[] featureImage) {
+        float[] logits = engine.run(featureImage);
+        if (logits.length != labels.size()) {
+            throw new IllegalStateException("Model produced " + logits.length + " outputs for "
+                    + labels.size() + " labels");
+        }
+
+        float[] probabilities = softmax(logits);
+        int best = 0;
+        for (int i = 1; i < probabilities.length; i++) {
+            if (probabilities[i] > probabilities[best]) {
+                best = i;
+            }
+        }
+
+        String label = labels.get(best);
+        int split = label.lastIndexOf('_');
+        String vehicleType = split > 0 ? label.substring(0, split) : label;
+        String direction = split > 0 ? label.substring(split + 1) : "";
+        double confidence = probabilities[best];
+
+        return new AudioRecorder.InferenceResult(
+                vehicleType,
+                direction,
+                confidence,
+                confidence > NOTIFY_CONFIDENCE,
+                false
+        );
+    }
+
+    public void close() {
+        engine.close();
+    }
+
+    static float[] softmax(float[] logits) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (float logit : logits) {
+            max = Math.max(max, logit);
+        }
+
+        float sum = 0;
+        float[] probabilities = new float[logits.length];
+        for (int i = 0; i < logits.length; i++) {
+            probabilities[i] = (float) Math.exp(logits[i] - max);
+            sum += probabilities[i];
+        }
+        for (int i = 0; i < probabilities.length; i++) {
+            probabilities[i] /= sum;
+        }
+        return probabilities;
+    }
+}
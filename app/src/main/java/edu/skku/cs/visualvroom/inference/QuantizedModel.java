@@ -0,0 +1,272 @@
+package edu.skku.cs.visualvroom.inference;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Int8-quantised CNN loaded from a memory-mapped model file.
+ *
+ * File layout (little-endian):
+ * <pre>
+ * "VVQ1"
+ * int inputHeight, inputWidth, float inputScale, int inputZeroPoint
+ * int labelCount, then per label: short byteLength, UTF-8 bytes
+ * int layerCount, then per layer: int type followed by the layer body
+ *   CONV2D:  int outChannels, inChannels, kernelH, kernelW, stride, samePadding, relu,
+ *            float outputScale, int outputZeroPoint,
+ *            float[outChannels] weightScales, int[outChannels] bias, byte[] weights (OIHW)
+ *   MAX_POOL / AVG_POOL: int poolH, poolW, stride
+ *   GLOBAL_AVG_POOL: (no body)
+ *   DENSE:   int outFeatures, inFeatures, relu, float outputScale, int outputZeroPoint,
+ *            float[outFeatures] weightScales, int[outFeatures] bias, byte[] weights (OI)
+ * </pre>
+ * Weights are symmetric per output channel (zero point 0), biases are int32 at
+ * inputScale * weightScale, activations follow real = scale * (q - zeroPoint). The input
+ * stands for the feature image's pixels divided by 255.
+ */
+public class QuantizedModel {
+    public static final int MAGIC = 0x31515656; // "VVQ1" little-endian
+
+    public static final int LAYER_CONV2D = 1;
+    public static final int LAYER_MAX_POOL = 2;
+    public static final int LAYER_AVG_POOL = 3;
+    public static final int LAYER_GLOBAL_AVG_POOL = 4;
+    public static final int LAYER_DENSE = 5;
+
+    private final int inputHeight;
+    private final int inputWidth;
+    private final float inputScale;
+    private final int inputZeroPoint;
+    private final List<String> labels;
+    private final List<Layer> layers;
+
+    private QuantizedModel(int inputHeight, int inputWidth, float inputScale, int inputZeroPoint,
+                           List<String> labels, List<Layer> layers) {
+        this.inputHeight = inputHeight;
+        this.inputWidth = inputWidth;
+        this.inputScale = inputScale;
+        this.inputZeroPoint = inputZeroPoint;
+        this.labels = Collections.unmodifiableList(labels);
+        this.layers = Collections.unmodifiableList(layers);
+    }
+
+    public static QuantizedModel load(File modelFile) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(modelFile, "r");
+             FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return parse(mapped);
+        }
+    }
+
+    static QuantizedModel parse(ByteBuffer source) throws IOException {
+        ByteBuffer buffer = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Invalid model file: bad magic");
+            }
+
+            int inputHeight = buffer.getInt();
+            int inputWidth = buffer.getInt();
+            float inputScale = buffer.getFloat();
+            int inputZeroPoint = buffer.getInt();
+            if (!(inputScale > 0) || inputZeroPoint < Byte.MIN_VALUE || inputZeroPoint > Byte.MAX_VALUE) {
+                throw new IOException("Invalid model file: input quantisation " + inputScale + "/" + inputZeroPoint);
+            }
+
+            int labelCount = buffer.getInt();
+            List<String> labels = new ArrayList<>(labelCount);
+            for (int i = 0; i < labelCount; i++) {
+                byte[] utf8 = new byte[buffer.getShort()];
+                buffer.get(utf8);
+                labels.add(new String(utf8, StandardCharsets.UTF_8));
+            }
+
+            int layerCount = buffer.getInt();
+            List<Layer> layers = new ArrayList<>(layerCount);
+            for (int i = 0; i < layerCount; i++) {
+                int type = buffer.getInt();
+                switch (type) {
+                    case LAYER_CONV2D:
+                        layers.add(readConv(buffer));
+                        break;
+                    case LAYER_MAX_POOL:
+                    case LAYER_AVG_POOL:
+                        layers.add(new PoolLayer(type, buffer.getInt(), buffer.getInt(), buffer.getInt()));
+                        break;
+                    case LAYER_GLOBAL_AVG_POOL:
+                        layers.add(new PoolLayer(type, 0, 0, 0));
+                        break;
+                    case LAYER_DENSE:
+                        layers.add(readDense(buffer));
+                        break;
+                    default:
+                        throw new IOException("Invalid model file: unknown layer type " + type);
+                }
+            }
+
+            return new QuantizedModel(inputHeight, inputWidth, inputScale, inputZeroPoint, labels, layers);
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid model file: " + e.getMessage(), e);
+        }
+    }
+
+    private static ConvLayer readConv(ByteBuffer buffer) {
+        int outChannels = buffer.getInt();
+        int inChannels = buffer.getInt();
+        int kernelH = buffer.getInt();
+        int kernelW = buffer.getInt();
+        int stride = buffer.getInt();
+        boolean samePadding = buffer.getInt() != 0;
+        boolean relu = buffer.getInt() != 0;
+        float outputScale = buffer.getFloat();
+        int outputZeroPoint = buffer.getInt();
+        float[] weightScales = readFloats(buffer, outChannels);
+        int[] bias = readInts(buffer, outChannels);
+        ByteBuffer weights = sliceBytes(buffer, outChannels * inChannels * kernelH * kernelW);
+        return new ConvLayer(outChannels, inChannels, kernelH, kernelW, stride, samePadding, relu,
+                outputScale, outputZeroPoint, weightScales, bias, weights);
+    }
+
+    private static DenseLayer readDense(ByteBuffer buffer) {
+        int outFeatures = buffer.getInt();
+        int inFeatures = buffer.getInt();
+        boolean relu = buffer.getInt() != 0;
+        float outputScale = buffer.getFloat();
+        int outputZeroPoint = buffer.getInt();
+        float[] weightScales = readFloats(buffer, outFeatures);
+        int[] bias = readInts(buffer, outFeatures);
+        ByteBuffer weights = sliceBytes(buffer, outFeatures * inFeatures);
+        return new DenseLayer(outFeatures, inFeatures, relu, outputScale, outputZeroPoint,
+                weightScales, bias, weights);
+    }
+
+    private static float[] readFloats(ByteBuffer buffer, int count) {
+        float[] values = new float[count];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + count * 4);
+        return values;
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * 4);
+        return values;
+    }
+
+    // Weight blobs stay inside the mapping; only views are created here
+    private static ByteBuffer sliceBytes(ByteBuffer buffer, int length) {
+        ByteBuffer slice = buffer.slice();
+        slice.limit(length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    public int getInputHeight() { return inputHeight; }
+    public int getInputWidth() { return inputWidth; }
+    public float getInputScale() { return inputScale; }
+    public int getInputZeroPoint() { return inputZeroPoint; }
+    public List<String> getLabels() { return labels; }
+    public List<Layer> getLayers() { return layers; }
+
+    public abstract static class Layer {
+        public final int type;
+
+        Layer(int type) {
+            this.type = type;
+        }
+    }
+
+    public static class ConvLayer extends Layer {
+        public final int outChannels;
+        public final int inChannels;
+        public final int kernelH;
+        public final int kernelW;
+        public final int stride;
+        public final boolean samePadding;
+        public final boolean relu;
+        public final float outputScale;
+        public final int outputZeroPoint;
+        public final float[] weightScales;
+        public final int[] bias;
+        final ByteBuffer weights;
+
+        ConvLayer(int outChannels, int inChannels, int kernelH, int kernelW, int stride,
+                  boolean samePadding, boolean relu, float outputScale, int outputZeroPoint,
+                  float[] weightScales, int[] bias, ByteBuffer weights) {
+            super(LAYER_CONV2D);
+            this.outChannels = outChannels;
+            this.inChannels = inChannels;
+            this.kernelH = kernelH;
+            this.kernelW = kernelW;
+            this.stride = stride;
+            this.samePadding = samePadding;
+            this.relu = relu;
+            this.outputScale = outputScale;
+            this.outputZeroPoint = outputZeroPoint;
+            this.weightScales = weightScales;
+            this.bias = bias;
+            this.weights = weights;
+        }
+
+        /** Copies the filter of one output channel out of the mapping. */
+        void readFilter(int outChannel, byte[] dst) {
+            ByteBuffer view = weights.duplicate();
+            view.position(outChannel * dst.length);
+            view.get(dst);
+        }
+    }
+
+    public static class PoolLayer extends Layer {
+        public final int poolH;
+        public final int poolW;
+        public final int stride;
+
+        PoolLayer(int type, int poolH, int poolW, int stride) {
+            super(type);
+            this.poolH = poolH;
+            this.poolW = poolW;
+            this.stride = stride;
+        }
+    }
+
+    public static class DenseLayer extends Layer {
+        public final int outFeatures;
+        public final int inFeatures;
+        public final boolean relu;
+        public final float outputScale;
+        public final int outputZeroPoint;
+        public final float[] weightScales;
+        public final int[] bias;
+        final ByteBuffer weights;
+
+        DenseLayer(int outFeatures, int inFeatures, boolean relu, float outputScale, int outputZeroPoint,
+                   float[] weightScales, int[] bias, ByteBuffer weights) {
+            super(LAYER_DENSE);
+            this.outFeatures = outFeatures;
+            this.inFeatures = inFeatures;
+            this.relu = relu;
+            this.outputScale = outputScale;
+            this.outputZeroPoint = outputZeroPoint;
+            this.weightScales = weightScales;
+            this.bias = bias;
+            this.weights = weights;
+        }
+
+        void readRow(int outFeature, byte[] dst) {
+            ByteBuffer view = weights.duplicate();
+            view.position(outFeature * inFeatures);
+            view.get(dst);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package edu.skku.cs.visualvroom.inference;
+
+import android.util.Log;
+
+import edu.skku.cs.visualvroom.AudioRecorder;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * The inference server. PCM and feature-image requests go to the predict endpoint, encoded
+ * files to the file endpoint; either may be null if this server does not offer it. Each call
+ * carries its own deadline through {@link Call#timeout()}, independent of the client's
+ * connect/read timeouts. The client is usually shared app-wide, so {@link #close()} cancels
+ * only this backend's own calls.
+ */
+public class RemoteInferenceBackend implements InferenceBackend {
+    private static final String TAG = "RemoteInference";
+    public static final String HEADER_CAPTURE_DEADLINE = "X-Capture-Deadline";
+    public static final String HEADER_WINDOW_SEQ = "X-Window-Seq";
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+    private final String name;
+    private final OkHttpClient client;
+    private final String predictUrl;
+    private final String fileUrl;
+    private final Set<Call> inFlight = Collections.synchronizedSet(new HashSet<>());
+
+    public RemoteInferenceBackend(String name, OkHttpClient client, String predictUrl, String fileUrl) {
+        this.name = name;
+        this.client = client;
+        this.predictUrl = predictUrl;
+        this.fileUrl = fileUrl;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean supports(InferenceRequest request) {
+        if (request.hasPcm() || request.hasFeatures()) return predictUrl != null;
+        return request.hasEncodedAudio() && fileUrl != null;
+    }
+
+    @Override
+    public Pending infer(InferenceRequest request, long deadlineMs, Callback callback) {
+        Call call = client.newCall(buildRequest(request));
+        call.timeout().timeout(deadlineMs, TimeUnit.MILLISECONDS);
+        inFlight.add(call);
+        call.enqueue(new okhttp3.Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                inFlight.remove(call);
+                if (call.isCanceled()) return;
+                callback.onError("Network error: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                inFlight.remove(call);
+                try (ResponseBody body = response.body()) {
+                    String text = body != null ? body.string() : "";
+                    if (!response.isSuccessful()) {
+                        callback.onError(String.format("Server error %d: %s", response.code(), text));
+                        return;
+                    }
+                    callback.onResult(parseResponse(text, name));
+                } catch (IOException | JSONException | IllegalStateException e) {
+                    if (call.isCanceled()) return;
+                    Log.e(TAG, "Error reading response: " + e.getMessage());
+                    callback.onError("Error processing response: " + e.getMessage());
+                }
+            }
+        });
+        return call::cancel;
+    }
+
+    Request buildRequest(InferenceRequest request) {
+        MultipartBody.Builder builder = new MultipartBody.Builder().setType(MultipartBody.FORM);
+        String url;
+        if (request.hasPcm() || request.hasFeatures()) {
+            url = predictUrl;
+            builder.addFormDataPart("sample_rate", String.valueOf(request.sampleRate));
+            if (request.channelCount != 2) {
+                builder.addFormDataPart("channel_count", String.valueOf(request.channelCount));
+            }
+            if (request.hasPcm() && request.channelCount == 2) {
+                builder.addFormDataPart("left_channel", "left.raw", RequestBody.create(OCTET_STREAM, request.leftPcm));
+                builder.addFormDataPart("right_channel", "right.raw", RequestBody.create(OCTET_STREAM, request.rightPcm));
+            } else if (request.hasPcm()) {
+                // One part holding every channel back to back, rather than a part per microphone
+                builder.addFormDataPart("channels", "channels.raw",
+                        RequestBody.create(OCTET_STREAM, concatenate(request.channelPcm)));
+            } else {
+                builder.addFormDataPart("feature_image", "features.u8.gz",
+                        RequestBody.create(OCTET_STREAM, request.compressedFeatures));
+            }
+        } else {
+            url = fileUrl;
+            MediaType mediaType = MediaType.parse(request.encodedMediaType);
+            builder.addFormDataPart("audio_file", request.encodedName, request.encodedBytes != null
+                    ? RequestBody.create(mediaType, request.encodedBytes)
+                    : RequestBody.create(request.encodedAudio, mediaType));
+        }
+        Request.Builder httpRequest = new Request.Builder().url(url).post(builder.build());
+        if (request.hasWindow()) {
+            // Lets the server skip windows whose answer would arrive too late to use
+            httpRequest.header(HEADER_WINDOW_SEQ, String.valueOf(request.sequence))
+                    .header(HEADER_CAPTURE_DEADLINE, String.valueOf(request.captureDeadlineMs));
+        }
+        return httpRequest.build();
+    }
+
+    private static byte[] concatenate(byte[][] channels) {
+        int length = 0;
+        for (byte[] channel : channels) {
+            length += channel.length;
+        }
+        byte[] planar = new byte[length];
+        int offset = 0;
+        for (byte[] channel : channels) {
+            System.arraycopy(channel, 0, planar, offset, channel.length);
+            offset += channel.length;
+        }
+        return planar;
+    }
+
+    /**
+     * Accepts both response shapes the server uses: {"status", "inference_result": {...}} and
+     * the flat {"vehicle_type", "direction", "confidence"} (or {"message"} when nothing was found).
+     */
+    static AudioRecorder.InferenceResult parseResponse(String text, String backend) throws JSONException {
+        JSONObject json = new JSONObject(text);
+        if ("error".equals(json.optString("status"))) {
+            throw new IllegalStateException(json.optString("error", "Server reported an error"));
+        }
+
+        JSONObject inference = json.has("inference_result") ? json.getJSONObject("inference_result") : json;
+        if (inference.optBoolean("too_quiet", false)) {
+            return new AudioRecorder.InferenceResult("", "", 0.0, false, true, backend);
+        }
+        if (!inference.has("vehicle_type") && json.has("message")) {
+            throw new IllegalStateException(json.getString("message"));
+        }
+
+        return new AudioRecorder.InferenceResult(
+                inference.getString("vehicle_type"),
+                inference.optString("direction", ""),
+                inference.getDouble("confidence"),
+                inference.optBoolean("should_notify", false),
+                false,
+                backend);
+    }
+
+    @Override
+    public void close() {
+        synchronized (inFlight) {
+            for (Call call : inFlight) {
+                call.cancel();
+            }
+            inFlight.clear();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class ActivityGateTest {
+    private static final int SAMPLE_RATE = 16000;
+    private static final int FRAME_MS = ActivityGate.FRAME_SIZE * 1000 / SAMPLE_RATE;
+
+    // Uniform noise at this amplitude sits near -45 dBFS
+    private static final double NOISE_AMPLITUDE = 0.01;
+
+    private ActivityGate gate;
+    private Random random;
+
+    @Before
+    public void setUp() {
+        gate = new ActivityGate(SAMPLE_RATE);
+        random = new Random(7);
+    }
+
+    @Test
+    public void noiseFloorFallsAtOnceAndRisesSlowly() {
+        feedNoise(NOISE_AMPLITUDE, 3000);
+        double steadyDb = 20 * Math.log10(NOISE_AMPLITUDE / Math.sqrt(3));
+        assertEquals(steadyDb, gate.getNoiseFloorDb(), 1.5);
+
+        // Ten dB louder for two seconds: the floor climbs about 1.5 dB per second
+        double before = gate.getNoiseFloorDb();
+        feedNoise(NOISE_AMPLITUDE * Math.sqrt(10), 2000);
+        assertEquals(3.0, gate.getNoiseFloorDb() - before, 0.5);
+
+        // Back to the quiet level: the floor follows within a frame or two
+        feedNoise(NOISE_AMPLITUDE, 100);
+        assertEquals(steadyDb, gate.getNoiseFloorDb(), 1.5);
+    }
+
+    @Test
+    public void tonesOpenTheGateButEquallyLoudNoiseDoesNot() {
+        feedNoise(NOISE_AMPLITUDE, 3000);
+        assertFalse(gate.isOpen());
+
+        // 15 dB over the floor: between the open margin and the loud margin
+        double burst = NOISE_AMPLITUDE / Math.sqrt(3) * Math.pow(10, 15 / 20.0);
+        feedNoise(burst * Math.sqrt(3), 200);
+        assertFalse("Flat noise opened the gate", gate.isOpen());
+
+        feedNoise(NOISE_AMPLITUDE, 3000);
+        feedTone(1000, burst * Math.sqrt(2), 200);
+        assertTrue("Tone did not open the gate", gate.isOpen());
+    }
+
+    @Test
+    public void veryLoudNoiseOpensTheGate() {
+        feedNoise(NOISE_AMPLITUDE, 3000);
+        feedNoise(NOISE_AMPLITUDE * Math.pow(10, 25 / 20.0), 200);
+        assertTrue(gate.isOpen());
+    }
+
+    @Test
+    public void gateHoldsOpenForTheHangover() {
+        feedNoise(NOISE_AMPLITUDE, 3000);
+        feedTone(800, 0.1, 500);
+        assertTrue(gate.isOpen());
+
+        int quietMs = 0;
+        while (gate.isOpen() && quietMs < 5000) {
+            feedNoise(NOISE_AMPLITUDE, FRAME_MS);
+            quietMs += FRAME_MS;
+        }
+        assertTrue("Closed after " + quietMs + " ms", quietMs >= 1200 && quietMs <= 1200 + 2 * FRAME_MS);
+
+        // A window that still overlaps the activity is admitted, one entirely after it is not
+        assertTrue(gate.admitWindow(2000));
+        feedNoise(NOISE_AMPLITUDE, 2000);
+        assertFalse(gate.admitWindow(2000));
+        assertEquals(1, gate.getPassedWindows());
+        assertEquals(1, gate.getGatedWindows());
+    }
+
+    private void feedNoise(double amplitude, int ms) {
+        short[] block = new short[SAMPLE_RATE * ms / 1000];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (short) Math.round((random.nextDouble() * 2 - 1) * amplitude * 32767);
+        }
+        gate.processBlock(block, block.length, 1);
+    }
+
+    private void feedTone(double frequency, double amplitude, int ms) {
+        short[] block = new short[SAMPLE_RATE * ms / 1000];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (short) Math.round(Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE) * amplitude * 32767);
+        }
+        gate.processBlock(block, block.length, 1);
+    }
+}
@@ -0,0 +1,180 @@
+package edu.skku.cs.visualvroom;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Parity and latency checks for {@link AudioProcessor}.
+ *
+ * Golden feature images live in src/test/resources/golden as gzipped raw 241x428 uint8
+ * images. Synthetic clips are regenerated from {@link SyntheticClips}; recorded clips are
+ * picked up from golden/recorded as interleaved little-endian stereo PCM (name.pcm) next to
+ * their image (name.golden.gz). Everything runs offline.
+ */
+public class AudioProcessorGoldenTest {
+    private static final int IMAGE_WIDTH = 241;
+    private static final int IMAGE_HEIGHT = 428;
+    private static final int IMAGE_SIZE = IMAGE_WIDTH * IMAGE_HEIGHT;
+
+    // Allowed per-pixel difference (0-255 scale) and share of pixels allowed beyond it
+    private static final int PIXEL_TOLERANCE = 2;
+    private static final double MAX_OUTLIER_FRACTION = 0.001;
+
+    // CPU-time budget for one 5 s stereo window, overridable with -Dvisualvroom.featureBudgetMs
+    private static final long DEFAULT_BUDGET_MS = 150;
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 15;
+
+    private static final String[] REGION_NAMES = {"left MFCC", "left spectrogram", "right MFCC", "right spectrogram"};
+    private static final int[] REGION_ROWS = {13, 201, 13, 201};
+
+    @Test
+    public void syntheticClipsMatchGoldenImages() throws IOException {
+        AudioProcessor processor = new AudioProcessor();
+        List<String> failures = new ArrayList<>();
+
+        for (String name : SyntheticClips.NAMES) {
+            short[][] clip = SyntheticClips.generate(name);
+            byte[] golden = readGolden("golden/" + name + ".golden.gz");
+            byte[] actual = processor.processAudioChannels(clip[0], clip[1]);
+
+            String mismatch = compare(name, golden, actual);
+            if (mismatch != null) {
+                failures.add(mismatch);
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            fail("Feature images drifted from golden output:\n" + String.join("\n", failures));
+        }
+    }
+
+    @Test
+    public void recordedClipsMatchGoldenImages() throws IOException, URISyntaxException {
+        URL recordedDir = getClass().getClassLoader().getResource("golden/recorded");
+        assumeTrue("No recorded clips checked in under golden/recorded", recordedDir != null);
+
+        AudioProcessor processor = new AudioProcessor();
+        List<String> failures = new ArrayList<>();
+        File[] clips = new File(recordedDir.toURI()).listFiles((dir, file) -> file.endsWith(".pcm"));
+        assumeTrue("No recorded clips checked in under golden/recorded", clips != null && clips.length > 0);
+
+        for (File clipFile : clips) {
+            String name = clipFile.getName().substring(0, clipFile.getName().length() - 4);
+            short[][] clip = SyntheticClips.deinterleave(Files.readAllBytes(clipFile.toPath()));
+            byte[] golden = readGolden("golden/recorded/" + name + ".golden.gz");
+            byte[] actual = processor.processAudioChannels(clip[0], clip[1]);
+
+            String mismatch = compare(name, golden, actual);
+            if (mismatch != null) {
+                failures.add(mismatch);
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            fail("Feature images drifted from golden output:\n" + String.join("\n", failures));
+        }
+    }
+
+    @Test
+    public void featureExtractionStaysWithinCpuBudget() {
+        long budgetMs = Long.getLong("visualvroom.featureBudgetMs", DEFAULT_BUDGET_MS);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assertTrue("Thread CPU time is not supported on this JVM", threads.isCurrentThreadCpuTimeSupported());
+
+        AudioProcessor processor = new AudioProcessor();
+        short[][] clip = SyntheticClips.generate("white_noise");
+
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            processor.processAudioChannels(clip[0], clip[1]);
+        }
+
+        long[] cpuNanos = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = threads.getCurrentThreadCpuTime();
+            processor.processAudioChannels(clip[0], clip[1]);
+            cpuNanos[i] = threads.getCurrentThreadCpuTime() - start;
+        }
+
+        Arrays.sort(cpuNanos);
+        long medianMs = cpuNanos[MEASURED_RUNS / 2] / 1_000_000;
+        long worstMs = cpuNanos[MEASURED_RUNS - 1] / 1_000_000;
+
+        assertTrue(String.format("Feature extraction took %d ms CPU per window (median, worst %d ms), budget is %d ms",
+                medianMs, worstMs, budgetMs), medianMs <= budgetMs);
+    }
+
+    private String compare(String name, byte[] golden, byte[] actual) {
+        assertEquals(name + ": image size", IMAGE_SIZE, actual.length);
+
+        int outliers = 0;
+        int worstDiff = 0;
+        int worstIndex = -1;
+        for (int i = 0; i < IMAGE_SIZE; i++) {
+            int diff = Math.abs((golden[i] & 0xff) - (actual[i] & 0xff));
+            if (diff > PIXEL_TOLERANCE) {
+                outliers++;
+            }
+            if (diff > worstDiff) {
+                worstDiff = diff;
+                worstIndex = i;
+            }
+        }
+
+        if (outliers <= IMAGE_SIZE * MAX_OUTLIER_FRACTION) {
+            return null;
+        }
+
+        return String.format("  %s: %d pixels differ by more than %d (allowed %d), worst %d at %s",
+                name, outliers, PIXEL_TOLERANCE, (int) (IMAGE_SIZE * MAX_OUTLIER_FRACTION),
+                worstDiff, describePixel(worstIndex));
+    }
+
+    private String describePixel(int index) {
+        int row = index / IMAGE_WIDTH;
+        int col = index % IMAGE_WIDTH;
+        for (int region = 0; region < REGION_ROWS.length; region++) {
+            if (row < REGION_ROWS[region]) {
+                return String.format("%s row %d col %d", REGION_NAMES[region], row, col);
+            }
+            row -= REGION_ROWS[region];
+        }
+        return "index " + index;
+    }
+
+    private byte[] readGolden(String resource) throws IOException {
+        InputStream raw = getClass().getClassLoader().getResourceAsStream(resource);
+        assertNotNull("Missing golden image " + resource, raw);
+
+        try (InputStream in = new GZIPInputStream(raw)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(IMAGE_SIZE);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            byte[] golden = out.toByteArray();
+            assertEquals(resource + ": golden image size", IMAGE_SIZE, golden.length);
+            return golden;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+public class BlackBoxRecorderTest {
+    private static final int SAMPLE_RATE = 16000;
+    private static final int CHANNELS = 2;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private RecordingSpool spool;
+    private BlackBoxRecorder blackBox;
+    private long frame = 0;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.getRoot();
+        spool = new RecordingSpool(new File(directory, "recordings"), 64L << 20, 100);
+        blackBox = new BlackBoxRecorder(spool, SAMPLE_RATE, CHANNELS, 20_000);
+        blackBox.setPreRollMs(2000);
+        blackBox.setPostRollMs(1000);
+        blackBox.start();
+    }
+
+    @After
+    public void tearDown() {
+        blackBox.stop();
+    }
+
+    @Test
+    public void clipHoldsContinuousAudioAroundTheDetection() throws Exception {
+        writeSeconds(25); // wraps the 20 s ring
+        blackBox.captureClip(System.currentTimeMillis(), "{\"vehicle_type\":\"Siren\"}");
+        writeSeconds(2);
+        File clip = awaitClip();
+
+        byte[] wav = gunzip(clip);
+        ByteBuffer buffer = ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals("RIFF", new String(wav, 0, 4, StandardCharsets.US_ASCII));
+        assertTrue(new String(wav, StandardCharsets.ISO_8859_1).contains("{\"vehicle_type\":\"Siren\"}"));
+
+        int dataOffset = WavHeader.size("{\"vehicle_type\":\"Siren\"}");
+        int frames = buffer.getInt(dataOffset - 4) / (CHANNELS * 2);
+        assertEquals(3 * SAMPLE_RATE, frames, SAMPLE_RATE / 100);
+
+        // Left carries the frame index, right its negation; no gap or splice anywhere
+        short first = buffer.getShort(dataOffset);
+        for (int i = 0; i < frames; i++) {
+            short left = buffer.getShort(dataOffset + 4 * i);
+            short right = buffer.getShort(dataOffset + 4 * i + 2);
+            assertEquals((short) (first + i), left);
+            assertEquals((short) -left, right);
+        }
+        assertEquals(1, blackBox.getClipsSaved());
+    }
+
+    @Test
+    public void overlappingDetectionsShareOneClip() throws Exception {
+        writeSeconds(25);
+        // A detection every half second, each within the post-roll of the one before
+        for (int i = 0; i < 4; i++) {
+            blackBox.captureClip(System.currentTimeMillis(), "{\"vehicle_type\":\"Siren\"}");
+            writeMs(500);
+        }
+        writeSeconds(2);
+        File clip = awaitClip();
+
+        // Pre-roll before the first detection to post-roll after the last one
+        byte[] wav = gunzip(clip);
+        int dataOffset = WavHeader.size("{\"vehicle_type\":\"Siren\"}");
+        int frames = ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN).getInt(dataOffset - 4) / (CHANNELS * 2);
+        assertEquals(9 * SAMPLE_RATE / 2, frames, SAMPLE_RATE / 100);
+        assertEquals(3, blackBox.getDetectionsMerged());
+
+        // A later detection keeps only the audio the saved clip does not already hold
+        blackBox.captureClip(System.currentTimeMillis() - 500, "{}");
+        writeSeconds(2);
+        assertEquals(2, awaitClips(2).size());
+        assertEquals(0, blackBox.getClipsDropped());
+    }
+
+    @Test
+    public void restartedRecorderSavesIntoTheNewRing() throws Exception {
+        writeSeconds(5);
+        blackBox.captureClip(System.currentTimeMillis(), "{}");
+        writeSeconds(1);
+        blackBox.stop();
+        assertEquals(1, blackBox.getClipsSaved() + blackBox.getClipsDropped());
+
+        blackBox.start();
+        writeSeconds(5);
+        blackBox.captureClip(System.currentTimeMillis(), "{}");
+        writeSeconds(2);
+        assertEquals(2, awaitClips(2).size());
+    }
+
+    @Test
+    public void detectionOlderThanTheRingIsDropped() throws Exception {
+        writeSeconds(5);
+        blackBox.captureClip(System.currentTimeMillis() - 30_000, "{}");
+        assertEquals(1, blackBox.getClipsDropped());
+    }
+
+    private void writeSeconds(int seconds) {
+        writeMs(seconds * 1000);
+    }
+
+    private void writeMs(int ms) {
+        short[] block = new short[320 * CHANNELS]; // 20 ms
+        for (int b = 0; b < ms / 20; b++) {
+            for (int i = 0; i < 320; i++, frame++) {
+                block[2 * i] = (short) frame;
+                block[2 * i + 1] = (short) -frame;
+            }
+            blackBox.write(block, block.length);
+        }
+    }
+
+    private File awaitClip() throws InterruptedException {
+        return awaitClips(1).get(0);
+    }
+
+    private List<File> awaitClips(int count) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            List<File> files = spool.getFiles();
+            if (files.size() >= count) return files;
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Only " + spool.getFiles().size() + " of " + count + " clips were saved");
+    }
+
+    private static byte[] gunzip(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new FileInputStream(file)))) {
+            java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) > 0) {
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
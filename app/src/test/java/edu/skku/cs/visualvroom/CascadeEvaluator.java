@@ -0,0 +1,113 @@
+package edu.skku.cs.visualvroom;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures what the {@link MfccCascadeGate} costs in recall against the work it skips.
+ *
+ * The clip set is a directory of class folders holding interleaved little-endian stereo
+ * 16 kHz PCM files (*.pcm). Clips under "background" are negatives; every other folder
+ * (siren, horn, bike, ...) counts as a vehicle the full model must see.
+ */
+public class CascadeEvaluator {
+    public static final String BACKGROUND_LABEL = "background";
+
+    public static class LabelledClip {
+        final String name;
+        final boolean vehicle;
+        final short[] left;
+        final short[] right;
+
+        public LabelledClip(String name, boolean vehicle, short[] left, short[] right) {
+            this.name = name;
+            this.vehicle = vehicle;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    public static class OperatingPoint {
+        public final float threshold;
+        public final double recall;
+        public final double skipRate;
+
+        OperatingPoint(float threshold, double recall, double skipRate) {
+            this.threshold = threshold;
+            this.recall = recall;
+            this.skipRate = skipRate;
+        }
+
+        public double getRecallLoss() {
+            return 1.0 - recall;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("threshold %.2f: recall loss %.1f%%, skipped %.1f%% of windows",
+                    threshold, getRecallLoss() * 100, skipRate * 100);
+        }
+    }
+
+    public static List<LabelledClip> loadClips(File root) throws IOException {
+        List<LabelledClip> clips = new ArrayList<>();
+        File[] classDirs = root.listFiles(File::isDirectory);
+        if (classDirs == null) {
+            throw new IOException("Not a clip directory: " + root);
+        }
+
+        for (File classDir : classDirs) {
+            boolean vehicle = !BACKGROUND_LABEL.equalsIgnoreCase(classDir.getName());
+            File[] files = classDir.listFiles((dir, name) -> name.endsWith(".pcm"));
+            if (files == null) continue;
+
+            for (File file : files) {
+                short[][] channels = SyntheticClips.deinterleave(Files.readAllBytes(file.toPath()));
+                clips.add(new LabelledClip(classDir.getName() + "/" + file.getName(), vehicle, channels[0], channels[1]));
+            }
+        }
+        return clips;
+    }
+
+    /** Scores every clip once and reports recall and skip rate at each threshold. */
+    public static List<OperatingPoint> sweep(MfccCascadeGate gate, List<LabelledClip> clips, float[] thresholds) {
+        float[] scores = new float[clips.size()];
+        int vehicles = 0;
+        for (int i = 0; i < clips.size(); i++) {
+            LabelledClip clip = clips.get(i);
+            scores[i] = gate.score(clip.left, clip.right);
+            if (clip.vehicle) vehicles++;
+        }
+
+        List<OperatingPoint> points = new ArrayList<>(thresholds.length);
+        for (float threshold : thresholds) {
+            int kept = 0;
+            int vehiclesKept = 0;
+            for (int i = 0; i < scores.length; i++) {
+                if (scores[i] >= threshold) {
+                    kept++;
+                    if (clips.get(i).vehicle) vehiclesKept++;
+                }
+            }
+            double recall = vehicles == 0 ? 1.0 : vehiclesKept / (double) vehicles;
+            double skipRate = scores.length == 0 ? 0.0 : 1.0 - kept / (double) scores.length;
+            points.add(new OperatingPoint(threshold, recall, skipRate));
+        }
+        return points;
+    }
+
+    /** The point that skips the most windows within the recall-loss budget, or null if none fits. */
+    public static OperatingPoint pickThreshold(List<OperatingPoint> points, double maxRecallLoss) {
+        OperatingPoint best = null;
+        for (OperatingPoint point : points) {
+            if (point.getRecallLoss() <= maxRecallLoss
+                    && (best == null || point.skipRate > best.skipRate)) {
+                best = point;
+            }
+        }
+        return best;
+    }
+}
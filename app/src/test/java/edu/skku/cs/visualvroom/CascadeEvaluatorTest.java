@@ -0,0 +1,57 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/** Runs the recall-versus-skipped-work sweep over synthetic clips with the cascade fixture weights. */
+public class CascadeEvaluatorTest {
+    private static final int WINDOW_SAMPLES = 2 * SyntheticClips.SAMPLE_RATE;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sweepTradesRecallAgainstSkippedWindows() throws Exception {
+        writeClip("siren", "siren_sweep_right_delay");
+        writeClip("horn", "horn_harmonics");
+        for (String name : new String[]{"silence", "white_noise", "tone_1khz_left", "impulse_train"}) {
+            writeClip(CascadeEvaluator.BACKGROUND_LABEL, name);
+        }
+        List<CascadeEvaluator.LabelledClip> clips = CascadeEvaluator.loadClips(folder.getRoot());
+        assertEquals(6, clips.size());
+
+        File weights = new File(getClass().getClassLoader().getResource("cascade/mfcc_cascade_fixture.txt").toURI());
+        MfccCascadeGate gate = MfccCascadeGate.load(weights, new AudioProcessor());
+        List<CascadeEvaluator.OperatingPoint> points =
+                CascadeEvaluator.sweep(gate, clips, new float[]{0f, 0.5f, 1.01f});
+
+        assertEquals(1.0, points.get(0).recall, 1e-9);
+        assertEquals(0.0, points.get(0).skipRate, 1e-9);
+        // Silence, noise and the steady tone are skipped; the impulse train is let through
+        assertEquals(1.0, points.get(1).recall, 1e-9);
+        assertEquals(0.5, points.get(1).skipRate, 1e-9);
+        assertEquals(0.0, points.get(2).recall, 1e-9);
+        assertEquals(1.0, points.get(2).skipRate, 1e-9);
+
+        assertEquals(0.5f, CascadeEvaluator.pickThreshold(points, 0.0).threshold, 0f);
+        assertNull(CascadeEvaluator.pickThreshold(points.subList(2, 3), 0.5));
+    }
+
+    private void writeClip(String label, String name) throws Exception {
+        File dir = new File(folder.getRoot(), label);
+        dir.mkdirs();
+        short[][] clip = SyntheticClips.generate(name);
+        byte[] pcm = SyntheticClips.interleave(
+                Arrays.copyOf(clip[0], WINDOW_SAMPLES), Arrays.copyOf(clip[1], WINDOW_SAMPLES));
+        Files.write(new File(dir, name + ".pcm").toPath(), pcm);
+    }
+}
@@ -0,0 +1,87 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+public class DatasetShardTest {
+    private static final int SAMPLE_RATE = 16000;
+    private static final int FRAMES = 3200;
+    private static final int FEATURE_BYTES = 1000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void samplesRoundTripAcrossRolledOverShards() throws Exception {
+        // Room for two 13.8 KB records per shard
+        DatasetShardWriter writer = new DatasetShardWriter(folder.getRoot(), SAMPLE_RATE, 2, 30_000);
+        DatasetShardWriter.Label[] labels = DatasetShardWriter.Label.values();
+        for (int i = 0; i < 5; i++) {
+            writer.append(1000L * i, labels[i % labels.length], samples(i), features(i));
+        }
+        writer.close();
+
+        List<File> shards = DatasetShardReader.listShards(folder.getRoot());
+        assertEquals(3, shards.size());
+        int i = 0;
+        for (File shard : shards) {
+            try (DatasetShardReader reader = new DatasetShardReader(shard)) {
+                assertEquals(SAMPLE_RATE, reader.getSampleRate());
+                for (int s = 0; s < reader.size(); s++, i++) {
+                    DatasetShardReader.Sample sample = reader.get(s);
+                    assertEquals(1000L * i, sample.captureTimeMs);
+                    assertEquals(labels[i % labels.length], sample.label);
+                    assertArrayEquals(samples(i)[0], sample.channel(0));
+                    assertArrayEquals(samples(i)[1], sample.channel(1));
+                    byte[] features = new byte[sample.features.remaining()];
+                    sample.features.get(features);
+                    assertArrayEquals(features(i), features);
+                }
+            }
+        }
+        assertEquals(5, i);
+    }
+
+    @Test
+    public void interruptedAppendIsSkipped() throws Exception {
+        DatasetShardWriter writer = new DatasetShardWriter(folder.getRoot(), SAMPLE_RATE, 2, 1 << 20);
+        writer.append(0, DatasetShardWriter.Label.HORN, samples(0), features(0));
+        writer.append(1, DatasetShardWriter.Label.SIREN, samples(1), features(1));
+        writer.close();
+
+        // Cut the second record short, as a crash mid-append would
+        File shard = DatasetShardReader.listShards(folder.getRoot()).get(0);
+        try (RandomAccessFile file = new RandomAccessFile(shard, "rw")) {
+            file.setLength(file.length() - 10);
+        }
+        try (DatasetShardReader reader = new DatasetShardReader(shard)) {
+            assertEquals(1, reader.size());
+            assertEquals(DatasetShardWriter.Label.HORN, reader.get(0).label);
+        }
+    }
+
+    private static short[][] samples(int seed) {
+        short[][] channels = new short[2][FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            channels[0][i] = (short) (seed * 1000 + i);
+            channels[1][i] = (short) -(seed * 1000 + i);
+        }
+        return channels;
+    }
+
+    private static byte[] features(int seed) {
+        byte[] features = new byte[FEATURE_BYTES];
+        for (int i = 0; i < FEATURE_BYTES; i++) {
+            features[i] = (byte) (seed + i);
+        }
+        return features;
+    }
+}
@@ -0,0 +1,90 @@
+package edu.skku.cs.visualvroom;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays a synthetic drive (2 s windows every second) with real vehicle events and isolated
+ * confident mistakes, and compares the fuser with the old single-window 0.97 cut-off.
+ */
+public class DetectionFuserTest {
+    private static final long HOP_MS = 1000;
+    private static final long DRIVE_MS = 30 * 60 * 1000;
+
+    @Test
+    public void singleConfidentWindowIsNotEnough() {
+        DetectionFuser fuser = new DetectionFuser();
+        assertNull(fuser.offer("Siren", "L", 0.99, 0));
+        assertNull(fuser.offer("Horn", "R", 0.99, 1000));
+        assertNull(fuser.offer("Siren", "L", 0.99, 10000));
+    }
+
+    @Test
+    public void consecutiveWindowsDetectAndRefractoryHolds() {
+        DetectionFuser fuser = new DetectionFuser();
+        assertNull(fuser.offer("Siren", "", 0.95, 0));
+        DetectionFuser.Detection detection = fuser.offer("Siren", "R", 0.95, 1000);
+        assertNotNull(detection);
+        assertEquals("R", detection.direction);
+        assertNull(fuser.offer("Siren", "R", 0.95, 2000));
+        assertNotNull(fuser.offer("Siren", "R", 0.95, 4000));
+    }
+
+    @Test
+    public void timeConstantScaledToASlowHopStillDetects() {
+        long hopMs = 4000;
+        DetectionFuser fixed = new DetectionFuser();
+        DetectionFuser scaled = new DetectionFuser();
+        scaled.setTimeConstantMs(2 * hopMs);
+
+        // With the default time constant even certain windows settle below the threshold
+        for (long t = 0; t < 10 * hopMs; t += hopMs) {
+            assertNull(fixed.offer("Siren", "L", 1.0, t));
+        }
+        assertNull(scaled.offer("Siren", "L", 1.0, 0));
+        assertNotNull(scaled.offer("Siren", "L", 1.0, hopMs));
+    }
+
+    @Test
+    public void replayCutsFalsePositivesWithoutLosingEvents() {
+        Random random = new Random(7);
+        List<FusionReplay.Event> events = new ArrayList<>();
+        List<FusionReplay.Observation> observations = new ArrayList<>();
+
+        for (long start = 20000; start + 8000 < DRIVE_MS; start += 60000 + random.nextInt(60000)) {
+            events.add(new FusionReplay.Event(start, start + 8000, random.nextBoolean() ? "Siren" : "Horn"));
+        }
+
+        int event = 0;
+        for (long t = 0; t < DRIVE_MS; t += HOP_MS) {
+            while (event < events.size() && events.get(event).endMs < t) event++;
+            // A 2 s window ending at t covers the event once it has run for a second
+            if (event < events.size() && t >= events.get(event).startMs + 1000) {
+                observations.add(new FusionReplay.Observation(t, events.get(event).vehicleType, "L",
+                        0.90 + 0.09 * random.nextDouble()));
+            } else if (random.nextInt(150) == 0) {
+                // Isolated confident mistake on road noise
+                observations.add(new FusionReplay.Observation(t, "Horn", "R", 0.98));
+            } else {
+                observations.add(new FusionReplay.Observation(t, "", "", 0.0));
+            }
+        }
+
+        FusionReplay.Report fused = FusionReplay.replay(new DetectionFuser(), observations, events);
+        FusionReplay.Report baseline = FusionReplay.replaySingleWindow(0.97, observations, events);
+        assertEquals("Fused: " + fused, 1.0, fused.getRecall(), 0.0);
+        assertEquals("Fused: " + fused, 0, fused.falsePositives);
+        assertTrue("Single window: " + baseline, baseline.falsePositives > 0);
+        // First covering window lands up to a hop after start + 1 s; the second one fires
+        assertTrue("Fused detection should take at most two windows: " + fused,
+                fused.maxDelayMs <= 1000 + 2 * HOP_MS);
+    }
+}
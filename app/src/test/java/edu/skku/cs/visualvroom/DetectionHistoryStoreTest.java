@@ -0,0 +1,82 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+
+public class DetectionHistoryStoreTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rangeQueryReadsAcrossBlocks() throws Exception {
+        DetectionHistoryStore store = new DetectionHistoryStore(folder.getRoot(), 60_000);
+        store.beginDrive();
+        for (int i = 0; i < 10 * DetectionHistoryStore.BLOCK_RECORDS; i++) {
+            store.append(1000L * i, i % 2 == 0 ? "Siren" : "Horn", "L", 0.9, 300, "server");
+        }
+
+        List<DetectionHistoryStore.Record> found = store.query(1000L * 300, 1000L * 1000);
+        assertEquals(700, found.size());
+        assertEquals(1000L * 300, found.get(0).timeMs);
+        assertEquals(1000L * 999, found.get(699).timeMs);
+        assertEquals("siren", found.get(0).vehicleType);
+        assertEquals("horn", found.get(1).vehicleType);
+        assertEquals("L", found.get(0).direction);
+        assertEquals("server", found.get(0).backend);
+        store.close();
+    }
+
+    @Test
+    public void equalTimesAcrossABlockBoundaryAreAllFound() throws Exception {
+        DetectionHistoryStore store = new DetectionHistoryStore(folder.getRoot(), 60_000);
+        store.beginDrive();
+        int before = DetectionHistoryStore.BLOCK_RECORDS - 56;
+        for (int i = 0; i < before; i++) {
+            store.append(1000L * i, "Siren", "L", 0.9, 300, "server");
+        }
+        // The first block ends and the second begins with the same time; late times are clamped to it
+        for (int i = 0; i < 200; i++) {
+            store.append(i < 150 ? 500_000 : 1000, "Horn", "R", 0.7, 300, "server");
+        }
+
+        List<DetectionHistoryStore.Record> found = store.query(500_000, 500_001);
+        assertEquals(200, found.size());
+        assertEquals("horn", found.get(0).vehicleType);
+        store.close();
+    }
+
+    @Test
+    public void drivesContinueAcrossReopening() throws Exception {
+        DetectionHistoryStore store = new DetectionHistoryStore(folder.getRoot(), 60_000);
+        store.beginDrive();
+        store.append(1000, "Siren", "Left", 0.8, 200, "server");
+        store.append(2000, "Bike", "Right", 0.6, 400, "on_device");
+        store.close();
+
+        DetectionHistoryStore reopened = new DetectionHistoryStore(folder.getRoot(), 60_000);
+        assertEquals(2, reopened.getRecordCount());
+        reopened.beginDrive();
+        reopened.append(5000, "Siren", "", 1.0, 600, "secondary");
+        // Out of order times are kept in order
+        reopened.append(4000, "Horn", "R", 0.5, 100, "server");
+
+        List<DetectionHistoryStore.DriveSummary> drives = reopened.summarizeDrives(0, Long.MAX_VALUE);
+        assertEquals(2, drives.size());
+        DetectionHistoryStore.DriveSummary first = drives.get(0);
+        DetectionHistoryStore.DriveSummary second = drives.get(1);
+        assertEquals(first.driveId + 1, second.driveId);
+        assertEquals(2, first.detections);
+        assertEquals(300, first.meanLatencyMs, 1e-9);
+        assertEquals(400, first.maxLatencyMs);
+        assertEquals(Integer.valueOf(1), first.countsByType.get("bike"));
+        assertEquals(2, second.detections);
+        assertEquals(5000, second.endMs);
+        assertEquals(0.75, second.meanConfidence, 1e-6);
+        reopened.close();
+    }
+}
@@ -0,0 +1,58 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class DirectionEstimatorTest {
+    private static final int WINDOW_SAMPLES = SyntheticClips.SAMPLE_RATE;
+    private static final float CENTRE_DEGREES = 15f;
+
+    private final DirectionEstimator estimator = new DirectionEstimator(new AudioProcessor(), 0.14f);
+
+    @Test
+    public void delayedLeftChannelReadsAsRight() {
+        // The right channel leads by 5 samples and the left is 4.4 dB quieter
+        DirectionEstimator.Estimate estimate = estimate("siren_sweep_right_delay");
+
+        assertEquals(5f, estimate.delaySamples, 0.25f);
+        assertEquals(20 * Math.log10(0.6), estimate.levelDifferenceDb, 0.5);
+        assertTrue(estimate.toString(), estimate.angleDegrees > 45);
+        assertTrue(estimate.toString(), estimate.confidence > 0.8);
+        assertEquals("R", estimate.getDirection(CENTRE_DEGREES));
+    }
+
+    @Test
+    public void louderLeftChannelWithoutDelayReadsAsLeft() {
+        DirectionEstimator.Estimate estimate = estimate("tone_1khz_left");
+
+        assertEquals(0f, estimate.delaySamples, 0.25f);
+        assertTrue(estimate.toString(), estimate.levelDifferenceDb > 9);
+        assertTrue(estimate.toString(), estimate.angleDegrees < 0);
+        assertEquals("L", estimate.getDirection(CENTRE_DEGREES));
+    }
+
+    @Test
+    public void swappedChannelsFlipTheSign() {
+        short[][] clip = SyntheticClips.generate("siren_sweep_right_delay");
+        DirectionEstimator.Estimate estimate = estimator.estimate(
+                Arrays.copyOf(clip[1], WINDOW_SAMPLES), Arrays.copyOf(clip[0], WINDOW_SAMPLES));
+
+        assertEquals(-5f, estimate.delaySamples, 0.25f);
+        assertEquals("L", estimate.getDirection(CENTRE_DEGREES));
+    }
+
+    @Test
+    public void tooShortWindowHasNoEstimate() {
+        assertNull(estimator.estimate(new short[100], new short[100]));
+    }
+
+    private DirectionEstimator.Estimate estimate(String name) {
+        short[][] clip = SyntheticClips.generate(name);
+        return estimator.estimate(Arrays.copyOf(clip[0], WINDOW_SAMPLES), Arrays.copyOf(clip[1], WINDOW_SAMPLES));
+    }
+}
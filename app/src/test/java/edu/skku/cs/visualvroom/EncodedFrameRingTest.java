@@ -0,0 +1,73 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class EncodedFrameRingTest {
+    private static final int SAMPLE_RATE = 48000;
+    private static final long FRAME_US = 1024 * 1_000_000L / SAMPLE_RATE;
+
+    @Test
+    public void windowsOverlapAndCoverTheRequestedSpan() {
+        EncodedFrameRing ring = new EncodedFrameRing(SAMPLE_RATE, 2, 10000);
+        fill(ring, 0, 300); // 6.4 s
+
+        long end = ring.getNewestEndTimeUs();
+        EncodedFrameRing.Window newest = ring.window(end, 5_000_000);
+        EncodedFrameRing.Window earlier = ring.window(end - 1_000_000, 5_000_000);
+
+        assertEquals(5000, newest.getDurationMs(), FRAME_US / 1000 + 1);
+        assertEquals(end, newest.endTimeUs);
+        // A 5 s window every second shares 4 s with the one before
+        assertEquals(4000, (earlier.endTimeUs - newest.startTimeUs) / 1000, FRAME_US / 1000 + 1);
+    }
+
+    @Test
+    public void oldestFramesAreEvictedWhenFull() {
+        EncodedFrameRing ring = new EncodedFrameRing(SAMPLE_RATE, 2, 1000);
+        fill(ring, 0, ring.getCapacity() + 10);
+
+        assertEquals(ring.getCapacity(), ring.size());
+        EncodedFrameRing.Window all = ring.latest(60_000_000);
+        assertEquals(ring.getCapacity(), all.frames);
+        assertEquals(10 * FRAME_US, all.startTimeUs);
+        assertNull(ring.window(5 * FRAME_US, FRAME_US * 5));
+    }
+
+    @Test
+    public void framesCarryAdtsHeaders() {
+        EncodedFrameRing ring = new EncodedFrameRing(SAMPLE_RATE, 2, 1000);
+        fill(ring, 0, 3);
+
+        EncodedFrameRing.Window window = ring.latest(60_000_000);
+        byte[] adts = window.adts;
+        int offset = 0;
+        for (int frame = 0; frame < 3; frame++) {
+            assertEquals(0xFFF, ((adts[offset] & 0xFF) << 4) | ((adts[offset + 1] & 0xF0) >> 4));
+            assertEquals(3, (adts[offset + 2] >> 2) & 0xF); // 48 kHz
+            assertEquals(2, ((adts[offset + 2] & 1) << 2) | ((adts[offset + 3] & 0xC0) >> 6));
+            int frameLength = ((adts[offset + 3] & 3) << 11) | ((adts[offset + 4] & 0xFF) << 3)
+                    | ((adts[offset + 5] & 0xE0) >> 5);
+            assertEquals(7 + unitLength(frame), frameLength);
+            assertEquals((byte) frame, adts[offset + 7]);
+            offset += frameLength;
+        }
+        assertEquals(adts.length, offset);
+        assertEquals(2 * 1000, window.peakAmplitude);
+    }
+
+    // Access units of varying size, each starting with its index and with peak 1000 * index
+    private static void fill(EncodedFrameRing ring, int first, int count) {
+        byte[] unit = new byte[1536];
+        for (int i = first; i < first + count; i++) {
+            unit[0] = (byte) i;
+            ring.write(unit, unitLength(i), i * FRAME_US, 1000 * i);
+        }
+    }
+
+    private static int unitLength(int index) {
+        return 200 + (index * 37) % 500;
+    }
+}
@@ -0,0 +1,199 @@
+package edu.skku.cs.visualvroom;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Replays logged per-window results through a {@link DetectionFuser} and measures detection
+ * delay and false positives against annotated vehicle events.
+ *
+ * Results file (CSV, '#' comments): timestamp_ms,vehicle_type,direction,confidence, where an
+ * empty vehicle_type marks a window with no result. Events file: start_ms,end_ms,vehicle_type.
+ * A detection counts for an event of the same type if it falls between the event start and
+ * MATCH_GRACE_MS after its end; any other detection is a false positive.
+ */
+public class FusionReplay {
+    static final long MATCH_GRACE_MS = 2000;
+
+    public static class Observation {
+        final long timestampMs;
+        final String vehicleType;
+        final String direction;
+        final double confidence;
+
+        public Observation(long timestampMs, String vehicleType, String direction, double confidence) {
+            this.timestampMs = timestampMs;
+            this.vehicleType = vehicleType;
+            this.direction = direction;
+            this.confidence = confidence;
+        }
+    }
+
+    public static class Event {
+        final long startMs;
+        final long endMs;
+        final String vehicleType;
+
+        public Event(long startMs, long endMs, String vehicleType) {
+            this.startMs = startMs;
+            this.endMs = endMs;
+            this.vehicleType = vehicleType;
+        }
+    }
+
+    public static class Report {
+        public final int events;
+        public final int detectedEvents;
+        public final double meanDelayMs;
+        public final long maxDelayMs;
+        public final int falsePositives;
+        public final long durationMs;
+
+        Report(int events, int detectedEvents, double meanDelayMs, long maxDelayMs,
+               int falsePositives, long durationMs) {
+            this.events = events;
+            this.detectedEvents = detectedEvents;
+            this.meanDelayMs = meanDelayMs;
+            this.maxDelayMs = maxDelayMs;
+            this.falsePositives = falsePositives;
+            this.durationMs = durationMs;
+        }
+
+        public double getRecall() {
+            return events == 0 ? 1.0 : detectedEvents / (double) events;
+        }
+
+        public double getFalsePositivesPerHour() {
+            return durationMs <= 0 ? 0.0 : falsePositives * 3600000.0 / durationMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("detected %d/%d events, delay mean %.0f ms / max %d ms, "
+                            + "%d false positives (%.1f per hour)",
+                    detectedEvents, events, meanDelayMs, maxDelayMs,
+                    falsePositives, getFalsePositivesPerHour());
+        }
+    }
+
+    public static List<Observation> loadObservations(File file) throws IOException {
+        List<Observation> observations = new ArrayList<>();
+        for (String[] fields : readCsv(file, 4)) {
+            observations.add(new Observation(Long.parseLong(fields[0]), fields[1], fields[2],
+                    fields[3].isEmpty() ? 0.0 : Double.parseDouble(fields[3])));
+        }
+        return observations;
+    }
+
+    public static List<Event> loadEvents(File file) throws IOException {
+        List<Event> events = new ArrayList<>();
+        for (String[] fields : readCsv(file, 3)) {
+            events.add(new Event(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2]));
+        }
+        return events;
+    }
+
+    private static List<String[]> readCsv(File file, int columns) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                if (comment >= 0) line = line.substring(0, comment);
+                if (line.trim().isEmpty()) continue;
+
+                String[] fields = line.split(",", -1);
+                if (fields.length != columns) {
+                    throw new IOException(String.format("%s: expected %d columns in \"%s\"",
+                            file.getName(), columns, line));
+                }
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = fields[i].trim();
+                }
+                rows.add(fields);
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed replay file " + file.getName() + ": " + e.getMessage(), e);
+        }
+        return rows;
+    }
+
+    /** Runs the results through a fresh state of the given fuser. */
+    public static Report replay(DetectionFuser fuser, List<Observation> observations, List<Event> events) {
+        fuser.reset();
+        List<DetectionFuser.Detection> detections = new ArrayList<>();
+        for (Observation observation : observations) {
+            if (observation.vehicleType.isEmpty()) {
+                fuser.offerNothing(observation.timestampMs);
+                continue;
+            }
+            DetectionFuser.Detection detection = fuser.offer(observation.vehicleType,
+                    observation.direction, observation.confidence, observation.timestampMs);
+            if (detection != null) {
+                detections.add(detection);
+            }
+        }
+        return score(detections, observations, events);
+    }
+
+    /** The previous policy for comparison: alert on any single window above the cut-off. */
+    public static Report replaySingleWindow(double cutoff, List<Observation> observations, List<Event> events) {
+        List<DetectionFuser.Detection> detections = new ArrayList<>();
+        for (Observation observation : observations) {
+            if (!observation.vehicleType.isEmpty() && observation.confidence > cutoff) {
+                detections.add(new DetectionFuser.Detection(observation.vehicleType, observation.direction,
+                        (float) observation.confidence, observation.confidence, observation.timestampMs));
+            }
+        }
+        return score(detections, observations, events);
+    }
+
+    private static Report score(List<DetectionFuser.Detection> detections,
+                                List<Observation> observations, List<Event> events) {
+        long[] firstDetection = new long[events.size()];
+        Arrays.fill(firstDetection, -1);
+        int falsePositives = 0;
+
+        for (DetectionFuser.Detection detection : detections) {
+            boolean matched = false;
+            for (int e = 0; e < events.size(); e++) {
+                Event event = events.get(e);
+                if (event.vehicleType.equalsIgnoreCase(detection.vehicleType)
+                        && detection.timestampMs >= event.startMs
+                        && detection.timestampMs <= event.endMs + MATCH_GRACE_MS) {
+                    matched = true;
+                    if (firstDetection[e] < 0) {
+                        firstDetection[e] = detection.timestampMs;
+                    }
+                }
+            }
+            if (!matched) {
+                falsePositives++;
+            }
+        }
+
+        int detected = 0;
+        long delaySum = 0;
+        long maxDelay = 0;
+        for (int e = 0; e < events.size(); e++) {
+            if (firstDetection[e] < 0) continue;
+            long delay = firstDetection[e] - events.get(e).startMs;
+            detected++;
+            delaySum += delay;
+            maxDelay = Math.max(maxDelay, delay);
+        }
+
+        long duration = observations.isEmpty() ? 0
+                : observations.get(observations.size() - 1).timestampMs - observations.get(0).timestampMs;
+        return new Report(events.size(), detected, detected == 0 ? 0.0 : delaySum / (double) detected,
+                maxDelay, falsePositives, duration);
+    }
+}
@@ -0,0 +1,75 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class HttpClientProviderTest {
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void profilesShareThePoolButNotTheTimeouts() {
+        OkHttpClient alert = HttpClientProvider.get(HttpClientProvider.Profile.ALERT);
+        OkHttpClient transcription = HttpClientProvider.get(HttpClientProvider.Profile.TRANSCRIPTION);
+
+        assertSame(alert, HttpClientProvider.get(HttpClientProvider.Profile.ALERT));
+        assertSame(alert.connectionPool(), transcription.connectionPool());
+        assertSame(alert.dispatcher(), transcription.dispatcher());
+        assertEquals(2000, alert.connectTimeoutMillis());
+        assertEquals(30000, transcription.readTimeoutMillis());
+    }
+
+    @Test
+    public void prewarmedConnectionIsReusedByEveryProfile() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse());
+        }
+        HttpClientProvider.Metrics before = HttpClientProvider.getMetrics();
+
+        HttpClientProvider.prewarm(server.url("/predict").toString());
+        RecordedRequest warm = server.takeRequest(2, TimeUnit.SECONDS);
+        assertEquals("HEAD", warm.getMethod());
+        assertEquals("/", warm.getPath());
+        Thread.sleep(200); // Let the connection go back to the pool
+
+        execute(HttpClientProvider.Profile.ALERT, "/predict");
+        execute(HttpClientProvider.Profile.TRANSCRIPTION, "/transcribe");
+
+        // Sequence numbers count requests on one connection
+        assertEquals(1, server.takeRequest().getSequenceNumber());
+        assertEquals(2, server.takeRequest().getSequenceNumber());
+        HttpClientProvider.Metrics after = HttpClientProvider.getMetrics();
+        assertEquals(1, after.connectionsOpened - before.connectionsOpened);
+        assertEquals(2, after.connectionsReused - before.connectionsReused);
+    }
+
+    private void execute(HttpClientProvider.Profile profile, String path) throws Exception {
+        Request request = new Request.Builder().url(server.url(path)).build();
+        try (Response response = HttpClientProvider.get(profile).newCall(request).execute()) {
+            assertEquals(200, response.code());
+        }
+    }
+}
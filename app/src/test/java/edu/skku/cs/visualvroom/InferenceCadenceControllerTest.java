@@ -0,0 +1,97 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertEquals;
+
+import android.os.PowerManager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class InferenceCadenceControllerTest {
+    private InferenceCadenceController cadence;
+
+    @Before
+    public void setUp() {
+        // The service's intervals: 4 s quiet, 1 s active, 0.5 s around events
+        cadence = new InferenceCadenceController(4000, 1000, 500);
+    }
+
+    @Test
+    public void activityAndEventsMoveThroughTheStates() throws Exception {
+        cadence.setAlertHoldMs(100);
+        assertEquals(InferenceCadenceController.AcousticState.QUIET, cadence.getAcousticState());
+        assertEquals(4000, cadence.getIntervalMs());
+
+        cadence.reportActivity(true, 0f);
+        assertEquals(InferenceCadenceController.AcousticState.ACTIVE, cadence.getAcousticState());
+        assertEquals(1000, cadence.getIntervalMs());
+
+        cadence.reportEvent();
+        assertEquals(InferenceCadenceController.AcousticState.ALERT, cadence.getAcousticState());
+        assertEquals(500, cadence.getIntervalMs());
+
+        // The alert outlasts the activity, then falls back to whatever is heard
+        cadence.reportActivity(false, 0f);
+        assertEquals(InferenceCadenceController.AcousticState.ALERT, cadence.getAcousticState());
+        Thread.sleep(150);
+        assertEquals(InferenceCadenceController.AcousticState.QUIET, cadence.getAcousticState());
+    }
+
+    @Test
+    public void preDetectorScoreRaisesAlertOnlyAboveTheAlertLevel() {
+        cadence.reportActivity(true, 0.3f);
+        assertEquals(InferenceCadenceController.AcousticState.ACTIVE, cadence.getAcousticState());
+        cadence.reportActivity(true, 0.4f);
+        assertEquals(InferenceCadenceController.AcousticState.ALERT, cadence.getAcousticState());
+    }
+
+    @Test
+    public void lowBatteryStretchesTheIntervalUnlessCharging() {
+        cadence.reportActivity(true, 0f);
+
+        cadence.onBatteryChanged(20, false);
+        assertEquals(InferenceCadenceController.PowerState.BATTERY_LOW, cadence.getPowerState());
+        assertEquals(2000, cadence.getIntervalMs());
+
+        cadence.onBatteryChanged(10, false);
+        assertEquals(InferenceCadenceController.PowerState.BATTERY_CRITICAL, cadence.getPowerState());
+        assertEquals(4000, cadence.getIntervalMs());
+
+        cadence.onBatteryChanged(10, true);
+        assertEquals(InferenceCadenceController.PowerState.NORMAL, cadence.getPowerState());
+        assertEquals(1000, cadence.getIntervalMs());
+
+        // A broadcast without a level keeps the last one
+        cadence.onBatteryChanged(-1, false);
+        assertEquals(InferenceCadenceController.PowerState.BATTERY_CRITICAL, cadence.getPowerState());
+    }
+
+    @Test
+    public void thermalStatusStretchesTheIntervalAndTheWorstMultiplierWins() {
+        cadence.reportActivity(true, 0f);
+
+        cadence.onThermalStatusChanged(PowerManager.THERMAL_STATUS_MODERATE);
+        assertEquals(InferenceCadenceController.PowerState.THERMAL_MODERATE, cadence.getPowerState());
+        assertEquals(1500, cadence.getIntervalMs());
+
+        // Low battery (x2) beats moderate heat (x1.5)
+        cadence.onBatteryChanged(15, false);
+        assertEquals(InferenceCadenceController.PowerState.BATTERY_LOW, cadence.getPowerState());
+        assertEquals(2000, cadence.getIntervalMs());
+
+        cadence.onThermalStatusChanged(PowerManager.THERMAL_STATUS_CRITICAL);
+        assertEquals(InferenceCadenceController.PowerState.THERMAL_SEVERE, cadence.getPowerState());
+        assertEquals(4000, cadence.getIntervalMs());
+    }
+
+    @Test
+    public void intervalNeverDropsBelowTheMinimum() {
+        cadence.setIntervalMs(InferenceCadenceController.AcousticState.ALERT, 100);
+        cadence.reportEvent();
+        assertEquals(250, cadence.getIntervalMs());
+
+        cadence.setMultiplier(InferenceCadenceController.PowerState.THERMAL_MODERATE, 3f);
+        cadence.onThermalStatusChanged(PowerManager.THERMAL_STATUS_MODERATE);
+        assertEquals(300, cadence.getIntervalMs());
+    }
+}
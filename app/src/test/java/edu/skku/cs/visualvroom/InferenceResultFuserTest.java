@@ -0,0 +1,66 @@
+package edu.skku.cs.visualvroom;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Drives results through the service's broadcast format into MainActivity's fuser, including
+ * the tonal alerts the service raises on its own in the ALERT_ONLY tier.
+ */
+public class InferenceResultFuserTest {
+    private static final long HOP_MS = 4000;
+
+    @Test
+    public void alertOnlyTriggerAlertsAtOnce() throws Exception {
+        InferenceResultFuser fuser = new InferenceResultFuser();
+        // A typical pre-detector score, well below the fusion threshold on its own
+        DetectionFuser.Detection detection = fuser.offer(localAlert("Siren", 0.65), "L", 0, HOP_MS);
+        assertNotNull(detection);
+        assertEquals("Siren", detection.vehicleType);
+        assertEquals("L", detection.direction);
+        assertEquals(0, detection.timestampMs);
+    }
+
+    @Test
+    public void alertOnlyTriggersRespectTheRefractoryTime() throws Exception {
+        InferenceResultFuser fuser = new InferenceResultFuser();
+        assertNotNull(fuser.offer(localAlert("Siren", 0.7), "L", 0, HOP_MS));
+        // The pre-detector's 2 s cooldown is shorter than the fuser's refractory time
+        assertNull(fuser.offer(localAlert("Siren", 0.7), "L", 2000, HOP_MS));
+        assertNotNull(fuser.offer(localAlert("Horn", 0.7), "R", 2000, HOP_MS));
+        assertNotNull(fuser.offer(localAlert("Siren", 0.7), "L", 4000, HOP_MS));
+    }
+
+    @Test
+    public void classifierResultsAreStillFused() throws Exception {
+        InferenceResultFuser fuser = new InferenceResultFuser();
+        // The same backend and score from the on-device model is one window of evidence
+        assertNull(fuser.offer(classifierResult("Siren", 0.95), "L", 0, HOP_MS));
+        assertNotNull(fuser.offer(classifierResult("Siren", 0.95), "L", HOP_MS, HOP_MS));
+    }
+
+    @Test
+    public void tooQuietWindowsOnlyDecay() throws Exception {
+        InferenceResultFuser fuser = new InferenceResultFuser();
+        JSONObject quiet = InferenceResultFuser.toJson(
+                new AudioRecorder.InferenceResult("", "", 0, false, true, "server"), false);
+        assertNull(fuser.offer(classifierResult("Siren", 0.95), "L", 0, HOP_MS));
+        assertNull(fuser.offer(quiet, "L", HOP_MS, HOP_MS));
+        assertNull(fuser.offer(classifierResult("Siren", 0.95), "L", 5 * HOP_MS, HOP_MS));
+    }
+
+    // What AudioRecordingService.broadcastLocalAlert sends while only alerts are left
+    private static JSONObject localAlert(String vehicleType, double score) throws Exception {
+        return InferenceResultFuser.toJson(
+                new AudioRecorder.InferenceResult(vehicleType, "", score, true, false, "on_device"), true);
+    }
+
+    private static JSONObject classifierResult(String vehicleType, double confidence) throws Exception {
+        return InferenceResultFuser.toJson(
+                new AudioRecorder.InferenceResult(vehicleType, "", confidence, true, false, "on_device"), false);
+    }
+}
@@ -0,0 +1,72 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Checks the cascade's features and decision with the fixture weights in
+ * src/test/resources/cascade, which score only the variance of the left channel's first MFCC.
+ */
+public class MfccCascadeGateTest {
+    private static final int WINDOW_SAMPLES = 2 * SyntheticClips.SAMPLE_RATE;
+
+    private MfccCascadeGate gate;
+
+    @Before
+    public void setUp() throws Exception {
+        File weights = new File(getClass().getClassLoader().getResource("cascade/mfcc_cascade_fixture.txt").toURI());
+        gate = MfccCascadeGate.load(weights, new AudioProcessor());
+    }
+
+    @Test
+    public void featuresSummariseBothChannels() {
+        short[][] clip = window("horn_harmonics");
+        float[][] mfcc = new AudioProcessor().computeMfcc(clip[0]);
+        // One 402-point frame every 201 samples, 13 coefficients each
+        assertEquals(1 + (WINDOW_SAMPLES - 402) / 201, mfcc.length);
+        assertEquals(13, mfcc[0].length);
+
+        float[] features = gate.extractFeatures(clip[0], clip[1]);
+        assertEquals(78, features.length);
+        assertEquals(MfccCascadeGate.FEATURE_COUNT, features.length);
+        double mean = 0;
+        for (float[] frame : mfcc) {
+            mean += frame[0];
+        }
+        assertEquals(mean / mfcc.length, features[0], 1e-2 * Math.abs(mean / mfcc.length));
+    }
+
+    @Test
+    public void scoreIsLogisticOfWeightedFeatures() {
+        short[][] clip = window("siren_sweep_right_delay");
+        float[] features = gate.extractFeatures(clip[0], clip[1]);
+        double expected = 1 / (1 + Math.exp(-4 * (features[13] - 1000) / 1000));
+        assertEquals(expected, gate.score(clip[0], clip[1]), 1e-4);
+    }
+
+    @Test
+    public void modulatedSoundsEscalateAndSteadyNoiseDoesNot() {
+        short[][] horn = window("horn_harmonics");
+        short[][] noise = window("white_noise");
+        short[][] silence = window("silence");
+
+        assertTrue("horn score " + gate.score(horn[0], horn[1]), gate.shouldEscalate(horn[0], horn[1]));
+        assertFalse("noise score " + gate.score(noise[0], noise[1]), gate.shouldEscalate(noise[0], noise[1]));
+        assertFalse(gate.shouldEscalate(silence[0], silence[1]));
+        assertEquals(1, gate.getEscalatedWindows());
+        assertEquals(2, gate.getSkippedWindows());
+    }
+
+    // The first two seconds of a synthetic clip, the length of one inference window
+    private static short[][] window(String name) {
+        short[][] clip = SyntheticClips.generate(name);
+        return new short[][]{Arrays.copyOf(clip[0], WINDOW_SAMPLES), Arrays.copyOf(clip[1], WINDOW_SAMPLES)};
+    }
+}
@@ -0,0 +1,107 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * N-channel feature images: the layout matches the stereo image channel by channel, the
+ * parallel path matches the sequential one, and the cost grows linearly with the channel count.
+ */
+public class MultiChannelFeatureTest {
+    private static final int BLOCK_SIZE = 241 * 214;
+    private static final int MAX_CHANNELS = 4;
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 5;
+
+    // Allowed spread of the per-channel cost between 1 and MAX_CHANNELS channels
+    private static final double LINEARITY_TOLERANCE = 0.35;
+
+    @Test
+    public void stereoChannelsMatchTheStereoImage() {
+        AudioProcessor processor = new AudioProcessor();
+        short[][] clip = SyntheticClips.generate("siren_sweep_right_delay");
+        short[][] rear = SyntheticClips.generate("horn_harmonics");
+
+        byte[] stereo = processor.processAudioChannels(clip[0], clip[1]);
+        byte[] threeChannel = processor.processChannels(clip[0], clip[1], rear[0]);
+
+        assertEquals(3 * BLOCK_SIZE, threeChannel.length);
+        assertArrayEquals(stereo, Arrays.copyOf(threeChannel, 2 * BLOCK_SIZE));
+        assertArrayEquals(processor.processChannels(rear[0]), Arrays.copyOfRange(threeChannel, 2 * BLOCK_SIZE, 3 * BLOCK_SIZE));
+    }
+
+    @Test
+    public void parallelMatchesSequential() {
+        AudioProcessor processor = new AudioProcessor();
+        short[][] channels = channels(3);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertArrayEquals(processor.processChannels(channels), processor.processChannels(executor, channels));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void costGrowsLinearlyWithChannelCount() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assertTrue("Thread CPU time is not supported on this JVM", threads.isCurrentThreadCpuTimeSupported());
+        AudioProcessor processor = new AudioProcessor();
+        ExecutorService executor = Executors.newFixedThreadPool(MAX_CHANNELS);
+
+        try {
+            double[] perChannelMs = new double[MAX_CHANNELS + 1];
+            StringBuilder timings = new StringBuilder();
+            for (int n = 1; n <= MAX_CHANNELS; n++) {
+                short[][] channels = channels(n);
+                for (int i = 0; i < WARMUP_RUNS; i++) {
+                    processor.processChannels(channels);
+                }
+
+                long[] cpuNanos = new long[MEASURED_RUNS];
+                long[] parallelNanos = new long[MEASURED_RUNS];
+                for (int i = 0; i < MEASURED_RUNS; i++) {
+                    long start = threads.getCurrentThreadCpuTime();
+                    processor.processChannels(channels);
+                    cpuNanos[i] = threads.getCurrentThreadCpuTime() - start;
+
+                    long wallStart = System.nanoTime();
+                    processor.processChannels(executor, channels);
+                    parallelNanos[i] = System.nanoTime() - wallStart;
+                }
+
+                Arrays.sort(cpuNanos);
+                Arrays.sort(parallelNanos);
+                double medianMs = cpuNanos[MEASURED_RUNS / 2] / 1e6;
+                perChannelMs[n] = medianMs / n;
+                timings.append(String.format("%n  %d channels: %.1f ms CPU (%.1f ms per channel), %.1f ms wall in parallel",
+                        n, medianMs, perChannelMs[n], parallelNanos[MEASURED_RUNS / 2] / 1e6));
+            }
+
+            double ratio = perChannelMs[MAX_CHANNELS] / perChannelMs[1];
+            assertTrue(String.format("Per-channel cost at %d channels is %.2fx the single-channel cost:%s",
+                    MAX_CHANNELS, ratio, timings), Math.abs(ratio - 1) <= LINEARITY_TOLERANCE);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Distinct clips per channel so no two blocks are the same work
+    private static short[][] channels(int count) {
+        String[] names = {"white_noise", "horn_harmonics", "siren_sweep_right_delay", "impulse_train"};
+        short[][] channels = new short[count][];
+        for (int c = 0; c < count; c++) {
+            channels[c] = SyntheticClips.generate(names[c % names.length])[c / names.length % 2];
+        }
+        return channels;
+    }
+}
@@ -0,0 +1,107 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class OnsetDetectorTest {
+    private static final int SAMPLE_RATE = 16000;
+    private static final int BLOCK_SAMPLES = 1024;
+    // Onsets are located to the analysis frame, whose centre moves by a hop
+    private static final int TOLERANCE = OnsetDetector.HOP_SIZE;
+
+    private final List<Long> onsets = new ArrayList<>();
+    private final OnsetDetector detector = new OnsetDetector(SAMPLE_RATE, (index, strength) -> onsets.add(index));
+
+    @Test
+    public void toneBurstsInNoiseAreFoundWhereTheyStart() {
+        short[] signal = noise(6 * SAMPLE_RATE, 0.01, new Random(3));
+        long[] starts = {SAMPLE_RATE, 5 * SAMPLE_RATE / 2, 4 * SAMPLE_RATE + 1234};
+        for (long start : starts) {
+            addTone(signal, (int) start, SAMPLE_RATE / 2, 1500, 0.3);
+        }
+        feed(signal);
+
+        assertEquals("Onsets at " + onsets, starts.length, onsets.size());
+        for (int i = 0; i < starts.length; i++) {
+            assertEquals("Onsets at " + onsets, starts[i], onsets.get(i), TOLERANCE);
+        }
+    }
+
+    @Test
+    public void impulsesInNoiseAreFoundWhereTheyHit() {
+        short[] signal = noise(5 * SAMPLE_RATE, 0.01, new Random(4));
+        long[] hits = {SAMPLE_RATE + 100, 2 * SAMPLE_RATE + 7000, 4 * SAMPLE_RATE};
+        for (long hit : hits) {
+            // A short decaying click
+            for (int i = 0; i < 64; i++) {
+                signal[(int) hit + i] += (short) (0.8 * 32767 * Math.exp(-i / 8.0) * (i % 2 == 0 ? 1 : -1));
+            }
+        }
+        feed(signal);
+
+        assertEquals("Onsets at " + onsets, hits.length, onsets.size());
+        for (int i = 0; i < hits.length; i++) {
+            assertEquals("Onsets at " + onsets, hits[i], onsets.get(i), TOLERANCE);
+        }
+    }
+
+    @Test
+    public void stationaryNoiseStaysBelowMeanPlusThreeSigma() {
+        long frames = 0;
+        for (double deviation : new double[]{0.005, 0.05, 0.3}) {
+            OnsetDetector levelDetector = new OnsetDetector(SAMPLE_RATE, (index, strength) -> onsets.add(index));
+            // With the absolute floor out of the way only the adaptive threshold holds noise back
+            levelDetector.setMinFlux(0f);
+            feed(levelDetector, noise(20 * SAMPLE_RATE, deviation, new Random(5)));
+            assertEquals(20L * SAMPLE_RATE, levelDetector.getSamplesSeen());
+            frames += levelDetector.getSamplesSeen() / OnsetDetector.HOP_SIZE;
+        }
+
+        // A normal tail crosses 3 sigma in about 0.1% of frames
+        assertTrue(onsets.size() + " crossings in " + frames + " frames: " + onsets, onsets.size() <= frames / 500);
+    }
+
+    @Test
+    public void absoluteFloorKeepsQuietNoiseSilent() {
+        feed(noise(20 * SAMPLE_RATE, 0.005, new Random(6)));
+        assertTrue("Onsets at " + onsets, onsets.isEmpty());
+    }
+
+    private void feed(short[] signal) {
+        feed(detector, signal);
+    }
+
+    private static void feed(OnsetDetector target, short[] signal) {
+        short[] block = new short[BLOCK_SAMPLES];
+        for (int start = 0; start < signal.length; start += BLOCK_SAMPLES) {
+            int length = Math.min(BLOCK_SAMPLES, signal.length - start);
+            System.arraycopy(signal, start, block, 0, length);
+            target.processBlock(block, length, 1);
+        }
+    }
+
+    private static short[] noise(int samples, double deviation, Random random) {
+        short[] signal = new short[samples];
+        for (int i = 0; i < samples; i++) {
+            signal[i] = (short) Math.round(random.nextGaussian() * deviation * 32767);
+        }
+        return signal;
+    }
+
+    // A tone with 5 ms ramps, so that its end is not a click of its own
+    private static void addTone(short[] signal, int start, int length, double frequency, double amplitude) {
+        int ramp = SAMPLE_RATE / 200;
+        for (int i = 0; i < length; i++) {
+            double gain = Math.min(1.0, Math.min(i, length - 1 - i) / (double) ramp);
+            double value = signal[start + i]
+                    + gain * amplitude * 32767 * Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE);
+            signal[start + i] = (short) Math.max(-32768, Math.min(32767, Math.round(value)));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks the decimator with synthetic tones: flat pass band, strong rejection of everything
+ * that would alias, identical output however the input is split into blocks, and throughput.
+ */
+public class PolyphaseResamplerTest {
+    private static final int OUTPUT_RATE = 16000;
+    private static final int[] INPUT_RATES = {48000, 44100};
+    private static final double AMPLITUDE = 10000;
+
+    private static final double MAX_RIPPLE_DB = 0.1;
+    private static final double MIN_ALIAS_REJECTION_DB = 70;
+    // Stereo seconds of audio per second of CPU, overridable with -Dvisualvroom.minResampleSpeed
+    private static final double DEFAULT_MIN_SPEED = 20;
+
+    @Test
+    public void passBandIsFlat() {
+        for (int inputRate : INPUT_RATES) {
+            for (double frequency : new double[] {100, 500, 1000, 2000, 4000, 6000, 7000}) {
+                double gainDb = toneGainDb(inputRate, frequency);
+                assertTrue(String.format("%d Hz input: %.0f Hz tone changed by %.3f dB", inputRate, frequency, gainDb),
+                        Math.abs(gainDb) <= MAX_RIPPLE_DB);
+            }
+        }
+    }
+
+    @Test
+    public void tonesAboveOutputNyquistAreRejected() {
+        for (int inputRate : INPUT_RATES) {
+            for (double frequency = 8500; frequency < inputRate / 2.0; frequency += 1500) {
+                double gainDb = toneGainDb(inputRate, frequency);
+                assertTrue(String.format("%d Hz input: %.0f Hz tone aliases at %.1f dB", inputRate, frequency, gainDb),
+                        gainDb <= -MIN_ALIAS_REJECTION_DB);
+            }
+        }
+    }
+
+    @Test
+    public void outputDoesNotDependOnBlockSizes() {
+        for (int inputRate : INPUT_RATES) {
+            short[] input = tone(inputRate, 1000, inputRate / 2, 2);
+            Random random = new Random(7);
+            for (int i = 0; i < input.length; i++) {
+                input[i] += (short) random.nextInt(200);
+            }
+
+            short[] whole = resample(new PolyphaseResampler(inputRate, OUTPUT_RATE, 2), 2, input, input.length);
+            short[] blocks = resample(new PolyphaseResampler(inputRate, OUTPUT_RATE, 2), 2, input, 0);
+            assertArrayEquals(whole, blocks);
+        }
+    }
+
+    @Test
+    public void resamplesFasterThanRealTime() {
+        double minSpeed = Double.parseDouble(System.getProperty("visualvroom.minResampleSpeed",
+                String.valueOf(DEFAULT_MIN_SPEED)));
+        for (int inputRate : INPUT_RATES) {
+            PolyphaseResampler resampler = new PolyphaseResampler(inputRate, OUTPUT_RATE, 2);
+            short[] input = tone(inputRate, 1000, inputRate / 50, 2); // 20 ms blocks
+            short[] output = new short[resampler.maxOutputLength(input.length)];
+
+            int blocks = 500; // 10 s of audio
+            for (int i = 0; i < blocks / 5; i++) {
+                resampler.process(input, input.length, output);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < blocks; i++) {
+                resampler.process(input, input.length, output);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double speed = blocks * 0.02 / seconds;
+            assertTrue(String.format("%s: stereo resampled at only %.1fx real time, need %.0fx", resampler, speed, minSpeed),
+                    speed >= minSpeed);
+        }
+    }
+
+    // Output level of a tone relative to its input level, ignoring the start-up transient
+    private static double toneGainDb(int inputRate, double frequency) {
+        PolyphaseResampler resampler = new PolyphaseResampler(inputRate, OUTPUT_RATE, 1);
+        short[] output = resample(resampler, 1, tone(inputRate, frequency, inputRate, 1), 0);
+        int skip = (int) Math.ceil(resampler.getDelaySamples() * 2);
+        double sum = 0;
+        for (int i = skip; i < output.length; i++) {
+            sum += (double) output[i] * output[i];
+        }
+        double rms = Math.sqrt(sum / (output.length - skip));
+        return 20 * Math.log10(Math.max(rms, 1e-9) / (AMPLITUDE / Math.sqrt(2)));
+    }
+
+    private static short[] tone(int rate, double frequency, int frames, int channels) {
+        short[] samples = new short[frames * channels];
+        for (int i = 0; i < frames; i++) {
+            short value = (short) Math.round(AMPLITUDE * Math.sin(2 * Math.PI * frequency * i / rate));
+            for (int c = 0; c < channels; c++) {
+                samples[i * channels + c] = value;
+            }
+        }
+        return samples;
+    }
+
+    // blockSize 0 feeds irregular blocks of 1 to 2000 frames
+    private static short[] resample(PolyphaseResampler resampler, int channels, short[] input, int blockSize) {
+        short[] output = new short[resampler.maxOutputLength(input.length) + 64 * channels];
+        short[] block = new short[input.length];
+        short[] blockOut = new short[output.length];
+        Random random = new Random(3);
+        int written = 0;
+        for (int offset = 0; offset < input.length; ) {
+            int length = blockSize > 0 ? blockSize : (1 + random.nextInt(2000)) * channels;
+            length = Math.min(length, input.length - offset);
+            System.arraycopy(input, offset, block, 0, length);
+            int produced = resampler.process(block, length, blockOut);
+            System.arraycopy(blockOut, 0, output, written, produced);
+            written += produced;
+            offset += length;
+        }
+        return Arrays.copyOf(output, written);
+    }
+}
@@ -0,0 +1,123 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class QualityTierControllerTest {
+    // One capture block of 240 ms, as the service reports them
+    private static final long BLOCK_NANOS = 240_000_000L;
+
+    private static final long EVALUATE_MS = 1000;
+
+    private final QualityTierController controller = new QualityTierController();
+    private long nowMs = 10_000;
+
+    @Test
+    public void overloadStepsDownOneTierPerDwellInOrder() {
+        QualityTierController.Tier[] tiers = QualityTierController.Tier.values();
+        // Lag grows by a block's length every block, so every evaluation finds it over the limit
+        runUntilSwitch(2 * BLOCK_NANOS);
+        assertEquals(tiers[1], controller.getTier());
+        for (int i = 2; i < tiers.length; i++) {
+            long elapsed = runUntilSwitch(2 * BLOCK_NANOS);
+            assertEquals(tiers[i], controller.getTier());
+            assertTrue("Switched after " + elapsed + " ms", elapsed >= 5000 && elapsed <= 5000 + 2 * EVALUATE_MS);
+        }
+
+        // ALERT_ONLY is the bottom of the ladder
+        runFor(20_000, 2 * BLOCK_NANOS);
+        assertEquals(QualityTierController.Tier.ALERT_ONLY, controller.getTier());
+        assertEquals(tiers.length - 1, controller.getSwitchCount());
+    }
+
+    @Test
+    public void betweenTheLimitsTheTierHolds() {
+        degradeOnce();
+
+        // 300 ms of lag is above the recover limit and below the degrade limit
+        runFor(1000, BLOCK_NANOS);
+        controller.reportBlock(BLOCK_NANOS + 300_000_000L, BLOCK_NANOS, nowMs);
+        runFor(60_000, BLOCK_NANOS);
+        assertEquals(QualityTierController.Tier.LONG_HOP, controller.getTier());
+    }
+
+    @Test
+    public void recoveryNeedsUnbrokenHealth() {
+        degradeOnce();
+        degradeOnce();
+        assertEquals(QualityTierController.Tier.COMPRESSED_FEATURES, controller.getTier());
+
+        // Most of the recovery time, then a blip starts the clock over
+        runFor(12_000, BLOCK_NANOS);
+        assertEquals(QualityTierController.Tier.COMPRESSED_FEATURES, controller.getTier());
+        controller.reportQueueDepth(2);
+        runFor(2 * EVALUATE_MS, BLOCK_NANOS);
+        controller.reportQueueDepth(0);
+
+        // One tier per unbroken recovery time, never straight back to the top
+        long elapsed = runUntilSwitch(BLOCK_NANOS);
+        assertEquals(QualityTierController.Tier.LONG_HOP, controller.getTier());
+        assertTrue("Recovered after " + elapsed + " ms", elapsed >= 15_000 && elapsed <= 15_000 + 2 * EVALUATE_MS);
+        elapsed = runUntilSwitch(BLOCK_NANOS);
+        assertEquals(QualityTierController.Tier.FULL_PCM, controller.getTier());
+        assertTrue("Recovered after " + elapsed + " ms", elapsed >= 15_000 && elapsed <= 15_000 + 2 * EVALUATE_MS);
+    }
+
+    @Test
+    public void slowRequestsDegrade() {
+        for (int i = 0; i < 10; i++) {
+            controller.reportLatency(i < 8 ? 500 : 2500);
+        }
+        runFor(5000, BLOCK_NANOS);
+        assertEquals(QualityTierController.Tier.LONG_HOP, controller.getTier());
+    }
+
+    @Test
+    public void deepQueueDegrades() {
+        controller.reportQueueDepth(3);
+        runFor(5000, BLOCK_NANOS);
+        assertEquals(QualityTierController.Tier.FULL_PCM, controller.getTier());
+
+        controller.reportQueueDepth(4);
+        runFor(1000, BLOCK_NANOS);
+        assertEquals(QualityTierController.Tier.LONG_HOP, controller.getTier());
+    }
+
+    @Test
+    public void onlyFullPcmUsesTheShortHop() {
+        assertEquals(1, controller.getHopMultiplier());
+        degradeOnce();
+        assertEquals(2, controller.getHopMultiplier());
+        degradeOnce();
+        assertEquals(2, controller.getHopMultiplier());
+    }
+
+    // Holds the queue over its limit until the controller steps down
+    private void degradeOnce() {
+        QualityTierController.Tier before = controller.getTier();
+        controller.reportQueueDepth(4);
+        runUntilSwitch(BLOCK_NANOS);
+        controller.reportQueueDepth(0);
+        assertEquals(before.ordinal() + 1, controller.getTier().ordinal());
+    }
+
+    // Feeds blocks until the tier changes and returns how long that took
+    private long runUntilSwitch(long processingNanos) {
+        long start = nowMs;
+        long switches = controller.getSwitchCount();
+        while (controller.getSwitchCount() == switches) {
+            assertTrue("No switch within a minute", nowMs - start < 60_000);
+            runFor(1, processingNanos);
+        }
+        return nowMs - start;
+    }
+
+    private void runFor(long ms, long processingNanos) {
+        for (long end = nowMs + ms; nowMs < end; ) {
+            nowMs += BLOCK_NANOS / 1_000_000;
+            controller.reportBlock(processingNanos, BLOCK_NANOS, nowMs);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class RecordingSpoolTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File cacheDir;
+    private File spoolDir;
+
+    @Before
+    public void setUp() {
+        cacheDir = folder.getRoot();
+        spoolDir = new File(cacheDir, "recordings");
+    }
+
+    @Test
+    public void leastRecentlyUsedFilesAreEvictedOverBudget() throws IOException {
+        RecordingSpool spool = new RecordingSpool(spoolDir, 3000, 10);
+        File first = write(spool, "first", 1000, 1000);
+        File second = write(spool, "second", 1000, 2000);
+        File third = write(spool, "third", 1000, 3000);
+
+        spool.open(first);
+        spool.close(first); // first is now the most recently used
+        write(spool, "fourth", 1000, 4000);
+
+        assertTrue(first.exists());
+        assertFalse(second.exists());
+        assertTrue(third.exists());
+        assertEquals(1, spool.getEvicted());
+        assertTrue(spool.getUsedBytes() <= 3000);
+    }
+
+    @Test
+    public void pinnedFilesAreNotEvicted() throws IOException {
+        RecordingSpool spool = new RecordingSpool(spoolDir, 10_000, 2);
+        File uploading = write(spool, "uploading", 100, 1000);
+        spool.open(uploading);
+        write(spool, "b", 100, 2000);
+        write(spool, "c", 100, 3000);
+
+        assertTrue(uploading.exists());
+        assertEquals(2, spool.getFiles().size());
+    }
+
+    @Test
+    public void orphansAndLegacyRecordingsAreReclaimed() throws IOException {
+        RecordingSpool crashed = new RecordingSpool(spoolDir, 10_000, 10);
+        crashed.create("unfinished");
+        File legacy = new File(cacheDir, "audio_recording123.m4a");
+        assertTrue(legacy.createNewFile());
+        File unrelated = new File(cacheDir, "model.bin");
+        assertTrue(unrelated.createNewFile());
+
+        RecordingSpool restarted = new RecordingSpool(spoolDir, 10_000, 10);
+        assertEquals(2, restarted.reclaimOrphans(cacheDir));
+        assertFalse(new File(spoolDir, "unfinished.part").exists());
+        assertFalse(legacy.exists());
+        assertTrue(unrelated.exists());
+    }
+
+    @Test
+    public void recycledFilesAreReused() throws IOException {
+        RecordingSpool spool = new RecordingSpool(spoolDir, 1 << 20, 10);
+        File clip = spool.commit(spool.preallocate("clip-1", 4096));
+        spool.recycle(clip);
+
+        File next = spool.preallocate("clip-2", 8192);
+        assertEquals(1, spool.getReused());
+        assertEquals(8192, next.length());
+        assertFalse(clip.exists());
+    }
+
+    private static File write(RecordingSpool spool, String name, int bytes, long lastModified) throws IOException {
+        File part = spool.create(name);
+        try (FileOutputStream out = new FileOutputStream(part)) {
+            out.write(new byte[bytes]);
+        }
+        File committed = spool.commit(part);
+        committed.setLastModified(lastModified);
+        return committed;
+    }
+}
@@ -0,0 +1,121 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class RequestSchedulerTest {
+    private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+    private MockWebServer server;
+    // When the server had read each path's whole request
+    private final Map<String, Long> receivedAt = new ConcurrentHashMap<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                receivedAt.put(request.getPath(), System.nanoTime());
+                MockResponse response = new MockResponse();
+                return request.getPath().startsWith("/slow")
+                        ? response.setHeadersDelay(500, TimeUnit.MILLISECONDS) : response;
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void transcriptionsRunOneAtATime() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler();
+        OkHttpClient client = HttpClientProvider.get(HttpClientProvider.Profile.TRANSCRIPTION);
+        CountDownLatch done = new CountDownLatch(2);
+        scheduler.enqueue(RequestScheduler.Priority.TRANSCRIPTION, client, post("/slow/1", 10), countDown(done));
+        scheduler.enqueue(RequestScheduler.Priority.TRANSCRIPTION, client, post("/slow/2", 10), countDown(done));
+
+        Thread.sleep(250);
+        assertEquals(1, server.getRequestCount());
+        assertTrue(done.await(3, TimeUnit.SECONDS));
+        assertTrue(receivedAt.get("/slow/2") - receivedAt.get("/slow/1") >= 400_000_000L);
+    }
+
+    @Test
+    public void uploadWaitsForAlertInFlight() throws Exception {
+        OkHttpClient alertClient = HttpClientProvider.get(HttpClientProvider.Profile.ALERT);
+        CountDownLatch alertDone = new CountDownLatch(1);
+        long[] alertFinishedAt = new long[1];
+        alertClient.newCall(post("/slow/predict", 10)).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                alertDone.countDown();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+                alertFinishedAt[0] = System.nanoTime();
+                alertDone.countDown();
+            }
+        });
+        while (RequestScheduler.getInstance().getAlertsInFlight() == 0) {
+            Thread.sleep(5);
+        }
+
+        CountDownLatch uploadDone = new CountDownLatch(1);
+        RequestScheduler.getInstance().enqueue(RequestScheduler.Priority.BULK,
+                HttpClientProvider.get(HttpClientProvider.Profile.UPLOAD), post("/upload", 1 << 20),
+                countDown(uploadDone));
+
+        assertTrue(alertDone.await(3, TimeUnit.SECONDS));
+        assertTrue(uploadDone.await(3, TimeUnit.SECONDS));
+        // The megabyte could only finish once the alert had its answer
+        assertTrue(receivedAt.get("/upload") >= alertFinishedAt[0] - 50_000_000L);
+    }
+
+    private Request post(String path, int bytes) {
+        return new Request.Builder().url(server.url(path))
+                .post(RequestBody.create(OCTET_STREAM, new byte[bytes])).build();
+    }
+
+    private static Callback countDown(CountDownLatch latch) {
+        return new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+                latch.countDown();
+            }
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class StaleResultFilterTest {
+
+    @Test
+    public void dropsResultsPastTheCaptureDeadline() {
+        StaleResultFilter filter = new StaleResultFilter(3000);
+        long first = filter.nextSequence();
+        long second = filter.nextSequence();
+
+        assertFalse(filter.accept(first, 0, 3001));
+        assertTrue(filter.accept(second, 1000, 3001));
+        assertEquals(1, filter.getDroppedLate());
+        assertEquals(1, filter.getAccepted());
+    }
+
+    @Test
+    public void dropsResultsOvertakenByNewerWindows() {
+        StaleResultFilter filter = new StaleResultFilter(3000);
+        long first = filter.nextSequence();
+        long second = filter.nextSequence();
+        long third = filter.nextSequence();
+
+        assertTrue(filter.accept(second, 1000, 1500));
+        assertFalse(filter.accept(first, 500, 1600));
+        assertTrue(filter.accept(third, 1500, 1700));
+        assertEquals(1, filter.getDroppedOutOfOrder());
+    }
+
+    @Test
+    public void sequenceSurvivesReset() {
+        StaleResultFilter filter = new StaleResultFilter(3000);
+        long old = filter.nextSequence();
+        filter.reset();
+        long next = filter.nextSequence();
+
+        assertTrue(filter.accept(next, 0, 100));
+        assertFalse(filter.accept(old, 0, 200));
+        assertEquals(0, filter.getDroppedLate());
+    }
+}
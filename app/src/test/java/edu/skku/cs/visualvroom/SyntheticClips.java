@@ -0,0 +1,135 @@
+package edu.skku.cs.visualvroom;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Deterministic stereo test clips (16 kHz, 5 seconds) shared by the feature extraction tests.
+ * StrictMath and seeded Random keep the samples bit-identical on every JVM so the golden
+ * images stay valid.
+ */
+public final class SyntheticClips {
+    static final int SAMPLE_RATE = 16000;
+    static final int LENGTH = SAMPLE_RATE * 5;
+
+    // Low-level dither keeps every FFT bin well above float rounding noise
+    private static final double DITHER_AMPLITUDE = 2.0;
+
+    static final String[] NAMES = {
+            "silence",
+            "tone_1khz_left",
+            "siren_sweep_right_delay",
+            "horn_harmonics",
+            "white_noise",
+            "impulse_train"
+    };
+
+    private SyntheticClips() {}
+
+    /** Returns {left, right} for the named clip. */
+    static short[][] generate(String name) {
+        double[] left = new double[LENGTH];
+        double[] right = new double[LENGTH];
+
+        switch (name) {
+            case "silence":
+                return new short[][]{new short[LENGTH], new short[LENGTH]};
+
+            case "tone_1khz_left":
+                for (int i = 0; i < LENGTH; i++) {
+                    double s = StrictMath.sin(2 * StrictMath.PI * 1000.0 * i / SAMPLE_RATE);
+                    left[i] = 0.3 * s;
+                    right[i] = 0.1 * s;
+                }
+                break;
+
+            case "siren_sweep_right_delay": {
+                // 500 -> 1800 Hz sweep every second, right channel leads by 5 samples
+                double phase = 0;
+                double[] mono = new double[LENGTH + 5];
+                for (int i = 0; i < mono.length; i++) {
+                    double t = (i % SAMPLE_RATE) / (double) SAMPLE_RATE;
+                    double freq = 500.0 + 1300.0 * t;
+                    phase += 2 * StrictMath.PI * freq / SAMPLE_RATE;
+                    mono[i] = 0.4 * StrictMath.sin(phase);
+                }
+                for (int i = 0; i < LENGTH; i++) {
+                    left[i] = 0.6 * mono[i];
+                    right[i] = mono[i + 5];
+                }
+                break;
+            }
+
+            case "horn_harmonics":
+                for (int i = 0; i < LENGTH; i++) {
+                    double t = i / (double) SAMPLE_RATE;
+                    double s = 0;
+                    for (int h = 1; h <= 6; h++) {
+                        s += StrictMath.sin(2 * StrictMath.PI * 420.0 * h * t) / h;
+                    }
+                    double envelope = (t >= 1.0 && t < 3.5) ? 0.25 : 0.01;
+                    left[i] = envelope * s;
+                    right[i] = envelope * s * 0.8;
+                }
+                break;
+
+            case "white_noise": {
+                Random random = new Random(26L);
+                for (int i = 0; i < LENGTH; i++) {
+                    left[i] = 0.2 * random.nextGaussian();
+                    right[i] = 0.2 * random.nextGaussian();
+                }
+                break;
+            }
+
+            case "impulse_train":
+                for (int i = 0; i < LENGTH; i += SAMPLE_RATE / 4) {
+                    left[i] = 0.9;
+                    right[Math.min(i + 3, LENGTH - 1)] = 0.7;
+                }
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown clip: " + name);
+        }
+
+        Random dither = new Random(name.hashCode());
+        return new short[][]{
+                toPcm(left, dither),
+                toPcm(right, dither)
+        };
+    }
+
+    private static short[] toPcm(double[] signal, Random dither) {
+        short[] pcm = new short[signal.length];
+        for (int i = 0; i < signal.length; i++) {
+            double value = signal[i] * 32767.0 + (dither.nextDouble() * 2 - 1) * DITHER_AMPLITUDE;
+            pcm[i] = (short) Math.max(-32768, Math.min(32767, Math.round(value)));
+        }
+        return pcm;
+    }
+
+    /** Joins {left, right} into interleaved little-endian stereo PCM. */
+    public static byte[] interleave(short[] left, short[] right) {
+        ByteBuffer pcm = ByteBuffer.allocate(left.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < left.length; i++) {
+            pcm.putShort(left[i]).putShort(right[i]);
+        }
+        return pcm.array();
+    }
+
+    /** Splits interleaved little-endian stereo PCM into {left, right}. */
+    public static short[][] deinterleave(byte[] pcm) {
+        short[] interleaved = new short[pcm.length / 2];
+        ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(interleaved);
+
+        short[] left = new short[interleaved.length / 2];
+        short[] right = new short[interleaved.length / 2];
+        for (int i = 0; i < left.length; i++) {
+            left[i] = interleaved[2 * i];
+            right[i] = interleaved[2 * i + 1];
+        }
+        return new short[][]{left, right};
+    }
+}
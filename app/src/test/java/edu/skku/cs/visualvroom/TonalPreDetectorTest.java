@@ -0,0 +1,89 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TonalPreDetectorTest {
+    // Capture blocks of 240 ms, interleaved stereo, as the service delivers them
+    private static final int BLOCK_FRAMES = SyntheticClips.SAMPLE_RATE * 240 / 1000;
+
+    // Per-block budget, overridable with -Dvisualvroom.tonalBudgetMicros; 0.1% of the block
+    private static final long DEFAULT_BUDGET_MICROS = 240;
+
+    private final List<String> events = new ArrayList<>();
+    private final TonalPreDetector detector =
+            new TonalPreDetector(SyntheticClips.SAMPLE_RATE, (type, score) -> events.add(type));
+
+    @Test
+    public void sirenSweepTriggersSiren() {
+        short[][] clip = SyntheticClips.generate("siren_sweep_right_delay");
+        feed(clip[0], clip[1]);
+        assertEquals("Siren", events.get(0));
+        assertTrue(detector.getSirenScore() >= detector.getTriggerScore());
+    }
+
+    @Test
+    public void hornHarmonicsTriggerHorn() {
+        short[][] clip = SyntheticClips.generate("horn_harmonics");
+        feed(clip[0], clip[1]);
+        assertEquals("Horn", events.get(0));
+    }
+
+    @Test
+    public void roadNoiseStaysQuiet() {
+        // Rumble: white noise through a one-pole low-pass, plus a little hiss
+        Random random = new Random(11);
+        short[] left = new short[SyntheticClips.LENGTH];
+        short[] right = new short[SyntheticClips.LENGTH];
+        double rumble = 0;
+        for (int i = 0; i < left.length; i++) {
+            rumble = 0.97 * rumble + 0.03 * (random.nextDouble() * 2 - 1);
+            double hiss = (random.nextDouble() * 2 - 1) * 0.02;
+            left[i] = (short) Math.round((rumble * 2 + hiss) * 32767 * 0.5);
+            right[i] = (short) Math.round((rumble * 2 - hiss) * 32767 * 0.5);
+        }
+        feed(left, right);
+
+        short[][] noise = SyntheticClips.generate("white_noise");
+        feed(noise[0], noise[1]);
+        assertTrue("Noise raised " + events, events.isEmpty());
+    }
+
+    @Test
+    public void blockStaysWithinCpuBudget() {
+        long budgetMicros = Long.getLong("visualvroom.tonalBudgetMicros", DEFAULT_BUDGET_MICROS);
+        short[][] clip = SyntheticClips.generate("siren_sweep_right_delay");
+        // Warm up the JIT, then measure on a fresh detector
+        for (int i = 0; i < 100; i++) {
+            feed(clip[0], clip[1]);
+        }
+        TonalPreDetector measured = new TonalPreDetector(SyntheticClips.SAMPLE_RATE, (type, score) -> { });
+        for (int i = 0; i < 20; i++) {
+            feed(measured, clip[0], clip[1]);
+        }
+        double micros = measured.getAverageBlockMicros();
+        assertTrue(String.format("Pre-detector took %.1f us per 240 ms block, budget is %d us", micros, budgetMicros),
+                micros <= budgetMicros);
+    }
+
+    private void feed(short[] left, short[] right) {
+        feed(detector, left, right);
+    }
+
+    private static void feed(TonalPreDetector target, short[] left, short[] right) {
+        short[] block = new short[BLOCK_FRAMES * 2];
+        for (int start = 0; start + BLOCK_FRAMES <= left.length; start += BLOCK_FRAMES) {
+            for (int i = 0; i < BLOCK_FRAMES; i++) {
+                block[2 * i] = left[start + i];
+                block[2 * i + 1] = right[start + i];
+            }
+            target.processBlock(block, block.length, 2);
+        }
+    }
+}
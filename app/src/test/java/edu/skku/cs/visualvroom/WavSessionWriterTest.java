@@ -0,0 +1,70 @@
+package edu.skku.cs.visualvroom;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+public class WavSessionWriterTest {
+    private static final int SAMPLE_RATE = 16000;
+    private static final int CHANNELS = 2;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private RecordingSpool spool;
+
+    @Before
+    public void setUp() {
+        directory = folder.getRoot();
+        spool = new RecordingSpool(new File(directory, "sessions"), 64L << 20, 100);
+    }
+
+    @Test
+    public void sessionIsSplitIntoCompleteWavFiles() throws Exception {
+        WavSessionWriter writer = new WavSessionWriter(spool, SAMPLE_RATE, CHANNELS, 1024 * 1024);
+        writer.start();
+        short[] block = new short[320 * CHANNELS]; // 20 ms
+        int frame = 0;
+        for (int b = 0; b < 50 * 20; b++) { // 20 s, about 1.3 MB
+            for (int i = 0; i < 320; i++, frame++) {
+                block[2 * i] = (short) frame;
+                block[2 * i + 1] = (short) -frame;
+            }
+            writer.write(block, block.length);
+            if (b % 50 == 0) Thread.sleep(5);
+        }
+        writer.stop();
+
+        List<File> files = spool.getFiles();
+        assertEquals(2, files.size());
+        assertEquals(0, writer.getFramesDropped());
+        files.sort((a, b) -> a.getName().compareTo(b.getName()));
+
+        // Every file's header matches its length, and the frames run on across files
+        int expected = 0;
+        for (File file : files) {
+            ByteBuffer wav = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals("RIFF", new String(wav.array(), 0, 4, StandardCharsets.US_ASCII));
+            assertEquals(wav.capacity() - 8, wav.getInt(4));
+            int dataBytes = wav.getInt(WavHeader.BASIC_SIZE - 4);
+            assertEquals(wav.capacity() - WavHeader.BASIC_SIZE, dataBytes);
+            for (int i = 0; i < dataBytes / 4; i++, expected++) {
+                assertEquals((short) expected, wav.getShort(WavHeader.BASIC_SIZE + 4 * i));
+                assertEquals((short) -expected, wav.getShort(WavHeader.BASIC_SIZE + 4 * i + 2));
+            }
+        }
+        assertEquals(frame, expected);
+        assertEquals(frame, writer.getFramesWritten());
+    }
+}
@@ -0,0 +1,151 @@
+package edu.skku.cs.visualvroom.inference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import edu.skku.cs.visualvroom.AudioRecorder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class HedgedInferenceBackendTest {
+    private static final long DEADLINE_MS = 3000;
+    private static final String RESULT = "{\"status\":\"success\",\"inference_result\":"
+            + "{\"vehicle_type\":\"Siren\",\"direction\":\"L\",\"confidence\":0.95,\"should_notify\":true}}";
+
+    private final OkHttpClient client = new OkHttpClient();
+    private MockWebServer primaryServer;
+    private MockWebServer secondaryServer;
+    private HedgedInferenceBackend backend;
+
+    @Before
+    public void setUp() throws Exception {
+        primaryServer = new MockWebServer();
+        secondaryServer = new MockWebServer();
+        primaryServer.start();
+        secondaryServer.start();
+        backend = new HedgedInferenceBackend(
+                new RemoteInferenceBackend("primary", client, primaryServer.url("/predict").toString(), null),
+                new RemoteInferenceBackend("secondary", client, secondaryServer.url("/predict").toString(), null));
+        backend.setDefaultHedgeDelayMs(100);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        backend.close();
+        primaryServer.shutdown();
+        secondaryServer.shutdown();
+    }
+
+    @Test
+    public void fastPrimaryIsNotHedged() throws Exception {
+        backend.setDefaultHedgeDelayMs(1000);
+        primaryServer.enqueue(new MockResponse().setBody(RESULT));
+
+        assertEquals("primary", infer());
+        Thread.sleep(200);
+        assertEquals(0, secondaryServer.getRequestCount());
+        assertEquals(0, backend.getHedgeCount());
+    }
+
+    @Test
+    public void slowPrimaryIsHedgedToSecondary() throws Exception {
+        primaryServer.enqueue(delayed(1500));
+        secondaryServer.enqueue(new MockResponse().setBody(RESULT));
+
+        long start = System.currentTimeMillis();
+        assertEquals("secondary", infer());
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(1, backend.getHedgeCount());
+    }
+
+    @Test
+    public void failedPrimaryFailsOverWithoutBudget() throws Exception {
+        backend.setHedgeBudget(0, 0);
+        primaryServer.enqueue(new MockResponse().setResponseCode(500));
+        secondaryServer.enqueue(new MockResponse().setBody(RESULT));
+
+        assertEquals("secondary", infer());
+        assertEquals(0, backend.getHedgeCount());
+    }
+
+    @Test
+    public void budgetCapsHedges() throws Exception {
+        backend.setHedgeBudget(0, 1);
+        for (int i = 0; i < 3; i++) {
+            primaryServer.enqueue(delayed(300));
+            secondaryServer.enqueue(new MockResponse().setBody(RESULT));
+        }
+
+        assertEquals("secondary", infer());
+        assertEquals("primary", infer());
+        assertEquals("primary", infer());
+        assertEquals(1, backend.getHedgeCount());
+        assertEquals(1, secondaryServer.getRequestCount());
+    }
+
+    @Test
+    public void hedgeDelayFollowsPrimaryLatency() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            primaryServer.enqueue(delayed(150));
+        }
+        backend.setDefaultHedgeDelayMs(1000);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("primary", infer());
+        }
+
+        long delay = backend.getHedgeDelayMs();
+        assertTrue("hedge delay " + delay, delay >= 150 && delay < 1000);
+    }
+
+    @Test
+    public void primaryThatLosesStillCountsTowardsTheDelay() throws Exception {
+        backend.setHedgeBudget(1, 20);
+        for (int i = 0; i < 10; i++) {
+            primaryServer.enqueue(delayed(20));
+        }
+        for (int i = 0; i < 10; i++) {
+            primaryServer.enqueue(delayed(1500));
+            secondaryServer.enqueue(delayed(200));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals("primary", infer());
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals("secondary", infer());
+        }
+
+        // Half the primary's recent calls took over 200 ms, so the 90th percentile must too
+        long delay = backend.getHedgeDelayMs();
+        assertTrue("hedge delay " + delay, delay >= 200);
+    }
+
+    private static MockResponse delayed(long delayMs) {
+        return new MockResponse().setBody(RESULT).setHeadersDelay(delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private String infer() throws Exception {
+        CompletableFuture<String> outcome = new CompletableFuture<>();
+        InferenceRequest request = InferenceRequest.pcm(16000, new byte[64], new byte[64]);
+        backend.infer(request, DEADLINE_MS, new InferenceBackend.Callback() {
+            @Override
+            public void onResult(AudioRecorder.InferenceResult result) {
+                outcome.complete(result.getBackend());
+            }
+
+            @Override
+            public void onError(String error) {
+                outcome.complete("error: " + error);
+            }
+        });
+        return outcome.get(5, TimeUnit.SECONDS);
+    }
+}
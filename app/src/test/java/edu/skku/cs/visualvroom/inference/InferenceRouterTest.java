@@ -0,0 +1,192 @@
+package edu.skku.cs.visualvroom.inference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import edu.skku.cs.visualvroom.AudioRecorder;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class InferenceRouterTest {
+    private static final long DEADLINE_MS = 1000;
+
+    private final List<InferenceRouter> routers = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (InferenceRouter router : routers) {
+            router.close();
+        }
+    }
+
+    @Test
+    public void fastPrimaryWins() throws Exception {
+        InferenceRouter router = router(new FakeBackend("server", 50, false), new FakeBackend("on_device", 10, false));
+        assertEquals("server", route(router));
+    }
+
+    @Test
+    public void slowPrimaryFallsBackBeforeDeadline() throws Exception {
+        FakeBackend server = new FakeBackend("server", 900, false);
+        InferenceRouter router = router(server, new FakeBackend("on_device", 10, false));
+        assertEquals("on_device", route(router));
+        assertEquals(1, server.cancelled);
+    }
+
+    @Test
+    public void failedPrimaryStartsFallbackImmediately() throws Exception {
+        InferenceRouter router = router(new FakeBackend("server", 10, true), new FakeBackend("on_device", 10, false));
+        long start = System.currentTimeMillis();
+        assertEquals("on_device", route(router));
+        assertTrue(System.currentTimeMillis() - start < DEADLINE_MS / 2);
+    }
+
+    @Test
+    public void missedDeadlineIsAnError() throws Exception {
+        InferenceRouter router = router(new FakeBackend("server", 3000, false));
+        assertTrue(route(router).startsWith("error"));
+    }
+
+    @Test
+    public void breakerOpensAndSkipsFailingBackend() throws Exception {
+        FakeBackend server = new FakeBackend("server", 10, true);
+        InferenceRouter router = router(server, new FakeBackend("on_device", 10, false));
+        for (int i = 0; i < 5; i++) {
+            route(router);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, router.getBreaker(server).getState());
+
+        int calls = server.calls;
+        assertEquals("on_device", route(router));
+        assertEquals(calls, server.calls);
+    }
+
+    @Test
+    public void slowAnswersWithinTheDeadlineOpenTheBreaker() throws Exception {
+        FakeBackend server = new FakeBackend("server", DEADLINE_MS / 2, false);
+        InferenceRouter router = router(server);
+        router.getBreaker(server).setMaxLatencyMs(DEADLINE_MS / 4);
+        for (int i = 0; i < 5; i++) {
+            assertEquals("server", route(router));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, router.getBreaker(server).getState());
+        assertTrue(route(router).startsWith("error"));
+    }
+
+    @Test
+    public void fallbackIsTimedFromItsOwnStart() throws Exception {
+        FakeBackend server = new FakeBackend("server", 900, false);
+        FakeBackend local = new FakeBackend("on_device", 10, false);
+        InferenceRouter router = router(server, local);
+        router.getBreaker(local).setMaxLatencyMs(DEADLINE_MS / 4);
+        for (int i = 0; i < 5; i++) {
+            assertEquals("on_device", route(router));
+        }
+        // Answers arrive after the fallback delay, but each took only 10 ms once the fallback started
+        assertEquals(CircuitBreaker.State.CLOSED, router.getBreaker(local).getState());
+    }
+
+    @Test
+    public void cancelledAttemptNeverCallsBack() throws Exception {
+        FakeBackend server = new FakeBackend("server", 200, false);
+        InferenceRouter router = router(server);
+        CompletableFuture<String> outcome = new CompletableFuture<>();
+        InferenceBackend.Pending attempt = router.route(InferenceRequest.pcm(16000, new byte[4], new byte[4]),
+                DEADLINE_MS, new InferenceBackend.Callback() {
+            @Override
+            public void onResult(AudioRecorder.InferenceResult result) {
+                outcome.complete(result.getBackend());
+            }
+
+            @Override
+            public void onError(String error) {
+                outcome.complete("error: " + error);
+            }
+        });
+        attempt.cancel();
+
+        Thread.sleep(DEADLINE_MS + 200);
+        assertFalse(outcome.isDone());
+        assertEquals(1, server.cancelled);
+        assertEquals(CircuitBreaker.State.CLOSED, router.getBreaker(server).getState());
+    }
+
+    private InferenceRouter router(InferenceBackend... backends) {
+        InferenceRouter router = new InferenceRouter(Arrays.asList(backends));
+        routers.add(router);
+        return router;
+    }
+
+    private static String route(InferenceRouter router) throws Exception {
+        CompletableFuture<String> outcome = new CompletableFuture<>();
+        router.route(InferenceRequest.pcm(16000, new byte[4], new byte[4]), DEADLINE_MS, new InferenceBackend.Callback() {
+            @Override
+            public void onResult(AudioRecorder.InferenceResult result) {
+                outcome.complete(result.getBackend());
+            }
+
+            @Override
+            public void onError(String error) {
+                outcome.complete("error: " + error);
+            }
+        });
+        return outcome.get(3, TimeUnit.SECONDS);
+    }
+
+    private static class FakeBackend implements InferenceBackend {
+        private final String name;
+        private final long delayMs;
+        private final boolean fails;
+        private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        volatile int calls = 0;
+        volatile int cancelled = 0;
+
+        FakeBackend(String name, long delayMs, boolean fails) {
+            this.name = name;
+            this.delayMs = delayMs;
+            this.fails = fails;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean supports(InferenceRequest request) {
+            return true;
+        }
+
+        @Override
+        public Pending infer(InferenceRequest request, long deadlineMs, Callback callback) {
+            calls++;
+            ScheduledFuture<?> future = executor.schedule(() -> {
+                if (fails) {
+                    callback.onError("failed");
+                } else {
+                    callback.onResult(new AudioRecorder.InferenceResult("Siren", "L", 0.9, true, false, name));
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+            return () -> {
+                cancelled++;
+                future.cancel(false);
+            };
+        }
+
+        @Override
+        public void close() {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package edu.skku.cs.visualvroom.inference;
+
+import edu.skku.cs.visualvroom.AudioProcessor;
+import edu.skku.cs.visualvroom.AudioRecorder;
+import edu.skku.cs.visualvroom.SyntheticClips;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Engine checks plus an inference-time benchmark. The server parity check runs when
+ * src/test/resources/parity holds model.vvq, server_outputs.txt and the listed clips
+ * (interleaved little-endian stereo PCM); each line of server_outputs.txt reads
+ * "clip.pcm vehicle_type direction confidence".
+ */
+public class OnDeviceClassifierTest {
+    private static final int IMAGE_HEIGHT = 428;
+    private static final int IMAGE_WIDTH = 241;
+
+    // Allowed confidence gap to the server model
+    private static final double PARITY_CONFIDENCE_TOLERANCE = 0.05;
+
+    // Per-inference budget, overridable with -Dvisualvroom.inferenceBudgetMs
+    private static final long DEFAULT_BUDGET_MS = 250;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 10;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File modelFile;
+
+    @Before
+    public void setUp() throws IOException {
+        modelFile = folder.newFile("benchmark.vvq");
+        TestModelWriter.writeBenchmarkModel(modelFile);
+    }
+
+    @Test
+    public void forkJoinMatchesSingleThreadedRun() throws IOException {
+        QuantizedModel model = QuantizedModel.load(modelFile);
+        CnnInferenceEngine single = new CnnInferenceEngine(model, 1);
+        CnnInferenceEngine parallel = new CnnInferenceEngine(model, 4);
+        try {
+            byte[] image = randomImage(1L);
+            float[] expected = single.run(image);
+            float[] actual = parallel.run(image);
+            assertEquals(TestModelWriter.LABELS.length, actual.length);
+            assertTrue(Arrays.equals(expected, actual));
+        } finally {
+            single.close();
+            parallel.close();
+        }
+    }
+
+    @Test
+    public void classifySplitsLabelIntoTypeAndDirection() throws IOException {
+        OnDeviceClassifier classifier = OnDeviceClassifier.load(modelFile);
+        try {
+            AudioRecorder.InferenceResult result = classifier.classify(randomImage(2L));
+            assertTrue(Arrays.asList("Siren", "Horn", "Bike").contains(result.getVehicleType()));
+            assertTrue(Arrays.asList("L", "R").contains(result.getDirection()));
+            assertTrue(result.getConfidence() > 0 && result.getConfidence() <= 1);
+        } finally {
+            classifier.close();
+        }
+    }
+
+    @Test
+    public void rejectsCorruptModelFile() throws IOException {
+        File corrupt = folder.newFile("corrupt.vvq");
+        Files.write(corrupt.toPath(), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        try {
+            QuantizedModel.load(corrupt);
+            fail("Corrupt model should not load");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void inferenceStaysWithinBudget() throws IOException {
+        long budgetMs = Long.getLong("visualvroom.inferenceBudgetMs", DEFAULT_BUDGET_MS);
+        OnDeviceClassifier classifier = OnDeviceClassifier.load(modelFile);
+        try {
+            byte[] image = randomImage(3L);
+            for (int i = 0; i < WARMUP_RUNS; i++) {
+                classifier.classify(image);
+            }
+
+            long[] nanos = new long[MEASURED_RUNS];
+            for (int i = 0; i < MEASURED_RUNS; i++) {
+                long start = System.nanoTime();
+                classifier.classify(image);
+                nanos[i] = System.nanoTime() - start;
+            }
+
+            Arrays.sort(nanos);
+            long medianMs = nanos[MEASURED_RUNS / 2] / 1_000_000;
+            assertTrue(String.format("Inference took %d ms (median, worst %d ms) on %d cores, budget is %d ms",
+                    medianMs, nanos[MEASURED_RUNS - 1] / 1_000_000,
+                    Runtime.getRuntime().availableProcessors(), budgetMs), medianMs <= budgetMs);
+        } finally {
+            classifier.close();
+        }
+    }
+
+    @Test
+    public void matchesServerModelOutputs() throws Exception {
+        URL parityModel = getClass().getClassLoader().getResource("parity/model.vvq");
+        URL expectations = getClass().getClassLoader().getResource("parity/server_outputs.txt");
+        assumeTrue("No server parity fixtures checked in under parity/", parityModel != null && expectations != null);
+
+        OnDeviceClassifier classifier = OnDeviceClassifier.load(new File(parityModel.toURI()));
+        AudioProcessor processor = new AudioProcessor();
+        List<String> failures = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(expectations.openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] fields = line.split("\\s+");
+                URL clip = getClass().getClassLoader().getResource("parity/" + fields[0]);
+                short[][] channels = SyntheticClips.deinterleave(Files.readAllBytes(new File(clip.toURI()).toPath()));
+                AudioRecorder.InferenceResult result =
+                        classifier.classify(processor.processAudioChannels(channels[0], channels[1]));
+
+                double expectedConfidence = Double.parseDouble(fields[3]);
+                if (!fields[1].equals(result.getVehicleType())
+                        || !fields[2].equals(result.getDirection())
+                        || Math.abs(expectedConfidence - result.getConfidence()) > PARITY_CONFIDENCE_TOLERANCE) {
+                    failures.add(String.format("  %s: server %s/%s %.3f, device %s/%s %.3f", fields[0],
+                            fields[1], fields[2], expectedConfidence,
+                            result.getVehicleType(), result.getDirection(), result.getConfidence()));
+                }
+            }
+        } finally {
+            classifier.close();
+        }
+
+        if (!failures.isEmpty()) {
+            fail("On-device model disagrees with server:\n" + String.join("\n", failures));
+        }
+    }
+
+    private byte[] randomImage(long seed) {
+        byte[] image = new byte[IMAGE_HEIGHT * IMAGE_WIDTH];
+        new Random(seed).nextBytes(image);
+        return image;
+    }
+}
@@ -0,0 +1,95 @@
+package edu.skku.cs.visualvroom.inference;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/** Writes small random models in the {@link QuantizedModel} file format. */
+final class TestModelWriter {
+    static final String[] LABELS = {"Siren_L", "Siren_R", "Horn_L", "Horn_R", "Bike_L", "Bike_R"};
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+    private final Random random;
+    private float currentScale;
+    private int layerCount;
+    private int layerCountPosition;
+
+    TestModelWriter(long seed, int inputHeight, int inputWidth) {
+        random = new Random(seed);
+        currentScale = 1f / 255f;
+        buffer.putInt(QuantizedModel.MAGIC);
+        buffer.putInt(inputHeight).putInt(inputWidth).putFloat(currentScale).putInt(-128);
+        buffer.putInt(LABELS.length);
+        for (String label : LABELS) {
+            byte[] utf8 = label.getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) utf8.length).put(utf8);
+        }
+        layerCountPosition = buffer.position();
+        buffer.putInt(0);
+    }
+
+    TestModelWriter conv(int outChannels, int inChannels, int kernel, int stride) {
+        int fanIn = inChannels * kernel * kernel;
+        float weightScale = 0.02f;
+        float outputScale = (float) (currentScale * weightScale * 64 * Math.sqrt(fanIn));
+        buffer.putInt(QuantizedModel.LAYER_CONV2D);
+        buffer.putInt(outChannels).putInt(inChannels).putInt(kernel).putInt(kernel)
+                .putInt(stride).putInt(1).putInt(1).putFloat(outputScale).putInt(-128);
+        for (int i = 0; i < outChannels; i++) buffer.putFloat(weightScale);
+        for (int i = 0; i < outChannels; i++) buffer.putInt(random.nextInt(2001) - 1000);
+        for (int i = 0; i < outChannels * fanIn; i++) buffer.put((byte) (random.nextInt(255) - 127));
+        currentScale = outputScale;
+        layerCount++;
+        return this;
+    }
+
+    TestModelWriter maxPool(int size) {
+        buffer.putInt(QuantizedModel.LAYER_MAX_POOL).putInt(size).putInt(size).putInt(size);
+        layerCount++;
+        return this;
+    }
+
+    TestModelWriter globalAveragePool() {
+        buffer.putInt(QuantizedModel.LAYER_GLOBAL_AVG_POOL);
+        layerCount++;
+        return this;
+    }
+
+    TestModelWriter dense(int outFeatures, int inFeatures) {
+        float weightScale = 0.02f;
+        float outputScale = (float) (currentScale * weightScale * 64 * Math.sqrt(inFeatures));
+        buffer.putInt(QuantizedModel.LAYER_DENSE);
+        buffer.putInt(outFeatures).putInt(inFeatures).putInt(0).putFloat(outputScale).putInt(0);
+        for (int i = 0; i < outFeatures; i++) buffer.putFloat(weightScale);
+        for (int i = 0; i < outFeatures; i++) buffer.putInt(random.nextInt(2001) - 1000);
+        for (int i = 0; i < outFeatures * inFeatures; i++) buffer.put((byte) (random.nextInt(255) - 127));
+        currentScale = outputScale;
+        layerCount++;
+        return this;
+    }
+
+    File writeTo(File file) throws IOException {
+        buffer.putInt(layerCountPosition, layerCount);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(buffer.array(), 0, buffer.position());
+        }
+        return file;
+    }
+
+    /** A model with the layer mix and rough size expected from the server network. */
+    static File writeBenchmarkModel(File file) throws IOException {
+        return new TestModelWriter(27L, 428, 241)
+                .conv(8, 1, 3, 2)
+                .maxPool(2)
+                .conv(16, 8, 3, 1)
+                .maxPool(2)
+                .conv(32, 16, 3, 1)
+                .globalAveragePool()
+                .dense(LABELS.length, 32)
+                .writeTo(file);
+    }
+}